@@ -0,0 +1,13 @@
+package com.chat_orchestrator.chat_orchestrator.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Active les tâches planifiées (archivage, maintenance...). Pool dimensionné par
+ * spring.task.scheduling.pool.size : un rattrapage long n'y retarde pas les flushs périodiques.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
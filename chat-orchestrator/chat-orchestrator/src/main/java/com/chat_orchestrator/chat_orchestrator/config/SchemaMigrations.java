@@ -0,0 +1,178 @@
+package com.chat_orchestrator.chat_orchestrator.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DDL Postgres que {@code ddl-auto=update} ne sait pas produire (partitionnement, colonnes générées, index GIN...).
+ * Exécuté au démarrage, après Hibernate ; chaque instruction est idempotente et un échec
+ * n'empêche pas l'application de démarrer.
+ */
+@Slf4j
+@Component
+@Order(0)
+@RequiredArgsConstructor
+public class SchemaMigrations implements ApplicationRunner {
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${app.search.ts-config:simple}")
+    private String tsConfig;
+
+    @Value("${app.partitions.enabled:true}")
+    private boolean partitionMessages;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        for (String sql : statements()) {
+            try {
+                jdbc.execute(sql);
+            } catch (Exception e) {
+                log.warn("⚠️ Migration ignorée ({})", firstLine(sql), e);
+            }
+        }
+    }
+
+    private List<String> statements() {
+        String cfg = tsConfig.replaceAll("[^a-z_]", "");
+        List<String> out = new ArrayList<>();
+        // --- Partitionnement mensuel de message (avant les index qui doivent exister sur la table parente)
+        if (partitionMessages) out.add(PARTITION_MESSAGE);
+        // --- Recherche plein texte : tsvector maintenu par Postgres à chaque écriture + index GIN
+        out.add("ALTER TABLE message ADD COLUMN IF NOT EXISTS content_tsv tsvector "
+                + "GENERATED ALWAYS AS (to_tsvector('" + cfg + "', coalesce(content, ''))) STORED");
+        out.add("CREATE INDEX IF NOT EXISTS idx_message_content_tsv ON message USING GIN (content_tsv)");
+        // --- Index des blocs archivés (ArchiveService) : lexèmes sans positions + comptes exacts par lexème
+        out.add("ALTER TABLE conversation_archive ADD COLUMN IF NOT EXISTS content_tsv tsvector");
+        out.add("ALTER TABLE conversation_archive ADD COLUMN IF NOT EXISTS lexeme_counts jsonb");
+        out.add("CREATE INDEX IF NOT EXISTS idx_conversation_archive_tsv ON conversation_archive USING GIN (content_tsv)");
+        // --- Agrégats horaires d'activité (ActivityRollupService) : tables techniques, hors JPA
+        out.add("""
+                CREATE TABLE IF NOT EXISTS activity_rollup_hourly (
+                    user_id bigint NOT NULL,
+                    hour timestamp NOT NULL,
+                    messages bigint NOT NULL DEFAULT 0,
+                    conversations_started bigint NOT NULL DEFAULT 0,
+                    duration_sec_sum double precision NOT NULL DEFAULT 0,
+                    signups bigint NOT NULL DEFAULT 0,
+                    PRIMARY KEY (user_id, hour))""");
+        out.add("CREATE INDEX IF NOT EXISTS idx_rollup_hour ON activity_rollup_hourly (hour)");
+        out.add("""
+                CREATE TABLE IF NOT EXISTS conversation_activity (
+                    conversation_id bigint PRIMARY KEY,
+                    user_id bigint NOT NULL,
+                    first_at timestamp NOT NULL,
+                    last_at timestamp NOT NULL)""");
+        out.add("CREATE TABLE IF NOT EXISTS rollup_state (name text PRIMARY KEY, watermark timestamp)");
+        // --- Index de mots-clés (KeywordIndex) : comptes exacts par utilisateur/jour + résumés journaliers
+        out.add("""
+                CREATE TABLE IF NOT EXISTS keyword_user_daily (
+                    user_id bigint NOT NULL,
+                    day date NOT NULL,
+                    word text NOT NULL,
+                    cnt bigint NOT NULL,
+                    PRIMARY KEY (user_id, day, word))""");
+        out.add("CREATE INDEX IF NOT EXISTS idx_keyword_user_daily_day ON keyword_user_daily (day)");
+        out.add("CREATE TABLE IF NOT EXISTS keyword_sketch_daily (day date PRIMARY KEY, sketch bytea NOT NULL)");
+        // --- Utilisateurs actifs distincts (ActiveUserSketches) : un sketch HyperLogLog par heure
+        out.add("CREATE TABLE IF NOT EXISTS active_users_hourly (hour timestamp PRIMARY KEY, sketch bytea NOT NULL)");
+        // --- Utilisateurs actifs exacts par jour (ActivityBitmaps) : un bitmap compressé d'ids par jour
+        out.add("CREATE TABLE IF NOT EXISTS active_users_daily (day date PRIMARY KEY, ids bytea NOT NULL)");
+        // --- Inscriptions par jour : filtre de plage sur created_at
+        out.add("CREATE INDEX IF NOT EXISTS idx_users_created_at ON users (created_at)");
+        return out;
+    }
+
+    /**
+     * Conversion unique de la table créée par Hibernate en table partitionnée par mois sur "timestamp" :
+     * renommage, recréation (mêmes colonnes, identity, colonnes générées), une partition par mois
+     * couvert par les données + DEFAULT, copie, PK (id, timestamp), clés étrangères, index.
+     * Sans effet si message est déjà partitionnée. Les partitions futures et la rétention sont gérées
+     * par MessagePartitionService.
+     */
+    private static final String PARTITION_MESSAGE = """
+            DO $$
+            DECLARE
+                cols text;
+                seq text;
+                has_identity boolean;
+                lo date;
+                hi date;
+                m date;
+                r record;
+            BEGIN
+                IF to_regclass('message') IS NULL
+                   OR (SELECT relkind FROM pg_class WHERE oid = 'message'::regclass) = 'p' THEN
+                    RETURN;
+                END IF;
+
+                SELECT date_trunc('month', coalesce(min("timestamp"), now()))::date,
+                       date_trunc('month', greatest(coalesce(max("timestamp"), now()), now()))::date
+                INTO lo, hi FROM message;
+
+                ALTER TABLE message RENAME TO message_legacy;
+                FOR r IN SELECT conname FROM pg_constraint
+                         WHERE conrelid = 'message_legacy'::regclass AND contype = 'p' LOOP
+                    EXECUTE format('ALTER TABLE message_legacy RENAME CONSTRAINT %I TO message_legacy_pkey', r.conname);
+                END LOOP;
+                FOR r IN SELECT i.indexrelid::regclass::text AS idx FROM pg_index i
+                         WHERE i.indrelid = 'message_legacy'::regclass AND NOT i.indisprimary LOOP
+                    EXECUTE format('DROP INDEX %s', r.idx);
+                END LOOP;
+
+                has_identity := EXISTS (SELECT 1 FROM pg_attribute
+                                        WHERE attrelid = 'message_legacy'::regclass AND attname = 'id' AND attidentity <> '');
+                seq := pg_get_serial_sequence('message_legacy', 'id');
+                IF NOT has_identity AND seq IS NOT NULL THEN
+                    EXECUTE format('ALTER SEQUENCE %s OWNED BY NONE', seq);
+                END IF;
+
+                CREATE TABLE message (LIKE message_legacy INCLUDING DEFAULTS INCLUDING IDENTITY INCLUDING GENERATED)
+                    PARTITION BY RANGE ("timestamp");
+                m := lo;
+                WHILE m <= hi LOOP
+                    EXECUTE format('CREATE TABLE %I PARTITION OF message FOR VALUES FROM (%L) TO (%L)',
+                                   'message_p' || to_char(m, 'YYYYMM'), m, (m + interval '1 month')::date);
+                    m := (m + interval '1 month')::date;
+                END LOOP;
+                CREATE TABLE message_default PARTITION OF message DEFAULT;
+
+                SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum) INTO cols
+                FROM pg_attribute
+                WHERE attrelid = 'message_legacy'::regclass AND attnum > 0 AND NOT attisdropped AND attgenerated = '';
+                EXECUTE format('INSERT INTO message (%s) %s SELECT %s FROM message_legacy',
+                               cols, CASE WHEN has_identity THEN 'OVERRIDING SYSTEM VALUE' ELSE '' END, cols);
+
+                ALTER TABLE message ADD CONSTRAINT message_pkey PRIMARY KEY (id, "timestamp");
+                FOR r IN SELECT conname, pg_get_constraintdef(oid) AS def FROM pg_constraint
+                         WHERE conrelid = 'message_legacy'::regclass AND contype = 'f' LOOP
+                    EXECUTE format('ALTER TABLE message ADD CONSTRAINT %I %s', r.conname, r.def);
+                END LOOP;
+                CREATE INDEX idx_message_conv_ts ON message (conversation_id, "timestamp");
+
+                DROP TABLE message_legacy;
+                IF has_identity THEN
+                    PERFORM setval(pg_get_serial_sequence('message', 'id'),
+                                   coalesce((SELECT max(id) FROM message), 0) + 1, false);
+                ELSIF seq IS NOT NULL THEN
+                    EXECUTE format('ALTER SEQUENCE %s OWNED BY message.id', seq);
+                END IF;
+                ANALYZE message;
+            END $$""";
+
+    private static String firstLine(String sql) {
+        String s = sql.strip();
+        int end = s.indexOf('\n');
+        if (end < 0) end = s.length();
+        return s.substring(0, Math.min(60, end));
+    }
+}
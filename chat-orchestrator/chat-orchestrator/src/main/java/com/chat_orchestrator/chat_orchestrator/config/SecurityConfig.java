@@ -1,5 +1,6 @@
 package com.chat_orchestrator.chat_orchestrator.config;
 
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -39,6 +40,8 @@ public class SecurityConfig {
                 .csrf(csrf -> csrf.disable())
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.OPTIONS, "/**").permitAll()   // preflight
+                        // dispatch asynchrone (fin d'un flux) : la requête d'origine a déjà été autorisée
+                        .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                         .requestMatchers("/api/auth/**").permitAll()              // login/register
                         .requestMatchers("/api/whoami").authenticated()
                         .requestMatchers("/api/admin/**").hasRole("ADMIN")
@@ -1,17 +1,28 @@
 package com.chat_orchestrator.chat_orchestrator.controller;
 
+import com.chat_orchestrator.chat_orchestrator.dto.ActiveUsersPointDTO;
 import com.chat_orchestrator.chat_orchestrator.dto.HeatCellDTO;
 import com.chat_orchestrator.chat_orchestrator.dto.PointDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.RetentionCohortDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.SliceRowDTO;
 import com.chat_orchestrator.chat_orchestrator.dto.StatDTO;
+import com.chat_orchestrator.chat_orchestrator.service.ActiveUserSketches;
+import com.chat_orchestrator.chat_orchestrator.service.ActivityBitmaps;
 import com.chat_orchestrator.chat_orchestrator.service.AnalyticsService;
 import com.chat_orchestrator.chat_orchestrator.service.AnalyticsService.KeywordCount;
+import com.chat_orchestrator.chat_orchestrator.service.ColumnarStore;
+import com.chat_orchestrator.chat_orchestrator.service.Downsampling;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/admin/analytics")
@@ -20,37 +31,135 @@ import java.util.List;
 public class AdminAnalyticsController {
 
     private final AnalyticsService analytics;
+    private final AnalyticsHttpCache httpCache;
+    private final ActiveUserSketches activeUsers;
+    private final ActivityBitmaps activityBitmaps;
+    private final Downsampling downsampling;
+
+    @Value("${app.active-users.max-days:366}")
+    private int maxDays;
 
     @GetMapping("/messages-per-day")
     public ResponseEntity<List<PointDTO>> messagesPerDay(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Integer maxPoints,
+            WebRequest request
     ) {
-        return ResponseEntity.ok(analytics.messagesPerDay(from, to));
+        int n = downsampling.points(maxPoints);
+        return httpCache.respond(request, from, to, "mpd" + n, () -> Downsampling.lttb(
+                analytics.messagesPerDay(from, to), n, p -> p.d().toEpochDay(), PointDTO::msgs));
     }
 
     @GetMapping("/avg-conv-duration")
     public ResponseEntity<StatDTO> avgConv(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            WebRequest request
     ) {
-        return ResponseEntity.ok(analytics.avgConvMinutes(from, to));
+        return httpCache.respond(request, from, to, "avg", () -> analytics.avgConvMinutes(from, to));
     }
 
     @GetMapping("/heatmap")
     public ResponseEntity<List<HeatCellDTO>> heatmap(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            WebRequest request
     ) {
-        return ResponseEntity.ok(analytics.heatmap(from, to));
+        return httpCache.respond(request, from, to, "heat", () -> analytics.heatmap(from, to));
     }
 
     @GetMapping("/top-keywords")
     public ResponseEntity<List<KeywordCount>> topKeywords(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
-            @RequestParam(defaultValue = "20") int limit
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Long userId,
+            WebRequest request
     ) {
-        return ResponseEntity.ok(analytics.topKeywords(from, to, limit));
+        return httpCache.respond(request, from, to, "kw" + limit + "u" + userId, () -> userId != null
+                ? analytics.topKeywordsForUser(from, to, limit, userId)
+                : analytics.topKeywords(from, to, limit));
+    }
+
+    /**
+     * Découpage libre : messages et caractères par {@code by} (hour, day, user, role),
+     * filtres optionnels userId et role ; limit ne s'applique qu'au découpage par utilisateur.
+     */
+    @GetMapping("/slice")
+    public ResponseEntity<List<SliceRowDTO>> slice(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String by,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String role,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        ColumnarStore.GroupBy groupBy;
+        try {
+            groupBy = ColumnarStore.GroupBy.valueOf(by.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (!validRange(from, to)) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(analytics.slice(from, to, groupBy, userId, role, limit));
+    }
+
+    // ---------- Utilisateurs actifs (estimations HyperLogLog) ----------
+    /** Utilisateurs distincts actifs sur toute la plage. */
+    @GetMapping("/active-users")
+    public ResponseEntity<StatDTO> activeUsers(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        if (!validRange(from, to)) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(new StatDTO("activeUsers", activeUsers.distinct(from, to)));
+    }
+
+    @GetMapping("/dau")
+    public ResponseEntity<List<ActiveUsersPointDTO>> dau(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return rolling(from, to, 1);
+    }
+
+    /** Fenêtre glissante de 7 jours finissant à chaque jour de la plage. */
+    @GetMapping("/wau")
+    public ResponseEntity<List<ActiveUsersPointDTO>> wau(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return rolling(from, to, 7);
+    }
+
+    /** Fenêtre glissante de 30 jours finissant à chaque jour de la plage. */
+    @GetMapping("/mau")
+    public ResponseEntity<List<ActiveUsersPointDTO>> mau(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return rolling(from, to, 30);
+    }
+
+    private ResponseEntity<List<ActiveUsersPointDTO>> rolling(LocalDate from, LocalDate to, int windowDays) {
+        if (!validRange(from, to)) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(activeUsers.rolling(from, to, windowDays));
+    }
+
+    // ---------- Rétention par cohorte (bitmaps exacts) ----------
+    /** Cohortes hebdomadaires des inscrits des semaines complètes qui recouvrent [from, to], suivies sur {@code weeks} semaines (1..52). */
+    @GetMapping("/retention")
+    public ResponseEntity<List<RetentionCohortDTO>> retention(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "8") int weeks
+    ) {
+        if (!validRange(from, to) || weeks < 1 || weeks > 52) return ResponseEntity.badRequest().build();
+        return ResponseEntity.ok(activityBitmaps.retention(from, to, weeks));
+    }
+
+    private boolean validRange(LocalDate from, LocalDate to) {
+        return !to.isBefore(from) && ChronoUnit.DAYS.between(from, to) < maxDays;
     }
 }
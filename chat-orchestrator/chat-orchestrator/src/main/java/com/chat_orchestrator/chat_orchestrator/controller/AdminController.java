@@ -3,14 +3,26 @@ package com.chat_orchestrator.chat_orchestrator.controller;
 
 import com.chat_orchestrator.chat_orchestrator.dto.*;
 import com.chat_orchestrator.chat_orchestrator.entity.Role;
+import com.chat_orchestrator.chat_orchestrator.service.ActivityLeaderboards;
+import com.chat_orchestrator.chat_orchestrator.service.ActivityRollupService;
 import com.chat_orchestrator.chat_orchestrator.service.AdminService;
+import com.chat_orchestrator.chat_orchestrator.service.ArchiveService;
+import com.chat_orchestrator.chat_orchestrator.service.ConversationExportService;
+import com.chat_orchestrator.chat_orchestrator.service.ConversationImportService;
+import com.chat_orchestrator.chat_orchestrator.service.Downsampling;
+import com.chat_orchestrator.chat_orchestrator.service.LiveMetrics;
+import com.chat_orchestrator.chat_orchestrator.service.MessagePartitionService;
+import com.chat_orchestrator.chat_orchestrator.service.SloMonitor;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.util.List;
@@ -23,6 +35,11 @@ import java.util.List;
 public class AdminController {
 
     private final AdminService adminService;
+    private final ConversationExportService exportService;
+    private final ConversationImportService importService;
+    private final LiveMetrics liveMetrics;
+    private final SloMonitor sloMonitor;
+    private final Downsampling downsampling;
 
     // ------- ACTIONS USERS -------
     @PostMapping("/users/{id}/active")
@@ -41,9 +58,10 @@ public class AdminController {
     }
 
     @DeleteMapping("/users/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
-        boolean ok = adminService.deleteUser(id);
-        return ok ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+    public ResponseEntity<DeletionJobDTO> deleteUser(@PathVariable Long id) {
+        return adminService.deleteUser(id)
+                .map(job -> ResponseEntity.status(HttpStatus.ACCEPTED).body(job))
+                .orElse(ResponseEntity.notFound().build());
     }
 
     // ------- STATS -------
@@ -98,28 +116,150 @@ public class AdminController {
     }
 
     @DeleteMapping("/users/{userId}/conversations")
-    public ResponseEntity<Void> deleteConversationsByUser(@PathVariable Long userId) {
-        adminService.deleteConversationsByUser(userId);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<DeletionJobDTO> deleteConversationsByUser(@PathVariable Long userId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(adminService.deleteConversationsByUser(userId));
+    }
+
+    // ------- JOBS DE SUPPRESSION -------
+    @GetMapping("/jobs/deletions")
+    public ResponseEntity<List<DeletionJobDTO>> deletionJobs() {
+        return ResponseEntity.ok(adminService.deletionJobs());
+    }
+
+    @GetMapping("/jobs/deletions/{jobId}")
+    public ResponseEntity<DeletionJobDTO> deletionJob(@PathVariable String jobId) {
+        return adminService.deletionJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
     }
 
+    /** Export en flux : format=csv (résumé, ou un message par ligne si messages=true) | ndjson (complet). */
     @GetMapping("/conversations/export")
-    public ResponseEntity<byte[]> exportConversations(@RequestParam Long userId) {
-        String csv = adminService.exportConversationsCsv(userId);
-        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+    public ResponseEntity<StreamingResponseBody> exportConversations(
+            @RequestParam Long userId,
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean messages) {
+        boolean ndjson = "ndjson".equalsIgnoreCase(format);
+        ConversationExportService.Format fmt = ndjson
+                ? ConversationExportService.Format.NDJSON
+                : ConversationExportService.Format.CSV;
+
         HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.TEXT_PLAIN);
+        headers.setContentType(ndjson ? MediaType.parseMediaType("application/x-ndjson") : MediaType.TEXT_PLAIN);
         headers.set(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"conversations_user_" + userId + ".csv\"");
-        return new ResponseEntity<>(bytes, headers, HttpStatus.OK);
+                "attachment; filename=\"conversations_user_" + userId + (ndjson ? ".ndjson" : ".csv") + "\"");
+        StreamingResponseBody body = out -> exportService.export(userId, fmt, messages, out);
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /** Import NDJSON (une conversation par ligne, format de l'export) pour le compte userId. */
+    @PostMapping(path = "/conversations/import", consumes = {"application/x-ndjson", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<ImportJobDTO> importConversations(@RequestParam Long userId,
+                                                            HttpServletRequest request) throws IOException {
+        if (!adminService.userExists(userId)) return ResponseEntity.notFound().build();
+        ImportJobDTO job = importService.importNdjson(userId, request.getInputStream());
+        return "DONE".equals(job.status())
+                ? ResponseEntity.ok(job)
+                : ResponseEntity.badRequest().body(job);
+    }
+
+    @GetMapping("/jobs/imports")
+    public ResponseEntity<List<ImportJobDTO>> importJobs() {
+        return ResponseEntity.ok(importService.list());
+    }
+
+    @GetMapping("/jobs/imports/{jobId}")
+    public ResponseEntity<ImportJobDTO> importJob(@PathVariable String jobId) {
+        return importService.get(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/conversations/archive")
+    public ResponseEntity<ArchiveService.ArchiveRunDTO> archiveIdleConversations() {
+        return ResponseEntity.ok(adminService.archiveIdleConversations());
+    }
+
+    // ------- PARTITIONS MESSAGE -------
+    @GetMapping("/partitions")
+    public ResponseEntity<List<PartitionDTO>> partitions() {
+        return ResponseEntity.ok(adminService.messagePartitions());
+    }
+
+    @PostMapping("/partitions/maintain")
+    public ResponseEntity<MessagePartitionService.MaintenanceDTO> maintainPartitions() {
+        return ResponseEntity.ok(adminService.maintainPartitions());
+    }
+
+    /** Partitions parcourues par un filtre de plage sur message."timestamp" (EXPLAIN). */
+    @GetMapping("/partitions/pruning")
+    public ResponseEntity<MessagePartitionService.PruningCheckDTO> partitionPruning(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(adminService.checkPartitionPruning(from, to));
+    }
+
+    // ------- STATISTIQUES INCRÉMENTALES -------
+    @GetMapping("/knowledge-stats")
+    public ResponseEntity<KnowledgeStatsDTO> knowledgeStats() {
+        return ResponseEntity.ok(adminService.knowledgeStats());
+    }
+
+    @PostMapping("/knowledge-stats/rebuild")
+    public ResponseEntity<KnowledgeStatsDTO> rebuildKnowledgeStats() {
+        boolean started = adminService.rebuildKnowledgeStats();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(adminService.knowledgeStats());
+    }
+
+    // ------- INDEX DE MOTS-CLÉS -------
+    /** Réindexation complète en tâche de fond (top-keywords retombe sur le calcul SQL entre-temps). */
+    @PostMapping("/keywords/reindex")
+    public ResponseEntity<Void> reindexKeywords() {
+        return ResponseEntity.status(adminService.reindexKeywords() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).build();
+    }
+
+    // ------- MAGASIN COLONNAIRE -------
+    /** Rechargement en tâche de fond (les analyses repassent par Postgres entre-temps) ; 409 si désactivé ou déjà en cours. */
+    @PostMapping("/columnar/reload")
+    public ResponseEntity<Void> reloadColumnar() {
+        return ResponseEntity.status(adminService.reloadColumnar() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).build();
+    }
+
+    // ------- AGRÉGATS HORAIRES -------
+    @GetMapping("/rollups")
+    public ResponseEntity<ActivityRollupService.RollupStatusDTO> rollupStatus() {
+        return ResponseEntity.ok(adminService.rollupStatus());
+    }
+
+    @PostMapping("/rollups/catch-up")
+    public ResponseEntity<ActivityRollupService.RollupStatusDTO> catchUpRollups() {
+        return ResponseEntity.ok(adminService.catchUpRollups());
+    }
+
+    @PostMapping("/rollups/reset")
+    public ResponseEntity<ActivityRollupService.RollupStatusDTO> resetRollups() {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(adminService.resetRollups());
+    }
+
+    // ------- CLASSEMENTS D'ACTIVITÉ -------
+    /** ex. ?metric=USER_MESSAGES&window=WEEK&k=10 (DAY/WEEK glissants, ALL depuis toujours). */
+    @GetMapping("/leaderboards")
+    public ResponseEntity<List<LeaderboardEntryDTO>> leaderboard(
+            @RequestParam(defaultValue = "CONVERSATION_MESSAGES") ActivityLeaderboards.Metric metric,
+            @RequestParam(defaultValue = "ALL") ActivityLeaderboards.Window window,
+            @RequestParam(defaultValue = "10") int k) {
+        return ResponseEntity.ok(adminService.leaderboard(metric, window, k));
     }
 
     // ------- SIGNUPS / DASHBOARD -------
     @GetMapping("/signups-per-day")
     public ResponseEntity<List<UserSignupDTO>> signupsPerDay(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
-        return ResponseEntity.ok(adminService.signupsPerDay(from, to));
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Integer maxPoints) {
+        return ResponseEntity.ok(Downsampling.lttb(adminService.signupsPerDay(from, to), downsampling.points(maxPoints),
+                p -> p.date().toEpochDay(), UserSignupDTO::count));
     }
 
     @GetMapping("/dashboard")
@@ -130,11 +270,29 @@ public class AdminController {
         return ResponseEntity.ok(adminService.dashboard(from, to, topN));
     }
 
+    // ------- DIRECT (SSE) -------
+    /** Trames d'une seconde (événements "frame"), précédées des bornes des seaux de latence ("buckets"). */
+    @GetMapping(value = "/live", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> live() {
+        return liveMetrics.subscribe()
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+
+    // ------- SLO (burn rates en mémoire) -------
+    @GetMapping("/slo")
+    public ResponseEntity<List<SloBurnDTO>> slo() {
+        return ResponseEntity.ok(sloMonitor.status());
+    }
+
     // ------- LATENCE -------
     @GetMapping("/latency-window")
     public ResponseEntity<List<BotLatencyRowDTO>> latencyWindow(
             @RequestParam Instant from,
-            @RequestParam Instant to) {
-        return ResponseEntity.ok(adminService.latencyWindow(from, to));
+            @RequestParam Instant to,
+            @RequestParam(required = false) Integer maxPoints) {
+        // seaux d'une minute : la série est réduite sur le p90 pour garder les pics visibles
+        return ResponseEntity.ok(Downsampling.lttb(adminService.latencyWindow(from, to), downsampling.points(maxPoints),
+                BotLatencyRowDTO::ts, BotLatencyRowDTO::p90));
     }
 }
@@ -2,15 +2,21 @@
 package com.chat_orchestrator.chat_orchestrator.controller;
 
 import com.chat_orchestrator.chat_orchestrator.dto.*;
+import com.chat_orchestrator.chat_orchestrator.service.AnalyticsBatchService;
 import com.chat_orchestrator.chat_orchestrator.service.AnalyticsService;
+import com.chat_orchestrator.chat_orchestrator.service.Downsampling;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.time.LocalDate;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 
 @PreAuthorize("hasAnyRole('USER','ADMIN')")
@@ -21,29 +27,38 @@ import java.util.List;
 public class AnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final AnalyticsBatchService analyticsBatchService;
+    private final AnalyticsHttpCache httpCache;
+    private final Downsampling downsampling;
 
     @GetMapping("/messages-per-day")
     public ResponseEntity<List<PointDTO>> messagesPerDay(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Integer maxPoints,
+            WebRequest request
     ) {
-        return ResponseEntity.ok(analyticsService.messagesPerDay(from, to));
+        int n = downsampling.points(maxPoints);
+        return httpCache.respond(request, from, to, "mpd" + n, () -> Downsampling.lttb(
+                analyticsService.messagesPerDay(from, to), n, p -> p.d().toEpochDay(), PointDTO::msgs));
     }
 
     @GetMapping("/avg-conv-duration")
     public ResponseEntity<StatDTO> avgConv(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            WebRequest request
     ) {
-        return ResponseEntity.ok(analyticsService.avgConvMinutes(from, to));
+        return httpCache.respond(request, from, to, "avg", () -> analyticsService.avgConvMinutes(from, to));
     }
 
     @GetMapping("/heatmap")
     public ResponseEntity<List<HeatCellDTO>> heatmap(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            WebRequest request
     ) {
-        return ResponseEntity.ok(analyticsService.heatmap(from, to));
+        return httpCache.respond(request, from, to, "heat", () -> analyticsService.heatmap(from, to));
     }
 
     // ✅ AJOUTE CETTE ROUTE :
@@ -51,12 +66,28 @@ public class AnalyticsController {
     public ResponseEntity<List<KeywordCountDTO>> topKeywords(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
-            @RequestParam(defaultValue = "20") int limit
+            @RequestParam(defaultValue = "20") int limit,
+            WebRequest request
     ) {
-        var list = analyticsService.topKeywords(from, to, limit)
+        return httpCache.respond(request, from, to, "kw" + limit, () -> analyticsService.topKeywords(from, to, limit)
                 .stream()
                 .map(k -> new KeywordCountDTO(k.word(), k.count()))
-                .toList();
-        return ResponseEntity.ok(list);
+                .toList());
+    }
+
+    /** Plusieurs séries en un appel, ex. ?series=MESSAGES_PER_DAY,HEATMAP (toutes si absent). */
+    @GetMapping("/batch")
+    public ResponseEntity<AnalyticsBatchDTO> batch(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Set<AnalyticsBatchService.Series> series,
+            @RequestParam(defaultValue = "10") int topN,
+            WebRequest request
+    ) {
+        String variant = "batch" + (series == null ? "" : new TreeSet<>(series)) + topN;
+        // tookMs varie d'un appel à l'autre : hors de l'ETag d'une plage ouverte
+        return httpCache.respond(request, from, to, variant,
+                () -> analyticsBatchService.run(from, to, series, topN),
+                b -> Arrays.asList(b.messagesPerDay(), b.avgConversationMinutes(), b.heatmap(), b.topKeywords()));
     }
 }
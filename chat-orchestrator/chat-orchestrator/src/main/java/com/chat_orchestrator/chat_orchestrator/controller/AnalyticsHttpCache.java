@@ -0,0 +1,58 @@
+package com.chat_orchestrator.chat_orchestrator.controller;
+
+import com.chat_orchestrator.chat_orchestrator.service.AnalyticsService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * En-têtes de cache HTTP des endpoints analytics.
+ * Plage close : ETag connu sans calcul (versions des caches), 304 immédiat si le client l'a déjà,
+ * Cache-Control privé avec max-age. Plage ouverte : réponse calculée, ETag sur son contenu, no-cache.
+ */
+@Component
+class AnalyticsHttpCache {
+
+    private final AnalyticsService analyticsService;
+    private final CacheControl closedControl;
+
+    AnalyticsHttpCache(AnalyticsService analyticsService,
+                       @Value("${app.analytics.cache.max-age-seconds:300}") long maxAgeSeconds) {
+        this.analyticsService = analyticsService;
+        this.closedControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePrivate().mustRevalidate();
+    }
+
+    <T> ResponseEntity<T> respond(WebRequest request, LocalDate from, LocalDate to, String variant, Supplier<T> body) {
+        return respond(request, from, to, variant, body, Function.identity());
+    }
+
+    /** {@code etagBasis} : partie du contenu qui définit l'ETag d'une plage ouverte (sans les champs volatils). */
+    <T> ResponseEntity<T> respond(WebRequest request, LocalDate from, LocalDate to, String variant,
+                                  Supplier<T> body, Function<T, ?> etagBasis) {
+        Optional<String> closed = analyticsService.closedEtag(from, to, variant);
+        if (closed.isPresent()) {
+            if (request.checkNotModified(closed.get())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(closed.get()).cacheControl(closedControl).build();
+            }
+            return ResponseEntity.ok().eTag(closed.get()).cacheControl(closedControl).body(body.get());
+        }
+
+        T b = body.get();
+        String etag = "W/\"l-" + variant + "-" + Integer.toHexString(Objects.hashCode(etagBasis.apply(b))) + "\"";
+        CacheControl live = CacheControl.noCache().cachePrivate();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(live).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(live).body(b);
+    }
+}
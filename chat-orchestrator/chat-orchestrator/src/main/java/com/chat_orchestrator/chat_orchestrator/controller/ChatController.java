@@ -8,7 +8,9 @@ import com.chat_orchestrator.chat_orchestrator.entity.User;
 import com.chat_orchestrator.chat_orchestrator.repository.UserRepository;
 import com.chat_orchestrator.chat_orchestrator.service.ChatService;
 import com.chat_orchestrator.chat_orchestrator.service.ConversationService;
+import com.chat_orchestrator.chat_orchestrator.service.LiveMetrics;
 import com.chat_orchestrator.chat_orchestrator.service.NLStatsService;
+import com.chat_orchestrator.chat_orchestrator.service.SloMonitor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
@@ -27,6 +29,8 @@ public class ChatController {
     private final ConversationService conversationService;
     private final NLStatsService nlStatsService;
     private final UserRepository userRepository;
+    private final LiveMetrics liveMetrics;
+    private final SloMonitor sloMonitor;
 
     private String nsFromAuth() {
         Authentication a = SecurityContextHolder.getContext().getAuthentication();
@@ -36,6 +40,24 @@ public class ChatController {
 
     @PostMapping
     public ResponseEntity<ChatResponse> chat(@RequestBody ChatRequest req) {
+        // tableau de bord en direct : durée du tour, conversation active, erreurs
+        long t0 = System.nanoTime();
+        liveMetrics.chatStarted();
+        Long convId = null;
+        boolean failed = true;
+        try {
+            ResponseEntity<ChatResponse> res = handle(req);
+            convId = res.getBody() == null ? null : res.getBody().getConversationId();
+            failed = false;
+            return res;
+        } finally {
+            long elapsedMs = (System.nanoTime() - t0) / 1_000_000;
+            liveMetrics.chatEnded(elapsedMs, convId, failed);
+            if (!failed) sloMonitor.chatLatency(elapsedMs);
+        }
+    }
+
+    private ResponseEntity<ChatResponse> handle(ChatRequest req) {
         final String userMsg = req.getMessage() == null ? "" : req.getMessage().trim();
         final String ns = nsFromAuth();
         final List<String> docs = (req.getDocs() == null) ? List.of() : req.getDocs();
@@ -43,7 +65,7 @@ public class ChatController {
 
         // 1) Réponse "analytics" si applicable, sinon routage normal (RAG / général)
         var maybe = nlStatsService.tryAnswer(userMsg);
-        String reply = maybe.orElseGet(() -> chatService.handleMessage(userMsg, ns, docs));
+        String reply = maybe.orElseGet(() -> chatService.handleMessage(userMsg, ns, docs, convId));
 
         // 2) Persistance + récupérer l’ID RÉEL (créé ou réutilisé)
         Long realId;
@@ -1,12 +1,16 @@
 package com.chat_orchestrator.chat_orchestrator.controller;
 
+import com.chat_orchestrator.chat_orchestrator.dto.ConversationSuggestionDTO;
 import com.chat_orchestrator.chat_orchestrator.dto.CreateConversationRequest;
+import com.chat_orchestrator.chat_orchestrator.dto.DeletionJobDTO;
 import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.chat_orchestrator.chat_orchestrator.dto.SearchResultDTO;
 import com.chat_orchestrator.chat_orchestrator.entity.Conversation;
 import com.chat_orchestrator.chat_orchestrator.entity.User;
 import com.chat_orchestrator.chat_orchestrator.repository.ConversationRepository;
 import com.chat_orchestrator.chat_orchestrator.repository.UserRepository;
 import com.chat_orchestrator.chat_orchestrator.service.ConversationService;
+import com.chat_orchestrator.chat_orchestrator.service.MessageSearchService;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -25,13 +29,16 @@ public class ConversationController {
     private final ConversationService conversationService;
     private final UserRepository userRepository;
     private final ConversationRepository conversationRepository;
+    private final MessageSearchService messageSearchService;
 
     public ConversationController(ConversationService conversationService,
                                   UserRepository userRepository,
-                                  ConversationRepository conversationRepository) {
+                                  ConversationRepository conversationRepository,
+                                  MessageSearchService messageSearchService) {
         this.conversationService = conversationService;
         this.userRepository = userRepository;
         this.conversationRepository = conversationRepository;
+        this.messageSearchService = messageSearchService;
     }
 
     private User currentUserOr401() {
@@ -64,6 +71,26 @@ public class ConversationController {
         return ResponseEntity.ok(conv);
     }
 
+    /** Recherche plein texte dans MES messages (classement + extraits, paginée). */
+    @GetMapping("/search")
+    public ResponseEntity<SearchResultDTO> search(@RequestParam("q") String q,
+                                                  @RequestParam(defaultValue = "0") int page,
+                                                  @RequestParam(defaultValue = "20") int size) {
+        User owner = currentUserOr401();
+        return ResponseEntity.ok(messageSearchService.search(owner.getId(), q, page, size));
+    }
+
+    /** Auto-complétion des titres de MES conversations (index mémoire, pas de requête SQL par frappe). */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<ConversationSuggestionDTO>> suggest(@RequestParam("prefix") String prefix,
+                                                                   @RequestParam(defaultValue = "10") int limit) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !auth.isAuthenticated() || "anonymousUser".equals(auth.getPrincipal())) {
+            throw new org.springframework.web.server.ResponseStatusException(HttpStatus.UNAUTHORIZED);
+        }
+        return ResponseEntity.ok(conversationService.suggestTitles(auth.getName(), prefix, limit));
+    }
+
     @GetMapping("/history")
     public ResponseEntity<List<Conversation>> getHistory() {
         User owner = currentUserOr401();
@@ -120,14 +147,13 @@ public class ConversationController {
 
     // ---------- NOUVEAU : purge globale (ADMIN uniquement) ----------
     @DeleteMapping("/purge")
-    public ResponseEntity<Void> purgeAllConversations() {
+    public ResponseEntity<DeletionJobDTO> purgeAllConversations() {
         var auth = SecurityContextHolder.getContext().getAuthentication();
         boolean isAdmin = auth.getAuthorities().stream()
                 .anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
         if (!isAdmin) {
             throw new org.springframework.web.server.ResponseStatusException(HttpStatus.FORBIDDEN);
         }
-        conversationService.purgeAllConversationsAsAdmin();
-        return ResponseEntity.noContent().build();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(conversationService.purgeAllConversationsAsAdmin());
     }
 }
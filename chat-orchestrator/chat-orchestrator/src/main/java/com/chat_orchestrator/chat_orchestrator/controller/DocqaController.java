@@ -1,27 +1,35 @@
 // src/main/java/.../controller/DocqaController.java
 package com.chat_orchestrator.chat_orchestrator.controller;
 
+import com.chat_orchestrator.chat_orchestrator.dto.DocIngestJobDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.docqa.DocqaDtos;
+import com.chat_orchestrator.chat_orchestrator.service.DocIngestJobs;
+import com.chat_orchestrator.chat_orchestrator.service.DocqaService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Map;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/docqa")
 @CrossOrigin(origins = "http://localhost:4200")
+@RequiredArgsConstructor
 public class DocqaController {
 
     private final RestTemplate http = new RestTemplate();
+    private final DocqaService docqaService;
+    private final DocIngestJobs ingestJobs;
 
     @Value("${docqa.base-url:http://localhost:5000}")
     private String docqaBase;
@@ -32,24 +40,42 @@ public class DocqaController {
                 ? a.getName() : "guest";
     }
 
+    /** Upload relayé en flux vers DocQA (ni copie en mémoire ni fichier temporaire). */
     @PostMapping(value = "/ingest", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> ingest(@RequestPart("file") MultipartFile file) throws Exception {
+    public ResponseEntity<?> ingest(HttpServletRequest request) throws Exception {
         String ns = ns();
-        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
-        form.add("ns", ns);
-        form.add("file", new MultipartInputStreamFileResource(
-                file.getInputStream(), file.getOriginalFilename(), file.getSize()));
+        log.info("📥 /api/docqa/ingest ns={}", ns);
+        ResponseEntity<Map<String,Object>> resp = docqaService.proxyIngest(request, ns);
+        return ResponseEntity.status(resp.getStatusCode()).body(resp.getBody());
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
+    // ---------- Ingestion asynchrone ----------
+    /**
+     * Un ou plusieurs fichiers (champ « file » répété) : 202 avec l'id du job, traitement en arrière-plan.
+     * Corps lu en flux par DocIngestJobs (pas de décodage multipart par le conteneur).
+     */
+    @PostMapping(value = "/jobs", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<DocIngestJobDTO> submitJob(HttpServletRequest request) throws Exception {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(ingestJobs.submit(ns(), request));
+    }
 
-        System.out.println("📥 /api/docqa/ingest ns=" + ns + " file=" + file.getOriginalFilename());
-        ResponseEntity<Map> resp = http.postForEntity(
-                URI.create(docqaBase + "/ingest"),
-                new HttpEntity<>(form, headers),
-                Map.class
-        );
-        return ResponseEntity.status(resp.getStatusCode()).body(resp.getBody());
+    @GetMapping("/jobs")
+    public ResponseEntity<List<DocIngestJobDTO>> jobs() {
+        return ResponseEntity.ok(ingestJobs.list(ns()));
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<DocIngestJobDTO> job(@PathVariable String id) {
+        return ingestJobs.get(id, ns())
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // ---------- Recherche (index vectoriel local) ----------
+    @PostMapping("/search")
+    public ResponseEntity<List<DocqaDtos.Hit>> search(@RequestBody DocqaDtos.SearchReq req) {
+        int k = req.k() == null ? 5 : Math.max(1, Math.min(50, req.k()));
+        return ResponseEntity.ok(docqaService.search(req.q(), k, ns()));
     }
 
     @GetMapping("/list")
@@ -62,10 +88,7 @@ public class DocqaController {
 
     @DeleteMapping
     public ResponseEntity<?> delete(@RequestParam("name") String name) {
-        String ns = ns();
-        String url = docqaBase + "/docs?ns=" + URLEncoder.encode(ns, StandardCharsets.UTF_8)
-                + "&name=" + URLEncoder.encode(name, StandardCharsets.UTF_8);
-        http.delete(url);
+        docqaService.deleteDoc(ns(), name);
         return ResponseEntity.noContent().build();
     }
 }
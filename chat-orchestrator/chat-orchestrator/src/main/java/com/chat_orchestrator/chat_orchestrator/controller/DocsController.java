@@ -1,16 +1,15 @@
 package com.chat_orchestrator.chat_orchestrator.controller;
 
+import com.chat_orchestrator.chat_orchestrator.service.DocqaService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.multipart.MultipartFile;
 
-import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
@@ -18,9 +17,11 @@ import java.util.Map;
 @RestController
 @RequestMapping("/api/docs")
 @CrossOrigin(origins = "http://localhost:4200")
+@RequiredArgsConstructor
 public class DocsController {
 
     private final RestTemplate http = new RestTemplate();
+    private final DocqaService docqaService;
 
     @Value("${docqa.base-url:http://localhost:5000}")
     private String docqaBase;
@@ -31,16 +32,11 @@ public class DocsController {
                 ? a.getName() : "guest";
     }
 
+    /** Upload relayé en flux vers DocQA (ni copie en mémoire ni fichier temporaire). */
     @PostMapping(value = "/ingest", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    public ResponseEntity<?> ingest(@RequestPart("file") MultipartFile file) throws Exception {
+    public ResponseEntity<?> ingest(HttpServletRequest request) throws Exception {
         String ns = ns();
-        MultiValueMap<String, Object> form = new LinkedMultiValueMap<>();
-        form.add("ns", ns);
-        form.add("file", new MultipartInputStreamFileResource(file.getInputStream(), file.getOriginalFilename(), file.getSize()));
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-        ResponseEntity<Map> resp = http.postForEntity(URI.create(docqaBase + "/ingest"), new HttpEntity<>(form, headers), Map.class);
+        ResponseEntity<Map<String,Object>> resp = docqaService.proxyIngest(request, ns);
         return ResponseEntity.status(resp.getStatusCode()).body(resp.getBody());
     }
 
@@ -54,10 +50,7 @@ public class DocsController {
 
     @DeleteMapping
     public ResponseEntity<?> delete(@RequestParam("name") String name) {
-        String ns = ns();
-        String url = docqaBase + "/docs?ns=" + URLEncoder.encode(ns, StandardCharsets.UTF_8)
-                + "&name=" + URLEncoder.encode(name, StandardCharsets.UTF_8);
-        http.delete(url);
+        docqaService.deleteDoc(ns(), name);
         return ResponseEntity.noContent().build();
     }
 }
@@ -0,0 +1,6 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import java.time.LocalDate;
+
+/** Utilisateurs actifs distincts (estimation HyperLogLog) sur la fenêtre finissant au jour {@code d}. */
+public record ActiveUsersPointDTO(LocalDate d, long users) {}
@@ -8,4 +8,8 @@ public class AdminStatsDTO {
     private long totalUsers;
     private long totalConversations;
     private long totalMessages;
+    // utilisateurs actifs distincts (estimations) : jour courant, 7 et 30 derniers jours
+    private long dau;
+    private long wau;
+    private long mau;
 }
@@ -0,0 +1,18 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/** Séries demandées sur une même plage ; les séries non demandées sont absentes. */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AnalyticsBatchDTO(
+        LocalDate from,
+        LocalDate to,
+        List<PointDTO> messagesPerDay,
+        StatDTO avgConversationMinutes,
+        List<HeatCellDTO> heatmap,
+        List<KeywordCountDTO> topKeywords,
+        long tookMs
+) {}
@@ -0,0 +1,3 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+public record ConversationSuggestionDTO(Long id, String title) {}
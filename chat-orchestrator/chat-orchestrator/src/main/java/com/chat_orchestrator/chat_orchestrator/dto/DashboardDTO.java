@@ -12,4 +12,5 @@ public class DashboardDTO {
     private StatDTO avgConversationMinutes;
     private List<HeatCellDTO> heatmap;
     private List<KeywordCountDTO> topKeywords;
+    private List<ActiveUsersPointDTO> dailyActiveUsers;
 }
@@ -0,0 +1,17 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import java.time.Instant;
+
+/** Suivi d'une suppression en masse (exécutée en tâche de fond, par lots). */
+public record DeletionJobDTO(
+        String id,
+        String kind,                // USER | USER_CONVERSATIONS | CONVERSATION | ALL_CONVERSATIONS
+        Long targetId,
+        String status,              // PENDING | RUNNING | DONE | FAILED
+        long conversationsTotal,    // estimation au démarrage
+        long conversationsDeleted,
+        long messagesDeleted,
+        Instant startedAt,
+        Instant finishedAt,
+        String error
+) {}
@@ -0,0 +1,26 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+/** Suivi d'un upload de documents ingérés en arrière-plan (un fichier par tâche du pool). */
+public record DocIngestJobDTO(
+        String id,
+        String ns,
+        String status,              // PENDING | RUNNING | DONE | PARTIAL | FAILED
+        int filesTotal,
+        int filesDone,
+        int filesFailed,
+        List<FileDTO> files,
+        Instant createdAt,
+        Instant finishedAt
+) {
+    public record FileDTO(
+            String name,
+            long bytes,
+            long bytesSent,         // progression de l'envoi vers DocQA
+            String status,          // PENDING | RUNNING | DONE | FAILED
+            Integer pages,
+            String error
+    ) {}
+}
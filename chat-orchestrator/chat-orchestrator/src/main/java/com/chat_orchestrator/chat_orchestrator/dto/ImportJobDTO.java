@@ -0,0 +1,16 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import java.time.Instant;
+
+/** Suivi d'un import NDJSON de conversations (lots commités au fil de l'eau). */
+public record ImportJobDTO(
+        String id,
+        Long userId,
+        String status,              // RUNNING | DONE | FAILED
+        long conversationsImported,
+        long messagesImported,
+        long batches,
+        Instant startedAt,
+        Instant finishedAt,
+        String error
+) {}
@@ -3,7 +3,7 @@ package com.chat_orchestrator.chat_orchestrator.dto;
 
 import lombok.*;
 
-@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder @EqualsAndHashCode
 public class KeywordCountDTO {
     private String word;
     private long count;
@@ -0,0 +1,15 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import java.time.Instant;
+
+/** État des statistiques incrémentales (ready=false tant que la première construction n'est pas finie). */
+public record KnowledgeStatsDTO(
+        boolean ready,
+        boolean rebuilding,
+        Instant builtAt,
+        long conversations,
+        long messages,
+        long totalWords,
+        double averageDurationMinutes,
+        String longestConversationTitle
+) {}
@@ -0,0 +1,4 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+/** Une ligne de classement : id (conversation ou utilisateur), titre ou email, compte. */
+public record LeaderboardEntryDTO(Long id, String label, long count) {}
@@ -0,0 +1,18 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import java.util.List;
+
+/**
+ * Une seconde d'activité (flux /api/admin/live) : compteurs remis à zéro à chaque trame,
+ * sauf activeChats et inFlight qui sont des jauges instantanées.
+ * latency[i] : tours de chat terminés dont la durée est <= latencyBoundsMs[i] (dernier seau : au-delà).
+ */
+public record LiveFrameDTO(
+        long ts,
+        long messages,
+        long newConversations,
+        long activeChats,
+        long inFlight,
+        long errors,
+        List<Long> latency
+) {}
@@ -0,0 +1,4 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+/** Une partition de la table message : bornes telles que rendues par Postgres, taille estimée. */
+public record PartitionDTO(String name, String bound, long estimatedRows, long totalBytes) {}
@@ -0,0 +1,10 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Cohorte des inscrits de la semaine commençant le lundi {@code cohort} : taille, puis pour chaque semaine
+ * k = 0, 1, ... le nombre de membres actifs et la part qu'ils représentent.
+ */
+public record RetentionCohortDTO(LocalDate cohort, long users, List<Long> active, List<Double> rate) {}
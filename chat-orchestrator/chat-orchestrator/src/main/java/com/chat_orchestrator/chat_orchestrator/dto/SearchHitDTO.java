@@ -0,0 +1,17 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * Un message trouvé par la recherche plein texte ; snippet HTML échappé, termes entre <mark>…</mark>.
+ * messageId null : message d'une conversation archivée (les ids ne sont pas conservés dans le bloc).
+ */
+public record SearchHitDTO(
+        Long messageId,
+        Long conversationId,
+        String conversationTitle,
+        String role,
+        LocalDateTime timestamp,
+        double rank,
+        String snippet
+) {}
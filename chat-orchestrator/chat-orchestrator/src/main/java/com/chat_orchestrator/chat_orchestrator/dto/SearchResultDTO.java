@@ -0,0 +1,5 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+import java.util.List;
+
+public record SearchResultDTO(List<SearchHitDTO> hits, long total, int page, int size) {}
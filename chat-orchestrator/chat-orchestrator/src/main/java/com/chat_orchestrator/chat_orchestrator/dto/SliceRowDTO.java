@@ -0,0 +1,4 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+/** Une ligne d'un découpage analytique : clé du groupe (heure, jour, utilisateur ou rôle), messages, caractères. */
+public record SliceRowDTO(String key, long messages, long chars) {}
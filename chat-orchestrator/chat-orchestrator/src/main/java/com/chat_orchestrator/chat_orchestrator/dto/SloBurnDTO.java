@@ -0,0 +1,18 @@
+package com.chat_orchestrator.chat_orchestrator.dto;
+
+/**
+ * Burn rate d'un SLO sur une paire de fenêtres (ex. « 5m/1h ») : consommation du budget d'erreur
+ * (1 = au rythme qui l'épuise exactement sur la période), nombre d'événements par fenêtre,
+ * alerte si les deux fenêtres dépassent le seuil.
+ */
+public record SloBurnDTO(
+        String sli,
+        double objective,
+        String windows,
+        double threshold,
+        double shortBurn,
+        double longBurn,
+        long shortEvents,
+        long longEvents,
+        boolean alerting
+) {}
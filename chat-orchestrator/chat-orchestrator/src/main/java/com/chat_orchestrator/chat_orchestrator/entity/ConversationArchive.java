@@ -0,0 +1,38 @@
+// src/main/java/com/chat_orchestrator/chat_orchestrator/entity/ConversationArchive.java
+package com.chat_orchestrator.chat_orchestrator.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+
+/**
+ * Messages d'une conversation inactive, sortis de la table "message" et stockés
+ * en un bloc compressé (format MessageCodec + Deflate).
+ */
+@Entity
+@Table(name = "conversation_archive")
+@Getter @Setter @NoArgsConstructor @AllArgsConstructor @Builder
+public class ConversationArchive {
+
+    @Id
+    @Column(name = "conversation_id")
+    private Long conversationId;
+
+    @Column(nullable = false)
+    private Instant archivedAt;
+
+    @Column(nullable = false)
+    private int messageCount;
+
+    /** taille du bloc décompressé (octets) */
+    @Column(nullable = false)
+    private int rawBytes;
+
+    private LocalDateTime firstMessageAt;
+    private LocalDateTime lastMessageAt;
+
+    @Column(nullable = false, columnDefinition = "bytea")
+    private byte[] payload;
+}
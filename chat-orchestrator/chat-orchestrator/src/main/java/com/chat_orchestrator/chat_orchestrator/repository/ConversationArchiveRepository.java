@@ -0,0 +1,7 @@
+package com.chat_orchestrator.chat_orchestrator.repository;
+
+import com.chat_orchestrator.chat_orchestrator.entity.ConversationArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ConversationArchiveRepository extends JpaRepository<ConversationArchive, Long> {
+}
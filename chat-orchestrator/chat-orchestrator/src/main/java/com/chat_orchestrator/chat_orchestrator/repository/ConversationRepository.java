@@ -4,6 +4,8 @@ import com.chat_orchestrator.chat_orchestrator.entity.Conversation;
 import com.chat_orchestrator.chat_orchestrator.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -19,6 +21,13 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
     long countByOwner(User owner);
     List<Conversation> findByOwner_IdOrderByDateDesc(Long userId);
 
+    @Query("select c.owner.email from Conversation c where c.id = :id")
+    Optional<String> findOwnerEmailById(@Param("id") Long id);
+
+    /** [id, title, date, ownerId] : projection légère pour l'index d'auto-complétion. */
+    @Query("select c.id, c.title, c.date, c.owner.id from Conversation c where c.owner.email = :email")
+    List<Object[]> findSuggestRowsByOwnerEmail(@Param("email") String email);
+
     // 🔴 nouvelle méthode: suppression ciblée par propriétaire
     @Transactional
     @Modifying
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -18,6 +19,21 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     long countByConversation_Id(Long conversationId);
 
+    /** Conversations dont le dernier message "chaud" est antérieur à {@code before} (candidates à l'archivage). */
+    @Query(value = """
+        SELECT m.conversation_id
+        FROM message m
+        GROUP BY m.conversation_id
+        HAVING MAX(m."timestamp") < :before
+        LIMIT :limit
+        """, nativeQuery = true)
+    List<Long> findIdleConversationIds(@Param("before") LocalDateTime before, @Param("limit") int limit);
+
+    /** Borne par id : un message arrivé pendant l'archivage reste dans la table chaude. */
+    @Modifying
+    @Query("delete from Message m where m.conversation.id = :convId and m.id <= :maxId")
+    int deleteArchived(@Param("convId") Long convId, @Param("maxId") Long maxId);
+
     List<Message> findByTimestampBetweenOrderByTimestampAsc(Instant from, Instant to);
 
     /** Agrégation par minute : bucket epoch(ms), p50/p90/avg en secondes, + samples */
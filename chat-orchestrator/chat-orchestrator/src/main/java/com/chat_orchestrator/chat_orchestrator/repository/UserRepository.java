@@ -5,20 +5,29 @@ import com.chat_orchestrator.chat_orchestrator.entity.User;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 
-import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.*;
 
 public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
-    /** Projection native Postgres : CAST(created_at AS date) */
+    /** Projection native Postgres : inscriptions par jour sur [from, to) (filtre de plage => index created_at) */
     @Query(value = """
             SELECT CAST(u.created_at AS date) AS date, COUNT(*) AS count
             FROM users u
-            WHERE CAST(u.created_at AS date) BETWEEN :from AND :to
+            WHERE u.created_at >= :from AND u.created_at < :to
             GROUP BY CAST(u.created_at AS date)
             ORDER BY CAST(u.created_at AS date)
             """, nativeQuery = true)
-    List<Map<String,Object>> findSignupsPerDayNative(@Param("from") LocalDate from,
-                                                     @Param("to") LocalDate to);
+    List<Map<String,Object>> findSignupsPerDayNative(@Param("from") LocalDateTime from,
+                                                     @Param("to") LocalDateTime to);
+
+    /** Id et jour d'inscription des comptes créés sur [from, to) : cohortes de rétention */
+    @Query(value = """
+            SELECT u.id, CAST(u.created_at AS date)
+            FROM users u
+            WHERE u.created_at >= :from AND u.created_at < :to
+            """, nativeQuery = true)
+    List<Object[]> findIdsAndSignupDayNative(@Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to);
 }
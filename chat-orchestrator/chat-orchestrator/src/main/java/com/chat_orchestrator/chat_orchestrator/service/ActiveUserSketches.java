@@ -0,0 +1,110 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.ActiveUsersPointDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Utilisateurs actifs distincts (DAU/WAU/MAU) à coût constant : un sketch HyperLogLog par heure
+ * (table active_users_hourly), alimenté à chaque message d'une conversation possédée et fusionné à la
+ * demande sur n'importe quelle fenêtre. Tampon, reconstruction et repli exact : cf. PeriodSketchStore.
+ * Un compte supprimé reste compté dans les heures où il était actif.
+ */
+@Component
+public class ActiveUserSketches extends PeriodSketchStore<LocalDateTime, HyperLogLog> {
+
+    public ActiveUserSketches(JdbcTemplate jdbc,
+                              PlatformTransactionManager transactionManager,
+                              ActivityRollupService rollups,
+                              @Value("${app.active-users.enabled:true}") boolean enabled,
+                              @Value("${app.active-users.cached-days:400}") int cachedDays) {
+        super(jdbc, transactionManager, rollups, enabled, cachedDays,
+                "active_users", "active_users_hourly", "hour", "sketch", "date_trunc('hour', %s)", "ACTIVE-USERS");
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.active-users.flush-ms:10000}")
+    public void flush() {
+        super.flush();
+    }
+
+    // ---------- Lecture ----------
+    /** Utilisateurs distincts actifs sur [from, to]. */
+    public long distinct(LocalDate from, LocalDate to) {
+        HyperLogLog u = new HyperLogLog();
+        daySketches(from, to).values().forEach(u::merge);
+        return u.estimate();
+    }
+
+    /** Pour chaque jour d de [from, to] : utilisateurs distincts sur les {@code windowDays} jours finissant à d. */
+    public List<ActiveUsersPointDTO> rolling(LocalDate from, LocalDate to, int windowDays) {
+        int w = Math.max(1, windowDays);
+        Map<LocalDate, HyperLogLog> perDay = daySketches(from.minusDays(w - 1), to);
+        List<ActiveUsersPointDTO> out = new ArrayList<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            HyperLogLog u = new HyperLogLog();
+            for (int i = 0; i < w; i++) u.merge(perDay.get(d.minusDays(i)));
+            out.add(new ActiveUsersPointDTO(d, u.estimate()));
+        }
+        return out;
+    }
+
+    // ---------- Période horaire, sketch HyperLogLog ----------
+    @Override
+    protected LocalDateTime periodOf(LocalDateTime ts) {
+        return ts.truncatedTo(ChronoUnit.HOURS);
+    }
+
+    @Override
+    protected LocalDate dayOf(LocalDateTime hour) {
+        return hour.toLocalDate();
+    }
+
+    @Override
+    protected Object toSql(LocalDateTime hour) {
+        return Timestamp.valueOf(hour);
+    }
+
+    @Override
+    protected LocalDateTime readPeriod(ResultSet rs, int column) throws SQLException {
+        return rs.getTimestamp(column).toLocalDateTime();
+    }
+
+    @Override
+    protected HyperLogLog newSketch() {
+        return new HyperLogLog();
+    }
+
+    @Override
+    protected void add(HyperLogLog sketch, long userId) {
+        sketch.add(userId);
+    }
+
+    @Override
+    protected void merge(HyperLogLog into, HyperLogLog other) {
+        into.merge(other);
+    }
+
+    @Override
+    protected byte[] toBytes(HyperLogLog sketch) {
+        return sketch.toBytes();
+    }
+
+    @Override
+    protected HyperLogLog fromBytes(byte[] bytes) {
+        return HyperLogLog.fromBytes(bytes);
+    }
+}
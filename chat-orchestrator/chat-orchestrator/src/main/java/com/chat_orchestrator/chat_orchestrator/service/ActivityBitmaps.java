@@ -0,0 +1,146 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.RetentionCohortDTO;
+import com.chat_orchestrator.chat_orchestrator.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+
+/**
+ * Utilisateurs actifs exacts par jour sous forme de bitmaps compressés (IdBitmap, table active_users_daily),
+ * alimentés à chaque message d'une conversation possédée. La rétention par cohorte d'inscription
+ * (semaine × semaine) se calcule ensuite en mémoire : bitmap de la cohorte (users.created_at) intersecté
+ * avec l'union des jours de chaque semaine, au lieu d'une jointure users × message par cellule.
+ * Tampon, reconstruction et repli exact : cf. PeriodSketchStore.
+ */
+@Component
+public class ActivityBitmaps extends PeriodSketchStore<LocalDate, IdBitmap> {
+
+    private final UserRepository userRepository;
+
+    public ActivityBitmaps(JdbcTemplate jdbc,
+                           PlatformTransactionManager transactionManager,
+                           ActivityRollupService rollups,
+                           UserRepository userRepository,
+                           @Value("${app.retention.enabled:true}") boolean enabled,
+                           @Value("${app.retention.cached-days:400}") int cachedDays) {
+        super(jdbc, transactionManager, rollups, enabled, cachedDays,
+                "active_users_daily", "active_users_daily", "day", "ids", "CAST(%s AS date)", "RETENTION");
+        this.userRepository = userRepository;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.retention.flush-ms:10000}")
+    public void flush() {
+        super.flush();
+    }
+
+    // ---------- Rétention ----------
+    /**
+     * Cohortes hebdomadaires (semaines ISO commençant le lundi) des inscrits des semaines qui recouvrent
+     * [from, to] : les bornes sont étendues au lundi précédent et au dimanche suivant, pour qu'aucune
+     * cohorte ne soit partielle. Pour chacune, utilisateurs de la cohorte actifs en semaine 0 (celle de
+     * l'inscription), 1, ... {@code weeks - 1}. Les semaines pas encore commencées sont omises.
+     */
+    public List<RetentionCohortDTO> retention(LocalDate from, LocalDate to, int weeks) {
+        LocalDate today = LocalDate.now();
+        LocalDate firstWeek = from.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        LocalDate lastWeek = to.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+
+        TreeMap<LocalDate, IdBitmap> cohorts = new TreeMap<>();
+        for (Object[] r : userRepository.findIdsAndSignupDayNative(firstWeek.atStartOfDay(), lastWeek.plusWeeks(1).atStartOfDay())) {
+            LocalDate day = r[1] instanceof Date d ? d.toLocalDate() : (LocalDate) r[1];
+            cohorts.computeIfAbsent(day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)), w -> new IdBitmap())
+                    .add(((Number) r[0]).longValue());
+        }
+        if (cohorts.isEmpty()) return List.of();
+
+        LocalDate end = lastWeek.plusWeeks(weeks).minusDays(1);
+        if (end.isAfter(today)) end = today;
+        Map<LocalDate, IdBitmap> perDay = daySketches(firstWeek, end);
+
+        // union des jours de chaque semaine, partagée entre cohortes
+        Map<LocalDate, IdBitmap> perWeek = new HashMap<>();
+        for (LocalDate w = firstWeek; !w.isAfter(end); w = w.plusWeeks(1)) {
+            IdBitmap u = new IdBitmap();
+            for (int i = 0; i < 7; i++) {
+                IdBitmap d = perDay.get(w.plusDays(i));
+                if (d != null) u.or(d);
+            }
+            perWeek.put(w, u);
+        }
+
+        List<RetentionCohortDTO> out = new ArrayList<>();
+        cohorts.forEach((week, members) -> {
+            long size = members.cardinality();
+            List<Long> active = new ArrayList<>();
+            List<Double> rate = new ArrayList<>();
+            for (int k = 0; k < weeks; k++) {
+                IdBitmap w = perWeek.get(week.plusWeeks(k));
+                if (w == null) break;
+                long n = members.andCardinality(w);
+                active.add(n);
+                rate.add(size > 0 ? (double) n / size : 0.0);
+            }
+            out.add(new RetentionCohortDTO(week, size, active, rate));
+        });
+        return out;
+    }
+
+    // ---------- Période journalière, sketch IdBitmap ----------
+    @Override
+    protected LocalDate periodOf(LocalDateTime ts) {
+        return ts.toLocalDate();
+    }
+
+    @Override
+    protected LocalDate dayOf(LocalDate day) {
+        return day;
+    }
+
+    @Override
+    protected Object toSql(LocalDate day) {
+        return Date.valueOf(day);
+    }
+
+    @Override
+    protected LocalDate readPeriod(ResultSet rs, int column) throws SQLException {
+        return rs.getDate(column).toLocalDate();
+    }
+
+    @Override
+    protected IdBitmap newSketch() {
+        return new IdBitmap();
+    }
+
+    @Override
+    protected void add(IdBitmap sketch, long userId) {
+        sketch.add(userId);
+    }
+
+    @Override
+    protected void merge(IdBitmap into, IdBitmap other) {
+        into.or(other);
+    }
+
+    @Override
+    protected byte[] toBytes(IdBitmap sketch) {
+        return sketch.toBytes();
+    }
+
+    @Override
+    protected IdBitmap fromBytes(byte[] bytes) {
+        return IdBitmap.fromBytes(bytes);
+    }
+}
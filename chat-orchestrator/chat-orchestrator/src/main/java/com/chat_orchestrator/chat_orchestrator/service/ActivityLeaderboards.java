@@ -0,0 +1,288 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.LeaderboardEntryDTO;
+import com.chat_orchestrator.chat_orchestrator.entity.Conversation;
+import com.chat_orchestrator.chat_orchestrator.entity.Message;
+import com.chat_orchestrator.chat_orchestrator.entity.User;
+import com.chat_orchestrator.chat_orchestrator.repository.ConversationRepository;
+import com.chat_orchestrator.chat_orchestrator.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Classements d'activité tenus en mémoire et mis à jour à chaque message (après commit) :
+ * conversations par nombre de messages, utilisateurs par messages et par conversations créées,
+ * sur 24 h / 7 jours glissants / depuis toujours. Lecture du top-K en O(K), libellés chargés
+ * pour les K gagnants seulement. Reconstruit au démarrage depuis la base.
+ */
+@Slf4j
+@Component
+public class ActivityLeaderboards {
+
+    public enum Metric { CONVERSATION_MESSAGES, USER_MESSAGES, USER_CONVERSATIONS }
+    public enum Window { DAY, WEEK, ALL }
+
+    private static final class State {
+        final Leaderboard convMessages = new Leaderboard();
+        final Leaderboard userMessages = new Leaderboard();
+        final Leaderboard userConversations = new Leaderboard();
+        final Map<Long, Long> convOwner = new HashMap<>();
+
+        Leaderboard of(Metric m) {
+            return switch (m) {
+                case CONVERSATION_MESSAGES -> convMessages;
+                case USER_MESSAGES -> userMessages;
+                case USER_CONVERSATIONS -> userConversations;
+            };
+        }
+
+        void message(long convId, Long userId, long hour, long nowHour) {
+            convMessages.add(convId, hour, 1, nowHour);
+            if (userId != null) {
+                convOwner.put(convId, userId);
+                userMessages.add(userId, hour, 1, nowHour);
+            }
+        }
+
+        void conversation(long convId, Long userId, long hour, long nowHour) {
+            if (userId == null) return;
+            convOwner.put(convId, userId);
+            userConversations.add(userId, hour, 1, nowHour);
+        }
+
+        /** Les compteurs utilisateur gardent l'activité passée : un message envoyé reste un message envoyé. */
+        void deleteConversation(long convId) {
+            convMessages.remove(convId);
+            convOwner.remove(convId);
+        }
+
+        void deleteUser(long userId) {
+            userMessages.remove(userId);
+            userConversations.remove(userId);
+            convOwner.entrySet().removeIf(e -> {
+                if (e.getValue() != userId) return false;
+                convMessages.remove(e.getKey());
+                return true;
+            });
+        }
+    }
+
+    /** Même principe que KnowledgeStats : ce que l'instantané a vu n'est pas rejoué. */
+    private record Event(Long messageId, Long conversationId, Consumer<State> apply) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate snapshotTx;
+    private final ConversationRepository conversationRepository;
+    private final UserRepository userRepository;
+
+    private State state = new State();
+    private List<Event> pending;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "leaderboards");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ActivityLeaderboards(JdbcTemplate jdbc,
+                                PlatformTransactionManager transactionManager,
+                                ConversationRepository conversationRepository,
+                                UserRepository userRepository) {
+        this.jdbc = jdbc;
+        this.snapshotTx = new TransactionTemplate(transactionManager);
+        this.snapshotTx.setReadOnly(true);
+        this.snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.conversationRepository = conversationRepository;
+        this.userRepository = userRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        requestRebuild();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // ---------- Lecture ----------
+    public List<LeaderboardEntryDTO> top(Metric metric, Window window, int k) {
+        int limit = Math.max(1, Math.min(100, k));
+        List<long[]> top;
+        synchronized (this) {
+            top = state.of(metric).top(window, limit, hourOf(LocalDateTime.now()));
+        }
+        List<Long> ids = top.stream().map(e -> e[0]).toList();
+        Map<Long, String> labels = metric == Metric.CONVERSATION_MESSAGES
+                ? conversationRepository.findAllById(ids).stream()
+                        .collect(Collectors.toMap(Conversation::getId, Conversation::getTitle))
+                : userRepository.findAllById(ids).stream()
+                        .collect(Collectors.toMap(User::getId, User::getEmail));
+        return top.stream()
+                .map(e -> new LeaderboardEntryDTO(e[0], labels.get(e[0]), e[1]))
+                .toList();
+    }
+
+    // ---------- Chemin d'écriture ----------
+    public void onConversation(Conversation c) {
+        Long userId = c.getOwner() == null ? null : c.getOwner().getId();
+        LocalDateTime at = c.getDate() == null ? LocalDateTime.now()
+                : new Timestamp(c.getDate().getTime()).toLocalDateTime();
+        TxHooks.afterCommit(() -> record(new Event(null, c.getId(),
+                s -> s.conversation(c.getId(), userId, hourOf(at), hourOf(LocalDateTime.now())))));
+    }
+
+    public void onImportedConversation(Long convId, Long userId, LocalDateTime at) {
+        TxHooks.afterCommit(() -> record(new Event(null, convId,
+                s -> s.conversation(convId, userId, hourOf(at), hourOf(LocalDateTime.now())))));
+    }
+
+    /** Entité JPA : l'id (IDENTITY) n'est lu qu'après commit. */
+    public void onMessage(Long convId, Long userId, Message m) {
+        TxHooks.afterCommit(() -> record(new Event(m.getId(), null,
+                s -> s.message(convId, userId, hourOf(m.getTimestamp()), hourOf(LocalDateTime.now())))));
+    }
+
+    public void onMessage(Long convId, Long userId, Long messageId, LocalDateTime ts) {
+        TxHooks.afterCommit(() -> record(new Event(messageId, null,
+                s -> s.message(convId, userId, hourOf(ts), hourOf(LocalDateTime.now())))));
+    }
+
+    public void onConversationsDeleted(Collection<Long> convIds) {
+        List<Long> ids = List.copyOf(convIds);
+        TxHooks.afterCommit(() -> record(new Event(null, null, s -> ids.forEach(s::deleteConversation))));
+    }
+
+    public void onUserDeleted(Long userId) {
+        TxHooks.afterCommit(() -> record(new Event(null, null, s -> s.deleteUser(userId))));
+    }
+
+    private synchronized void record(Event e) {
+        e.apply().accept(state);
+        if (pending != null) pending.add(e);
+    }
+
+    /** Les seaux sortent des fenêtres même sans trafic. */
+    @Scheduled(fixedDelay = 60_000)
+    public synchronized void expire() {
+        long now = hourOf(LocalDateTime.now());
+        for (Metric m : Metric.values()) state.of(m).expire(now);
+    }
+
+    // ---------- Reconstruction ----------
+    public boolean requestRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) return false;
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        worker.submit(this::rebuild);
+        return true;
+    }
+
+    private void rebuild() {
+        try {
+            State fresh = new State();
+            long[] max = snapshotTx.execute(s -> load(fresh));
+            synchronized (this) {
+                for (Event e : pending) {
+                    boolean seen = (e.messageId() != null && e.messageId() <= max[0])
+                            || (e.messageId() == null && e.conversationId() != null && e.conversationId() <= max[1]);
+                    if (!seen) e.apply().accept(fresh);
+                }
+                state = fresh;
+                pending = null;
+            }
+        } catch (Exception e) {
+            synchronized (this) {
+                pending = null;
+            }
+            log.warn("[LEADERBOARDS] reconstruction échouée", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /** Renvoie [max id message, max id conversation] vus par l'instantané. */
+    private long[] load(State s) {
+        long maxMsg = Optional.ofNullable(jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM message", Long.class)).orElse(0L);
+        long maxConv = Optional.ofNullable(jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM conversation", Long.class)).orElse(0L);
+        long nowHour = hourOf(LocalDateTime.now());
+        LocalDateTime weekAgo = LocalDateTime.now().minusHours(Leaderboard.WEEK_HOURS);
+
+        // 1) depuis toujours : une ligne par conversation (messages chauds + archivés)
+        jdbc.query("""
+                SELECT c.id, c.user_id, COALESCE(h.cnt, 0) + COALESCE(a.message_count, 0) AS cnt
+                FROM conversation c
+                LEFT JOIN (SELECT conversation_id, COUNT(*) AS cnt FROM message WHERE id <= ?
+                           GROUP BY conversation_id) h ON h.conversation_id = c.id
+                LEFT JOIN conversation_archive a ON a.conversation_id = c.id
+                WHERE c.id <= ?
+                """, rs -> {
+            long convId = rs.getLong(1);
+            long uid = rs.getLong(2);
+            Long userId = rs.wasNull() ? null : uid;
+            long cnt = rs.getLong(3);
+            if (userId != null) {
+                s.convOwner.put(convId, userId);
+                s.userConversations.addAllTime(userId, 1);
+            }
+            if (cnt > 0) {
+                s.convMessages.addAllTime(convId, cnt);
+                if (userId != null) s.userMessages.addAllTime(userId, cnt);
+            }
+        }, maxMsg, maxConv);
+
+        // 2) fenêtres glissantes : 7 derniers jours par heure (élagage des partitions sur "timestamp")
+        jdbc.query("""
+                SELECT m.conversation_id, c.user_id, date_trunc('hour', m."timestamp") AS h, COUNT(*) AS cnt
+                FROM message m
+                JOIN conversation c ON c.id = m.conversation_id
+                WHERE m."timestamp" >= ? AND m.id <= ?
+                GROUP BY m.conversation_id, c.user_id, h
+                """, rs -> {
+            long convId = rs.getLong(1);
+            long uid = rs.getLong(2);
+            Long userId = rs.wasNull() ? null : uid;
+            long hour = hourOf(rs.getTimestamp(3).toLocalDateTime());
+            long cnt = rs.getLong(4);
+            s.convMessages.addWindows(convId, hour, cnt, nowHour);
+            if (userId != null) s.userMessages.addWindows(userId, hour, cnt, nowHour);
+        }, Timestamp.valueOf(weekAgo), maxMsg);
+
+        jdbc.query("""
+                SELECT user_id, date_trunc('hour', created_at) AS h, COUNT(*) AS cnt
+                FROM conversation
+                WHERE created_at >= ? AND id <= ? AND user_id IS NOT NULL
+                GROUP BY user_id, h
+                """, rs -> {
+            s.userConversations.addWindows(rs.getLong(1), hourOf(rs.getTimestamp(2).toLocalDateTime()),
+                    rs.getLong(3), nowHour);
+        }, Timestamp.valueOf(weekAgo), maxConv);
+
+        return new long[]{maxMsg, maxConv};
+    }
+
+    static long hourOf(LocalDateTime t) {
+        return Math.floorDiv(t.toEpochSecond(ZoneOffset.UTC), 3600);
+    }
+}
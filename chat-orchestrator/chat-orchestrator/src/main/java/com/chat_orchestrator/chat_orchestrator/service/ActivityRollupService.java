@@ -0,0 +1,477 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Agrégats horaires par utilisateur (table activity_rollup_hourly) : messages, conversations démarrées
+ * (heure du premier message), somme des durées, inscriptions. Un job de rattrapage agrège chaque heure
+ * close une seule fois en avançant un filigrane (rollup_state) ; au-delà du filigrane (l'heure en cours),
+ * les lectures passent par les tables brutes. Les durées évoluent avec la conversation : elles sont tenues
+ * par différences via conversation_activity (premier / dernier message par conversation).
+ * Les suppressions, imports tardifs et la rétention des partitions corrigent les agrégats sous le même
+ * verrou que le job ; l'archivage ne les modifie pas.
+ */
+@Slf4j
+@Service
+public class ActivityRollupService {
+
+    /** Filigrane courant et retard (heures closes pas encore agrégées). */
+    public record RollupStatusDTO(boolean enabled, LocalDateTime watermark, long lagHours) {}
+
+    private static final String STATE = "activity_hourly";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ArchiveService archiveService;
+    private final AnalyticsDayCache dayCache;
+    private final boolean enabled;
+    private final int stepHours;
+    private final int maxSteps;
+    private final int graceMinutes;
+
+    /** Sérialise rattrapage, imports tardifs et suppressions (tous modifient les agrégats par différence). */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public ActivityRollupService(JdbcTemplate jdbc,
+                                 PlatformTransactionManager transactionManager,
+                                 ArchiveService archiveService,
+                                 AnalyticsDayCache dayCache,
+                                 @Value("${app.rollup.enabled:true}") boolean enabled,
+                                 @Value("${app.rollup.step-hours:24}") int stepHours,
+                                 @Value("${app.rollup.max-steps-per-run:50}") int maxSteps,
+                                 @Value("${app.rollup.grace-minutes:2}") int graceMinutes) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.archiveService = archiveService;
+        this.dayCache = dayCache;
+        this.enabled = enabled;
+        this.stepHours = Math.max(1, stepHours);
+        this.maxSteps = Math.max(1, maxSteps);
+        this.graceMinutes = Math.max(0, graceMinutes);
+    }
+
+    // ---------- Filigrane ----------
+    /** Première heure non agrégée (les heures strictement antérieures sont dans les agrégats) ; vide avant l'initialisation. */
+    public Optional<LocalDateTime> watermark() {
+        if (!enabled) return Optional.empty();
+        List<Timestamp> ts = jdbc.queryForList("SELECT watermark FROM rollup_state WHERE name = ?", Timestamp.class, STATE);
+        return ts.isEmpty() || ts.get(0) == null ? Optional.empty() : Optional.of(ts.get(0).toLocalDateTime());
+    }
+
+    public RollupStatusDTO status() {
+        LocalDateTime wm = watermark().orElse(null);
+        LocalDateTime open = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS);
+        return new RollupStatusDTO(enabled, wm, wm == null ? -1 : Math.max(0, ChronoUnit.HOURS.between(wm, open)));
+    }
+
+    // ---------- Rattrapage ----------
+    @Scheduled(fixedDelayString = "${app.rollup.every-ms:300000}", initialDelayString = "${app.rollup.initial-delay-ms:30000}")
+    public void scheduledCatchUp() {
+        if (!enabled) return;
+        try {
+            catchUp();
+        } catch (Exception e) {
+            log.warn("[ROLLUP] rattrapage échoué", e);
+        }
+    }
+
+    /** Agrège les heures closes depuis le filigrane (au plus {@code maxSteps} pas) ; renvoie le nouveau filigrane. */
+    public Optional<LocalDateTime> catchUp() {
+        lock.lock();
+        try {
+            // délai de grâce : un message horodaté juste avant la fin de l'heure peut être commité juste après
+            LocalDateTime open = LocalDateTime.now().minusMinutes(graceMinutes).truncatedTo(ChronoUnit.HOURS);
+            LocalDateTime wm = watermark().orElse(null);
+            if (wm == null) {
+                wm = initialize(open);
+                if (wm == null) return Optional.empty();
+            }
+            for (int i = 0; i < maxSteps && wm.isBefore(open); i++) {
+                LocalDateTime from = wm;
+                LocalDateTime to = from.plusHours(stepHours).isAfter(open) ? open : from.plusHours(stepHours);
+                Map<Long, Set<LocalDate>> touched = new HashMap<>();
+                tx.executeWithoutResult(s -> {
+                    rollupMessages(touched, "m.\"timestamp\" >= ? AND m.\"timestamp\" < ?", 1, Timestamp.valueOf(from), Timestamp.valueOf(to));
+                    // durées des conversations reprises : peut toucher des jours anciens déjà en cache
+                    rollupActivity(touched, "m.\"timestamp\" >= ? AND m.\"timestamp\" < ?", Timestamp.valueOf(from), Timestamp.valueOf(to));
+                    jdbc.update("""
+                            INSERT INTO activity_rollup_hourly (user_id, hour, signups)
+                            SELECT u.id, date_trunc('hour', u.created_at), 1
+                            FROM users u
+                            WHERE u.created_at >= ? AND u.created_at < ?
+                            ON CONFLICT (user_id, hour) DO UPDATE
+                                SET signups = activity_rollup_hourly.signups + EXCLUDED.signups
+                            """, Timestamp.valueOf(from), Timestamp.valueOf(to));
+                    setWatermark(to);
+                });
+                dayCache.invalidate(touched);
+                wm = to;
+            }
+            return Optional.of(wm);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Premier passage : point de départ = plus ancienne donnée brute ; les blocs archivés (absents de la
+     * table message) sont agrégés une fois ici. Renvoie null si la base est vide.
+     */
+    private LocalDateTime initialize(LocalDateTime open) {
+        Timestamp min = jdbc.queryForObject("""
+                SELECT LEAST((SELECT MIN("timestamp") FROM message),
+                             (SELECT MIN(first_message_at) FROM conversation_archive),
+                             (SELECT MIN(created_at)::timestamp FROM users))
+                """, Timestamp.class);
+        LocalDateTime start = min == null ? open : min.toLocalDateTime().truncatedTo(ChronoUnit.HOURS);
+
+        tx.executeWithoutResult(s -> {
+            jdbc.update("DELETE FROM activity_rollup_hourly");
+            jdbc.update("DELETE FROM conversation_activity");
+            List<Object[]> archived = jdbc.query("""
+                    SELECT a.conversation_id, COALESCE(c.user_id, 0)
+                    FROM conversation_archive a JOIN conversation c ON c.id = a.conversation_id
+                    """, (rs, i) -> new Object[]{rs.getLong(1), rs.getLong(2)});
+            for (Object[] a : archived) {
+                addArchivedMessages(new HashMap<>(), (Long) a[0], (Long) a[1], 1, null);
+            }
+            jdbc.update("""
+                    INSERT INTO conversation_activity (conversation_id, user_id, first_at, last_at)
+                    SELECT a.conversation_id, COALESCE(c.user_id, 0), a.first_message_at, a.last_message_at
+                    FROM conversation_archive a JOIN conversation c ON c.id = a.conversation_id
+                    WHERE a.first_message_at IS NOT NULL AND a.last_message_at IS NOT NULL
+                    """);
+            jdbc.update("""
+                    INSERT INTO activity_rollup_hourly (user_id, hour, conversations_started, duration_sec_sum)
+                    SELECT user_id, date_trunc('hour', first_at), COUNT(*), SUM(EXTRACT(EPOCH FROM (last_at - first_at)))
+                    FROM conversation_activity
+                    GROUP BY 1, 2
+                    ON CONFLICT (user_id, hour) DO UPDATE SET
+                        conversations_started = activity_rollup_hourly.conversations_started + EXCLUDED.conversations_started,
+                        duration_sec_sum = activity_rollup_hourly.duration_sec_sum + EXCLUDED.duration_sec_sum
+                    """);
+            setWatermark(start);
+        });
+        dayCache.clear();
+        log.info("[ROLLUP] initialisation à partir de {}", start);
+        return start;
+    }
+
+    /** Reprise complète (dérive constatée, restauration...) : tout sera ré-agrégé par les prochains passages. */
+    public void reset() {
+        lock.lock();
+        try {
+            jdbc.update("DELETE FROM rollup_state WHERE name = ?", STATE);
+            dayCache.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------- Corrections hors rattrapage ----------
+    /**
+     * Import de conversations (horodatages d'origine, souvent antérieurs au filigrane) : {@code insert}
+     * écrit et remplit {@code convIds}, puis la part déjà agrégée est ajoutée. Sous le verrou, pour
+     * qu'aucun rattrapage ne déplace le filigrane entre les deux (double comptage ou oubli).
+     */
+    public void importing(Collection<Long> convIds, Runnable insert) {
+        if (!enabled) {
+            insert.run();
+            return;
+        }
+        lock.lock();
+        try {
+            insert.run();
+            Optional<LocalDateTime> wm = watermark();
+            if (wm.isEmpty() || convIds.isEmpty()) return;   // l'initialisation verra tout
+            Long[] ids = convIds.toArray(Long[]::new);
+            Timestamp w = Timestamp.valueOf(wm.get());
+            Map<Long, Set<LocalDate>> touched = new HashMap<>();
+            tx.executeWithoutResult(s -> {
+                rollupMessages(touched, "m.conversation_id = ANY(?) AND m.\"timestamp\" < ?", 1, ids, w);
+                rollupActivity(touched, "m.conversation_id = ANY(?) AND m.\"timestamp\" < ?", ids, w);
+            });
+            dayCache.invalidate(touched);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Exécute la suppression puis retire des agrégats exactement ce qu'elle a effacé (lignes RETURNING),
+     * dans la même transaction (un échec de la suppression annule aussi la soustraction) et sous le
+     * verrou (un rattrapage concurrent ne peut pas déplacer le filigrane entre les deux).
+     */
+    DeletedRows deleting(Supplier<DeletedRows> delete) {
+        if (!enabled) return tx.execute(s -> delete.get());
+        lock.lock();
+        try {
+            Map<Long, Set<LocalDate>> touched = new HashMap<>();
+            DeletedRows result = tx.execute(s -> {
+                DeletedRows d = delete.get();
+                Optional<LocalDateTime> wm = watermark();
+                if (wm.isEmpty()) return d;   // l'initialisation verra l'état final
+                Map<Long, Map<LocalDateTime, Long>> perHour = new HashMap<>();
+                for (DeletedRows.Row r : d.messages()) countHour(perHour, r.userId(), r.timestamp(), wm.get());
+                addMessageHours(touched, perHour, -1);
+                removeActivity(touched, d.conversations().toArray(Long[]::new));
+                return d;
+            });
+            dayCache.invalidate(touched);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Rétention d'une partition mensuelle couvrant [from, to) : ses écritures sont bloquées, ses messages
+     * retirés des agrégats, puis {@code drop} la supprime (ids des conversations qu'elle touche en entrée) ;
+     * les durées de ces conversations sont enfin recalculées sur ce qui reste (archive, autres mois).
+     * Une transaction, sous le verrou.
+     */
+    <T> T droppingPartition(String partition, LocalDateTime from, LocalDateTime to, Function<List<Long>, T> drop) {
+        lock.lock();
+        try {
+            Map<Long, Set<LocalDate>> touched = new HashMap<>();
+            T result = tx.execute(s -> {
+                // un import tardif ne peut plus y écrire sans être compté (lectures non bloquées)
+                jdbc.execute("LOCK TABLE " + partition + " IN EXCLUSIVE MODE");
+                List<Long> convIds = jdbc.queryForList(
+                        "SELECT DISTINCT conversation_id FROM " + partition + " WHERE conversation_id IS NOT NULL", Long.class);
+                Optional<LocalDateTime> wm = watermark();
+                if (wm.isEmpty()) return drop.apply(convIds);
+                Timestamp w = Timestamp.valueOf(wm.get());
+                Long[] ids = convIds.toArray(Long[]::new);
+                rollupMessages(touched, "m.\"timestamp\" >= ? AND m.\"timestamp\" < ? AND m.\"timestamp\" < ?", -1,
+                        Timestamp.valueOf(from), Timestamp.valueOf(to), w);
+                removeActivity(touched, ids);
+                T r = drop.apply(convIds);
+                restoreActivity(touched, ids, w);
+                return r;
+            });
+            dayCache.invalidate(touched);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Compte supprimé : plus aucune ligne à son nom (inscription comprise), comme sur les tables brutes. */
+    public void userDeleted(Long userId) {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            jdbc.update("DELETE FROM activity_rollup_hourly WHERE user_id = ?", userId);
+            dayCache.invalidateScope(userId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---------- SQL ----------
+    /** Ajoute sign × (nombre de messages par utilisateur et par heure) pour les messages filtrés. */
+    private void rollupMessages(Map<Long, Set<LocalDate>> touched, String filter, int sign, Object... params) {
+        jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    INSERT INTO activity_rollup_hourly (user_id, hour, messages)
+                    SELECT COALESCE(c.user_id, 0), date_trunc('hour', m."timestamp"), %d * COUNT(*)
+                    FROM message m
+                    JOIN conversation c ON c.id = m.conversation_id
+                    WHERE %s
+                    GROUP BY 1, 2
+                    ON CONFLICT (user_id, hour) DO UPDATE
+                        SET messages = activity_rollup_hourly.messages + EXCLUDED.messages
+                    RETURNING user_id, hour
+                    """.formatted(sign, filter));
+            bind(con, ps, params);
+            return ps;
+        }, touch(touched));
+    }
+
+    /**
+     * Met à jour conversation_activity (premier / dernier message) pour les messages filtrés et répercute
+     * la différence sur les agrégats : retrait de l'ancienne contribution, ajout de la nouvelle
+     * (la CTE "old" voit l'état d'avant l'upsert). Idempotent pour un même ensemble de messages.
+     */
+    private void rollupActivity(Map<Long, Set<LocalDate>> touched, String filter, Object... params) {
+        jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    WITH agg AS (
+                        SELECT m.conversation_id, COALESCE(c.user_id, 0) AS user_id,
+                               MIN(m."timestamp") AS first_at, MAX(m."timestamp") AS last_at
+                        FROM message m
+                        JOIN conversation c ON c.id = m.conversation_id
+                        WHERE %s
+                        GROUP BY m.conversation_id, c.user_id
+                    ),
+                    old AS (
+                        SELECT a.user_id, a.first_at, a.last_at
+                        FROM conversation_activity a JOIN agg ON agg.conversation_id = a.conversation_id
+                    ),
+                    up AS (
+                        INSERT INTO conversation_activity (conversation_id, user_id, first_at, last_at)
+                        SELECT conversation_id, user_id, first_at, last_at FROM agg
+                        ON CONFLICT (conversation_id) DO UPDATE SET
+                            first_at = LEAST(conversation_activity.first_at, EXCLUDED.first_at),
+                            last_at = GREATEST(conversation_activity.last_at, EXCLUDED.last_at)
+                        RETURNING user_id, first_at, last_at
+                    ),
+                    delta AS (
+                        SELECT user_id, date_trunc('hour', first_at) AS hour, 1 AS started,
+                               EXTRACT(EPOCH FROM (last_at - first_at)) AS dur
+                        FROM up
+                        UNION ALL
+                        SELECT user_id, date_trunc('hour', first_at), -1, -EXTRACT(EPOCH FROM (last_at - first_at))
+                        FROM old
+                    )
+                    INSERT INTO activity_rollup_hourly (user_id, hour, conversations_started, duration_sec_sum)
+                    SELECT user_id, hour, SUM(started), SUM(dur) FROM delta GROUP BY user_id, hour
+                    ON CONFLICT (user_id, hour) DO UPDATE SET
+                        conversations_started = activity_rollup_hourly.conversations_started + EXCLUDED.conversations_started,
+                        duration_sec_sum = activity_rollup_hourly.duration_sec_sum + EXCLUDED.duration_sec_sum
+                    RETURNING user_id, hour
+                    """.formatted(filter));
+            bind(con, ps, params);
+            return ps;
+        }, touch(touched));
+    }
+
+    /** Retire conversation_activity des conversations et leur contribution (démarrage, durée) aux agrégats. */
+    private void removeActivity(Map<Long, Set<LocalDate>> touched, Long[] ids) {
+        if (ids.length == 0) return;
+        jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    WITH del AS (
+                        DELETE FROM conversation_activity WHERE conversation_id = ANY(?)
+                        RETURNING user_id, first_at, last_at
+                    )
+                    INSERT INTO activity_rollup_hourly (user_id, hour, conversations_started, duration_sec_sum)
+                    SELECT user_id, date_trunc('hour', first_at), -COUNT(*), -SUM(EXTRACT(EPOCH FROM (last_at - first_at)))
+                    FROM del
+                    GROUP BY 1, 2
+                    ON CONFLICT (user_id, hour) DO UPDATE SET
+                        conversations_started = activity_rollup_hourly.conversations_started + EXCLUDED.conversations_started,
+                        duration_sec_sum = activity_rollup_hourly.duration_sec_sum + EXCLUDED.duration_sec_sum
+                    RETURNING user_id, hour
+                    """);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            return ps;
+        }, touch(touched));
+    }
+
+    /**
+     * Recrée conversation_activity des conversations depuis ce qui reste (messages sous le filigrane et
+     * bornes du bloc archivé, comme à l'initialisation) et ajoute leur contribution aux agrégats.
+     */
+    private void restoreActivity(Map<Long, Set<LocalDate>> touched, Long[] ids, Timestamp before) {
+        if (ids.length == 0) return;
+        jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    WITH src AS (
+                        SELECT m.conversation_id, m."timestamp" AS first_at, m."timestamp" AS last_at
+                        FROM message m WHERE m.conversation_id = ANY(?) AND m."timestamp" < ?
+                        UNION ALL
+                        SELECT a.conversation_id, a.first_message_at, a.last_message_at
+                        FROM conversation_archive a
+                        WHERE a.conversation_id = ANY(?) AND a.first_message_at IS NOT NULL AND a.last_message_at IS NOT NULL
+                    ),
+                    ins AS (
+                        INSERT INTO conversation_activity (conversation_id, user_id, first_at, last_at)
+                        SELECT src.conversation_id, COALESCE(c.user_id, 0), MIN(src.first_at), MAX(src.last_at)
+                        FROM src JOIN conversation c ON c.id = src.conversation_id
+                        GROUP BY src.conversation_id, c.user_id
+                        RETURNING user_id, first_at, last_at
+                    )
+                    INSERT INTO activity_rollup_hourly (user_id, hour, conversations_started, duration_sec_sum)
+                    SELECT user_id, date_trunc('hour', first_at), COUNT(*), SUM(EXTRACT(EPOCH FROM (last_at - first_at)))
+                    FROM ins
+                    GROUP BY 1, 2
+                    ON CONFLICT (user_id, hour) DO UPDATE SET
+                        conversations_started = activity_rollup_hourly.conversations_started + EXCLUDED.conversations_started,
+                        duration_sec_sum = activity_rollup_hourly.duration_sec_sum + EXCLUDED.duration_sec_sum
+                    RETURNING user_id, hour
+                    """);
+            Array arr = con.createArrayOf("bigint", ids);
+            ps.setArray(1, arr);
+            ps.setTimestamp(2, before);
+            ps.setArray(3, arr);
+            return ps;
+        }, touch(touched));
+    }
+
+    /** Messages d'un bloc archivé, par heure (décompression) ; {@code before} limite aux heures déjà agrégées. */
+    private void addArchivedMessages(Map<Long, Set<LocalDate>> touched, Long convId, Long userId, int sign, LocalDateTime before) {
+        Map<Long, Map<LocalDateTime, Long>> perHour = new HashMap<>();
+        for (MessageDto m : archiveService.archivedMessages(convId)) countHour(perHour, userId, m.getTimestamp(), before);
+        addMessageHours(touched, perHour, sign);
+    }
+
+    private static void countHour(Map<Long, Map<LocalDateTime, Long>> perHour, long userId, LocalDateTime ts, LocalDateTime before) {
+        if (ts == null) return;
+        LocalDateTime h = ts.truncatedTo(ChronoUnit.HOURS);
+        if (before != null && !h.isBefore(before)) return;
+        perHour.computeIfAbsent(userId, k -> new HashMap<>()).merge(h, 1L, Long::sum);
+    }
+
+    /** Ajoute sign × (messages par utilisateur et par heure) comptés en mémoire (archive, lignes supprimées). */
+    private void addMessageHours(Map<Long, Set<LocalDate>> touched, Map<Long, Map<LocalDateTime, Long>> perHour, int sign) {
+        if (perHour.isEmpty()) return;
+        List<Object[]> rows = new ArrayList<>();
+        perHour.forEach((userId, hours) -> hours.forEach((h, n) -> {
+            touched.computeIfAbsent(userId, k -> new HashSet<>()).add(h.toLocalDate());
+            rows.add(new Object[]{userId, Timestamp.valueOf(h), sign * n});
+        }));
+        jdbc.batchUpdate("""
+                INSERT INTO activity_rollup_hourly (user_id, hour, messages) VALUES (?, ?, ?)
+                ON CONFLICT (user_id, hour) DO UPDATE
+                    SET messages = activity_rollup_hourly.messages + EXCLUDED.messages
+                """, rows);
+    }
+
+    /** Relève les (utilisateur, jour) modifiés (RETURNING user_id, hour) pour invalider AnalyticsDayCache. */
+    private static RowCallbackHandler touch(Map<Long, Set<LocalDate>> touched) {
+        return rs -> touched.computeIfAbsent(rs.getLong(1), k -> new HashSet<>())
+                .add(rs.getTimestamp(2).toLocalDateTime().toLocalDate());
+    }
+
+    private void setWatermark(LocalDateTime wm) {
+        jdbc.update("""
+                INSERT INTO rollup_state (name, watermark) VALUES (?, ?)
+                ON CONFLICT (name) DO UPDATE SET watermark = EXCLUDED.watermark
+                """, STATE, Timestamp.valueOf(wm));
+    }
+
+    private static void bind(Connection con, PreparedStatement ps, Object... params) throws SQLException {
+        for (int i = 0; i < params.length; i++) {
+            Object p = params[i];
+            if (p instanceof Long[] ids) {
+                Array arr = con.createArrayOf("bigint", ids);
+                ps.setArray(i + 1, arr);
+            } else {
+                ps.setObject(i + 1, p);
+            }
+        }
+    }
+}
@@ -15,7 +15,6 @@ import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.time.*;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -26,6 +25,16 @@ public class AdminService {
     private final MessageRepository messageRepository;
     private final AnalyticsService analyticsService;
     private final PasswordEncoder passwordEncoder;
+    private final BulkDeletionService bulkDeletionService;
+    private final ArchiveService archiveService;
+    private final MessagePartitionService partitionService;
+    private final KnowledgeStats knowledgeStats;
+    private final ActivityLeaderboards leaderboards;
+    private final ActivityRollupService rollupService;
+    private final KeywordIndex keywordIndex;
+    private final AnalyticsBatchService analyticsBatchService;
+    private final ActiveUserSketches activeUsers;
+    private final ColumnarStore columnar;
 
     // ------- USERS -------
     public List<AdminUserDTO> listUsers() {
@@ -45,6 +54,10 @@ public class AdminService {
                 .toList();
     }
 
+    public boolean userExists(Long userId) {
+        return userRepository.existsById(userId);
+    }
+
     @Transactional
     public void setRole(Long userId, Role role) {
         User u = userRepository.findById(userId)
@@ -62,24 +75,24 @@ public class AdminService {
         }).orElse(false);
     }
 
-    @Transactional
-    public boolean deleteUser(Long userId) {
-        return userRepository.findById(userId).map(u -> {
-            conversationRepository.findByOwnerOrderByDateDesc(u)
-                    .forEach(c -> conversationRepository.deleteById(c.getId()));
-            userRepository.delete(u);
-            return true;
-        }).orElse(false);
+    /** Suppression en tâche de fond (conversations, messages puis compte) ; vide si l'user n'existe pas. */
+    public Optional<DeletionJobDTO> deleteUser(Long userId) {
+        if (!userRepository.existsById(userId)) return Optional.empty();
+        return Optional.of(bulkDeletionService.submit(BulkDeletionService.Kind.USER, userId));
     }
 
     public AdminStatsDTO stats() {
         long users = userRepository.count();
         long convs = conversationRepository.count();
         long msgs  = messageRepository.count();
+        LocalDate today = LocalDate.now();
         return AdminStatsDTO.builder()
                 .totalUsers(users)
                 .totalConversations(convs)
                 .totalMessages(msgs)
+                .dau(activeUsers.distinct(today, today))
+                .wau(activeUsers.distinct(today.minusDays(6), today))
+                .mau(activeUsers.distinct(today.minusDays(29), today))
                 .build();
     }
 
@@ -105,37 +118,95 @@ public class AdminService {
                 .toList();
     }
 
-    @Transactional
-    public void deleteConversation(Long id) { conversationRepository.deleteById(id); }
+    public void deleteConversation(Long id) {
+        bulkDeletionService.runNow(BulkDeletionService.Kind.CONVERSATION, id);
+    }
 
-    @Transactional
-    public void deleteConversationsByUser(Long userId) {
-        var owner = userRepository.findById(userId)
-                .orElseThrow(() -> new RuntimeException("User introuvable"));
-        conversationRepository.findByOwnerOrderByDateDesc(owner)
-                .forEach(c -> conversationRepository.deleteById(c.getId()));
+    public DeletionJobDTO deleteConversationsByUser(Long userId) {
+        if (!userRepository.existsById(userId)) throw new RuntimeException("User introuvable");
+        return bulkDeletionService.submit(BulkDeletionService.Kind.USER_CONVERSATIONS, userId);
+    }
+
+    public Optional<DeletionJobDTO> deletionJob(String jobId) {
+        return bulkDeletionService.get(jobId);
+    }
+
+    public List<DeletionJobDTO> deletionJobs() {
+        return bulkDeletionService.list();
+    }
+
+    // ------- ARCHIVAGE -------
+    public ArchiveService.ArchiveRunDTO archiveIdleConversations() {
+        return archiveService.archiveIdle();
+    }
+
+    // ------- PARTITIONS -------
+    public List<PartitionDTO> messagePartitions() {
+        return partitionService.partitions();
+    }
+
+    public MessagePartitionService.MaintenanceDTO maintainPartitions() {
+        return partitionService.maintain();
+    }
+
+    public MessagePartitionService.PruningCheckDTO checkPartitionPruning(LocalDate from, LocalDate to) {
+        return partitionService.checkPruning(from, to);
+    }
+
+    // ------- STATISTIQUES INCRÉMENTALES -------
+    public KnowledgeStatsDTO knowledgeStats() {
+        return knowledgeStats.snapshot();
+    }
+
+    /** false si une reconstruction est déjà en cours. */
+    public boolean rebuildKnowledgeStats() {
+        return knowledgeStats.requestRebuild();
+    }
+
+    // ------- INDEX DE MOTS-CLÉS -------
+    /** false si une indexation est déjà en cours. */
+    public boolean reindexKeywords() {
+        return keywordIndex.requestReindex();
+    }
+
+    // ------- MAGASIN COLONNAIRE -------
+    public boolean reloadColumnar() {
+        return columnar.requestReload();
+    }
+
+    // ------- AGRÉGATS HORAIRES -------
+    public ActivityRollupService.RollupStatusDTO rollupStatus() {
+        return rollupService.status();
+    }
+
+    public ActivityRollupService.RollupStatusDTO catchUpRollups() {
+        rollupService.catchUp();
+        return rollupService.status();
+    }
+
+    /** Tout sera ré-agrégé par les prochains passages du job. */
+    public ActivityRollupService.RollupStatusDTO resetRollups() {
+        rollupService.reset();
+        return rollupService.status();
+    }
+
+    // ------- CLASSEMENTS D'ACTIVITÉ -------
+    public List<LeaderboardEntryDTO> leaderboard(ActivityLeaderboards.Metric metric,
+                                                 ActivityLeaderboards.Window window, int k) {
+        return leaderboards.top(metric, window, k);
     }
 
     // ------- DASHBOARD -------
     public DashboardDTO dashboard(LocalDate from, LocalDate to, int topN) {
-        List<PointDTO> mpd = analyticsService.messagesPerDay(from, to);
-        StatDTO avg = analyticsService.avgConvMinutes(from, to);
-        List<HeatCellDTO> hm = analyticsService.heatmap(from, to);
-        List<KeywordCountDTO> top = analyticsService.topKeywords(from, to, topN).stream()
-                .map(k -> new KeywordCountDTO(k.word(), k.count()))
-                .toList();
-
-        return new DashboardDTO(mpd, avg, hm, top);
+        // les quatre séries en parallèle, une seule passe horaire
+        AnalyticsBatchDTO b = analyticsBatchService.run(from, to, null, topN);
+        return new DashboardDTO(b.messagesPerDay(), b.avgConversationMinutes(), b.heatmap(), b.topKeywords(),
+                activeUsers.rolling(from, to, 1));
     }
 
     // ------- SIGNUPS -------
     public List<UserSignupDTO> signupsPerDay(LocalDate from, LocalDate to) {
-        return userRepository.findSignupsPerDayNative(from, to).stream()
-                .map(row -> new UserSignupDTO(
-                        ((java.sql.Date) row.get("date")).toLocalDate(),
-                        ((Number) row.get("count")).longValue()
-                ))
-                .toList();
+        return analyticsService.signupsPerDay(from, to);
     }
 
     // ------- ADMIN ACTIONS -------
@@ -166,20 +237,6 @@ public class AdminService {
         userRepository.save(u);
     }
 
-    public String exportConversationsCsv(Long userId) {
-        List<Conversation> convs = conversationRepository.findByOwner_IdOrderByDateDesc(userId);
-        String header = "conversation_id;title;created_at;messages_count\n";
-        String body = convs.stream()
-                .map(c -> {
-                    long count = messageRepository.countByConversation_Id(c.getId());
-                    String title = c.getTitle() != null ? c.getTitle().replace(";", ",") : "";
-                    String when = c.getDate() != null ? c.getDate().toInstant().toString() : "";
-                    return c.getId() + ";" + title + ";" + when + ";" + count;
-                })
-                .collect(Collectors.joining("\n"));
-        return header + body + (body.isEmpty() ? "" : "\n");
-    }
-
     // ------- LATENCE (implémentation réelle) -------
     public List<BotLatencyRowDTO> latencyWindow(Instant from, Instant to) {
         var rows = messageRepository.aggregateLatencyPerMinute(from, to);
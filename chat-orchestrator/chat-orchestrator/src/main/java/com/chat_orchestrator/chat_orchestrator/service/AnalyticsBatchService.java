@@ -0,0 +1,105 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.AnalyticsBatchDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.KeywordCountDTO;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Plusieurs séries analytiques sur une même plage en un seul appel : l'utilisateur est résolu une fois,
+ * messages/jour, heatmap et durée moyenne sortent de la même passe horaire (jours clos en cache + brut),
+ * et les requêtes indépendantes partent en parallèle sur un exécuteur dédié.
+ * Latence ≈ la plus lente des requêtes au lieu de leur somme.
+ */
+@Service
+public class AnalyticsBatchService {
+
+    public enum Series { MESSAGES_PER_DAY, AVG_CONV_MINUTES, HEATMAP, TOP_KEYWORDS }
+
+    private static final Set<Series> HOURLY = EnumSet.of(Series.MESSAGES_PER_DAY, Series.AVG_CONV_MINUTES, Series.HEATMAP);
+
+    private final AnalyticsService analytics;
+    private final long timeoutMs;
+    private final ExecutorService executor;
+
+    public AnalyticsBatchService(AnalyticsService analytics,
+                                 @Value("${app.analytics.batch-threads:4}") int threads,
+                                 @Value("${app.analytics.batch-timeout-ms:30000}") long timeoutMs) {
+        this.analytics = analytics;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger n = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "analytics-batch-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public AnalyticsBatchDTO run(LocalDate from, LocalDate to, Set<Series> series, int topN) {
+        long t0 = System.currentTimeMillis();
+        Set<Series> wanted = series == null || series.isEmpty() ? EnumSet.allOf(Series.class) : EnumSet.copyOf(series);
+
+        // contexte de sécurité lu ici : les threads de l'exécuteur ne l'ont pas
+        Long uid = analytics.scopedUserId();
+
+        // jours clos servis par AnalyticsDayCache : seule la partie ouverte est réellement calculée
+        Future<List<AnalyticsService.Hour>> hourly = Collections.disjoint(wanted, HOURLY) ? null
+                : submit(() -> analytics.hourly(from, to, uid));
+        Future<List<AnalyticsService.KeywordCount>> keywords = wanted.contains(Series.TOP_KEYWORDS)
+                ? submit(() -> analytics.topKeywords(from, to, topN, uid))
+                : null;
+
+        long deadline = t0 + timeoutMs;
+        List<AnalyticsService.Hour> hours = hourly == null ? List.of() : await(hourly, deadline, hourly, keywords);
+
+        List<KeywordCountDTO> top = keywords == null ? null
+                : await(keywords, deadline, hourly, keywords).stream()
+                        .map(k -> new KeywordCountDTO(k.word(), k.count()))
+                        .toList();
+
+        return new AnalyticsBatchDTO(from, to,
+                wanted.contains(Series.MESSAGES_PER_DAY) ? AnalyticsService.perDay(hours) : null,
+                wanted.contains(Series.AVG_CONV_MINUTES) ? AnalyticsService.avg(hours) : null,
+                wanted.contains(Series.HEATMAP) ? AnalyticsService.heat(hours) : null,
+                top,
+                System.currentTimeMillis() - t0);
+    }
+
+    private <T> Future<T> submit(Supplier<T> task) {
+        return executor.submit(task::get);
+    }
+
+    /** Attend un résultat ; en cas d'échec ou de dépassement, annule le reste et relance l'erreur d'origine. */
+    private <T> T await(Future<T> f, long deadline, Future<?>... all) {
+        try {
+            return f.get(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            cancel(all);
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            cancel(all);
+            throw new IllegalStateException("Analytics : délai dépassé (" + timeoutMs + " ms)");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel(all);
+            throw new IllegalStateException("Analytics : interrompu");
+        }
+    }
+
+    private static void cancel(Future<?>... all) {
+        for (Future<?> f : all) if (f != null) f.cancel(true);
+    }
+}
@@ -0,0 +1,121 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Activité horaire par (périmètre, jour) pour les jours clos, c'est-à-dire entièrement passés dans les
+ * agrégats (jour < date du filigrane) : ces résultats ne bougent plus, sauf correction des agrégats
+ * (durées prolongées, import tardif, suppression), que ActivityRollupService signale ici.
+ * Périmètre : id utilisateur, ou null pour la vue globale (admin).
+ */
+@Component
+public class AnalyticsDayCache {
+
+    private record Key(Long scope, LocalDate day) {}
+
+    /** Calcul non mis en cache d'une plage de jours [from, to]. */
+    @FunctionalInterface
+    public interface Loader {
+        List<AnalyticsService.Hour> load(LocalDate from, LocalDate to, Long scope);
+    }
+
+    private final int maxEntries;
+    private final LinkedHashMap<Key, List<AnalyticsService.Hour>> days;
+
+    /** Incrémenté à chaque invalidation : empêche de ranger un calcul devenu obsolète, sert d'ETag. */
+    private final AtomicLong version = new AtomicLong();
+
+    public AnalyticsDayCache(@Value("${app.analytics.cache.max-entries:50000}") int maxEntries) {
+        this.maxEntries = Math.max(100, maxEntries);
+        this.days = new LinkedHashMap<>(1024, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<AnalyticsService.Hour>> eldest) {
+                return size() > AnalyticsDayCache.this.maxEntries;
+            }
+        };
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Heures de [from, to] : jours clos (< {@code closedBefore}) depuis le cache, les manquants en un seul
+     * calcul couvrant leur étendue, puis les jours ouverts calculés à chaque fois.
+     */
+    public List<AnalyticsService.Hour> hourly(LocalDate from, LocalDate to, Long scope,
+                                              LocalDate closedBefore, Loader loader) {
+        LocalDate lastClosed = closedBefore == null ? from.minusDays(1)
+                : (to.isBefore(closedBefore) ? to : closedBefore.minusDays(1));
+        List<AnalyticsService.Hour> out = new ArrayList<>();
+
+        if (!lastClosed.isBefore(from)) {
+            LocalDate firstMissing = null;
+            LocalDate lastMissing = null;
+            Map<LocalDate, List<AnalyticsService.Hour>> found = new HashMap<>();
+            synchronized (days) {
+                for (LocalDate d = from; !d.isAfter(lastClosed); d = d.plusDays(1)) {
+                    List<AnalyticsService.Hour> h = days.get(new Key(scope, d));
+                    if (h != null) {
+                        found.put(d, h);
+                    } else {
+                        if (firstMissing == null) firstMissing = d;
+                        lastMissing = d;
+                    }
+                }
+            }
+            if (firstMissing != null) {
+                long v = version.get();
+                Map<LocalDate, List<AnalyticsService.Hour>> loaded = new HashMap<>();
+                for (LocalDate d = firstMissing; !d.isAfter(lastMissing); d = d.plusDays(1)) loaded.put(d, new ArrayList<>());
+                for (AnalyticsService.Hour h : loader.load(firstMissing, lastMissing, scope)) {
+                    loaded.get(h.hour().toLocalDate()).add(h);
+                }
+                synchronized (days) {
+                    // une invalidation pendant le calcul : on sert le résultat sans le garder
+                    if (version.get() == v) {
+                        loaded.forEach((d, h) -> days.put(new Key(scope, d), List.copyOf(h)));
+                    }
+                }
+                loaded.forEach(found::putIfAbsent);
+            }
+            for (LocalDate d = from; !d.isAfter(lastClosed); d = d.plusDays(1)) out.addAll(found.get(d));
+        }
+
+        LocalDate liveFrom = lastClosed.isBefore(from) ? from : lastClosed.plusDays(1);
+        if (!liveFrom.isAfter(to)) out.addAll(loader.load(liveFrom, to, scope));
+        return out;
+    }
+
+    // ---------- Invalidation ----------
+    /** Jours modifiés pour un utilisateur : son périmètre et la vue globale. */
+    public void invalidate(Map<Long, Set<LocalDate>> touched) {
+        if (touched.isEmpty()) return;
+        synchronized (days) {
+            version.incrementAndGet();
+            touched.forEach((userId, ds) -> ds.forEach(d -> {
+                days.remove(new Key(userId, d));
+                days.remove(new Key(null, d));
+            }));
+        }
+    }
+
+    public void invalidateScope(Long userId) {
+        synchronized (days) {
+            version.incrementAndGet();
+            days.keySet().removeIf(k -> k.scope() == null || k.scope().equals(userId));
+        }
+    }
+
+    public void clear() {
+        synchronized (days) {
+            version.incrementAndGet();
+            days.clear();
+        }
+    }
+}
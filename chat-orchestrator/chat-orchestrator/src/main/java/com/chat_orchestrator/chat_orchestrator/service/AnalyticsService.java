@@ -2,7 +2,9 @@ package com.chat_orchestrator.chat_orchestrator.service;
 
 import com.chat_orchestrator.chat_orchestrator.dto.HeatCellDTO;
 import com.chat_orchestrator.chat_orchestrator.dto.PointDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.SliceRowDTO;
 import com.chat_orchestrator.chat_orchestrator.dto.StatDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.UserSignupDTO;
 import com.chat_orchestrator.chat_orchestrator.entity.User;
 import com.chat_orchestrator.chat_orchestrator.repository.UserRepository;
 import jakarta.persistence.EntityManager;
@@ -14,12 +16,19 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
 public class AnalyticsService {
     private final EntityManager em;
     private final UserRepository userRepository;
+    private final ActivityRollupService rollups;
+    private final KeywordIndex keywordIndex;
+    private final AnalyticsDayCache dayCache;
+    private final ColumnarStore columnar;
 
     private static boolean isAdmin() {
         return SecurityContextHolder.getContext().getAuthentication()
@@ -31,124 +40,295 @@ public class AnalyticsService {
         return SecurityContextHolder.getContext().getAuthentication().getName();
     }
 
-    public List<PointDTO> messagesPerDay(LocalDate from, LocalDate to){
-        LocalDateTime fromTs = from.atStartOfDay();
-        LocalDateTime toNextTs = to.plusDays(1).atStartOfDay();
-
-        String base = """
-            SELECT DATE(m.timestamp) AS d, COUNT(*) AS c
-            FROM message m
-            JOIN conversation c ON c.id = m.conversation_id
-            WHERE m.timestamp >= ?1 AND m.timestamp < ?2
-        """;
-
-        String filter = "";
-        Long uid = null;
-        if (!isAdmin()) {
-            User u = userRepository.findByEmail(currentEmail())
-                    .orElseThrow(() -> new RuntimeException("Utilisateur introuvable"));
-            uid = u.getId();
-            filter = " AND c.user_id = ?3 ";
-        }
+    // ------- Agrégats + brut --------
+    /**
+     * Frontière entre agrégats horaires (avant le filigrane) et tables brutes (après, normalement
+     * la seule heure en cours), bornée à [from, toNext].
+     */
+    public LocalDateTime split(LocalDateTime from, LocalDateTime toNext) {
+        LocalDateTime wm = rollups.watermark().orElse(from);
+        if (wm.isBefore(from)) return from;
+        return wm.isAfter(toNext) ? toNext : wm;
+    }
 
-        String sql = base + filter + " GROUP BY DATE(m.timestamp) ORDER BY d";
+    /** Id de l'utilisateur courant, ou null pour un admin (pas de filtre). */
+    public Long scopedUserId() {
+        if (isAdmin()) return null;
+        User u = userRepository.findByEmail(currentEmail())
+                .orElseThrow(() -> new RuntimeException("Utilisateur introuvable"));
+        return u.getId();
+    }
 
+    @SuppressWarnings("unchecked")
+    private List<Object[]> rows(String sql, LocalDateTime from, LocalDateTime to, Long uid) {
+        if (!from.isBefore(to)) return List.of();
         var q = em.createNativeQuery(sql)
-                .setParameter(1, fromTs)
-                .setParameter(2, toNextTs);
+                .setParameter(1, from)
+                .setParameter(2, to);
         if (uid != null) q.setParameter(3, uid);
+        return q.getResultList();
+    }
 
-        @SuppressWarnings("unchecked")
-        List<Object[]> rows = q.getResultList();
+    /**
+     * ETag d'une plage entièrement close : ne dépend que du périmètre, de la plage, de la variante
+     * et des versions des caches (connu sans calculer la réponse). Vide si la plage touche un jour ouvert.
+     */
+    public Optional<String> closedEtag(LocalDate from, LocalDate to, String variant) {
+        Optional<LocalDateTime> wm = rollups.watermark();
+        if (wm.isEmpty() || !to.isBefore(wm.get().toLocalDate()) || !keywordIndex.isReady()) return Optional.empty();
+        Long uid = scopedUserId();
+        return Optional.of("W/\"a-" + (uid == null ? "all" : uid) + "-" + from + "-" + to + "-" + variant
+                + "-" + dayCache.version() + "-" + keywordIndex.version() + "\"");
+    }
 
-        return rows.stream()
-                .map(r -> new PointDTO(
-                        ((java.sql.Date) r[0]).toLocalDate(),
-                        ((Number) r[1]).longValue()
-                ))
+    // ------- Activité horaire : une passe pour messages/jour, heatmap et durée moyenne --------
+    /** Une heure : messages, conversations dont c'est le premier message, somme de leurs durées. */
+    public record Hour(LocalDateTime hour, long messages, long started, double durationSec) {}
+
+    /** Agrégats horaires sur [from, to). */
+    public List<Hour> rolledHours(LocalDateTime from, LocalDateTime to, Long uid) {
+        String sql = """
+            SELECT r.hour, SUM(r.messages), SUM(r.conversations_started), SUM(r.duration_sec_sum)
+            FROM activity_rollup_hourly r
+            WHERE r.hour >= ?1 AND r.hour < ?2
+        """ + (uid != null ? " AND r.user_id = ?3 " : "") + " GROUP BY r.hour";
+        return rows(sql, from, to, uid).stream()
+                .map(r -> new Hour(hourOf(r[0]), ((Number) r[1]).longValue(),
+                        ((Number) r[2]).longValue(), ((Number) r[3]).doubleValue()))
                 .toList();
     }
 
-    public StatDTO avgConvMinutes(LocalDate from, LocalDate to){
-        LocalDateTime fromTs = from.atStartOfDay();
-        LocalDateTime toNextTs = to.plusDays(1).atStartOfDay();
+    /** Messages bruts par heure sur [from, to). */
+    public List<Hour> rawMessageHours(LocalDateTime from, LocalDateTime to, Long uid) {
+        String sql = """
+            SELECT date_trunc('hour', m.timestamp) AS h, COUNT(*)
+            FROM message m
+            JOIN conversation c ON c.id = m.conversation_id
+            WHERE m.timestamp >= ?1 AND m.timestamp < ?2
+        """ + (uid != null ? " AND c.user_id = ?3 " : "") + " GROUP BY h";
+        return rows(sql, from, to, uid).stream()
+                .map(r -> new Hour(hourOf(r[0]), ((Number) r[1]).longValue(), 0, 0))
+                .toList();
+    }
 
-        String base = """
-            SELECT COALESCE(AVG(dur_min), 0)
+    /**
+     * Conversations brutes dont le premier message tombe dans [from, to), par heure de ce premier message.
+     * « Pas de message avant from » : conversation_activity (tenue jusqu'au filigrane) puis sonde bornée
+     * de la table message sur [filigrane, from) seulement, pour ne pas visiter les partitions plus anciennes.
+     * Sans filigrane (agrégats jamais initialisés), sonde non bornée.
+     */
+    public List<Hour> rawConversationHours(LocalDateTime from, LocalDateTime to, Long uid) {
+        if (!from.isBefore(to)) return List.of();
+        LocalDateTime lookback = rollups.watermark().map(wm -> wm.isAfter(from) ? from : wm).orElse(null);
+        String earlier = lookback == null
+                ? """
+                  AND NOT EXISTS (SELECT 1 FROM message p
+                                  WHERE p.conversation_id = m.conversation_id AND p.timestamp < :fromTs)
+                  """
+                : """
+                  AND NOT EXISTS (SELECT 1 FROM conversation_activity a
+                                  WHERE a.conversation_id = m.conversation_id AND a.first_at < :fromTs)
+                  AND NOT EXISTS (SELECT 1 FROM message p
+                                  WHERE p.conversation_id = m.conversation_id
+                                    AND p.timestamp >= :lookback AND p.timestamp < :fromTs)
+                  """;
+        String sql = """
+            SELECT date_trunc('hour', first_at) AS h, COUNT(*), COALESCE(SUM(dur_sec), 0)
             FROM (
-                SELECT EXTRACT(EPOCH FROM (MAX(m.timestamp) - MIN(m.timestamp))) / 60.0 AS dur_min
+                SELECT MIN(m.timestamp) AS first_at,
+                       EXTRACT(EPOCH FROM (MAX(m.timestamp) - MIN(m.timestamp))) AS dur_sec
                 FROM message m
                 JOIN conversation c ON c.id = m.conversation_id
+                WHERE m.timestamp >= :fromTs
+        """ + earlier + (uid != null ? " AND c.user_id = :uid " : "") + """
                 GROUP BY m.conversation_id
-                HAVING MIN(m.timestamp) >= ?1 AND MIN(m.timestamp) < ?2
+                HAVING MIN(m.timestamp) < :toTs
+            ) t
+            GROUP BY h
         """;
-
-        String filter = "";
-        Long uid = null;
-        if (!isAdmin()) {
-            User u = userRepository.findByEmail(currentEmail())
-                    .orElseThrow(() -> new RuntimeException("Utilisateur introuvable"));
-            uid = u.getId();
-            filter = " AND c.user_id = ?3 ";
-        }
-
-        String sql = base + filter + " ) t ";
-
         var q = em.createNativeQuery(sql)
-                .setParameter(1, fromTs)
-                .setParameter(2, toNextTs);
-        if (uid != null) q.setParameter(3, uid);
+                .setParameter("fromTs", from)
+                .setParameter("toTs", to);
+        if (uid != null) q.setParameter("uid", uid);
+        if (lookback != null) q.setParameter("lookback", lookback);
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = q.getResultList();
+        return rows.stream()
+                .map(r -> new Hour(hourOf(r[0]), 0,
+                        ((Number) r[1]).longValue(), ((Number) r[2]).doubleValue()))
+                .toList();
+    }
 
-        Number v = (Number) q.getSingleResult();
-        return new StatDTO("avg_conv_min", v == null ? 0.0 : v.doubleValue());
+    /**
+     * Heures de [from, to] : jours clos (entièrement agrégés) servis par AnalyticsDayCache,
+     * les autres calculés à la demande.
+     */
+    public List<Hour> hourly(LocalDate from, LocalDate to, Long uid) {
+        LocalDate closedBefore = rollups.watermark().map(LocalDateTime::toLocalDate).orElse(null);
+        return dayCache.hourly(from, to, uid, closedBefore, this::computeHourly);
     }
 
-    public List<HeatCellDTO> heatmap(LocalDate from, LocalDate to){
+    /** Magasin colonnaire s'il est chargé, sinon agrégats jusqu'au filigrane puis brut (normalement la seule heure en cours). */
+    private List<Hour> computeHourly(LocalDate from, LocalDate to, Long uid) {
         LocalDateTime fromTs = from.atStartOfDay();
         LocalDateTime toNextTs = to.plusDays(1).atStartOfDay();
+        if (columnar.isReady()) return columnar.hourly(fromTs, toNextTs, uid);
+        LocalDateTime split = split(fromTs, toNextTs);
+        return merge(List.of(rolledHours(fromTs, split, uid),
+                rawMessageHours(split, toNextTs, uid),
+                rawConversationHours(split, toNextTs, uid)));
+    }
 
-        String base = """
-            SELECT EXTRACT(DOW FROM m.timestamp)::int AS dow,
-                   EXTRACT(HOUR FROM m.timestamp)::int AS hh,
-                   COUNT(*) AS c
-            FROM message m
-            JOIN conversation c ON c.id = m.conversation_id
-            WHERE m.timestamp >= ?1 AND m.timestamp < ?2
-        """;
+    /** Selon la version d'Hibernate, timestamp revient en Timestamp ou en LocalDateTime. */
+    private static LocalDateTime hourOf(Object v) {
+        return v instanceof java.sql.Timestamp ts ? ts.toLocalDateTime() : (LocalDateTime) v;
+    }
 
-        String filter = "";
-        Long uid = null;
-        if (!isAdmin()) {
-            User u = userRepository.findByEmail(currentEmail())
-                    .orElseThrow(() -> new RuntimeException("Utilisateur introuvable"));
-            uid = u.getId();
-            filter = " AND c.user_id = ?3 ";
+    private static List<Hour> merge(List<List<Hour>> parts) {
+        Map<LocalDateTime, Hour> byHour = new TreeMap<>();
+        for (List<Hour> part : parts) {
+            for (Hour h : part) {
+                byHour.merge(h.hour(), h, (a, b) -> new Hour(a.hour(), a.messages() + b.messages(),
+                        a.started() + b.started(), a.durationSec() + b.durationSec()));
+            }
         }
+        return List.copyOf(byHour.values());
+    }
+
+    public static List<PointDTO> perDay(List<Hour> hours) {
+        Map<LocalDate, Long> perDay = new TreeMap<>();
+        hours.forEach(h -> perDay.merge(h.hour().toLocalDate(), h.messages(), Long::sum));
+        return perDay.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .map(e -> new PointDTO(e.getKey(), e.getValue()))
+                .toList();
+    }
+
+    /** Jour de semaine à la Postgres (EXTRACT(DOW) : 0 = dimanche). */
+    public static List<HeatCellDTO> heat(List<Hour> hours) {
+        Map<Integer, Long> cells = new TreeMap<>();   // dow * 24 + hh
+        hours.forEach(h -> cells.merge((h.hour().getDayOfWeek().getValue() % 7) * 24 + h.hour().getHour(),
+                h.messages(), Long::sum));
+        return cells.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .map(e -> new HeatCellDTO(e.getKey() / 24, e.getKey() % 24, e.getValue()))
+                .toList();
+    }
 
-        String sql = base + filter + " GROUP BY dow, hh ORDER BY dow, hh";
+    /**
+     * Conversations dont le premier message tombe dans la plage : durée jusqu'au dernier message.
+     * Les agrégats tiennent la durée à jour au rattrapage ; une conversation encore active est comptée
+     * avec sa durée au dernier filigrane.
+     */
+    public static StatDTO avg(List<Hour> hours) {
+        double seconds = hours.stream().mapToDouble(Hour::durationSec).sum();
+        long convs = hours.stream().mapToLong(Hour::started).sum();
+        return new StatDTO("avg_conv_min", convs > 0 ? seconds / 60.0 / convs : 0.0);
+    }
+
+    public List<PointDTO> messagesPerDay(LocalDate from, LocalDate to){
+        return perDay(hourly(from, to, scopedUserId()));
+    }
+
+    public StatDTO avgConvMinutes(LocalDate from, LocalDate to){
+        return avg(hourly(from, to, scopedUserId()));
+    }
+
+    public List<HeatCellDTO> heatmap(LocalDate from, LocalDate to){
+        return heat(hourly(from, to, scopedUserId()));
+    }
 
+    // ------- Découpage libre (admin) --------
+    private static final String ROLE_SQL =
+            "CASE WHEN m.role = 'user' THEN 'user' WHEN m.role IN ('bot', 'assistant') THEN 'bot' ELSE 'other' END";
+
+    /**
+     * Messages et caractères par heure, jour, utilisateur ou rôle sur [from, to], filtres optionnels :
+     * balayage du magasin colonnaire s'il est chargé, sinon GROUP BY sur la table message.
+     */
+    public List<SliceRowDTO> slice(LocalDate from, LocalDate to, ColumnarStore.GroupBy by, Long uid, String role, int limit) {
+        if (columnar.isReady()) return columnar.slice(from, to, by, uid, role, limit);
+
+        String key = switch (by) {
+            case HOUR -> "to_char(date_trunc('hour', m.timestamp), 'YYYY-MM-DD\"T\"HH24:MI')";
+            case DAY -> "to_char(m.timestamp, 'YYYY-MM-DD')";
+            case USER -> "CAST(COALESCE(c.user_id, 0) AS text)";
+            case ROLE -> ROLE_SQL;
+        };
+        String sql = "SELECT " + key + " AS k, COUNT(*), COALESCE(SUM(char_length(m.content)), 0) "
+                + "FROM message m JOIN conversation c ON c.id = m.conversation_id "
+                + "WHERE m.timestamp >= :fromTs AND m.timestamp < :toTs"
+                + (uid != null ? " AND c.user_id = :uid" : "")
+                + (role != null ? " AND " + ROLE_SQL + " = :role" : "")
+                + " GROUP BY k"
+                + (by == ColumnarStore.GroupBy.USER ? " ORDER BY 2 DESC LIMIT :limit" : " ORDER BY k");
         var q = em.createNativeQuery(sql)
-                .setParameter(1, fromTs)
-                .setParameter(2, toNextTs);
-        if (uid != null) q.setParameter(3, uid);
+                .setParameter("fromTs", from.atStartOfDay())
+                .setParameter("toTs", to.plusDays(1).atStartOfDay());
+        if (uid != null) q.setParameter("uid", uid);
+        if (role != null) q.setParameter("role", ColumnarStore.roleName(role));
+        if (by == ColumnarStore.GroupBy.USER) q.setParameter("limit", Math.max(1, limit));
 
         @SuppressWarnings("unchecked")
         List<Object[]> rows = q.getResultList();
-
         return rows.stream()
-                .map(r -> new HeatCellDTO(
-                        ((Number) r[0]).intValue(),
-                        ((Number) r[1]).intValue(),
-                        ((Number) r[2]).longValue()
-                ))
+                .map(r -> new SliceRowDTO((String) r[0], ((Number) r[1]).longValue(), ((Number) r[2]).longValue()))
+                .toList();
+    }
+
+    /** Inscriptions par jour (admin) : agrégats puis table users sur un filtre de plage indexable. */
+    public List<UserSignupDTO> signupsPerDay(LocalDate from, LocalDate to) {
+        LocalDateTime fromTs = from.atStartOfDay();
+        LocalDateTime toNextTs = to.plusDays(1).atStartOfDay();
+        LocalDateTime split = split(fromTs, toNextTs);
+
+        String rolled = """
+            SELECT CAST(r.hour AS date) AS d, SUM(r.signups) AS c
+            FROM activity_rollup_hourly r
+            WHERE r.hour >= ?1 AND r.hour < ?2 AND r.signups <> 0
+            GROUP BY 1
+        """;
+
+        Map<LocalDate, Long> perDay = new TreeMap<>();
+        for (Object[] r : rows(rolled, fromTs, split, null)) {
+            perDay.merge(((java.sql.Date) r[0]).toLocalDate(), ((Number) r[1]).longValue(), Long::sum);
+        }
+        if (split.isBefore(toNextTs)) {
+            for (Map<String, Object> row : userRepository.findSignupsPerDayNative(split, toNextTs)) {
+                perDay.merge(((java.sql.Date) row.get("date")).toLocalDate(), ((Number) row.get("count")).longValue(), Long::sum);
+            }
+        }
+        return perDay.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .map(e -> new UserSignupDTO(e.getKey(), e.getValue()))
                 .toList();
     }
 
     // ------- Top keywords --------
     public record KeywordCount(String word, long count) {}
 
+    /**
+     * Index de mots-clés (tokenisé à l'écriture) : exact pour un utilisateur, résumés journaliers
+     * fusionnés pour un admin. Tant que l'index n'est pas construit : calcul SQL d'origine.
+     */
     @Transactional
     public List<KeywordCount> topKeywords(LocalDate from, LocalDate to, int limit){
+        return topKeywords(from, to, limit, scopedUserId());
+    }
+
+    /** {@code uid} déjà résolu (null = tous les utilisateurs). */
+    public List<KeywordCount> topKeywords(LocalDate from, LocalDate to, int limit, Long uid){
+        return keywordIndex.top(from, to, limit, uid)
+                .orElseGet(() -> scanKeywords(from, to, limit, uid));
+    }
+
+    /** Top-K exact d'un utilisateur donné (admin). */
+    @Transactional
+    public List<KeywordCount> topKeywordsForUser(LocalDate from, LocalDate to, int limit, Long userId){
+        return topKeywords(from, to, limit, userId);
+    }
+
+    private List<KeywordCount> scanKeywords(LocalDate from, LocalDate to, int limit, Long uid){
         var fromTs  = from.atStartOfDay();
         var toNextTs = to.plusDays(1).atStartOfDay();
 
@@ -161,14 +341,7 @@ public class AnalyticsService {
             WHERE m.timestamp >= :fromTs AND m.timestamp < :toTs
     """;
 
-        String filter = "";
-        Long uid = null;
-        if (!isAdmin()) {
-            User u = userRepository.findByEmail(currentEmail())
-                    .orElseThrow(() -> new RuntimeException("Utilisateur introuvable"));
-            uid = u.getId();
-            filter = " AND c.user_id = :uid ";
-        }
+        String filter = uid != null ? " AND c.user_id = :uid " : "";
 
         String sql = base + filter + """
             ) t
@@ -0,0 +1,213 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.chat_orchestrator.chat_orchestrator.entity.ConversationArchive;
+import com.chat_orchestrator.chat_orchestrator.entity.Message;
+import com.chat_orchestrator.chat_orchestrator.repository.ConversationArchiveRepository;
+import com.chat_orchestrator.chat_orchestrator.repository.MessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tiering des conversations froides : les messages d'une conversation inactive depuis
+ * {@code app.archive.idle-days} sont compactés en un bloc compressé (table conversation_archive)
+ * et retirés de la table "message". La lecture fusionne archive + messages chauds de façon transparente.
+ * Chaque bloc est indexé à l'écriture (colonnes content_tsv et lexeme_counts, mêmes lexèmes que
+ * {@code message.content_tsv}) pour la recherche et le comptage de mots sans décompression.
+ */
+@Slf4j
+@Service
+public class ArchiveService {
+
+    public record ArchiveRunDTO(int conversations, long messages, long rawBytes, long compressedBytes) {}
+
+    /** Historique complet et id du dernier message chaud (0 si aucun), cf. {@link TranscriptCache#put}. */
+    public record History(List<MessageDto> messages, long lastMessageId) {}
+
+    private final ConversationArchiveRepository archiveRepository;
+    private final MessageRepository messageRepository;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final String cfg;
+
+    private final boolean enabled;
+    private final int idleDays;
+    private final int batchSize;
+    private final int compressionLevel;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public ArchiveService(ConversationArchiveRepository archiveRepository,
+                          MessageRepository messageRepository,
+                          JdbcTemplate jdbc,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${app.search.ts-config:simple}") String tsConfig,
+                          @Value("${app.archive.enabled:true}") boolean enabled,
+                          @Value("${app.archive.idle-days:90}") int idleDays,
+                          @Value("${app.archive.batch-size:100}") int batchSize,
+                          @Value("${app.archive.compression-level:6}") int compressionLevel) {
+        this.archiveRepository = archiveRepository;
+        this.messageRepository = messageRepository;
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.cfg = tsConfig.replaceAll("[^a-z_]", "");
+        this.enabled = enabled;
+        this.idleDays = idleDays;
+        this.batchSize = batchSize;
+        this.compressionLevel = compressionLevel;
+    }
+
+    // ---------- Lecture ----------
+    /** Messages archivés (ordre chronologique), liste vide si la conversation n'a jamais été archivée. */
+    public List<MessageDto> archivedMessages(Long convId) {
+        return archiveRepository.findById(convId)
+                .map(this::decode)
+                .orElse(List.of());
+    }
+
+    /** Historique complet : archive décompressée puis messages encore dans la table chaude. */
+    public List<MessageDto> fullHistory(Long convId) {
+        return history(convId).messages();
+    }
+
+    public History history(Long convId) {
+        List<MessageDto> out = new ArrayList<>(archivedMessages(convId));
+        long lastId = 0;
+        for (Message m : messageRepository.findByConversation_IdOrderByTimestampAsc(convId)) {
+            out.add(toDto(m));
+            if (m.getId() != null) lastId = Math.max(lastId, m.getId());
+        }
+        return new History(out, lastId);
+    }
+
+    // ---------- Archivage ----------
+    @Scheduled(cron = "${app.archive.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (enabled) archiveIdle();
+    }
+
+    /**
+     * Archive toutes les conversations inactives, par lots (une transaction par conversation).
+     * Indexe d'abord les archives écrites avant l'indexation (colonnes encore NULL).
+     */
+    public ArchiveRunDTO archiveIdle() {
+        if (!running.compareAndSet(false, true)) return new ArchiveRunDTO(0, 0, 0, 0);
+        int convs = 0;
+        long msgs = 0, raw = 0, packed = 0;
+        try {
+            indexPending();
+            LocalDateTime before = LocalDateTime.now().minusDays(idleDays);
+            List<Long> ids;
+            while (!(ids = messageRepository.findIdleConversationIds(before, batchSize)).isEmpty()) {
+                for (Long id : ids) {
+                    ConversationArchive a = tx.execute(s -> archiveOne(id));
+                    if (a == null) continue;
+                    convs++;
+                    msgs += a.getMessageCount();
+                    raw += a.getRawBytes();
+                    packed += a.getPayload().length;
+                }
+            }
+            log.info("[ARCHIVE] {} conversations, {} messages, {} -> {} octets", convs, msgs, raw, packed);
+            return new ArchiveRunDTO(convs, msgs, raw, packed);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    private ConversationArchive archiveOne(Long convId) {
+        List<Message> hot = messageRepository.findByConversation_IdOrderByTimestampAsc(convId);
+        if (hot.isEmpty()) return null;
+
+        ConversationArchive archive = archiveRepository.findById(convId).orElse(null);
+        List<MessageDto> all = new ArrayList<>(archive == null ? List.of() : decode(archive));
+        long maxId = 0;
+        for (Message m : hot) {
+            all.add(toDto(m));
+            maxId = Math.max(maxId, m.getId());
+        }
+
+        byte[] block = MessageCodec.encodeBlock(all);
+        if (archive == null) archive = ConversationArchive.builder().conversationId(convId).build();
+        archive.setArchivedAt(Instant.now());
+        archive.setMessageCount(all.size());
+        archive.setRawBytes(block.length);
+        archive.setFirstMessageAt(all.get(0).getTimestamp());
+        archive.setLastMessageAt(all.get(all.size() - 1).getTimestamp());
+        archive.setPayload(MessageCodec.compress(block, compressionLevel));
+        archiveRepository.saveAndFlush(archive);
+        index(convId, all);
+
+        messageRepository.deleteArchived(convId, maxId);
+        return archive;
+    }
+
+    // ---------- Index plein texte des blocs ----------
+    private void indexPending() {
+        List<Long> ids;
+        while (!(ids = jdbc.queryForList(
+                "SELECT conversation_id FROM conversation_archive WHERE lexeme_counts IS NULL LIMIT ?",
+                Long.class, batchSize)).isEmpty()) {
+            for (Long id : ids) {
+                tx.executeWithoutResult(s -> archiveRepository.findById(id).ifPresent(a -> index(id, decode(a))));
+            }
+        }
+    }
+
+    /**
+     * content_tsv : lexèmes du bloc sans positions (un tsvector positionnel serait borné à 1 Mo) ;
+     * lexeme_counts : lexème -> occurrences, calculé message par message comme
+     * {@code cardinality(positions)} sur {@code message.content_tsv}.
+     */
+    private void index(Long convId, List<MessageDto> messages) {
+        String[] contents = messages.stream().map(MessageDto::getContent).toArray(String[]::new);
+        jdbc.update(con -> {
+            var ps = con.prepareStatement("""
+                    UPDATE conversation_archive a
+                    SET content_tsv = COALESCE(l.tsv, ''::tsvector),
+                        lexeme_counts = COALESCE(l.counts, '{}'::jsonb)
+                    FROM (
+                        SELECT array_to_tsvector(array_agg(w.lexeme)) AS tsv,
+                               jsonb_object_agg(w.lexeme, w.n) AS counts
+                        FROM (
+                            SELECT u.lexeme, SUM(cardinality(u.positions)) AS n
+                            FROM unnest(?) AS x(content)
+                            CROSS JOIN LATERAL unnest(to_tsvector(CAST(? AS regconfig), coalesce(x.content, ''))) u
+                            GROUP BY u.lexeme
+                        ) w
+                    ) l
+                    WHERE a.conversation_id = ?
+                    """);
+            ps.setArray(1, con.createArrayOf("text", contents));
+            ps.setString(2, cfg);
+            ps.setLong(3, convId);
+            return ps;
+        });
+    }
+
+    private List<MessageDto> decode(ConversationArchive a) {
+        return decode(a.getPayload(), a.getRawBytes());
+    }
+
+    /** Bloc lu directement en SQL (payload, raw_bytes), p. ex. renvoyé par un DELETE … RETURNING. */
+    static List<MessageDto> decode(byte[] payload, int rawBytes) {
+        byte[] raw = MessageCodec.decompress(payload, rawBytes);
+        return MessageCodec.readBlock(ByteBuffer.wrap(raw));
+    }
+
+    private static MessageDto toDto(Message m) {
+        return new MessageDto(m.getRole(), m.getContent(), m.getTimestamp());
+    }
+}
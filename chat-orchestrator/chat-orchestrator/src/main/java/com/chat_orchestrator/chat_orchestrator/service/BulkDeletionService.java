@@ -0,0 +1,303 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.DeletionJobDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suppressions en masse par DELETE ensemblistes et par paquets (une transaction courte par paquet),
+ * exécutées en tâche de fond : aucune entité n'est chargée en mémoire et aucune longue transaction
+ * ne verrouille les tables. L'avancement est consultable via {@link #get(String)}.
+ */
+@Slf4j
+@Service
+public class BulkDeletionService {
+
+    public enum Kind { USER, USER_CONVERSATIONS, CONVERSATION, ALL_CONVERSATIONS }
+
+    private static final int MAX_FINISHED_JOBS = 100;
+
+    private final JdbcTemplate jdbc;
+    private final TranscriptCache transcriptCache;
+    private final ConversationContextBuilder contextBuilder;
+    private final TitleSuggestIndex suggestIndex;
+    private final KnowledgeStats knowledgeStats;
+    private final ActivityLeaderboards leaderboards;
+    private final ActivityRollupService rollups;
+    private final KeywordIndex keywordIndex;
+    private final ColumnarStore columnar;
+    private final int conversationChunk;
+    private final int messageChunk;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "bulk-delete");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public BulkDeletionService(JdbcTemplate jdbc,
+                               TranscriptCache transcriptCache,
+                               ConversationContextBuilder contextBuilder,
+                               TitleSuggestIndex suggestIndex,
+                               KnowledgeStats knowledgeStats,
+                               ActivityLeaderboards leaderboards,
+                               ActivityRollupService rollups,
+                               KeywordIndex keywordIndex,
+                               ColumnarStore columnar,
+                               @Value("${app.bulk-delete.conversation-chunk:200}") int conversationChunk,
+                               @Value("${app.bulk-delete.message-chunk:5000}") int messageChunk) {
+        this.jdbc = jdbc;
+        this.transcriptCache = transcriptCache;
+        this.contextBuilder = contextBuilder;
+        this.suggestIndex = suggestIndex;
+        this.knowledgeStats = knowledgeStats;
+        this.leaderboards = leaderboards;
+        this.rollups = rollups;
+        this.keywordIndex = keywordIndex;
+        this.columnar = columnar;
+        this.conversationChunk = conversationChunk;
+        this.messageChunk = messageChunk;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final Kind kind;
+        final Long targetId;
+        volatile String status = "PENDING";
+        volatile long conversationsTotal;
+        final AtomicLong conversationsDeleted = new AtomicLong();
+        final AtomicLong messagesDeleted = new AtomicLong();
+        volatile Instant startedAt, finishedAt;
+        volatile String error;
+
+        Job(Kind kind, Long targetId) { this.kind = kind; this.targetId = targetId; }
+
+        DeletionJobDTO toDto() {
+            return new DeletionJobDTO(id, kind.name(), targetId, status, conversationsTotal,
+                    conversationsDeleted.get(), messagesDeleted.get(), startedAt, finishedAt, error);
+        }
+    }
+
+    // ---------- API ----------
+    /** Lance la suppression en arrière-plan et rend la main immédiatement. */
+    public DeletionJobDTO submit(Kind kind, Long targetId) {
+        Job job = register(kind, targetId);
+        if (kind == Kind.USER) {
+            // le compte ne peut plus écrire pendant que ses conversations disparaissent
+            jdbc.update("UPDATE users SET active = false WHERE id = ?", targetId);
+        }
+        worker.execute(() -> {
+            try {
+                run(job);
+            } catch (RuntimeException ignored) {
+                // déjà consigné dans le job (statut FAILED + erreur)
+            }
+        });
+        return job.toDto();
+    }
+
+    /**
+     * Même traitement par lots, mais dans le thread appelant (petits volumes / besoin synchrone).
+     * Un échec est relancé à l'appelant (job marqué FAILED) : pas de 204 si rien n'a été supprimé.
+     */
+    public DeletionJobDTO runNow(Kind kind, Long targetId) {
+        Job job = register(kind, targetId);
+        run(job);
+        return job.toDto();
+    }
+
+    public Optional<DeletionJobDTO> get(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::toDto);
+    }
+
+    public List<DeletionJobDTO> list() {
+        return jobs.values().stream()
+                .map(Job::toDto)
+                .sorted(Comparator.comparing(DeletionJobDTO::startedAt,
+                        Comparator.nullsFirst(Comparator.<Instant>naturalOrder())).reversed())
+                .toList();
+    }
+
+    // ---------- Exécution ----------
+    private Job register(Kind kind, Long targetId) {
+        pruneFinished();
+        Job job = new Job(kind, targetId);
+        jobs.put(job.id, job);
+        return job;
+    }
+
+    /** Exécute le job ; en cas d'échec, le job passe FAILED et l'exception est relancée. */
+    private void run(Job job) {
+        job.status = "RUNNING";
+        job.startedAt = Instant.now();
+        try {
+            job.conversationsTotal = countTargets(job);
+            deleteConversations(job);
+            if (job.kind == Kind.USER) {
+                jdbc.update("DELETE FROM password_reset_tokens WHERE user_id = ?", job.targetId);
+                jdbc.update("DELETE FROM users WHERE id = ?", job.targetId);
+                leaderboards.onUserDeleted(job.targetId);
+                rollups.userDeleted(job.targetId);
+                keywordIndex.userDeleted(job.targetId);
+            }
+            job.status = "DONE";
+        } catch (Exception e) {
+            job.status = "FAILED";
+            job.error = e.getMessage();
+            log.error("[BULK-DELETE] job {} failed", job.id, e);
+            throw e instanceof RuntimeException re ? re : new IllegalStateException(e);
+        } finally {
+            switch (job.kind) {
+                case USER, USER_CONVERSATIONS -> suggestIndex.evictUser(job.targetId);
+                case CONVERSATION -> suggestIndex.onDeleted(job.targetId);
+                case ALL_CONVERSATIONS -> suggestIndex.evictAll();
+            }
+            job.finishedAt = Instant.now();
+        }
+    }
+
+    private long countTargets(Job job) {
+        Long n = switch (job.kind) {
+            case USER, USER_CONVERSATIONS ->
+                    jdbc.queryForObject("SELECT COUNT(*) FROM conversation WHERE user_id = ?", Long.class, job.targetId);
+            case CONVERSATION ->
+                    jdbc.queryForObject("SELECT COUNT(*) FROM conversation WHERE id = ?", Long.class, job.targetId);
+            case ALL_CONVERSATIONS ->
+                    jdbc.queryForObject("SELECT COUNT(*) FROM conversation", Long.class);
+        };
+        return n == null ? 0 : n;
+    }
+
+    private List<Long> nextConversationChunk(Job job) {
+        return switch (job.kind) {
+            case USER, USER_CONVERSATIONS -> jdbc.queryForList(
+                    "SELECT id FROM conversation WHERE user_id = ? ORDER BY id LIMIT ?",
+                    Long.class, job.targetId, conversationChunk);
+            case CONVERSATION -> jdbc.queryForList(
+                    "SELECT id FROM conversation WHERE id = ?", Long.class, job.targetId);
+            case ALL_CONVERSATIONS -> jdbc.queryForList(
+                    "SELECT id FROM conversation ORDER BY id LIMIT ?", Long.class, conversationChunk);
+        };
+    }
+
+    /**
+     * Par lot de conversations ({@code conversationChunk}) : messages par paquets de {@code messageChunk},
+     * chaque paquet dans sa propre transaction courte avec sa correction des index dérivés (calculée
+     * depuis les lignes effacées) ; puis, dans une dernière, blocs archivés et conversations devenues vides.
+     * Les verrous des agrégats et des mots-clés ne sont tenus que le temps d'un paquet.
+     */
+    private void deleteConversations(Job job) {
+        List<Long> chunk;
+        while (!(chunk = nextConversationChunk(job)).isEmpty()) {
+            Long[] ids = chunk.toArray(Long[]::new);
+            long msgs = 0;
+            DeletedRows part;
+            do {
+                part = rollups.deleting(() -> keywordIndex.deleting(() -> new DeletedRows(deleteMessages(ids), List.of())));
+                msgs += part.messages().size();
+                job.messagesDeleted.addAndGet(part.messages().size());
+            } while (!part.messages().isEmpty());
+            DeletedRows last = rollups.deleting(() -> keywordIndex.deleting(() ->
+                    new DeletedRows(deleteArchives(ids), deleteEmptyConversations(ids))));
+            List<Long> deleted = last.conversations();
+
+            job.conversationsDeleted.addAndGet(deleted.size());
+            deleted.forEach(id -> {
+                transcriptCache.invalidate(id);
+                contextBuilder.forget(id);
+            });
+            knowledgeStats.onConversationsDeleted(deleted);
+            columnar.deleted(deleted);
+            leaderboards.onConversationsDeleted(deleted);
+
+            // un message a pu être ajouté entre-temps : on reboucle ; sinon rien ne bouge => on arrête
+            if (deleted.isEmpty() && msgs == 0 && last.messages().isEmpty()) {
+                throw new IllegalStateException("Conversations non supprimables : " + chunk);
+            }
+        }
+    }
+
+    /** Au plus {@code messageChunk} messages des conversations, relevés (auteur, date, contenu) pour les index. */
+    private List<DeletedRows.Row> deleteMessages(Long[] ids) {
+        return jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    WITH del AS (
+                        DELETE FROM message WHERE id IN (
+                            SELECT id FROM message WHERE conversation_id = ANY(?) LIMIT ?)
+                        RETURNING conversation_id, "timestamp", content
+                    )
+                    SELECT COALESCE(c.user_id, 0), del."timestamp", del.content
+                    FROM del JOIN conversation c ON c.id = del.conversation_id
+                    """);
+            Array arr = con.createArrayOf("bigint", ids);
+            ps.setArray(1, arr);
+            ps.setInt(2, messageChunk);
+            return ps;
+        }, (rs, i) -> {
+            Timestamp ts = rs.getTimestamp(2);
+            return new DeletedRows.Row(rs.getLong(1), ts == null ? null : ts.toLocalDateTime(), rs.getString(3));
+        });
+    }
+
+    /** Blocs archivés des conversations, décompressés depuis les lignes effacées. */
+    private List<DeletedRows.Row> deleteArchives(Long[] ids) {
+        List<DeletedRows.Row> rows = new ArrayList<>();
+        jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    WITH del AS (
+                        DELETE FROM conversation_archive WHERE conversation_id = ANY(?)
+                        RETURNING conversation_id, payload, raw_bytes
+                    )
+                    SELECT COALESCE(c.user_id, 0), del.payload, del.raw_bytes
+                    FROM del JOIN conversation c ON c.id = del.conversation_id
+                    """);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            return ps;
+        }, rs -> {
+            long userId = rs.getLong(1);
+            for (MessageDto m : ArchiveService.decode(rs.getBytes(2), rs.getInt(3))) {
+                rows.add(new DeletedRows.Row(userId, m.getTimestamp(), m.getContent()));
+            }
+        });
+        return rows;
+    }
+
+    private List<Long> deleteEmptyConversations(Long[] ids) {
+        return jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    DELETE FROM conversation c
+                    WHERE c.id = ANY(?)
+                      AND NOT EXISTS (SELECT 1 FROM message m WHERE m.conversation_id = c.id)
+                    RETURNING c.id
+                    """);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            return ps;
+        }, (rs, i) -> rs.getLong(1));
+    }
+
+    private void pruneFinished() {
+        if (jobs.size() <= MAX_FINISHED_JOBS) return;
+        jobs.values().stream()
+                .filter(j -> j.finishedAt != null)
+                .sorted(Comparator.comparing(j -> j.finishedAt))
+                .limit(jobs.size() - MAX_FINISHED_JOBS)
+                .forEach(j -> jobs.remove(j.id));
+    }
+}
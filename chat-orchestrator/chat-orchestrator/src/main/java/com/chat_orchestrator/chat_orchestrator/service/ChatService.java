@@ -1,5 +1,6 @@
 package com.chat_orchestrator.chat_orchestrator.service;
 
+import com.chat_orchestrator.chat_orchestrator.dto.docqa.DocqaDtos;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -9,22 +10,40 @@ import java.util.List;
 @RequiredArgsConstructor
 public class ChatService {
     private final McpClient mcpClient;
+    private final ConversationContextBuilder contextBuilder;
+    private final VectorIndexService vectorIndex;
+
+    private static final int RAG_K = 5;
 
     public String handleMessage(String message, String ns, List<String> docs) {
+        return handleMessage(message, ns, docs, null);
+    }
+
+    /** convId non null => la conversation générale reçoit le contexte (résumé + derniers tours). */
+    public String handleMessage(String message, String ns, List<String> docs, Long convId) {
         // Si l’utilisateur a joint des docs => DocQA forcé
         if (docs != null && !docs.isEmpty()) {
-            String rag = mcpClient.docqaAnswer(message, ns, docs);
+            String rag = docqa(message, ns, docs);
             if (rag != null && !rag.isBlank() && !"NO_CONTEXT".equalsIgnoreCase(rag.trim())) {
                 return rag;
             }
         }
         // Sinon, s’il y a déjà des docs ingérés pour ce ns, on tente quand même le RAG
         if (mcpClient.hasDocs(ns)) {
-            String rag = mcpClient.docqaAnswer(message, ns, null);
+            String rag = docqa(message, ns, null);
             if (rag != null && !rag.isBlank() && !"NO_CONTEXT".equalsIgnoreCase(rag.trim())) {
                 return rag;
             }
         }
-        return mcpClient.generalConversation(message);
+        return mcpClient.generalConversation(contextBuilder.buildPrompt(convId, ns, message));
+    }
+
+    /**
+     * Extraits retrouvés dans l'index HNSW local ; s'il n'a rien pour ce namespace (documents ingérés
+     * avant sa mise en place, index désactivé), DocQA fait lui-même la recherche.
+     */
+    private String docqa(String message, String ns, List<String> docs) {
+        List<DocqaDtos.Hit> hits = vectorIndex.search(ns, message, RAG_K, docs);
+        return mcpClient.docqaAnswer(message, ns, docs, hits);
     }
 }
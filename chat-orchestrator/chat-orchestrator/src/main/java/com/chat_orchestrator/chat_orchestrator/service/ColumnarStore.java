@@ -0,0 +1,538 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.chat_orchestrator.chat_orchestrator.dto.SliceRowDTO;
+import com.chat_orchestrator.chat_orchestrator.entity.Message;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.nio.*;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Copie colonnaire en mémoire des messages (optionnelle, {@code app.columnar.enabled}) pour les analyses
+ * interactives : colonnes primitives hors tas (ByteBuffer directs, blocs de 2^16 lignes) — horodatage,
+ * conversation, utilisateur, rôle, longueur — plus une table des conversations (premier / dernier message).
+ * Chargée en tâche de fond au démarrage (archive puis messages chauds), complétée à chaque écriture
+ * après commit ; les suppressions marquent les lignes (horodatage sentinelle) au lieu de les retirer,
+ * en suivant le chaînage des lignes de chaque conversation (pas de balayage complet sous le verrou).
+ * Les requêtes sont des balayages séquentiels sans allocation par ligne (boucles que le JIT vectorise),
+ * agrégés dans des tableaux denses.
+ */
+@Slf4j
+@Component
+public class ColumnarStore {
+
+    public enum GroupBy { HOUR, DAY, USER, ROLE }
+
+    static final String[] ROLES = {"user", "bot", "other"};
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int MASK = CHUNK - 1;
+
+    /** Horodatages : secondes depuis 2000-01-01 (int, jusqu'en 2068) ; sentinelle pour une ligne supprimée. */
+    private static final long EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0).toEpochSecond(ZoneOffset.UTC);
+    private static final int TOMBSTONE = Integer.MIN_VALUE;
+
+    /** Message reçu pendant le chargement : ajouté ensuite s'il n'en faisait pas partie. */
+    private record Event(Long messageId, long convId, long userId, byte role, int length, int ts) {}
+
+    private static final class MsgChunk {
+        final IntBuffer ts = ints();
+        final IntBuffer conv = ints();     // ligne dans la table des conversations
+        final LongBuffer user = longs();
+        final ByteBuffer role = ByteBuffer.allocateDirect(CHUNK);
+        final IntBuffer length = ints();
+        final IntBuffer prev = ints();     // ligne précédente de la même conversation, -1 pour la première
+    }
+
+    private static final class ConvChunk {
+        final LongBuffer id = longs();
+        final LongBuffer user = longs();
+        final IntBuffer first = ints();
+        final IntBuffer last = ints();
+        final IntBuffer lastRow = ints();  // dernière ligne de message : tête du chaînage
+    }
+
+    private final JdbcTemplate jdbc;
+    private final ArchiveService archiveService;
+    private final boolean enabled;
+    private final long maxMessages;
+    private final int loadBatch;
+
+    // écriture sous le verrou de l'instance ; lecture : taille (volatile) puis blocs publiés avant elle
+    private volatile MsgChunk[] msgs = new MsgChunk[0];
+    private volatile int msgCount;
+    private volatile ConvChunk[] convs = new ConvChunk[0];
+    private volatile int convCount;
+    private final LongIntMap convRows = new LongIntMap();
+
+    private List<Event> pending;
+    private Set<Long> pendingDeletes;
+    private long cutoff = Long.MAX_VALUE;
+    private volatile boolean ready;
+
+    private final AtomicBoolean loading = new AtomicBoolean(false);
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "columnar-load");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public ColumnarStore(JdbcTemplate jdbc,
+                         ArchiveService archiveService,
+                         @Value("${app.columnar.enabled:false}") boolean enabled,
+                         @Value("${app.columnar.max-messages:50000000}") long maxMessages,
+                         @Value("${app.columnar.load-batch:50000}") int loadBatch) {
+        this.jdbc = jdbc;
+        this.archiveService = archiveService;
+        this.enabled = enabled;
+        this.maxMessages = Math.min(Integer.MAX_VALUE, Math.max(CHUNK, maxMessages));
+        this.loadBatch = Math.max(1000, loadBatch);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (enabled) requestReload();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public int messageCount() {
+        return msgCount;
+    }
+
+    // ---------- Chemin d'écriture (après commit) ----------
+    /** Entité JPA : l'id (IDENTITY) n'est lu qu'après commit. */
+    public void onMessage(Long convId, Long userId, Message m) {
+        if (!enabled || convId == null) return;
+        TxHooks.afterCommit(() -> record(m.getId(), convId, userId, m.getRole(), m.getContent(), m.getTimestamp()));
+    }
+
+    public void onMessage(Long convId, Long userId, Long messageId, String role, String content, LocalDateTime ts) {
+        if (!enabled || convId == null) return;
+        TxHooks.afterCommit(() -> record(messageId, convId, userId, role, content, ts));
+    }
+
+    private void record(Long messageId, long convId, Long userId, String role, String content, LocalDateTime ts) {
+        Event e = new Event(messageId, convId, userId == null ? 0 : userId, roleCode(role),
+                content == null ? 0 : content.length(), sec(ts == null ? LocalDateTime.now() : ts));
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(e);
+            } else if (ready && (e.messageId() == null || e.messageId() > cutoff)) {
+                append(e.convId(), e.userId(), e.role(), e.length(), e.ts());
+            }
+        }
+    }
+
+    /** Conversations supprimées : leurs lignes sont marquées, les balayages les ignorent. */
+    public void deleted(Collection<Long> convIds) {
+        if (!enabled || convIds.isEmpty()) return;
+        synchronized (this) {
+            if (pendingDeletes != null) {
+                pendingDeletes.addAll(convIds);
+                return;
+            }
+            if (ready) tombstone(convIds);
+        }
+    }
+
+    /** Rôle ramené aux valeurs du magasin (user, bot, other). */
+    static String roleName(String role) {
+        return ROLES[roleCode(role)];
+    }
+
+    private static byte roleCode(String role) {
+        if ("user".equals(role)) return 0;
+        if ("bot".equals(role) || "assistant".equals(role)) return 1;
+        return 2;
+    }
+
+    private static int sec(LocalDateTime ts) {
+        long s = ts.toEpochSecond(ZoneOffset.UTC) - EPOCH;
+        return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE, s));
+    }
+
+    private static LocalDateTime time(long sec) {
+        return LocalDateTime.ofEpochSecond(sec + EPOCH, 0, ZoneOffset.UTC);
+    }
+
+    // ---------- Stockage (appelant : verrou de l'instance) ----------
+    private void append(long convId, long userId, byte role, int length, int ts) {
+        int c = convRows.get(convId);
+        if (c < 0) {
+            c = convCount;
+            if ((c & MASK) == 0 && (c >>> CHUNK_BITS) == convs.length) {
+                ConvChunk[] grown = Arrays.copyOf(convs, convs.length + 1);
+                grown[grown.length - 1] = new ConvChunk();
+                convs = grown;
+            }
+            ConvChunk cc = convs[c >>> CHUNK_BITS];
+            int j = c & MASK;
+            cc.id.put(j, convId);
+            cc.user.put(j, userId);
+            cc.first.put(j, ts);
+            cc.last.put(j, ts);
+            cc.lastRow.put(j, -1);
+            convRows.put(convId, c);
+            convCount = c + 1;
+        } else {
+            ConvChunk cc = convs[c >>> CHUNK_BITS];
+            int j = c & MASK;
+            if (cc.first.get(j) != TOMBSTONE) {
+                if (ts < cc.first.get(j)) cc.first.put(j, ts);
+                if (ts > cc.last.get(j)) cc.last.put(j, ts);
+            }
+        }
+
+        int r = msgCount;
+        if ((r & MASK) == 0 && (r >>> CHUNK_BITS) == msgs.length) {
+            MsgChunk[] grown = Arrays.copyOf(msgs, msgs.length + 1);
+            grown[grown.length - 1] = new MsgChunk();
+            msgs = grown;
+        }
+        MsgChunk mc = msgs[r >>> CHUNK_BITS];
+        int i = r & MASK;
+        mc.ts.put(i, ts);
+        mc.conv.put(i, c);
+        mc.user.put(i, userId);
+        mc.role.put(i, role);
+        mc.length.put(i, length);
+        ConvChunk cc = convs[c >>> CHUNK_BITS];
+        mc.prev.put(i, cc.lastRow.get(c & MASK));
+        cc.lastRow.put(c & MASK, r);
+        msgCount = r + 1;
+    }
+
+    /** Coût proportionnel aux lignes des conversations supprimées (chaînage prev / lastRow). */
+    private void tombstone(Collection<Long> convIds) {
+        MsgChunk[] chunks = msgs;
+        for (Long id : convIds) {
+            int c = convRows.get(id);
+            if (c < 0) continue;
+            ConvChunk cc = convs[c >>> CHUNK_BITS];
+            cc.first.put(c & MASK, TOMBSTONE);
+            for (int r = cc.lastRow.get(c & MASK); r >= 0; ) {
+                MsgChunk mc = chunks[r >>> CHUNK_BITS];
+                mc.ts.put(r & MASK, TOMBSTONE);
+                r = mc.prev.get(r & MASK);
+            }
+        }
+    }
+
+    // ---------- Requêtes ----------
+    /**
+     * Activité horaire sur [from, toNext) : messages par heure, conversations par heure de leur premier
+     * message et somme de leurs durées (mêmes définitions que les agrégats).
+     */
+    public List<AnalyticsService.Hour> hourly(LocalDateTime from, LocalDateTime toNext, Long uid) {
+        int lo = sec(from);
+        int hi = sec(toNext);
+        int hours = Math.max(0, (int) (((long) hi - lo + 3599) / 3600));
+        long[] messages = new long[hours];
+        long[] started = new long[hours];
+        double[] duration = new double[hours];
+
+        int n = msgCount;
+        MsgChunk[] mc = msgs;
+        for (int k = 0; k * CHUNK < n; k++) {
+            MsgChunk c = mc[k];
+            int rows = Math.min(CHUNK, n - k * CHUNK);
+            IntBuffer ts = c.ts;
+            if (uid == null) {
+                for (int i = 0; i < rows; i++) {
+                    int t = ts.get(i);
+                    if (t >= lo && t < hi) messages[(t - lo) / 3600]++;
+                }
+            } else {
+                long u = uid;
+                LongBuffer user = c.user;
+                for (int i = 0; i < rows; i++) {
+                    int t = ts.get(i);
+                    if (t >= lo && t < hi && user.get(i) == u) messages[(t - lo) / 3600]++;
+                }
+            }
+        }
+
+        int m = convCount;
+        ConvChunk[] cc = convs;
+        for (int k = 0; k * CHUNK < m; k++) {
+            ConvChunk c = cc[k];
+            int rows = Math.min(CHUNK, m - k * CHUNK);
+            for (int i = 0; i < rows; i++) {
+                int f = c.first.get(i);
+                if (f < lo || f >= hi || (uid != null && c.user.get(i) != uid)) continue;
+                int h = (f - lo) / 3600;
+                started[h]++;
+                duration[h] += c.last.get(i) - f;
+            }
+        }
+
+        List<AnalyticsService.Hour> out = new ArrayList<>();
+        for (int h = 0; h < hours; h++) {
+            if (messages[h] == 0 && started[h] == 0) continue;
+            out.add(new AnalyticsService.Hour(time((long) lo + h * 3600L), messages[h], started[h], duration[h]));
+        }
+        return out;
+    }
+
+    /**
+     * Découpage libre de [from, to] (jours) : nombre de messages et de caractères par heure, jour,
+     * utilisateur ou rôle, filtres optionnels sur l'utilisateur et le rôle. Par utilisateur : les
+     * {@code limit} plus actifs ; sinon dans l'ordre des clés.
+     */
+    public List<SliceRowDTO> slice(LocalDate from, LocalDate to, GroupBy by, Long uid, String role, int limit) {
+        int lo = sec(from.atStartOfDay());
+        int hi = sec(to.plusDays(1).atStartOfDay());
+        int width = by == GroupBy.HOUR ? 3600 : 86400;
+        int slots = switch (by) {
+            case HOUR, DAY -> Math.max(0, (int) (((long) hi - lo + width - 1) / width));
+            case ROLE -> ROLES.length;
+            case USER -> 0;
+        };
+        long[] count = new long[slots];
+        long[] chars = new long[slots];
+        Map<Long, long[]> perUser = by == GroupBy.USER ? new HashMap<>() : null;
+        int roleFilter = role == null ? -1 : roleCode(role);
+
+        int n = msgCount;
+        MsgChunk[] mc = msgs;
+        for (int k = 0; k * CHUNK < n; k++) {
+            MsgChunk c = mc[k];
+            int rows = Math.min(CHUNK, n - k * CHUNK);
+            for (int i = 0; i < rows; i++) {
+                int t = c.ts.get(i);
+                if (t < lo || t >= hi) continue;
+                if (uid != null && c.user.get(i) != uid) continue;
+                byte r = c.role.get(i);
+                if (roleFilter >= 0 && r != roleFilter) continue;
+                int len = c.length.get(i);
+                switch (by) {
+                    case HOUR, DAY -> {
+                        int s = (t - lo) / width;
+                        count[s]++;
+                        chars[s] += len;
+                    }
+                    case ROLE -> {
+                        count[r]++;
+                        chars[r] += len;
+                    }
+                    case USER -> {
+                        long[] acc = perUser.computeIfAbsent(c.user.get(i), x -> new long[2]);
+                        acc[0]++;
+                        acc[1] += len;
+                    }
+                }
+            }
+        }
+
+        List<SliceRowDTO> out = new ArrayList<>();
+        switch (by) {
+            case HOUR -> {
+                for (int s = 0; s < slots; s++) {
+                    if (count[s] > 0) out.add(new SliceRowDTO(time((long) lo + s * 3600L).toString(), count[s], chars[s]));
+                }
+            }
+            case DAY -> {
+                for (int s = 0; s < slots; s++) {
+                    if (count[s] > 0) out.add(new SliceRowDTO(from.plusDays(s).toString(), count[s], chars[s]));
+                }
+            }
+            case ROLE -> {
+                for (int s = 0; s < slots; s++) {
+                    if (count[s] > 0) out.add(new SliceRowDTO(ROLES[s], count[s], chars[s]));
+                }
+            }
+            case USER -> perUser.entrySet().stream()
+                    .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                    .limit(Math.max(1, limit))
+                    .forEach(e -> out.add(new SliceRowDTO(String.valueOf(e.getKey()), e.getValue()[0], e.getValue()[1])));
+        }
+        return out;
+    }
+
+    // ---------- Chargement ----------
+    /** Rechargement complet en tâche de fond ; false s'il est déjà en cours ou si le magasin est désactivé. */
+    public boolean requestReload() {
+        if (!enabled || !loading.compareAndSet(false, true)) return false;
+        synchronized (this) {
+            ready = false;
+            if (pending == null) pending = new ArrayList<>();
+            if (pendingDeletes == null) pendingDeletes = new HashSet<>();
+        }
+        worker.submit(this::load);
+        return true;
+    }
+
+    private void load() {
+        long t0 = System.currentTimeMillis();
+        try {
+            Long maxId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM message", Long.class);
+            long upTo = maxId == null ? 0 : maxId;
+            synchronized (this) {
+                cutoff = upTo;
+                msgs = new MsgChunk[0];
+                msgCount = 0;
+                convs = new ConvChunk[0];
+                convCount = 0;
+                convRows.clear();
+            }
+
+            // archive d'abord : une conversation archivée pendant la passe chaude ne peut pas être comptée deux fois
+            List<long[]> archived = jdbc.query("""
+                    SELECT a.conversation_id, COALESCE(c.user_id, 0)
+                    FROM conversation_archive a JOIN conversation c ON c.id = a.conversation_id
+                    """, (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)});
+            for (long[] a : archived) {
+                List<MessageDto> history = archiveService.archivedMessages(a[0]);
+                synchronized (this) {
+                    for (MessageDto m : history) {
+                        append(a[0], a[1], roleCode(m.getRole()),
+                                m.getContent() == null ? 0 : m.getContent().length(),
+                                sec(m.getTimestamp() == null ? LocalDateTime.now() : m.getTimestamp()));
+                    }
+                }
+                checkCapacity();
+            }
+
+            long after = 0;
+            while (true) {
+                long[] last = {after};
+                int[] rows = {0};
+                List<Object[]> batch = new ArrayList<>(loadBatch);
+                jdbc.query("""
+                        SELECT m.id, m.conversation_id, COALESCE(c.user_id, 0), m.role,
+                               COALESCE(char_length(m.content), 0), m."timestamp"
+                        FROM message m JOIN conversation c ON c.id = m.conversation_id
+                        WHERE m.id > ? AND m.id <= ?
+                        ORDER BY m.id
+                        LIMIT ?
+                        """, rs -> {
+                    last[0] = rs.getLong(1);
+                    rows[0]++;
+                    Timestamp ts = rs.getTimestamp(6);
+                    batch.add(new Object[]{rs.getLong(2), rs.getLong(3), roleCode(rs.getString(4)), rs.getInt(5),
+                            sec(ts == null ? LocalDateTime.now() : ts.toLocalDateTime())});
+                }, after, upTo, loadBatch);
+                synchronized (this) {
+                    for (Object[] b : batch) append((Long) b[0], (Long) b[1], (Byte) b[2], (Integer) b[3], (Integer) b[4]);
+                }
+                checkCapacity();
+                if (rows[0] == 0) break;
+                after = last[0];
+            }
+
+            synchronized (this) {
+                for (Event e : pending) {
+                    if (e.messageId() == null || e.messageId() > cutoff) {
+                        append(e.convId(), e.userId(), e.role(), e.length(), e.ts());
+                    }
+                }
+                pending = null;
+                tombstone(pendingDeletes);
+                pendingDeletes = null;
+                ready = true;
+            }
+            log.info("[COLUMNAR] {} messages, {} conversations chargés en {} ms", msgCount, convCount,
+                    System.currentTimeMillis() - t0);
+        } catch (Exception e) {
+            log.warn("[COLUMNAR] chargement abandonné", e);
+            synchronized (this) {
+                pending = null;
+                pendingDeletes = null;
+                msgs = new MsgChunk[0];
+                msgCount = 0;
+                convs = new ConvChunk[0];
+                convCount = 0;
+                convRows.clear();
+            }
+        } finally {
+            loading.set(false);
+        }
+    }
+
+    private void checkCapacity() {
+        if (msgCount > maxMessages) {
+            throw new IllegalStateException("plus de " + maxMessages + " messages (app.columnar.max-messages)");
+        }
+    }
+
+    private static IntBuffer ints() {
+        return ByteBuffer.allocateDirect(CHUNK * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+
+    private static LongBuffer longs() {
+        return ByteBuffer.allocateDirect(CHUNK * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /** Table de hachage long → int à adressage ouvert (id de conversation → ligne), sans objet par entrée. */
+    private static final class LongIntMap {
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private boolean[] used = new boolean[1024];
+        private int size;
+
+        int get(long key) {
+            int mask = keys.length - 1;
+            for (int i = slot(key, mask); used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key) return values[i];
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) grow();
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (used[i] && keys[i] != key) i = (i + 1) & mask;
+            if (!used[i]) size++;
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        void clear() {
+            keys = new long[1024];
+            values = new int[1024];
+            used = new boolean[1024];
+            size = 0;
+        }
+
+        private void grow() {
+            long[] k = keys;
+            int[] v = values;
+            boolean[] u = used;
+            keys = new long[k.length * 2];
+            values = new int[k.length * 2];
+            used = new boolean[k.length * 2];
+            size = 0;
+            for (int i = 0; i < k.length; i++) if (u[i]) put(k[i], v[i]);
+        }
+
+        private static int slot(long key, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.chat_orchestrator.chat_orchestrator.repository.ConversationRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Construit le contexte envoyé au LLM : résumé glissant des anciens tours + derniers tours
+ * dans un budget de tokens. Le résumé est mis en cache par conversation et recalculé en
+ * tâche de fond seulement quand assez de nouveaux tours sont sortis de la fenêtre récente ;
+ * d'ici là, ces tours sont repris abrégés dans le budget restant.
+ */
+@Service
+public class ConversationContextBuilder {
+
+    /** résumé couvrant les messages [0, covered) de la conversation */
+    public record RollingSummary(String text, int covered) {}
+
+    /** longueur gardée d'un tour sorti de la fenêtre mais pas encore résumé */
+    private static final int PENDING_TURN_CHARS = 200;
+
+    private final KnowledgeService knowledgeService;
+    private final ConversationRepository conversationRepository;
+    private final McpClient mcpClient;
+
+    private final int maxTurns;
+    private final int tokenBudget;
+    private final int summarizeEvery;
+    private final int summaryMaxChars;
+    private final int summaryCacheSize;
+
+    private final Map<Long, RollingSummary> summaries;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor summarizer = new ThreadPoolExecutor(
+            1, 2, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(64),
+            r -> { Thread t = new Thread(r, "ctx-summarizer"); t.setDaemon(true); return t; },
+            new ThreadPoolExecutor.DiscardPolicy());
+
+    public ConversationContextBuilder(KnowledgeService knowledgeService,
+                                      ConversationRepository conversationRepository,
+                                      McpClient mcpClient,
+                                      @Value("${app.chat.context.max-turns:12}") int maxTurns,
+                                      @Value("${app.chat.context.token-budget:1500}") int tokenBudget,
+                                      @Value("${app.chat.context.summarize-every:6}") int summarizeEvery,
+                                      @Value("${app.chat.context.summary-max-chars:1200}") int summaryMaxChars,
+                                      @Value("${app.chat.context.summary-cache-size:10000}") int summaryCacheSize) {
+        this.knowledgeService = knowledgeService;
+        this.conversationRepository = conversationRepository;
+        this.mcpClient = mcpClient;
+        this.maxTurns = maxTurns;
+        this.tokenBudget = tokenBudget;
+        this.summarizeEvery = summarizeEvery;
+        this.summaryMaxChars = summaryMaxChars;
+        this.summaryCacheSize = summaryCacheSize;
+        this.summaries = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<Long, RollingSummary> eldest) {
+                return size() > ConversationContextBuilder.this.summaryCacheSize;
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        summarizer.shutdownNow();
+    }
+
+    /**
+     * Prompt à envoyer pour ce tour. Sans conversation (ou si elle n'appartient pas à {@code ns}),
+     * on renvoie le message tel quel.
+     */
+    public String buildPrompt(Long convId, String ns, String message) {
+        if (convId == null || !isOwnedBy(convId, ns)) return message;
+
+        List<MessageDto> history = knowledgeService.getHistory(convId);
+        if (history.isEmpty()) return message;
+
+        // 1) derniers tours, du plus récent au plus ancien, dans le budget
+        int budget = tokenBudget - estimateTokens(message);
+        int start = history.size();
+        Deque<String> recent = new ArrayDeque<>();
+        while (start > 0 && recent.size() < maxTurns) {
+            MessageDto m = history.get(start - 1);
+            String line = speaker(m) + " : " + nullToEmpty(m.getContent());
+            int cost = estimateTokens(line);
+            if (cost > budget) {
+                if (recent.isEmpty() && budget > 32) {
+                    recent.addFirst(line.substring(0, Math.min(line.length(), budget * 4)) + "…");
+                    start--;
+                }
+                break;
+            }
+            budget -= cost;
+            recent.addFirst(line);
+            start--;
+        }
+
+        // 2) résumé des tours sortis de la fenêtre (recalcul async si assez de retard)
+        RollingSummary summary = summaries.get(convId);
+        int covered = summary == null ? 0 : summary.covered();
+        if (start - covered >= summarizeEvery) {
+            scheduleSummary(convId, summary, history.subList(covered, start), start);
+        }
+
+        // 3) tours [covered, start) pas encore dans le résumé : repris abrégés tant que le budget le permet
+        int from = start;
+        while (from > covered) {
+            MessageDto m = history.get(from - 1);
+            String line = speaker(m) + " : " + truncate(nullToEmpty(m.getContent()), PENDING_TURN_CHARS);
+            int cost = estimateTokens(line);
+            if (cost > budget) break;
+            budget -= cost;
+            recent.addFirst(line);
+            from--;
+        }
+        if (from > covered) recent.addFirst("(…)");
+
+        StringBuilder sb = new StringBuilder();
+        if (summary != null && !summary.text().isBlank()) {
+            sb.append("Résumé de la conversation jusqu'ici :\n").append(summary.text()).append("\n\n");
+        }
+        if (!recent.isEmpty()) {
+            sb.append("Derniers échanges :\n");
+            recent.forEach(l -> sb.append(l).append('\n'));
+            sb.append('\n');
+        }
+        sb.append("Message actuel de l'utilisateur :\n").append(message);
+        return sb.toString();
+    }
+
+    public Optional<RollingSummary> summaryOf(Long convId) {
+        return Optional.ofNullable(summaries.get(convId));
+    }
+
+    public void forget(Long convId) {
+        summaries.remove(convId);
+    }
+
+    // ---------- Résumé glissant ----------
+    private void scheduleSummary(Long convId, RollingSummary previous, List<MessageDto> fresh, int upTo) {
+        if (!inFlight.add(convId)) return;
+        List<MessageDto> batch = List.copyOf(fresh); // la sous-liste ne doit pas survivre à la requête
+        try {
+            summarizer.execute(() -> {
+                try {
+                    String text = summarize(previous == null ? "" : previous.text(), batch);
+                    summaries.merge(convId, new RollingSummary(text, upTo),
+                            (old, neu) -> old.covered() >= neu.covered() ? old : neu);
+                } finally {
+                    inFlight.remove(convId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(convId);
+        }
+    }
+
+    private String summarize(String previous, List<MessageDto> batch) {
+        StringBuilder prompt = new StringBuilder()
+                .append("Mets à jour le résumé d'une conversation entre un utilisateur et un assistant. ")
+                .append("Garde les faits, décisions et demandes importants, en ")
+                .append(summaryMaxChars).append(" caractères maximum. Réponds uniquement par le résumé.\n\n");
+        if (!previous.isBlank()) prompt.append("Résumé actuel :\n").append(previous).append("\n\n");
+        prompt.append("Nouveaux échanges :\n");
+        for (MessageDto m : batch) {
+            prompt.append(speaker(m)).append(" : ").append(truncate(nullToEmpty(m.getContent()), 500)).append('\n');
+        }
+
+        String reply = mcpClient.generalConversation(prompt.toString());
+        if (reply == null || reply.isBlank() || reply.startsWith("Erreur") || reply.startsWith("Le moteur IA")) {
+            return extractiveFallback(previous, batch);
+        }
+        return truncate(reply.trim(), summaryMaxChars);
+    }
+
+    /** Sans LLM : on garde le début de chaque question de l'utilisateur. */
+    private String extractiveFallback(String previous, List<MessageDto> batch) {
+        StringBuilder sb = new StringBuilder(previous);
+        for (MessageDto m : batch) {
+            if (!"user".equals(m.getRole())) continue;
+            if (sb.length() > 0) sb.append(' ');
+            sb.append("L'utilisateur a demandé : ").append(truncate(nullToEmpty(m.getContent()), 120)).append('.');
+        }
+        // on garde la fin (le plus récent) si ça déborde
+        return sb.length() <= summaryMaxChars ? sb.toString() : "…" + sb.substring(sb.length() - summaryMaxChars);
+    }
+
+    // ---------- Utilitaires ----------
+    private boolean isOwnedBy(Long convId, String ns) {
+        return conversationRepository.findOwnerEmailById(convId)
+                .map(email -> email.equals(ns))
+                .orElse(false);
+    }
+
+    private static String speaker(MessageDto m) {
+        return "user".equals(m.getRole()) ? "Utilisateur" : "Assistant";
+    }
+
+    /** Approximation grossière (≈ 4 caractères par token), suffisante pour borner la taille. */
+    private static int estimateTokens(String s) {
+        return s == null ? 0 : (s.length() + 3) / 4;
+    }
+
+    private static String truncate(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max) + "…";
+    }
+
+    private static String nullToEmpty(String s) {
+        return s == null ? "" : s;
+    }
+}
@@ -0,0 +1,205 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * Export des conversations d'un utilisateur en flux : curseur JDBC forward-only (fetch size)
+ * dans une transaction en lecture seule, lignes écrites directement dans la réponse HTTP.
+ * Mémoire constante quel que soit le volume du compte.
+ */
+@Service
+public class ConversationExportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private final JdbcTemplate cursorJdbc;
+    private final TransactionTemplate readOnlyTx;
+    private final ArchiveService archiveService;
+    private final ObjectMapper objectMapper;
+
+    public ConversationExportService(DataSource dataSource,
+                                     PlatformTransactionManager transactionManager,
+                                     ArchiveService archiveService,
+                                     ObjectMapper objectMapper,
+                                     @Value("${app.export.fetch-size:500}") int fetchSize) {
+        // PostgreSQL n'utilise un vrai curseur qu'avec autocommit=false + fetchSize > 0
+        this.cursorJdbc = new JdbcTemplate(dataSource);
+        this.cursorJdbc.setFetchSize(fetchSize);
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.archiveService = archiveService;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param withMessages CSV seulement : une ligne par message au lieu d'une ligne par conversation
+     *                     (le NDJSON contient toujours les messages complets)
+     */
+    public void export(Long userId, Format format, boolean withMessages, OutputStream out) throws IOException {
+        try {
+            readOnlyTx.executeWithoutResult(s -> {
+                try {
+                    if (format == Format.NDJSON) exportNdjson(userId, out);
+                    else if (withMessages) exportCsvMessages(userId, out);
+                    else exportCsvSummary(userId, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // ---------- CSV : une ligne par conversation (compte agrégé, sans N+1) ----------
+    private void exportCsvSummary(Long userId, OutputStream os) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        w.write("conversation_id;title;created_at;messages_count\n");
+        cursorJdbc.query("""
+                SELECT c.id, c.title, c.created_at,
+                       (SELECT COUNT(*) FROM message m WHERE m.conversation_id = c.id)
+                       + COALESCE(a.message_count, 0) AS cnt
+                FROM conversation c
+                LEFT JOIN conversation_archive a ON a.conversation_id = c.id
+                WHERE c.user_id = ?
+                ORDER BY c.created_at DESC, c.id
+                """, rs -> {
+            try {
+                w.write(rs.getLong(1) + ";" + csv(rs.getString(2)) + ";" + instant(rs.getTimestamp(3))
+                        + ";" + rs.getLong(4) + "\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, userId);
+        w.flush();
+    }
+
+    // ---------- CSV : une ligne par message ----------
+    private void exportCsvMessages(Long userId, OutputStream os) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8));
+        w.write("conversation_id;title;created_at;role;timestamp;content\n");
+        streamConversations(userId, new ConversationVisitor() {
+            String prefix;
+            @Override public void begin(long id, String title, Timestamp createdAt) {
+                prefix = id + ";" + csv(title) + ";" + instant(createdAt) + ";";
+            }
+            @Override public void message(String role, String content, Object ts) throws IOException {
+                w.write(prefix + csv(role) + ";" + (ts == null ? "" : ts) + ";" + csv(content) + "\n");
+            }
+            @Override public void end() {}
+        });
+        w.flush();
+    }
+
+    // ---------- NDJSON : une conversation complète par ligne ----------
+    private void exportNdjson(Long userId, OutputStream os) throws IOException {
+        JsonGenerator g = objectMapper.getFactory().createGenerator(new NonClosingOutputStream(os), JsonEncoding.UTF8);
+        g.setRootValueSeparator(null);
+        streamConversations(userId, new ConversationVisitor() {
+            @Override public void begin(long id, String title, Timestamp createdAt) throws IOException {
+                g.writeStartObject();
+                g.writeNumberField("id", id);
+                g.writeStringField("title", title);
+                g.writeStringField("createdAt", instant(createdAt));
+                g.writeArrayFieldStart("messages");
+            }
+            @Override public void message(String role, String content, Object ts) throws IOException {
+                g.writeStartObject();
+                g.writeStringField("role", role);
+                g.writeStringField("content", content);
+                g.writeStringField("timestamp", ts == null ? null : ts.toString());
+                g.writeEndObject();
+            }
+            @Override public void end() throws IOException {
+                g.writeEndArray();
+                g.writeEndObject();
+                g.flush();
+                os.write('\n');
+            }
+        });
+        g.close();
+    }
+
+    private interface ConversationVisitor {
+        void begin(long id, String title, Timestamp createdAt) throws IOException;
+        void message(String role, String content, Object ts) throws IOException;
+        void end() throws IOException;
+    }
+
+    /**
+     * Parcourt conversation ⟕ message trié par conversation puis par horodatage ;
+     * les messages archivés (bloc compressé) sont émis avant les messages chauds.
+     */
+    private void streamConversations(Long userId, ConversationVisitor v) {
+        long[] current = {Long.MIN_VALUE};
+        cursorJdbc.query("""
+                SELECT c.id, c.title, c.created_at, (a.conversation_id IS NOT NULL) AS archived,
+                       m.id AS mid, m.role, m.content, m."timestamp"
+                FROM conversation c
+                LEFT JOIN conversation_archive a ON a.conversation_id = c.id
+                LEFT JOIN message m ON m.conversation_id = c.id
+                WHERE c.user_id = ?
+                ORDER BY c.created_at DESC, c.id, m."timestamp", m.id
+                """, rs -> {
+            try {
+                long convId = rs.getLong(1);
+                if (convId != current[0]) {
+                    if (current[0] != Long.MIN_VALUE) v.end();
+                    current[0] = convId;
+                    v.begin(convId, rs.getString(2), rs.getTimestamp(3));
+                    if (rs.getBoolean(4)) {
+                        for (MessageDto m : archiveService.archivedMessages(convId)) {
+                            v.message(m.getRole(), m.getContent(), m.getTimestamp());
+                        }
+                    }
+                }
+                rs.getLong(5);
+                if (!rs.wasNull()) {
+                    Timestamp ts = rs.getTimestamp(8);
+                    v.message(rs.getString(6), rs.getString(7), ts == null ? null : ts.toLocalDateTime());
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, userId);
+        if (current[0] != Long.MIN_VALUE) {
+            try {
+                v.end();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    // ---------- Utilitaires ----------
+    private static String instant(Timestamp t) {
+        return t == null ? "" : t.toInstant().toString();
+    }
+
+    /** Champ CSV ; guillemets si séparateur, guillemet ou retour à la ligne. */
+    private static String csv(String s) {
+        if (s == null) return "";
+        if (s.indexOf(';') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    /** Le générateur JSON ne doit pas fermer le flux de la réponse. */
+    private static final class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) { super(out); }
+        @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+        @Override public void close() throws IOException { flush(); }
+    }
+}
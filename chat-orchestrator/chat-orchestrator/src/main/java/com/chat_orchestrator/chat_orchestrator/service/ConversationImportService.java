@@ -0,0 +1,243 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.ImportJobDTO;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Import en masse de conversations au format NDJSON (une conversation par ligne, même format que
+ * l'export). Le flux est lu au fil de l'eau ; les ids sont pré-alloués sur les séquences des colonnes
+ * IDENTITY, ce qui permet des INSERT en batch JDBC, une transaction par lot.
+ */
+@Service
+public class ConversationImportService {
+
+    /** Ligne NDJSON attendue. */
+    public record ImportConversation(String title, Instant createdAt, List<ImportMessage> messages) {}
+    public record ImportMessage(String role, String content, LocalDateTime timestamp) {}
+
+    private static final int MAX_JOBS = 100;
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+    private final TitleSuggestIndex suggestIndex;
+    private final KnowledgeStats knowledgeStats;
+    private final ActivityLeaderboards leaderboards;
+    private final ActivityRollupService rollups;
+    private final KeywordIndex keywordIndex;
+    private final ActiveUserSketches activeUsers;
+    private final ActivityBitmaps activityBitmaps;
+    private final ColumnarStore columnar;
+    private final int batchMessages;
+    private final int batchConversations;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public ConversationImportService(JdbcTemplate jdbc,
+                                     PlatformTransactionManager transactionManager,
+                                     ObjectMapper objectMapper,
+                                     TitleSuggestIndex suggestIndex,
+                                     KnowledgeStats knowledgeStats,
+                                     ActivityLeaderboards leaderboards,
+                                     ActivityRollupService rollups,
+                                     KeywordIndex keywordIndex,
+                                     ActiveUserSketches activeUsers,
+                                     ActivityBitmaps activityBitmaps,
+                                     ColumnarStore columnar,
+                                     @Value("${app.import.batch-messages:5000}") int batchMessages,
+                                     @Value("${app.import.batch-conversations:500}") int batchConversations) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.suggestIndex = suggestIndex;
+        this.knowledgeStats = knowledgeStats;
+        this.leaderboards = leaderboards;
+        this.rollups = rollups;
+        this.keywordIndex = keywordIndex;
+        this.activeUsers = activeUsers;
+        this.activityBitmaps = activityBitmaps;
+        this.columnar = columnar;
+        this.batchMessages = batchMessages;
+        this.batchConversations = batchConversations;
+    }
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final Long userId;
+        volatile String status = "RUNNING";
+        final AtomicLong conversations = new AtomicLong();
+        final AtomicLong messages = new AtomicLong();
+        final AtomicLong batches = new AtomicLong();
+        final Instant startedAt = Instant.now();
+        volatile Instant finishedAt;
+        volatile String error;
+
+        Job(Long userId) { this.userId = userId; }
+
+        ImportJobDTO toDto() {
+            return new ImportJobDTO(id, userId, status, conversations.get(), messages.get(), batches.get(),
+                    startedAt, finishedAt, error);
+        }
+    }
+
+    public Optional<ImportJobDTO> get(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::toDto);
+    }
+
+    public List<ImportJobDTO> list() {
+        return jobs.values().stream()
+                .map(Job::toDto)
+                .sorted(Comparator.comparing(ImportJobDTO::startedAt).reversed())
+                .toList();
+    }
+
+    /**
+     * Lit le flux jusqu'au bout dans le thread appelant ; l'avancement est visible via {@link #list()}
+     * pendant l'import. Les lots déjà commités restent en base si une ligne est invalide.
+     */
+    public ImportJobDTO importNdjson(Long userId, InputStream in) {
+        pruneFinished();
+        Job job = new Job(userId);
+        jobs.put(job.id, job);
+
+        List<ImportConversation> batch = new ArrayList<>();
+        int batchMsgCount = 0;
+        long line = 0;
+        try (MappingIterator<ImportConversation> it = objectMapper
+                .readerFor(ImportConversation.class)
+                .readValues(in)) {
+            while (it.hasNextValue()) {
+                ImportConversation c = it.nextValue();
+                line++;
+                batch.add(c);
+                batchMsgCount += c.messages() == null ? 0 : c.messages().size();
+                if (batchMsgCount >= batchMessages || batch.size() >= batchConversations) {
+                    flush(job, batch);
+                    batch.clear();
+                    batchMsgCount = 0;
+                }
+            }
+            if (!batch.isEmpty()) flush(job, batch);
+            job.status = "DONE";
+        } catch (IOException | RuntimeException e) {
+            job.status = "FAILED";
+            job.error = "Ligne ~" + (line + 1) + " : " + e.getMessage();
+        } finally {
+            job.finishedAt = Instant.now();
+            suggestIndex.evictUser(userId);
+        }
+        return job.toDto();
+    }
+
+    private void flush(Job job, List<ImportConversation> batch) {
+        List<ImportMessage> allMsgs = new ArrayList<>();
+        List<Long> msgConv = new ArrayList<>();
+        List<String> msgTitle = new ArrayList<>();
+        List<Long> msgIdsOut = new ArrayList<>();
+        List<Long> convIdsOut = new ArrayList<>();
+
+        rollups.importing(convIdsOut, () -> tx.executeWithoutResult(s -> {
+            List<Long> convIds = allocateIds("conversation", batch.size());
+            convIdsOut.addAll(convIds);
+            for (int i = 0; i < batch.size(); i++) {
+                List<ImportMessage> ms = batch.get(i).messages();
+                if (ms == null) continue;
+                for (ImportMessage m : ms) {
+                    allMsgs.add(m);
+                    msgConv.add(convIds.get(i));
+                    msgTitle.add(title(batch.get(i)));
+                }
+            }
+            List<Long> msgIds = allocateIds("message", allMsgs.size());
+            msgIdsOut.addAll(msgIds);
+
+            Timestamp now = Timestamp.from(Instant.now());
+            int[] cIdx = {0};
+            jdbc.batchUpdate("INSERT INTO conversation (id, title, created_at, user_id) VALUES (?, ?, ?, ?)",
+                    batch, batch.size(), (ps, c) -> {
+                        ps.setLong(1, convIds.get(cIdx[0]++));
+                        ps.setString(2, title(c));
+                        ps.setTimestamp(3, c.createdAt() == null ? now : Timestamp.from(c.createdAt()));
+                        ps.setLong(4, job.userId);
+                    });
+
+            LocalDateTime nowLdt = LocalDateTime.now();
+            int[] mIdx = {0};
+            jdbc.batchUpdate("INSERT INTO message (id, role, content, \"timestamp\", conversation_id) VALUES (?, ?, ?, ?, ?)",
+                    allMsgs, 1000, (ps, m) -> {
+                        int i = mIdx[0]++;
+                        ps.setLong(1, msgIds.get(i));
+                        ps.setString(2, m.role() == null ? "user" : m.role());
+                        ps.setString(3, m.content());
+                        ps.setTimestamp(4, Timestamp.valueOf(m.timestamp() == null ? nowLdt : m.timestamp()));
+                        ps.setLong(5, msgConv.get(i));
+                    });
+        }));
+
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < batch.size(); i++) {
+            Instant created = batch.get(i).createdAt();
+            leaderboards.onImportedConversation(convIdsOut.get(i), job.userId,
+                    created == null ? now : Timestamp.from(created).toLocalDateTime());
+        }
+        for (int i = 0; i < allMsgs.size(); i++) {
+            ImportMessage m = allMsgs.get(i);
+            LocalDateTime ts = m.timestamp() == null ? now : m.timestamp();
+            knowledgeStats.onMessage(msgConv.get(i), msgTitle.get(i), msgIdsOut.get(i), m.content(), ts);
+            leaderboards.onMessage(msgConv.get(i), job.userId, msgIdsOut.get(i), ts);
+            keywordIndex.onMessage(job.userId, msgIdsOut.get(i), m.content(), ts);
+            activeUsers.onActivity(job.userId, ts);
+            activityBitmaps.onActivity(job.userId, ts);
+            columnar.onMessage(msgConv.get(i), job.userId, msgIdsOut.get(i), m.role(), m.content(), ts);
+        }
+
+        job.conversations.addAndGet(batch.size());
+        job.messages.addAndGet(allMsgs.size());
+        job.batches.incrementAndGet();
+    }
+
+    /** Réserve n valeurs sur la séquence de la colonne IDENTITY (un seul aller-retour). */
+    private List<Long> allocateIds(String table, int n) {
+        if (n == 0) return List.of();
+        return jdbc.queryForList(
+                "SELECT nextval(pg_get_serial_sequence(?, 'id')) FROM generate_series(1, ?)",
+                Long.class, table, n);
+    }
+
+    private static String title(ImportConversation c) {
+        if (c.title() != null && !c.title().isBlank()) return c.title();
+        if (c.messages() != null) {
+            for (ImportMessage m : c.messages()) {
+                if ("user".equals(m.role()) && m.content() != null && !m.content().isBlank()) {
+                    String t = m.content();
+                    return t.length() > 30 ? t.substring(0, 30) + "…" : t;
+                }
+            }
+        }
+        return "Nouvelle conversation";
+    }
+
+    private void pruneFinished() {
+        if (jobs.size() <= MAX_JOBS) return;
+        jobs.values().stream()
+                .filter(j -> j.finishedAt != null)
+                .sorted(Comparator.comparing(j -> j.finishedAt))
+                .limit(jobs.size() - MAX_JOBS)
+                .forEach(j -> jobs.remove(j.id));
+    }
+}
@@ -1,5 +1,7 @@
 package com.chat_orchestrator.chat_orchestrator.service;
 
+import com.chat_orchestrator.chat_orchestrator.dto.ConversationSuggestionDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.DeletionJobDTO;
 import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
 import com.chat_orchestrator.chat_orchestrator.entity.Conversation;
 import com.chat_orchestrator.chat_orchestrator.entity.Message;
@@ -13,19 +15,51 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Service
 public class ConversationService {
 
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
+    private final TranscriptCache transcriptCache;
+    private final BulkDeletionService bulkDeletionService;
+    private final ArchiveService archiveService;
+    private final TitleSuggestIndex suggestIndex;
+    private final KnowledgeStats knowledgeStats;
+    private final ActivityLeaderboards leaderboards;
+    private final KeywordIndex keywordIndex;
+    private final ActiveUserSketches activeUsers;
+    private final ActivityBitmaps activityBitmaps;
+    private final LiveMetrics liveMetrics;
+    private final ColumnarStore columnar;
 
     public ConversationService(
             ConversationRepository conversationRepository,
-            MessageRepository messageRepository) {
+            MessageRepository messageRepository,
+            TranscriptCache transcriptCache,
+            BulkDeletionService bulkDeletionService,
+            ArchiveService archiveService,
+            TitleSuggestIndex suggestIndex,
+            KnowledgeStats knowledgeStats,
+            ActivityLeaderboards leaderboards,
+            KeywordIndex keywordIndex,
+            ActiveUserSketches activeUsers,
+            ActivityBitmaps activityBitmaps,
+            LiveMetrics liveMetrics,
+            ColumnarStore columnar) {
         this.conversationRepository = conversationRepository;
         this.messageRepository = messageRepository;
+        this.transcriptCache = transcriptCache;
+        this.bulkDeletionService = bulkDeletionService;
+        this.archiveService = archiveService;
+        this.suggestIndex = suggestIndex;
+        this.knowledgeStats = knowledgeStats;
+        this.leaderboards = leaderboards;
+        this.keywordIndex = keywordIndex;
+        this.activeUsers = activeUsers;
+        this.activityBitmaps = activityBitmaps;
+        this.liveMetrics = liveMetrics;
+        this.columnar = columnar;
     }
 
     // ---------- Helpers sécurité ----------
@@ -52,7 +86,16 @@ public class ConversationService {
             conv.addMessage(new Message("bot", botReply));
         }
 
-        return conversationRepository.save(conv);
+        Conversation saved = conversationRepository.save(conv);
+        liveMetrics.conversationCreated();
+        saved.getMessages().forEach(m -> {
+            knowledgeStats.onMessage(saved.getId(), saved.getTitle(), m);
+            leaderboards.onMessage(saved.getId(), null, m);
+            keywordIndex.onMessage(null, m);
+            columnar.onMessage(saved.getId(), null, m);
+            liveMetrics.messageSaved();
+        });
+        return saved;
     }
 
     // ---------- Version avec propriétaire ----------
@@ -69,7 +112,20 @@ public class ConversationService {
             conv.addMessage(new Message("bot", botReply));
         }
 
-        return conversationRepository.save(conv);
+        Conversation saved = conversationRepository.save(conv);
+        liveMetrics.conversationCreated();
+        leaderboards.onConversation(saved);
+        saved.getMessages().forEach(m -> {
+            knowledgeStats.onMessage(saved.getId(), saved.getTitle(), m);
+            leaderboards.onMessage(saved.getId(), owner.getId(), m);
+            keywordIndex.onMessage(owner.getId(), m);
+            columnar.onMessage(saved.getId(), owner.getId(), m);
+            activeUsers.onActivity(owner.getId(), m.getTimestamp());
+            activityBitmaps.onActivity(owner.getId(), m.getTimestamp());
+            liveMetrics.messageSaved();
+        });
+        suggestIndex.onSaved(owner.getEmail(), saved.getId(), saved.getTitle(), saved.getDate());
+        return saved;
     }
 
     private String generateTitle(String userMessage) {
@@ -91,13 +147,17 @@ public class ConversationService {
     }
 
     public List<MessageDto> getMessagesByConversation(Long convId) {
+        var cached = transcriptCache.get(convId);
+        if (cached.isPresent()) return cached.get();
+
         if (!conversationRepository.existsById(convId)) {
             throw new EntityNotFoundException("Conversation introuvable");
         }
-        return messageRepository.findByConversation_IdOrderByTimestampAsc(convId)
-                .stream()
-                .map(m -> new MessageDto(m.getRole(), m.getContent(), m.getTimestamp()))
-                .collect(Collectors.toList());
+        long generation = transcriptCache.generation(convId);
+        // archive compressée (conversations froides) + messages encore dans la table chaude
+        ArchiveService.History history = archiveService.history(convId);
+        transcriptCache.put(convId, history.messages(), history.lastMessageId(), generation);
+        return history.messages();
     }
 
     @Transactional
@@ -117,15 +177,33 @@ public class ConversationService {
         if ("user".equals(role) && "Nouvelle conversation".equals(conversation.getTitle())) {
             String newTitle = generateTitle(content);
             conversation.setTitle(newTitle);
+            User owner = conversation.getOwner();
+            if (owner != null) {
+                suggestIndex.onSaved(owner.getEmail(), conversationId, newTitle, conversation.getDate());
+            }
         }
 
         Message message = new Message(role, content);
         conversation.addMessage(message);
+        knowledgeStats.onMessage(conversationId, conversation.getTitle(), message);
+        Long ownerId = conversation.getOwner() == null ? null : conversation.getOwner().getId();
+        leaderboards.onMessage(conversationId, ownerId, message);
+        keywordIndex.onMessage(ownerId, message);
+        columnar.onMessage(conversationId, ownerId, message);
+        activeUsers.onActivity(ownerId, message.getTimestamp());
+        activityBitmaps.onActivity(ownerId, message.getTimestamp());
+        liveMetrics.messageSaved();
+        transcriptCache.appendAfterCommit(conversationId, message);
     }
 
-    @Transactional
+    /** DELETE ensemblistes par lots (pas de chargement des messages via la cascade JPA). */
     public void deleteConversationById(Long id) {
-        conversationRepository.deleteById(id);
+        bulkDeletionService.runNow(BulkDeletionService.Kind.CONVERSATION, id);
+    }
+
+    // ---------- Auto-complétion des titres ----------
+    public List<ConversationSuggestionDTO> suggestTitles(String email, String prefix, int limit) {
+        return suggestIndex.suggest(email, prefix, limit);
     }
 
     // ---------- NOUVEAU : mise à jour du titre ----------
@@ -136,22 +214,26 @@ public class ConversationService {
         if (newTitle != null && !newTitle.isBlank()) {
             conv.setTitle(newTitle.trim());
         }
+        transcriptCache.invalidateAfterCommit(id);
+        knowledgeStats.onTitle(id, conv.getTitle());
+        if (conv.getOwner() != null) {
+            suggestIndex.onSaved(conv.getOwner().getEmail(), id, conv.getTitle(), conv.getDate());
+        }
         return conv; // JPA flush auto @Transactional
     }
 
     // ---------- NOUVEAU : suppression ciblée (moi) ----------
-    @Transactional
     public void deleteAllFor(User owner) {
-        conversationRepository.deleteByOwner_Id(owner.getId());
+        // synchrone : le front recharge la liste juste après
+        bulkDeletionService.runNow(BulkDeletionService.Kind.USER_CONVERSATIONS, owner.getId());
     }
 
     // ---------- NOUVEAU : purge globale (ADMIN uniquement) ----------
-    @Transactional
-    public void purgeAllConversationsAsAdmin() {
+    public DeletionJobDTO purgeAllConversationsAsAdmin() {
         if (!isAdmin()) {
             throw new AccessDeniedException("Action réservée aux administrateurs.");
         }
-        conversationRepository.deleteAll();
-        // ⚠️ Évite de reset la séquence en prod/multi-tenant
+        // tâche de fond par lots ; ⚠️ évite de reset la séquence en prod/multi-tenant
+        return bulkDeletionService.submit(BulkDeletionService.Kind.ALL_CONVERSATIONS, null);
     }
 }
@@ -0,0 +1,15 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Lignes effacées par une transaction de suppression, relevées par DELETE … RETURNING : les index
+ * dérivés décomptent exactement ce qui a disparu, dans la même transaction (un message commité entre
+ * une lecture préalable et le DELETE ne peut plus être effacé sans être décompté).
+ */
+record DeletedRows(List<Row> messages, List<Long> conversations) {
+
+    /** Message effacé, chaud ou issu d'un bloc archivé. */
+    record Row(long userId, LocalDateTime timestamp, String content) {}
+}
@@ -0,0 +1,252 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.DocIngestJobDTO;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Ingestion de documents en arrière-plan : le corps multipart est lu en flux (MultipartStream) et chaque
+ * part « file » copiée dans un répertoire de spool, l'id du job est rendu aussitôt et chaque fichier part
+ * vers DocQA en flux sur un pool borné (plusieurs fichiers en parallèle, file d'attente limitée : 503
+ * au-delà). Le cache « ns a des documents » est mis à jour à chaque succès.
+ */
+@Slf4j
+@Service
+public class DocIngestJobs {
+
+    private static final int MAX_JOBS = 200;
+
+    private final DocqaService docqa;
+    private final Path spoolDir;
+    private final int maxFiles;
+    private final long maxUploadBytes;
+    private final long maxRequestBytes;
+    private final ThreadPoolExecutor pool;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public DocIngestJobs(DocqaService docqa,
+                         @Value("${app.docqa.jobs.spool-dir:${java.io.tmpdir}/docqa-spool}") String spoolDir,
+                         @Value("${app.docqa.jobs.workers:4}") int workers,
+                         @Value("${app.docqa.jobs.queue:100}") int queue,
+                         @Value("${app.docqa.jobs.max-files:20}") int maxFiles,
+                         @Value("${app.docqa.max-upload-bytes:52428800}") long maxUploadBytes,
+                         @Value("${app.docqa.jobs.max-request-bytes:524288000}") long maxRequestBytes) throws IOException {
+        this.docqa = docqa;
+        this.spoolDir = Path.of(spoolDir);
+        this.maxFiles = Math.max(1, maxFiles);
+        this.maxUploadBytes = maxUploadBytes;
+        this.maxRequestBytes = maxRequestBytes;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(Math.max(1, workers), Math.max(1, workers), 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), r -> {
+                    Thread t = new Thread(r, "docqa-ingest-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        Files.createDirectories(this.spoolDir);
+        // fichiers d'un arrêt précédent : leurs jobs (en mémoire) n'existent plus
+        try (Stream<Path> old = Files.list(this.spoolDir)) {
+            old.forEach(p -> p.toFile().delete());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static final class FileTask {
+        final String name;
+        final long bytes;
+        final Path spooled;
+        final AtomicLong bytesSent = new AtomicLong();
+        volatile String status = "PENDING";
+        volatile Integer pages;
+        volatile String error;
+
+        FileTask(String name, long bytes, Path spooled) {
+            this.name = name;
+            this.bytes = bytes;
+            this.spooled = spooled;
+        }
+
+        DocIngestJobDTO.FileDTO toDto() {
+            return new DocIngestJobDTO.FileDTO(name, bytes, bytesSent.get(), status, pages, error);
+        }
+    }
+
+    private static final class Job {
+        final String id = UUID.randomUUID().toString();
+        final String ns;
+        final List<FileTask> files = new ArrayList<>();
+        final AtomicInteger done = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final Instant createdAt = Instant.now();
+        volatile Instant finishedAt;
+
+        Job(String ns) { this.ns = ns; }
+
+        String status() {
+            int finished = done.get() + failed.get();
+            if (finished < files.size()) {
+                return files.stream().anyMatch(f -> !"PENDING".equals(f.status)) ? "RUNNING" : "PENDING";
+            }
+            if (failed.get() == 0) return "DONE";
+            return done.get() == 0 ? "FAILED" : "PARTIAL";
+        }
+
+        DocIngestJobDTO toDto() {
+            return new DocIngestJobDTO(id, ns, status(), files.size(), done.get(), failed.get(),
+                    files.stream().map(FileTask::toDto).toList(), createdAt, finishedAt);
+        }
+    }
+
+    // ---------- API ----------
+    /**
+     * Spoole les parts « file » et les met en file ; rend la main sans attendre DocQA. File pleine (503) et
+     * Content-Length excessif (413) sont refusés avant de lire le corps ; chaque fichier est borné pendant
+     * la copie. Suppose que la requête n'a pas été décodée par le résolveur multipart (résolution paresseuse).
+     */
+    public DocIngestJobDTO submit(String ns, HttpServletRequest request) throws IOException {
+        if (pool.getQueue().remainingCapacity() == 0) throw queueFull();
+        if (request.getContentLengthLong() > maxRequestBytes) throw DocqaService.tooLarge("Envoi", maxRequestBytes);
+
+        pruneFinished();
+        Job job = new Job(ns);
+        List<Path> written = new ArrayList<>();
+        try {
+            MultipartStream parts = new MultipartStream(
+                    DocqaService.limited(request.getInputStream(), maxRequestBytes, "Envoi"),
+                    DocqaService.boundary(request.getContentType()));
+            while (parts.next()) {
+                if (!"file".equals(parts.name()) || parts.filename() == null) continue;
+                if (job.files.size() == maxFiles) {
+                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Trop de fichiers (max " + maxFiles + ")");
+                }
+                Path spooled = spoolDir.resolve(job.id + "-" + job.files.size());
+                written.add(spooled);
+                long bytes;
+                try (InputStream in = DocqaService.limited(parts.body(), maxUploadBytes, "Fichier")) {
+                    bytes = Files.copy(in, spooled);
+                }
+                if (bytes == 0) {
+                    Files.delete(spooled);
+                    continue;
+                }
+                job.files.add(new FileTask(parts.filename(), bytes, spooled));
+            }
+            if (job.files.isEmpty()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Aucun fichier");
+            if (pool.getQueue().remainingCapacity() < job.files.size()) throw queueFull();
+        } catch (IOException | RuntimeException e) {
+            written.forEach(p -> p.toFile().delete());
+            throw e;
+        }
+        jobs.put(job.id, job);
+        for (FileTask t : job.files) {
+            try {
+                pool.execute(() -> process(job, t));
+            } catch (RejectedExecutionException e) {
+                fail(job, t, "File d'ingestion pleine");
+            }
+        }
+        log.info("[DOCQA] job {} ns={} : {} fichier(s) en file", job.id, ns, job.files.size());
+        return job.toDto();
+    }
+
+    /** Job visible seulement dans le namespace qui l'a créé. */
+    public Optional<DocIngestJobDTO> get(String id, String ns) {
+        return Optional.ofNullable(jobs.get(id)).filter(j -> j.ns.equals(ns)).map(Job::toDto);
+    }
+
+    public List<DocIngestJobDTO> list(String ns) {
+        return jobs.values().stream()
+                .filter(j -> j.ns.equals(ns))
+                .map(Job::toDto)
+                .sorted(Comparator.comparing(DocIngestJobDTO::createdAt).reversed())
+                .toList();
+    }
+
+    // ---------- Exécution (pool) ----------
+    private void process(Job job, FileTask t) {
+        t.status = "RUNNING";
+        try (InputStream in = progress(Files.newInputStream(t.spooled), t.bytesSent)) {
+            Map<String, Object> resp = docqa.ingestStream(in, t.name, job.ns);
+            Object err = resp == null ? "Réponse vide" : resp.get("error");
+            if (err != null) {
+                fail(job, t, String.valueOf(err));
+                return;
+            }
+            if (resp.get("pages") instanceof Number p) t.pages = p.intValue();
+            t.status = "DONE";
+            finished(job, job.done);
+        } catch (Exception e) {
+            fail(job, t, e.getMessage());
+        } finally {
+            t.spooled.toFile().delete();
+        }
+    }
+
+    private void fail(Job job, FileTask t, String error) {
+        t.error = error;
+        t.status = "FAILED";
+        t.spooled.toFile().delete();
+        finished(job, job.failed);
+    }
+
+    private static void finished(Job job, AtomicInteger counter) {
+        counter.incrementAndGet();
+        if (job.done.get() + job.failed.get() == job.files.size()) {
+            job.finishedAt = Instant.now();
+            log.info("[DOCQA] job {} terminé : {}", job.id, job.status());
+        }
+    }
+
+    private static InputStream progress(InputStream in, AtomicLong sent) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) sent.incrementAndGet();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0) sent.addAndGet(n);
+                return n;
+            }
+        };
+    }
+
+    private static ResponseStatusException queueFull() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "File d'ingestion pleine, réessayer plus tard");
+    }
+
+    private void pruneFinished() {
+        if (jobs.size() <= MAX_JOBS) return;
+        jobs.values().stream()
+                .filter(j -> j.finishedAt != null)
+                .sorted(Comparator.comparing(j -> j.finishedAt))
+                .limit(jobs.size() - MAX_JOBS)
+                .forEach(j -> jobs.remove(j.id));
+    }
+}
@@ -1,64 +1,198 @@
 package com.chat_orchestrator.chat_orchestrator.service;
 
+import com.chat_orchestrator.chat_orchestrator.dto.docqa.DocqaDtos;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
-import java.io.IOException;
+import java.io.*;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class DocqaService {
 
+    private static final ParameterizedTypeReference<Map<String,Object>> MAP = new ParameterizedTypeReference<>() {};
+
     @Value("${docqa.base-url:http://localhost:5000}")
     private String base;
 
+    @Value("${app.docqa.max-upload-bytes:52428800}")
+    private long maxUploadBytes;
+
     private final RestTemplate rt = new RestTemplate();
+    private final McpClient mcpClient;
+    private final VectorIndexService vectorIndex;
+
+    // ---------- Ingestion en flux ----------
+    /** Écriture du corps directement dans la connexion sortante (transfert chunked, rien en mémoire). */
+    @FunctionalInterface
+    private interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
 
     public Map<String,Object> ingestFile(MultipartFile file, String ns) throws IOException {
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-        headers.add("X-Doc-NS", ns);
+        try (InputStream in = file.getInputStream()) {
+            return ingestStream(in, file.getOriginalFilename(), ns);
+        }
+    }
+
+    /** Envoie un fichier unique à DocQA depuis un flux (fichier spoolé, part multipart...), taille bornée. */
+    public Map<String,Object> ingestStream(InputStream in, String filename, String ns) {
+        return postFile(in, filename, ns).getBody();
+    }
+
+    /**
+     * Relais d'un upload multipart vers DocQA, en flux : les parts du client sont lues au fil de l'eau et
+     * seule la première part « file » est transmise, avec le champ « ns » fixé ici ; les autres champs
+     * (conv, ns...) ne parviennent jamais à DocQA. Taille bornée pendant la copie (413).
+     * Suppose que la requête n'a pas été décodée par le résolveur multipart (résolution paresseuse).
+     */
+    public ResponseEntity<Map<String,Object>> proxyIngest(HttpServletRequest request, String ns) throws IOException {
+        long declared = request.getContentLengthLong();
+        if (declared > maxUploadBytes) throw tooLarge("Fichier", maxUploadBytes);
+        MultipartStream parts = new MultipartStream(limited(request.getInputStream(), maxUploadBytes, "Fichier"),
+                boundary(request.getContentType()));
+        while (parts.next()) {
+            if ("file".equals(parts.name())) return postFile(parts.body(), parts.filename(), ns);
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Champ « file » manquant");
+    }
+
+    private ResponseEntity<Map<String,Object>> postFile(InputStream in, String filename, String ns) {
+        String boundary = "----docqa" + UUID.randomUUID().toString().replace("-", "");
+        String name = filename == null || filename.isBlank() ? "document" : filename.replace("\"", "");
+        return postStreaming(ns, boundary, out -> {
+            writeField(out, boundary, "ns", ns);
+            out.write(("--" + boundary + "\r\n"
+                    + "Content-Disposition: form-data; name=\"file\"; filename=\"" + name + "\"\r\n"
+                    + "Content-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            limited(in, maxUploadBytes, "Fichier").transferTo(out);
+            out.write(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        });
+    }
+
+    private ResponseEntity<Map<String,Object>> postStreaming(String ns, String boundary, BodyWriter body) {
+        // return_text : DocQA renvoie aussi les extraits, indexés ici puis retirés de la réponse
+        String url = base + "/ingest?return_text=1&ns=" + URLEncoder.encode(ns, StandardCharsets.UTF_8);
+        ResponseEntity<Map<String,Object>> resp = rt.execute(url, HttpMethod.POST, req -> {
+            req.getHeaders().setContentType(MediaType.parseMediaType("multipart/form-data; boundary=" + boundary));
+            req.getHeaders().add("X-Doc-NS", ns);
+            if (req instanceof StreamingHttpOutputMessage streaming) {
+                streaming.setBody(body::writeTo);
+            } else {
+                body.writeTo(req.getBody());
+            }
+        }, rt.<Map<String,Object>>responseEntityExtractor(MAP.getType()));
+        if (resp != null && resp.getStatusCode().is2xxSuccessful()) {
+            mcpClient.docsIngested(ns);
+            if (resp.getBody() != null) index(ns, resp.getBody());
+        }
+        return resp;
+    }
 
-        ByteArrayResource res = new ByteArrayResource(file.getBytes()) {
-            @Override public String getFilename() { return file.getOriginalFilename(); }
+    private void index(String ns, Map<String,Object> body) {
+        Object chunks = body.remove("chunks");
+        if (!(body.get("doc") instanceof String doc) || !(chunks instanceof List<?> list)) return;
+        try {
+            List<VectorIndexService.Chunk> out = new ArrayList<>(list.size());
+            for (Object o : list) {
+                if (!(o instanceof Map<?,?> c)) continue;
+                int page = c.get("page") instanceof Number p ? p.intValue() : out.size() + 1;
+                out.add(new VectorIndexService.Chunk(page, String.valueOf(c.get("text"))));
+            }
+            vectorIndex.replaceDocument(ns, doc, out);
+        } catch (RuntimeException e) {
+            // l'ingestion côté DocQA a réussi : l'index local sera complété à la prochaine ingestion du document
+            log.warn("[VECTOR] indexation échouée ns={} doc={}", ns, doc, e);
+        }
+    }
+
+    private static void writeField(OutputStream out, String boundary, String name, String value) throws IOException {
+        out.write(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"" + name + "\"\r\n\r\n"
+                + value + "\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    static String boundary(String contentType) {
+        try {
+            String b = MediaType.parseMediaType(contentType).getParameter("boundary");
+            if (b != null && b.length() > 1 && b.startsWith("\"") && b.endsWith("\"")) b = b.substring(1, b.length() - 1);
+            if (b != null && !b.isBlank()) return b;
+        } catch (RuntimeException ignored) {
+            // type invalide : traité comme sans délimiteur
+        }
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Corps multipart sans délimiteur");
+    }
+
+    /** Flux borné à {@code max} octets : 413 dès le dépassement, pendant la copie. */
+    static InputStream limited(InputStream in, long max, String what) {
+        return new FilterInputStream(in) {
+            private long count;
+
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) count(1);
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buf, int off, int len) throws IOException {
+                int n = super.read(buf, off, len);
+                if (n > 0) count(n);
+                return n;
+            }
+
+            private void count(int n) {
+                count += n;
+                if (count > max) throw tooLarge(what, max);
+            }
         };
-        MultiValueMap<String,Object> body = new LinkedMultiValueMap<>();
-        body.add("file", res);
+    }
+
+    static ResponseStatusException tooLarge(String what, long max) {
+        return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                what + " trop volumineux (max " + max / (1024 * 1024) + " Mo)");
+    }
 
-        HttpEntity<MultiValueMap<String,Object>> req = new HttpEntity<>(body, headers);
-        String url = base + "/ingest?ns=" + URLEncoder.encode(ns, StandardCharsets.UTF_8);
-        return rt.postForObject(url, req, Map.class);
+    /** Recherche locale (index HNSW du namespace), sans aller-retour vers DocQA. */
+    public List<DocqaDtos.Hit> search(String q, int k, String ns) {
+        return vectorIndex.search(ns, q, k);
     }
 
-    @SuppressWarnings("unchecked")
-    public List<Map<String,Object>> search(String q, int k, String ns) {
-        Map<String,Object> payload = Map.of("q", q, "k", k, "ns", ns);
-        ResponseEntity<List> res = rt.postForEntity(base + "/search", payload, List.class);
-        return (List<Map<String,Object>>) res.getBody();
+    /** Suppression d'un document : DocQA, index local, cache de présence. */
+    public void deleteDoc(String ns, String name) {
+        String url = base + "/docs?ns=" + URLEncoder.encode(ns, StandardCharsets.UTF_8)
+                + "&name=" + URLEncoder.encode(name, StandardCharsets.UTF_8);
+        rt.delete(url);
+        vectorIndex.deleteDocument(ns, name);
+        mcpClient.docsChanged(ns);
     }
 
     public Map<String,Object> health() {
-        return rt.getForObject(base + "/health", Map.class);
+        return rt.exchange(base + "/health", HttpMethod.GET, null, MAP).getBody();
     }
 
     /** ---- AJOUTS POUR LISTE DES DOCS ---- */
 
     /** Retourne l’objet { ns, docs: [ {name, pages}, ... ] } depuis Flask */
-    @SuppressWarnings("unchecked")
     public Map<String,Object> listDocs(String ns) {
         String url = base + "/docs?ns=" + URLEncoder.encode(ns, StandardCharsets.UTF_8);
-        return rt.getForObject(url, Map.class);
+        return rt.exchange(url, HttpMethod.GET, null, MAP).getBody();
     }
 
     /** Vrai s’il y a au moins 1 doc dans ce namespace */
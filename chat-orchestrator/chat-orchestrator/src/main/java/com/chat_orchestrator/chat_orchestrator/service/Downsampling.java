@@ -0,0 +1,81 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Réduction de séries temporelles avant envoi au navigateur : Largest-Triangle-Three-Buckets.
+ * Premier et dernier points conservés ; entre les deux, un point par seau, celui qui forme le plus grand
+ * triangle avec le point retenu précédemment et la moyenne du seau suivant (pics et creux préservés).
+ * Un seul passage, O(n), sans copie de la série ; les points renvoyés sont ceux d'origine.
+ * Le bean porte le plafond commun aux contrôleurs ({@code app.analytics.max-points}).
+ */
+@Component
+public final class Downsampling {
+
+    private final int maxPoints;
+
+    public Downsampling(@Value("${app.analytics.max-points:2000}") int maxPoints) {
+        this.maxPoints = Math.max(3, maxPoints);
+    }
+
+    /** Nombre de points renvoyés : celui demandé, borné par app.analytics.max-points (qui sert aussi de défaut). */
+    public int points(Integer requested) {
+        return requested == null ? maxPoints : Math.max(3, Math.min(requested, maxPoints));
+    }
+
+    /** {@code data} triée par x ; renvoyée telle quelle si elle compte au plus {@code maxPoints} points (min. 3). */
+    public static <T> List<T> lttb(List<T> data, int maxPoints, ToDoubleFunction<T> x, ToDoubleFunction<T> y) {
+        int n = data.size();
+        int target = Math.max(3, maxPoints);
+        if (n <= target) return data;
+
+        List<T> out = new ArrayList<>(target);
+        out.add(data.get(0));
+        double every = (double) (n - 2) / (target - 2);
+        double ax = x.applyAsDouble(data.get(0));
+        double ay = y.applyAsDouble(data.get(0));
+
+        for (int i = 0; i < target - 2; i++) {
+            // moyenne du seau suivant (le dernier point pour le dernier seau)
+            int nextStart = (int) Math.floor((i + 1) * every) + 1;
+            int nextEnd = Math.min(n, (int) Math.floor((i + 2) * every) + 1);
+            double cx = 0, cy = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                T p = data.get(j);
+                cx += x.applyAsDouble(p);
+                cy += y.applyAsDouble(p);
+            }
+            int len = nextEnd - nextStart;
+            cx /= len;
+            cy /= len;
+
+            // point du seau courant maximisant l'aire du triangle
+            int start = (int) Math.floor(i * every) + 1;
+            int end = nextStart;
+            double best = -1;
+            int pick = start;
+            double px = ax, py = ay;
+            for (int j = start; j < end; j++) {
+                T p = data.get(j);
+                double bx = x.applyAsDouble(p), by = y.applyAsDouble(p);
+                double area = Math.abs((ax - cx) * (by - ay) - (ax - bx) * (cy - ay));
+                if (area > best) {
+                    best = area;
+                    pick = j;
+                    px = bx;
+                    py = by;
+                }
+            }
+            out.add(data.get(pick));
+            ax = px;
+            ay = py;
+        }
+        out.add(data.get(n - 1));
+        return out;
+    }
+}
@@ -0,0 +1,489 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Graphe HNSW d'un namespace, persisté dans des fichiers projetés en mémoire (rien à recharger au
+ * démarrage hors les métadonnées) :
+ * <ul>
+ *   <li>{@code index.hdr} : dimension, M, nombre de nœuds, point d'entrée, niveau max ;</li>
+ *   <li>{@code vectors.f32} : vecteurs normalisés, un enregistrement fixe par nœud ;</li>
+ *   <li>{@code graph.i32} : niveau, suppression, puis voisins de chaque couche (capacité fixe) ;</li>
+ *   <li>{@code meta.bin} : document, page, extrait (ajout seul, relu au démarrage).</li>
+ * </ul>
+ * Similarité = produit scalaire (cosinus sur vecteurs normalisés). Suppression logique : un nœud supprimé
+ * sert encore au routage mais n'est plus renvoyé ; {@link #compact} réécrit l'index sans eux. Le nombre
+ * de nœuds est publié en dernier : un nœud écrit à moitié avant un arrêt brutal est ignoré.
+ * Non thread-safe : l'appelant synchronise.
+ */
+final class HnswIndex implements Closeable {
+
+    record Result(int id, float score) {}
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int CHUNK_BITS = 14;               // 16384 nœuds par projection
+    private static final int CHUNK = 1 << CHUNK_BITS;
+    private static final int MAX_LEVEL = 7;
+    private static final int H_DIM = 1, H_M = 2, H_COUNT = 3, H_ENTRY = 4, H_LEVEL = 5;
+
+    private final Path dir;
+    private final int dim;
+    private final int m;
+    private final int m0;
+    private final int efConstruction;
+    private final int recordInts;
+    private final double levelMult;
+    private final Random random = new Random();
+
+    private final FileChannel hdrCh, vecCh, graphCh;
+    private final IntBuffer header;
+    private final List<FloatBuffer> vecChunks = new ArrayList<>();
+    private final List<IntBuffer> graphChunks = new ArrayList<>();
+    private final List<MappedByteBuffer> mapped = new ArrayList<>();
+    private final RandomAccessFile meta;
+
+    // métadonnées en mémoire (extraits lus dans meta.bin à la demande)
+    private String[] docs = new String[1024];
+    private int[] pages = new int[1024];
+    private long[] textOffsets = new long[1024];
+    private int[] textLengths = new int[1024];
+    private final Map<String, List<Integer>> nodesByDoc = new HashMap<>();
+    private final Map<String, String> interned = new HashMap<>();
+    private int deleted;
+
+    HnswIndex(Path dir, int dim, int m, int efConstruction) throws IOException {
+        recover(dir);
+        this.dir = dir;
+        this.dim = dim;
+        this.m = m;
+        this.m0 = 2 * m;
+        this.efConstruction = Math.max(m, efConstruction);
+        this.recordInts = 2 + (1 + m0) + MAX_LEVEL * (1 + m);
+        this.levelMult = 1 / Math.log(m);
+        Files.createDirectories(dir);
+
+        this.hdrCh = FileChannel.open(dir.resolve("index.hdr"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer h = hdrCh.map(FileChannel.MapMode.READ_WRITE, 0, 64);
+        mapped.add(h);
+        this.header = h.asIntBuffer();
+        if (header.get(0) != MAGIC) {
+            header.put(0, MAGIC).put(H_DIM, dim).put(H_M, m).put(H_COUNT, 0).put(H_ENTRY, -1).put(H_LEVEL, -1);
+        } else if (header.get(H_DIM) != dim || header.get(H_M) != m) {
+            throw new IllegalStateException("Index " + dir + " créé avec dim=" + header.get(H_DIM) + ", M=" + header.get(H_M));
+        }
+        this.vecCh = FileChannel.open(dir.resolve("vectors.f32"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.graphCh = FileChannel.open(dir.resolve("graph.i32"), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.meta = new RandomAccessFile(dir.resolve("meta.bin").toFile(), "rw");
+        loadMeta(dir.resolve("meta.bin"));
+    }
+
+    int size() {
+        return header.get(H_COUNT);
+    }
+
+    /** Part des nœuds supprimés logiquement (0 si vide). */
+    double deletedFraction() {
+        int n = size();
+        return n == 0 ? 0 : deleted / (double) n;
+    }
+
+    // ---------- Stockage ----------
+    private void ensureChunk(int id) throws IOException {
+        int c = id >>> CHUNK_BITS;
+        while (vecChunks.size() <= c) {
+            int k = vecChunks.size();
+            long vecBytes = (long) CHUNK * dim * 4;
+            long graphBytes = (long) CHUNK * recordInts * 4;
+            MappedByteBuffer vb = vecCh.map(FileChannel.MapMode.READ_WRITE, k * vecBytes, vecBytes);
+            MappedByteBuffer gb = graphCh.map(FileChannel.MapMode.READ_WRITE, k * graphBytes, graphBytes);
+            mapped.add(vb);
+            mapped.add(gb);
+            vecChunks.add(vb.asFloatBuffer());
+            graphChunks.add(gb.asIntBuffer());
+        }
+    }
+
+    private float dot(float[] q, int id) {
+        FloatBuffer b = vecChunks.get(id >>> CHUNK_BITS);
+        int base = (id & (CHUNK - 1)) * dim;
+        float s = 0;
+        for (int i = 0; i < dim; i++) s += q[i] * b.get(base + i);
+        return s;
+    }
+
+    private float[] vector(int id) {
+        float[] v = new float[dim];
+        vecChunks.get(id >>> CHUNK_BITS).get((id & (CHUNK - 1)) * dim, v);
+        return v;
+    }
+
+    private IntBuffer graph(int id) {
+        return graphChunks.get(id >>> CHUNK_BITS);
+    }
+
+    private int recordBase(int id) {
+        return (id & (CHUNK - 1)) * recordInts;
+    }
+
+    private int layerOffset(int level) {
+        return level == 0 ? 2 : 2 + (1 + m0) + (level - 1) * (1 + m);
+    }
+
+    boolean isDeleted(int id) {
+        return graph(id).get(recordBase(id) + 1) != 0;
+    }
+
+    private int[] neighbors(int id, int level) {
+        IntBuffer g = graph(id);
+        int off = recordBase(id) + layerOffset(level);
+        int n = g.get(off);
+        int[] out = new int[n];
+        g.get(off + 1, out);
+        return out;
+    }
+
+    private void setNeighbors(int id, int level, int[] ids, int n) {
+        IntBuffer g = graph(id);
+        int off = recordBase(id) + layerOffset(level);
+        g.put(off + 1, ids, 0, n);
+        g.put(off, n);
+    }
+
+    // ---------- Recherche ----------
+    /**
+     * k plus proches voisins non supprimés de {@code q} (normalisé), par score décroissant. Quand les nœuds
+     * supprimés évincent trop de candidats, la couche 0 est reparcourue avec un ef doublé : k résultats
+     * dès que l'index compte k nœuds vivants.
+     */
+    List<Result> search(float[] q, int k, int ef) {
+        int count = size();
+        int entry = header.get(H_ENTRY);
+        if (count == 0 || entry < 0) return List.of();
+        int want = Math.min(k, count - deleted);
+        int ep = greedy(q, entry, header.get(H_LEVEL), 1, count);
+        List<Result> out = new ArrayList<>();
+        for (int e = Math.max(ef, k); ; e = Math.min(count, 2 * e)) {
+            out.clear();
+            for (Result r : searchLayer(q, ep, e, 0, count)) if (!isDeleted(r.id())) out.add(r);
+            if (out.size() >= want || e >= count) break;
+        }
+        out.sort((a, b) -> Float.compare(b.score(), a.score()));
+        return out.size() > k ? out.subList(0, k) : out;
+    }
+
+    /** Descente gloutonne des couches {@code from} .. {@code to}. */
+    private int greedy(float[] q, int ep, int from, int to, int count) {
+        float best = dot(q, ep);
+        for (int l = from; l >= to; l--) {
+            boolean moved = true;
+            while (moved) {
+                moved = false;
+                for (int n : neighbors(ep, l)) {
+                    if (n >= count) continue;
+                    float s = dot(q, n);
+                    if (s > best) {
+                        best = s;
+                        ep = n;
+                        moved = true;
+                    }
+                }
+            }
+        }
+        return ep;
+    }
+
+    /** Meilleurs candidats d'une couche (file min : la tête est le moins bon des {@code ef} retenus). */
+    private PriorityQueue<Result> searchLayer(float[] q, int ep, int ef, int level, int count) {
+        BitSet visited = new BitSet(count + 1);
+        Comparator<Result> byScore = Comparator.comparingDouble(Result::score);
+        PriorityQueue<Result> candidates = new PriorityQueue<>(byScore.reversed());
+        PriorityQueue<Result> results = new PriorityQueue<>(byScore);
+        Result start = new Result(ep, dot(q, ep));
+        visited.set(ep);
+        candidates.add(start);
+        results.add(start);
+        while (!candidates.isEmpty()) {
+            Result c = candidates.poll();
+            if (results.size() >= ef && c.score() < results.peek().score()) break;
+            for (int n : neighbors(c.id(), level)) {
+                if (n >= count || visited.get(n)) continue;
+                visited.set(n);
+                float s = dot(q, n);
+                if (results.size() < ef || s > results.peek().score()) {
+                    Result r = new Result(n, s);
+                    candidates.add(r);
+                    results.add(r);
+                    if (results.size() > ef) results.poll();
+                }
+            }
+        }
+        return results;
+    }
+
+    // ---------- Insertion / suppression ----------
+    int insert(float[] v, String doc, int page, String excerpt) throws IOException {
+        int id = size();
+        ensureChunk(id);
+        int level = Math.min(MAX_LEVEL, (int) (-Math.log(1 - random.nextDouble()) * levelMult));
+
+        vecChunks.get(id >>> CHUNK_BITS).put((id & (CHUNK - 1)) * dim, v);
+        IntBuffer g = graph(id);
+        int base = recordBase(id);
+        g.put(base, level).put(base + 1, 0);
+        for (int l = 0; l <= MAX_LEVEL; l++) g.put(base + layerOffset(l), 0);
+        appendMeta(id, doc, page, excerpt);
+        connect(id, v, level);
+        header.put(H_COUNT, id + 1);
+        return id;
+    }
+
+    /** Relie le nœud {@code id} (couches vides) aux nœuds d'id inférieur ; met à jour le point d'entrée. */
+    private void connect(int id, float[] v, int level) {
+        int entry = header.get(H_ENTRY);
+        int maxLevel = header.get(H_LEVEL);
+        if (entry >= 0) {
+            int ep = level < maxLevel ? greedy(v, entry, maxLevel, level + 1, id) : entry;
+            for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+                PriorityQueue<Result> w = searchLayer(v, ep, efConstruction, l, id);
+                List<Result> sorted = new ArrayList<>(w);
+                sorted.sort((a, b) -> Float.compare(b.score(), a.score()));
+                int[] chosen = select(sorted, m);
+                setNeighbors(id, l, chosen, chosen.length);
+                for (int n : chosen) link(n, id, l);
+                ep = sorted.get(0).id();
+            }
+        }
+        if (level > maxLevel) {
+            header.put(H_ENTRY, id).put(H_LEVEL, level);
+        }
+    }
+
+    /** Les {@code max} meilleurs, en écartant les nœuds supprimés s'il en reste assez. */
+    private int[] select(List<Result> sorted, int max) {
+        int[] out = new int[Math.min(max, sorted.size())];
+        int n = 0;
+        for (Result r : sorted) {
+            if (n == out.length) break;
+            if (!isDeleted(r.id())) out[n++] = r.id();
+        }
+        for (Result r : sorted) {
+            if (n == out.length) break;
+            if (isDeleted(r.id())) out[n++] = r.id();
+        }
+        return out;
+    }
+
+    /** Ajoute {@code id} aux voisins de {@code n} ; au-delà de la capacité, garde les plus proches de n. */
+    private void link(int n, int id, int level) {
+        int cap = level == 0 ? m0 : m;
+        int[] cur = neighbors(n, level);
+        if (cur.length < cap) {
+            int[] next = Arrays.copyOf(cur, cur.length + 1);
+            next[cur.length] = id;
+            setNeighbors(n, level, next, next.length);
+            return;
+        }
+        float[] nv = vector(n);
+        List<Result> all = new ArrayList<>(cap + 1);
+        for (int c : cur) all.add(new Result(c, dot(nv, c)));
+        all.add(new Result(id, dot(nv, id)));
+        all.sort((a, b) -> Float.compare(b.score(), a.score()));
+        int[] kept = select(all, cap);
+        setNeighbors(n, level, kept, kept.length);
+    }
+
+    /** Suppression logique des nœuds d'un document ; renvoie leur nombre. */
+    int deleteDoc(String doc) {
+        List<Integer> ids = nodesByDoc.remove(doc);
+        if (ids == null) return 0;
+        for (int id : ids) graph(id).put(recordBase(id) + 1, 1);
+        deleted += ids.size();
+        return ids.size();
+    }
+
+    boolean hasDoc(String doc) {
+        return nodesByDoc.containsKey(doc);
+    }
+
+    String doc(int id) {
+        return docs[id];
+    }
+
+    int page(int id) {
+        return pages[id];
+    }
+
+    /** Lecture positionnelle : sûre entre lecteurs concurrents. */
+    String excerpt(int id) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(textLengths[id]);
+        FileChannel ch = meta.getChannel();
+        long at = textOffsets[id];
+        while (b.hasRemaining()) {
+            int n = ch.read(b, at + b.position());
+            if (n < 0) break;
+        }
+        return new String(b.array(), 0, b.position(), StandardCharsets.UTF_8);
+    }
+
+    /** Écrit les projections sur disque (fin d'un document). */
+    void force() throws IOException {
+        for (MappedByteBuffer b : mapped) b.force();
+        meta.getFD().sync();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            force();
+        } finally {
+            meta.close();
+            vecCh.close();
+            graphCh.close();
+            hdrCh.close();
+        }
+    }
+
+    // ---------- Métadonnées ----------
+    private void appendMeta(int id, String doc, int page, String excerpt) throws IOException {
+        byte[] d = doc.getBytes(StandardCharsets.UTF_8);
+        byte[] t = excerpt.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(16 + d.length + t.length);
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(id);
+        out.writeInt(page);
+        out.writeInt(d.length);
+        out.write(d);
+        out.writeInt(t.length);
+        out.write(t);
+        long at = meta.length();
+        meta.seek(at);
+        meta.write(bos.toByteArray());
+        remember(id, doc, page, at + 16 + d.length, t.length);
+    }
+
+    /** Relit meta.bin (ids consécutifs) ; tronque au premier enregistrement incomplet ou non publié. */
+    private void loadMeta(Path file) throws IOException {
+        int count = size();
+        if (count > 0) ensureChunk(count - 1);
+        long len = meta.length();
+        long pos = 0;
+        int expected = 0;
+        // flux distinct : fermer un flux ouvert sur meta.getFD() fermerait aussi le fichier d'écriture
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            while (expected < count && pos + 16 <= len) {
+                int id = in.readInt();
+                int page = in.readInt();
+                int dl = in.readInt();
+                if (id != expected || dl < 0 || pos + 16 + dl > len) break;
+                byte[] d = new byte[dl];
+                in.readFully(d);
+                int tl = in.readInt();
+                long textAt = pos + 16 + dl;
+                if (tl < 0 || textAt + tl > len) break;
+                in.skipNBytes(tl);
+                String doc = new String(d, StandardCharsets.UTF_8);
+                remember(id, doc, page, textAt, tl);
+                if (isDeleted(id)) {
+                    List<Integer> ids = nodesByDoc.get(doc);
+                    ids.remove(Integer.valueOf(id));
+                    if (ids.isEmpty()) nodesByDoc.remove(doc);
+                    deleted++;
+                }
+                pos = textAt + tl;
+                expected++;
+            }
+        }
+        if (pos < len) meta.setLength(pos);
+        if (expected < count) rebuild(expected);
+    }
+
+    /**
+     * Métadonnées perdues (arrêt brutal) : les nœuds au-delà de {@code count} sont écartés et leurs ids
+     * seront réattribués. Retirer seulement les liens vers eux peut isoler des survivants (les voisins
+     * d'un ancien nœud sont souvent plus récents), d'où une reconstruction des couches à partir des
+     * vecteurs conservés, dans l'ordre des ids et aux mêmes niveaux ; le survivant de plus haut niveau
+     * redevient le point d'entrée. Rare, coût d'une réinsertion complète.
+     */
+    private void rebuild(int count) {
+        header.put(H_COUNT, 0).put(H_ENTRY, -1).put(H_LEVEL, -1);
+        for (int id = 0; id < count; id++) {
+            IntBuffer g = graph(id);
+            int base = recordBase(id);
+            for (int l = 0; l <= MAX_LEVEL; l++) g.put(base + layerOffset(l), 0);
+            connect(id, vector(id), g.get(base));
+            header.put(H_COUNT, id + 1);
+        }
+    }
+
+    // ---------- Compaction ----------
+    /**
+     * Réécrit les seuls nœuds vivants (mêmes vecteurs et métadonnées, ids renumérotés) dans
+     * {@code <dir>.compact}, puis le substitue à cet index, fermé au passage ; renvoie l'index rouvert.
+     * Substitution par deux renommages : un arrêt brutal entre les deux est repris à l'ouverture.
+     */
+    HnswIndex compact() throws IOException {
+        Path next = sibling(dir, ".compact");
+        Path old = sibling(dir, ".old");
+        deleteTree(next);
+        try (HnswIndex fresh = new HnswIndex(next, dim, m, efConstruction)) {
+            for (int id = 0, n = size(); id < n; id++) {
+                if (!isDeleted(id)) fresh.insert(vector(id), docs[id], pages[id], excerpt(id));
+            }
+        }
+        close();
+        Files.move(dir, old);
+        Files.move(next, dir);
+        deleteTree(old);
+        return new HnswIndex(dir, dim, m, efConstruction);
+    }
+
+    /** Compaction interrompue : {@code .compact} est complet dès que l'ancien répertoire a été renommé. */
+    private static void recover(Path dir) throws IOException {
+        Path next = sibling(dir, ".compact");
+        Path old = sibling(dir, ".old");
+        if (!Files.exists(dir)) {
+            if (Files.exists(next)) Files.move(next, dir);
+            else if (Files.exists(old)) Files.move(old, dir);
+        }
+        deleteTree(next);
+        deleteTree(old);
+    }
+
+    private static Path sibling(Path dir, String suffix) {
+        return dir.resolveSibling(dir.getFileName() + suffix);
+    }
+
+    private static void deleteTree(Path p) throws IOException {
+        if (!Files.exists(p)) return;
+        try (Stream<Path> files = Files.walk(p)) {
+            for (Path f : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(f);
+        }
+    }
+
+    private void remember(int id, String doc, int page, long textAt, int textLen) {
+        if (id >= docs.length) {
+            int cap = Math.max(id + 1, docs.length * 2);
+            docs = Arrays.copyOf(docs, cap);
+            pages = Arrays.copyOf(pages, cap);
+            textOffsets = Arrays.copyOf(textOffsets, cap);
+            textLengths = Arrays.copyOf(textLengths, cap);
+        }
+        String d = interned.computeIfAbsent(doc, x -> x);
+        docs[id] = d;
+        pages[id] = page;
+        textOffsets[id] = textAt;
+        textLengths[id] = textLen;
+        nodesByDoc.computeIfAbsent(d, x -> new ArrayList<>()).add(id);
+    }
+}
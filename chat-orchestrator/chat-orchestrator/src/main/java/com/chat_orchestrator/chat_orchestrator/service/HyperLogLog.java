@@ -0,0 +1,114 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import java.io.*;
+
+/**
+ * Sketch HyperLogLog (Flajolet et al.) d'identifiants {@code long} : 2^P registres d'un octet,
+ * erreur type ≈ 1,04 / √(2^P) (1,6 % pour P = 12). Ajouts idempotents, fusion par maximum registre
+ * à registre : l'union de deux sketches est le sketch de l'union. Non thread-safe : l'appelant synchronise.
+ */
+final class HyperLogLog {
+
+    static final int P = 12;
+    private static final int M = 1 << P;
+
+    private static final byte DENSE = 0;
+    private static final byte SPARSE = 1;
+
+    private final byte[] registers = new byte[M];
+
+    void add(long value) {
+        long h = mix(value);
+        int idx = (int) (h >>> (64 - P));
+        // bit sentinelle : rang plafonné à 64 - P + 1
+        int rank = Long.numberOfLeadingZeros((h << P) | (1L << (P - 1))) + 1;
+        if (rank > registers[idx]) registers[idx] = (byte) rank;
+    }
+
+    void merge(HyperLogLog other) {
+        for (int i = 0; i < M; i++) {
+            if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    HyperLogLog copy() {
+        HyperLogLog c = new HyperLogLog();
+        System.arraycopy(registers, 0, c.registers, 0, M);
+        return c;
+    }
+
+    boolean isEmpty() {
+        for (byte r : registers) if (r != 0) return false;
+        return true;
+    }
+
+    /** Estimation brute, corrigée par comptage linéaire pour les petites cardinalités. */
+    long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += Math.scalb(1.0, -r);
+            if (r == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / M);
+        double e = alpha * M * M / sum;
+        if (e <= 2.5 * M && zeros > 0) e = M * Math.log((double) M / zeros);
+        return Math.round(e);
+    }
+
+    /** Finaliseur SplitMix64 : les ids séquentiels doivent être dispersés sur les 64 bits. */
+    private static long mix(long z) {
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // ---------- Sérialisation (bytea) ----------
+    /** Creux (index, rang) tant que peu de registres sont non nuls — heures calmes —, dense sinon. */
+    byte[] toBytes() {
+        int n = 0;
+        for (byte r : registers) if (r != 0) n++;
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.min(M, n * 3) + 8);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeByte(P);
+            if (n * 3 < M) {
+                out.writeByte(SPARSE);
+                out.writeShort(n);
+                for (int i = 0; i < M; i++) {
+                    if (registers[i] == 0) continue;
+                    out.writeShort(i);
+                    out.writeByte(registers[i]);
+                }
+            } else {
+                out.writeByte(DENSE);
+                out.write(registers);
+            }
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static HyperLogLog fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int p = in.readUnsignedByte();
+            if (p != P) throw new IllegalStateException("Précision HyperLogLog inattendue : " + p);
+            HyperLogLog h = new HyperLogLog();
+            if (in.readByte() == SPARSE) {
+                int n = in.readUnsignedShort();
+                for (int i = 0; i < n; i++) {
+                    int idx = in.readUnsignedShort();
+                    h.registers[idx] = in.readByte();
+                }
+            } else {
+                in.readFully(h.registers);
+            }
+            return h;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import java.io.*;
+import java.util.Arrays;
+
+/**
+ * Ensemble compressé d'identifiants (schéma Roaring) : les 16 bits de poids faible sont rangés dans un
+ * conteneur par valeur des bits de poids fort — tableau trié tant qu'il compte au plus 4096 valeurs,
+ * bitmap de 65536 bits au-delà. Les intersections se font conteneur par conteneur (fusion de tableaux,
+ * test de bits ou ET + popcount), sans matérialiser le résultat. Ids de 0 à 2^47 - 1.
+ * Non thread-safe : l'appelant synchronise ; un bitmap partagé n'est plus modifié.
+ */
+final class IdBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int WORDS = 1024;
+
+    private int[] keys = new int[4];
+    private char[][] arrays = new char[4][];
+    private int[] sizes = new int[4];
+    private long[][] bitmaps = new long[4][];
+    private int slots;
+
+    void add(long id) {
+        if (id < 0 || id >>> 47 != 0) return;
+        int key = (int) (id >>> 16);
+        char low = (char) id;
+        int s = slot(key);
+        if (s < 0) s = insertSlot(-s - 1, key);
+        if (bitmaps[s] != null) {
+            long[] b = bitmaps[s];
+            if ((b[low >>> 6] & (1L << low)) == 0) {
+                b[low >>> 6] |= 1L << low;
+                sizes[s]++;
+            }
+            return;
+        }
+        char[] a = arrays[s];
+        int n = sizes[s];
+        int i = Arrays.binarySearch(a, 0, n, low);
+        if (i >= 0) return;
+        i = -i - 1;
+        if (n == ARRAY_MAX) {
+            long[] b = toBits(a, n);
+            b[low >>> 6] |= 1L << low;
+            bitmaps[s] = b;
+            arrays[s] = null;
+            sizes[s] = n + 1;
+            return;
+        }
+        if (n == a.length) a = arrays[s] = Arrays.copyOf(a, Math.min(ARRAY_MAX, n * 2));
+        System.arraycopy(a, i, a, i + 1, n - i);
+        a[i] = low;
+        sizes[s] = n + 1;
+    }
+
+    boolean contains(long id) {
+        if (id < 0 || id >>> 47 != 0) return false;
+        int s = slot((int) (id >>> 16));
+        if (s < 0) return false;
+        char low = (char) id;
+        if (bitmaps[s] != null) return (bitmaps[s][low >>> 6] & (1L << low)) != 0;
+        return Arrays.binarySearch(arrays[s], 0, sizes[s], low) >= 0;
+    }
+
+    long cardinality() {
+        long n = 0;
+        for (int s = 0; s < slots; s++) n += sizes[s];
+        return n;
+    }
+
+    boolean isEmpty() {
+        return slots == 0;
+    }
+
+    /** this ∪= other. */
+    void or(IdBitmap other) {
+        for (int o = 0; o < other.slots; o++) {
+            int s = slot(other.keys[o]);
+            if (s < 0) {
+                s = insertSlot(-s - 1, other.keys[o]);
+                if (other.bitmaps[o] != null) {
+                    bitmaps[s] = other.bitmaps[o].clone();
+                } else {
+                    arrays[s] = Arrays.copyOf(other.arrays[o], Math.max(1, other.sizes[o]));
+                }
+                sizes[s] = other.sizes[o];
+                continue;
+            }
+            long[] b = bitmaps[s] != null ? bitmaps[s] : toBits(arrays[s], sizes[s]);
+            if (other.bitmaps[o] != null) {
+                long[] ob = other.bitmaps[o];
+                for (int w = 0; w < WORDS; w++) b[w] |= ob[w];
+            } else {
+                char[] oa = other.arrays[o];
+                for (int i = 0; i < other.sizes[o]; i++) b[oa[i] >>> 6] |= 1L << oa[i];
+            }
+            int n = 0;
+            for (long w : b) n += Long.bitCount(w);
+            if (n <= ARRAY_MAX) {
+                arrays[s] = toArray(b, n);
+                bitmaps[s] = null;
+            } else {
+                bitmaps[s] = b;
+                arrays[s] = null;
+            }
+            sizes[s] = n;
+        }
+    }
+
+    /** |this ∩ other|, sans construire l'intersection. */
+    long andCardinality(IdBitmap other) {
+        long n = 0;
+        int i = 0, j = 0;
+        while (i < slots && j < other.slots) {
+            int ki = keys[i], kj = other.keys[j];
+            if (ki < kj) { i++; continue; }
+            if (kj < ki) { j++; continue; }
+            long[] bi = bitmaps[i], bj = other.bitmaps[j];
+            if (bi != null && bj != null) {
+                for (int w = 0; w < WORDS; w++) n += Long.bitCount(bi[w] & bj[w]);
+            } else if (bi != null) {
+                n += countIn(other.arrays[j], other.sizes[j], bi);
+            } else if (bj != null) {
+                n += countIn(arrays[i], sizes[i], bj);
+            } else {
+                n += countCommon(arrays[i], sizes[i], other.arrays[j], other.sizes[j]);
+            }
+            i++;
+            j++;
+        }
+        return n;
+    }
+
+    // ---------- Conteneurs ----------
+    private int slot(int key) {
+        return Arrays.binarySearch(keys, 0, slots, key);
+    }
+
+    private int insertSlot(int at, int key) {
+        if (slots == keys.length) {
+            int cap = slots * 2;
+            keys = Arrays.copyOf(keys, cap);
+            arrays = Arrays.copyOf(arrays, cap);
+            sizes = Arrays.copyOf(sizes, cap);
+            bitmaps = Arrays.copyOf(bitmaps, cap);
+        }
+        int tail = slots - at;
+        System.arraycopy(keys, at, keys, at + 1, tail);
+        System.arraycopy(arrays, at, arrays, at + 1, tail);
+        System.arraycopy(sizes, at, sizes, at + 1, tail);
+        System.arraycopy(bitmaps, at, bitmaps, at + 1, tail);
+        keys[at] = key;
+        arrays[at] = new char[4];
+        sizes[at] = 0;
+        bitmaps[at] = null;
+        slots++;
+        return at;
+    }
+
+    private static long[] toBits(char[] a, int n) {
+        long[] b = new long[WORDS];
+        for (int i = 0; i < n; i++) b[a[i] >>> 6] |= 1L << a[i];
+        return b;
+    }
+
+    private static char[] toArray(long[] b, int n) {
+        char[] a = new char[Math.max(1, n)];
+        int k = 0;
+        for (int w = 0; w < WORDS; w++) {
+            long word = b[w];
+            while (word != 0) {
+                a[k++] = (char) ((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return a;
+    }
+
+    private static int countIn(char[] a, int n, long[] b) {
+        int c = 0;
+        for (int i = 0; i < n; i++) if ((b[a[i] >>> 6] & (1L << a[i])) != 0) c++;
+        return c;
+    }
+
+    private static int countCommon(char[] a, int na, char[] b, int nb) {
+        int c = 0, i = 0, j = 0;
+        while (i < na && j < nb) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else { c++; i++; j++; }
+        }
+        return c;
+    }
+
+    // ---------- Sérialisation (bytea) ----------
+    byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeInt(slots);
+            for (int s = 0; s < slots; s++) {
+                out.writeInt(keys[s]);
+                if (bitmaps[s] != null) {
+                    out.writeByte(1);
+                    for (long w : bitmaps[s]) out.writeLong(w);
+                } else {
+                    out.writeByte(0);
+                    out.writeShort(sizes[s] - 1);   // 1..4096 valeurs
+                    for (int i = 0; i < sizes[s]; i++) out.writeChar(arrays[s][i]);
+                }
+            }
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static IdBitmap fromBytes(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            IdBitmap bm = new IdBitmap();
+            int n = in.readInt();
+            for (int k = 0; k < n; k++) {
+                int s = bm.insertSlot(bm.slots, in.readInt());
+                if (in.readByte() == 1) {
+                    long[] b = new long[WORDS];
+                    int c = 0;
+                    for (int w = 0; w < WORDS; w++) {
+                        b[w] = in.readLong();
+                        c += Long.bitCount(b[w]);
+                    }
+                    bm.bitmaps[s] = b;
+                    bm.arrays[s] = null;
+                    bm.sizes[s] = c;
+                } else {
+                    int size = in.readUnsignedShort() + 1;
+                    char[] a = new char[size];
+                    for (int i = 0; i < size; i++) a[i] = in.readChar();
+                    bm.arrays[s] = a;
+                    bm.sizes[s] = size;
+                }
+            }
+            return bm;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Automate Aho-Corasick compilé (table de transitions complète, échecs résolus à la construction) :
+ * un seul passage sur le message, une lecture de table par caractère, aucune allocation.
+ * Chaque expression est associée à un bit ; {@link #match} renvoie l'union des bits trouvés.
+ * <p>
+ * Normalisation intégrée à la table des symboles : minuscules, accents latins retirés, variantes d'alef
+ * et signes diacritiques arabes neutralisés. Toute suite de caractères non alphanumériques compte comme
+ * une seule frontière de mot ; une expression doit commencer en début de mot (« hier » ne se trouve pas
+ * dans « cahier ») mais peut finir en milieu de mot (pluriels, « mots » dans « mots-clés »).
+ */
+final class IntentMatcher {
+
+    private static final short IGNORE = -1;
+    private static final short BOUNDARY = 0;
+    private static final short OTHER = 1;
+
+    /** Caractère → symbole de l'alphabet de l'automate. */
+    private final short[] symbols = new short[Character.MAX_VALUE + 1];
+    private final int alphabet;
+    /** Transitions : delta[état * alphabet + symbole]. */
+    private final int[] delta;
+    /** Bits des expressions reconnues en arrivant dans chaque état (chaîne d'échecs comprise). */
+    private final long[] output;
+
+    /** {@code phrases} : bit (0..63) → expressions. */
+    IntentMatcher(Map<Integer, ? extends Collection<String>> phrases) {
+        // --- alphabet : caractères (normalisés) présents dans les expressions
+        Map<Character, Short> index = new HashMap<>();
+        List<short[]> patterns = new ArrayList<>();
+        List<Integer> bits = new ArrayList<>();
+        phrases.forEach((bit, list) -> {
+            if (bit < 0 || bit > 63) throw new IllegalArgumentException("Bit hors limites : " + bit);
+            for (String p : list) {
+                String folded = foldPhrase(p);
+                if (folded.isEmpty()) continue;
+                short[] seq = new short[folded.length() + 1];
+                seq[0] = BOUNDARY;
+                for (int i = 0; i < folded.length(); i++) {
+                    char c = folded.charAt(i);
+                    seq[i + 1] = c == ' ' ? BOUNDARY : index.computeIfAbsent(c, k -> (short) (index.size() + 2));
+                }
+                patterns.add(seq);
+                bits.add(bit);
+            }
+        });
+        this.alphabet = index.size() + 2;
+
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            char f = fold((char) c);
+            if (f == 0) symbols[c] = IGNORE;
+            else if (!Character.isLetterOrDigit(f)) symbols[c] = BOUNDARY;
+            else symbols[c] = index.getOrDefault(f, OTHER);
+        }
+
+        // --- trie
+        List<int[]> go = new ArrayList<>();
+        List<Long> out = new ArrayList<>();
+        go.add(newRow());
+        out.add(0L);
+        for (int p = 0; p < patterns.size(); p++) {
+            int s = 0;
+            for (short sym : patterns.get(p)) {
+                if (go.get(s)[sym] < 0) {
+                    go.get(s)[sym] = go.size();
+                    go.add(newRow());
+                    out.add(0L);
+                }
+                s = go.get(s)[sym];
+            }
+            out.set(s, out.get(s) | (1L << bits.get(p)));
+        }
+
+        // --- échecs en largeur, repliés dans les transitions (automate déterministe)
+        int n = go.size();
+        int[] fail = new int[n];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int a = 0; a < alphabet; a++) {
+            int t = go.get(0)[a];
+            if (t < 0) {
+                go.get(0)[a] = 0;
+            } else {
+                fail[t] = 0;
+                queue.add(t);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            out.set(s, out.get(s) | out.get(fail[s]));
+            for (int a = 0; a < alphabet; a++) {
+                int t = go.get(s)[a];
+                if (t < 0) {
+                    go.get(s)[a] = go.get(fail[s])[a];
+                } else {
+                    fail[t] = go.get(fail[s])[a];
+                    queue.add(t);
+                }
+            }
+        }
+
+        this.delta = new int[n * alphabet];
+        this.output = new long[n];
+        for (int s = 0; s < n; s++) {
+            System.arraycopy(go.get(s), 0, delta, s * alphabet, alphabet);
+            output[s] = out.get(s);
+        }
+    }
+
+    /** Bits des expressions présentes dans {@code text}. */
+    long match(CharSequence text) {
+        if (text == null) return 0;
+        int s = delta[BOUNDARY];   // début de texte = frontière
+        long found = output[s];
+        boolean atBoundary = true;
+        for (int i = 0, len = text.length(); i < len; i++) {
+            short sym = symbols[text.charAt(i)];
+            if (sym == IGNORE) continue;
+            if (sym == BOUNDARY) {
+                if (atBoundary) continue;
+                atBoundary = true;
+            } else {
+                atBoundary = false;
+            }
+            s = delta[s * alphabet + sym];
+            found |= output[s];
+        }
+        return found;
+    }
+
+    int states() {
+        return output.length;
+    }
+
+    private int[] newRow() {
+        int[] row = new int[alphabet];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    /** Expression normalisée comme le texte ; les séparateurs deviennent une espace unique. */
+    private static String foldPhrase(String p) {
+        StringBuilder sb = new StringBuilder(p.length());
+        boolean space = true;
+        for (int i = 0; i < p.length(); i++) {
+            char f = fold(p.charAt(i));
+            if (f == 0) continue;
+            if (!Character.isLetterOrDigit(f)) {
+                if (!space) sb.append(' ');
+                space = true;
+            } else {
+                sb.append(f);
+                space = false;
+            }
+        }
+        return sb.toString().strip();
+    }
+
+    /** Caractère normalisé ; 0 = à ignorer (diacritiques arabes, tatweel, marques combinantes). */
+    private static char fold(char c) {
+        if (c >= '\u064B' && c <= '\u0652' || c == '\u0640' || c == '\u0670') return 0;
+        switch (c) {
+            case '\u0622', '\u0623', '\u0625' -> { return '\u0627'; }   // alef madda / hamza dessus / dessous -> alef
+            case '\u0649' -> { return '\u064A'; }                   // alef maqsura -> ya
+            case '\u00DF' -> { return 's'; }
+            case '\u0153' -> { return 'o'; }                        // oe (« cœur »)
+            case '\u00E6' -> { return 'a'; }
+            default -> { }
+        }
+        if (Character.getType(c) == Character.NON_SPACING_MARK) return 0;
+        if (c >= 0x00C0 && c < 0x0250) {
+            String d = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            c = d.charAt(0);
+        }
+        return Character.toLowerCase(c);
+    }
+}
@@ -0,0 +1,554 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.chat_orchestrator.chat_orchestrator.entity.Message;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Index des mots-clés alimenté à l'écriture (tokenisation unique, cf. KeywordTokenizer) :
+ * <ul>
+ *   <li>keyword_user_daily : comptes exacts par utilisateur, jour et mot (top-K exact d'un utilisateur) ;</li>
+ *   <li>keyword_sketch_daily : un résumé Space-Saving par jour, fusionné jour par jour pour le top global.</li>
+ * </ul>
+ * Les écritures sont tamponnées et appliquées par lots ({@code app.keywords.flush-ms}). Au premier
+ * démarrage, l'historique (archive comprise) est indexé en tâche de fond ; en attendant, les lectures
+ * retombent sur le calcul SQL d'origine.
+ */
+@Slf4j
+@Component
+public class KeywordIndex {
+
+    private static final String STATE = "keyword_index";
+
+    private record Key(long userId, LocalDate day) {}
+
+    /** Message vu avant la fin de l'indexation initiale : rejoué s'il n'en faisait pas partie. */
+    private record Event(Long messageId, long userId, Map<String, Integer> words, LocalDate day) {}
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ArchiveService archiveService;
+    private final boolean enabled;
+    private final int capacity;
+    private final int cachedDays;
+    private final int backfillBatch;
+
+    // tampon d'écriture + journal d'indexation initiale : accès sous le verrou de l'instance
+    private Map<Key, Map<String, Long>> buffer = new HashMap<>();
+    private List<Event> pending = new ArrayList<>();
+    private long cutoff = Long.MAX_VALUE;   // messages d'id <= cutoff : comptés par l'indexation initiale
+    private volatile boolean ready;
+
+    /** Incrémenté quand un jour passé change (import, suppression, réindexation) : entre dans l'ETag des plages closes. */
+    private final AtomicLong version = new AtomicLong();
+
+    /** Résumés journaliers chargés (LRU) ; accès sous leur propre verrou. */
+    private final LinkedHashMap<LocalDate, SpaceSaving> sketches;
+
+    /** Sérialise vidage du tampon, suppressions et dérivation des résumés. */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final AtomicBoolean indexing = new AtomicBoolean(false);
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "keyword-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public KeywordIndex(JdbcTemplate jdbc,
+                        PlatformTransactionManager transactionManager,
+                        ArchiveService archiveService,
+                        @Value("${app.keywords.enabled:true}") boolean enabled,
+                        @Value("${app.keywords.sketch-capacity:1024}") int capacity,
+                        @Value("${app.keywords.cached-days:120}") int cachedDays,
+                        @Value("${app.keywords.backfill-batch:5000}") int backfillBatch) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.archiveService = archiveService;
+        this.enabled = enabled;
+        this.capacity = Math.max(16, capacity);
+        this.cachedDays = Math.max(1, cachedDays);
+        this.backfillBatch = Math.max(100, backfillBatch);
+        this.sketches = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, SpaceSaving> eldest) {
+                return size() > KeywordIndex.this.cachedDays;
+            }
+        };
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) return;
+        List<Timestamp> done = jdbc.queryForList("SELECT watermark FROM rollup_state WHERE name = ?", Timestamp.class, STATE);
+        if (!done.isEmpty()) {
+            synchronized (this) {
+                cutoff = 0;
+                replayPending();
+            }
+            ready = true;
+        } else {
+            requestReindex();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+        if (ready) {
+            try {
+                flush();
+            } catch (Exception e) {
+                log.warn("[KEYWORDS] vidage final échoué", e);
+            }
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public long version() {
+        return version.get();
+    }
+
+    // ---------- Chemin d'écriture (tokenisation dans le thread appelant, après commit) ----------
+    /** Entité JPA : l'id (IDENTITY) n'est lu qu'après commit. */
+    public void onMessage(Long userId, Message m) {
+        if (!enabled) return;
+        TxHooks.afterCommit(() -> record(m.getId(), userId, m.getContent(), m.getTimestamp()));
+    }
+
+    public void onMessage(Long userId, Long messageId, String content, LocalDateTime ts) {
+        if (!enabled) return;
+        TxHooks.afterCommit(() -> record(messageId, userId, content, ts));
+    }
+
+    private void record(Long messageId, Long userId, String content, LocalDateTime ts) {
+        Map<String, Integer> words = KeywordTokenizer.count(content);
+        if (words.isEmpty()) return;
+        Event e = new Event(messageId, userId == null ? 0 : userId,
+                words, (ts == null ? LocalDateTime.now() : ts).toLocalDate());
+        synchronized (this) {
+            if (pending != null) {
+                pending.add(e);
+            } else if (e.messageId() == null || e.messageId() > cutoff) {
+                buffer(e);
+            }
+        }
+    }
+
+    private void buffer(Event e) {
+        Map<String, Long> m = buffer.computeIfAbsent(new Key(e.userId(), e.day()), k -> new HashMap<>());
+        e.words().forEach((w, n) -> m.merge(w, (long) n, Long::sum));
+    }
+
+    private void replayPending() {
+        if (pending == null) return;
+        for (Event e : pending) {
+            if (e.messageId() == null || e.messageId() > cutoff) buffer(e);
+        }
+        pending = null;
+    }
+
+    /**
+     * Applique le tampon : comptes exacts et résumés des jours touchés dans une transaction, remis en
+     * tampon si elle échoue. Sans attente si le verrou est pris (indexation en cours) : le tampon sera
+     * vidé au passage suivant.
+     */
+    @Scheduled(fixedDelayString = "${app.keywords.flush-ms:5000}")
+    public void flush() {
+        if (!enabled || !flushLock.tryLock()) return;
+        try {
+            Map<Key, Map<String, Long>> batch;
+            synchronized (this) {
+                if (buffer.isEmpty()) return;
+                batch = buffer;
+                buffer = new HashMap<>();
+            }
+            try {
+                save(batch);
+            } catch (Exception e) {
+                log.warn("[KEYWORDS] vidage échoué", e);
+                synchronized (this) {
+                    batch.forEach((k, words) -> {
+                        Map<String, Long> m = buffer.computeIfAbsent(k, x -> new HashMap<>());
+                        words.forEach((w, n) -> m.merge(w, n, Long::sum));
+                    });
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /** Résumés mis à jour sur des copies : le cache n'est modifié qu'après commit. */
+    private void save(Map<Key, Map<String, Long>> batch) {
+        Map<LocalDate, Map<String, Long>> perDay = new HashMap<>();
+        batch.forEach((k, words) -> words.forEach((w, n) ->
+                perDay.computeIfAbsent(k.day(), d -> new HashMap<>()).merge(w, n, Long::sum)));
+        Map<LocalDate, SpaceSaving> loaded = load(perDay.keySet());
+        Map<LocalDate, SpaceSaving> updated = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>();
+        synchronized (sketches) {
+            perDay.forEach((day, words) -> {
+                SpaceSaving s = SpaceSaving.fromBytes(loaded.get(day).toBytes(), capacity);
+                words.forEach(s::offer);
+                updated.put(day, s);
+                rows.add(new Object[]{Date.valueOf(day), s.toBytes()});
+            });
+        }
+        tx.executeWithoutResult(s -> {
+            upsert(batch, 1);
+            saveSketches(rows);
+        });
+        synchronized (sketches) {
+            sketches.putAll(updated);
+        }
+        LocalDate today = LocalDate.now();
+        if (batch.keySet().stream().anyMatch(k -> k.day().isBefore(today))) version.incrementAndGet();
+    }
+
+    // ---------- Lecture ----------
+    /**
+     * Top-K sur [from, to] : exact pour un utilisateur, fusion des résumés journaliers sinon
+     * (comptes majorés de l'erreur Space-Saving). Reflète le dernier vidage (pas d'écriture sur le
+     * chemin de lecture). Vide tant que l'indexation initiale n'est pas finie.
+     */
+    public Optional<List<AnalyticsService.KeywordCount>> top(LocalDate from, LocalDate to, int limit, Long userId) {
+        if (!enabled || !ready) return Optional.empty();
+        int k = Math.max(1, limit);
+        if (userId != null) {
+            return Optional.of(jdbc.query("""
+                    SELECT word, SUM(cnt) AS cnt
+                    FROM keyword_user_daily
+                    WHERE user_id = ? AND day >= ? AND day <= ?
+                    GROUP BY word
+                    HAVING SUM(cnt) > 0
+                    ORDER BY cnt DESC, word
+                    LIMIT ?
+                    """, (rs, i) -> new AnalyticsService.KeywordCount(rs.getString(1), rs.getLong(2)),
+                    userId, Date.valueOf(from), Date.valueOf(to), k));
+        }
+        Set<LocalDate> days = new HashSet<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) days.add(d);
+        Map<LocalDate, SpaceSaving> loaded = load(days);
+        Map<String, Long> merged = new HashMap<>();
+        synchronized (sketches) {
+            loaded.values().forEach(s -> s.addTo(merged));
+        }
+        return Optional.of(merged.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                .limit(k)
+                .map(e -> new AnalyticsService.KeywordCount(e.getKey(), e.getValue()))
+                .toList());
+    }
+
+    // ---------- Suppressions ----------
+    /**
+     * Exécute la suppression et retire, dans sa transaction, les mots des messages qu'elle a effacés
+     * (chauds et archivés, re-tokenisés depuis RETURNING) ; les résumés des jours touchés sont recalculés
+     * après commit. Un message effacé alors que son ajout est encore en tampon est décompté avant d'être
+     * compté : compte transitoirement négatif, ignoré à la lecture (HAVING SUM(cnt) > 0).
+     */
+    DeletedRows deleting(Supplier<DeletedRows> delete) {
+        return tx.execute(s -> {
+            DeletedRows d = delete.get();
+            if (!enabled || !ready) return d;
+            Map<Key, Map<String, Long>> minus = new HashMap<>();
+            for (DeletedRows.Row r : d.messages()) add(minus, r.userId(), r.content(), r.timestamp());
+            Set<Key> keys = new HashSet<>(minus.keySet());
+            subtract(minus);
+            rederiveAfterCommit(keys);
+            return d;
+        });
+    }
+
+    /**
+     * Rétention : retire les mots des messages de {@code partition} (sur le point d'être supprimée), lus
+     * par tranches dans la transaction de l'appelant, qui en a bloqué les écritures ; résumés recalculés
+     * après commit.
+     */
+    void droppingPartition(String partition) {
+        if (!enabled || !ready) return;
+        Map<Key, Map<String, Long>> minus = new HashMap<>();
+        Set<Key> keys = new HashSet<>();
+        int[] n = {0};
+        jdbc.query("""
+                SELECT COALESCE(c.user_id, 0), m.content, m."timestamp"
+                FROM %s m JOIN conversation c ON c.id = m.conversation_id
+                """.formatted(partition), rs -> {
+            Timestamp ts = rs.getTimestamp(3);
+            add(minus, rs.getLong(1), rs.getString(2), ts == null ? null : ts.toLocalDateTime());
+            if (++n[0] % backfillBatch == 0) {
+                keys.addAll(minus.keySet());
+                subtract(minus);
+            }
+        });
+        keys.addAll(minus.keySet());
+        subtract(minus);
+        rederiveAfterCommit(keys);
+    }
+
+    /** Décompte (transaction de l'appelant) puis vide {@code minus} ; seuls les comptes tombés à zéro sont retirés. */
+    private void subtract(Map<Key, Map<String, Long>> minus) {
+        if (minus.isEmpty()) return;
+        upsert(minus, -1);
+        Long[] users = minus.keySet().stream().map(Key::userId).distinct().toArray(Long[]::new);
+        Date[] days = minus.keySet().stream().map(Key::day).distinct().map(Date::valueOf).toArray(Date[]::new);
+        jdbc.update(con -> {
+            var ps = con.prepareStatement(
+                    "DELETE FROM keyword_user_daily WHERE cnt = 0 AND user_id = ANY(?) AND day = ANY(?)");
+            ps.setArray(1, con.createArrayOf("bigint", users));
+            ps.setArray(2, con.createArrayOf("date", days));
+            return ps;
+        });
+        minus.clear();
+    }
+
+    private void rederiveAfterCommit(Set<Key> keys) {
+        if (keys.isEmpty()) return;
+        Set<LocalDate> days = keys.stream().map(Key::day).collect(Collectors.toSet());
+        TxHooks.afterCommit(() -> {
+            flushLock.lock();
+            try {
+                flush();   // ajouts encore en tampon appliqués avant le recalcul des résumés
+                rederive(days);
+                version.incrementAndGet();
+            } finally {
+                flushLock.unlock();
+            }
+        });
+    }
+
+    public void userDeleted(Long userId) {
+        if (!enabled || !ready) return;
+        flushLock.lock();
+        try {
+            flush();
+            List<Date> days = jdbc.queryForList(
+                    "DELETE FROM keyword_user_daily WHERE user_id = ? RETURNING day", Date.class, userId);
+            Set<LocalDate> touched = new HashSet<>();
+            days.forEach(d -> touched.add(d.toLocalDate()));
+            rederive(touched);
+            version.incrementAndGet();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // ---------- Indexation initiale ----------
+    /** Réindexation complète en tâche de fond ; false si elle est déjà en cours. */
+    public boolean requestReindex() {
+        if (!enabled || !indexing.compareAndSet(false, true)) return false;
+        ready = false;
+        synchronized (this) {
+            if (pending == null) pending = new ArrayList<>();
+        }
+        worker.submit(this::reindex);
+        return true;
+    }
+
+    private void reindex() {
+        long t0 = System.currentTimeMillis();
+        flushLock.lock();
+        try {
+            Long maxId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM message", Long.class);
+            long upTo = maxId == null ? 0 : maxId;
+            synchronized (this) {
+                cutoff = upTo;
+                buffer = new HashMap<>();
+                replayPending();   // les messages plus récents repartent par le tampon
+            }
+            jdbc.update("DELETE FROM rollup_state WHERE name = ?", STATE);
+            jdbc.update("TRUNCATE keyword_user_daily, keyword_sketch_daily");
+            synchronized (sketches) {
+                sketches.clear();
+            }
+
+            // archive d'abord : une conversation archivée pendant la passe chaude ne peut pas être comptée deux fois
+            List<long[]> archived = jdbc.query("""
+                    SELECT a.conversation_id, COALESCE(c.user_id, 0)
+                    FROM conversation_archive a JOIN conversation c ON c.id = a.conversation_id
+                    """, (rs, i) -> new long[]{rs.getLong(1), rs.getLong(2)});
+            Map<Key, Map<String, Long>> acc = new HashMap<>();
+            int n = 0;
+            for (long[] a : archived) {
+                for (MessageDto m : archiveService.archivedMessages(a[0])) {
+                    add(acc, a[1], m.getContent(), m.getTimestamp());
+                    n++;
+                }
+                if (n >= backfillBatch) {
+                    writeBatch(acc);
+                    n = 0;
+                }
+            }
+            writeBatch(acc);
+
+            // messages chauds par tranches d'id (une transaction par tranche)
+            long after = 0;
+            while (true) {
+                long[] last = {after};
+                int[] rows = {0};
+                jdbc.query("""
+                        SELECT m.id, COALESCE(c.user_id, 0), m.content, m."timestamp"
+                        FROM message m JOIN conversation c ON c.id = m.conversation_id
+                        WHERE m.id > ? AND m.id <= ?
+                        ORDER BY m.id
+                        LIMIT ?
+                        """, rs -> {
+                    last[0] = rs.getLong(1);
+                    rows[0]++;
+                    Timestamp ts = rs.getTimestamp(4);
+                    add(acc, rs.getLong(2), rs.getString(3), ts == null ? null : ts.toLocalDateTime());
+                }, after, upTo, backfillBatch);
+                writeBatch(acc);
+                if (rows[0] == 0) break;
+                after = last[0];
+            }
+
+            rederiveAll();
+            jdbc.update("""
+                    INSERT INTO rollup_state (name, watermark) VALUES (?, now())
+                    ON CONFLICT (name) DO UPDATE SET watermark = EXCLUDED.watermark
+                    """, STATE);
+            ready = true;
+            version.incrementAndGet();
+            log.info("[KEYWORDS] index construit jusqu'au message {} en {} ms", upTo, System.currentTimeMillis() - t0);
+        } catch (Exception e) {
+            log.warn("[KEYWORDS] indexation échouée", e);
+        } finally {
+            flushLock.unlock();
+            indexing.set(false);
+        }
+    }
+
+    private void writeBatch(Map<Key, Map<String, Long>> acc) {
+        if (acc.isEmpty()) return;
+        tx.executeWithoutResult(s -> upsert(acc, 1));
+        acc.clear();
+    }
+
+    // ---------- Résumés ----------
+    /** Résumés des jours demandés : cache, sinon base (une requête), sinon résumé vide. */
+    private Map<LocalDate, SpaceSaving> load(Set<LocalDate> days) {
+        Map<LocalDate, SpaceSaving> out = new HashMap<>();
+        List<LocalDate> missing = new ArrayList<>();
+        synchronized (sketches) {
+            for (LocalDate d : days) {
+                SpaceSaving s = sketches.get(d);
+                if (s != null) out.put(d, s);
+                else missing.add(d);
+            }
+        }
+        if (missing.isEmpty()) return out;
+        Date[] arr = missing.stream().map(Date::valueOf).toArray(Date[]::new);
+        jdbc.query(con -> {
+            var ps = con.prepareStatement("SELECT day, sketch FROM keyword_sketch_daily WHERE day = ANY(?)");
+            ps.setArray(1, con.createArrayOf("date", arr));
+            return ps;
+        }, rs -> {
+            out.put(rs.getDate(1).toLocalDate(), SpaceSaving.fromBytes(rs.getBytes(2), capacity));
+        });
+        synchronized (sketches) {
+            for (LocalDate d : missing) {
+                SpaceSaving s = out.computeIfAbsent(d, k -> new SpaceSaving(capacity));
+                sketches.putIfAbsent(d, s);
+            }
+        }
+        return out;
+    }
+
+    /** Résumés recalculés depuis les comptes exacts (après suppression : Space-Saving ne sait pas décompter). */
+    private void rederive(Set<LocalDate> days) {
+        if (days.isEmpty()) return;
+        Date[] arr = days.stream().map(Date::valueOf).toArray(Date[]::new);
+        Map<LocalDate, Map<String, Long>> exact = new HashMap<>();
+        days.forEach(d -> exact.put(d, new HashMap<>()));
+        jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    SELECT day, word, SUM(cnt) FROM keyword_user_daily
+                    WHERE day = ANY(?) GROUP BY day, word HAVING SUM(cnt) > 0
+                    """);
+            ps.setArray(1, con.createArrayOf("date", arr));
+            return ps;
+        }, rs -> {
+            exact.get(rs.getDate(1).toLocalDate()).put(rs.getString(2), rs.getLong(3));
+        });
+        storeExact(exact);
+    }
+
+    private void rederiveAll() {
+        Map<LocalDate, Map<String, Long>> exact = new HashMap<>();
+        jdbc.query("SELECT day, word, SUM(cnt) FROM keyword_user_daily GROUP BY day, word HAVING SUM(cnt) > 0 ORDER BY day", rs -> {
+            LocalDate day = rs.getDate(1).toLocalDate();
+            if (!exact.isEmpty() && !exact.containsKey(day)) {
+                storeExact(exact);   // jour précédent terminé : un seul jour en mémoire à la fois
+                exact.clear();
+            }
+            exact.computeIfAbsent(day, d -> new HashMap<>()).put(rs.getString(2), rs.getLong(3));
+        });
+        storeExact(exact);
+    }
+
+    private void storeExact(Map<LocalDate, Map<String, Long>> exact) {
+        List<Object[]> rows = new ArrayList<>();
+        synchronized (sketches) {
+            exact.forEach((day, words) -> {
+                SpaceSaving s = SpaceSaving.ofExact(capacity, words);
+                if (sketches.containsKey(day)) sketches.put(day, s);
+                rows.add(new Object[]{Date.valueOf(day), s.toBytes()});
+            });
+        }
+        saveSketches(rows);
+    }
+
+    private void saveSketches(List<Object[]> rows) {
+        if (rows.isEmpty()) return;
+        jdbc.batchUpdate("""
+                INSERT INTO keyword_sketch_daily (day, sketch) VALUES (?, ?)
+                ON CONFLICT (day) DO UPDATE SET sketch = EXCLUDED.sketch
+                """, rows);
+    }
+
+    // ---------- Utilitaires ----------
+    private static void add(Map<Key, Map<String, Long>> acc, long userId, String content, LocalDateTime ts) {
+        Map<String, Integer> words = KeywordTokenizer.count(content);
+        if (words.isEmpty()) return;
+        LocalDate day = (ts == null ? LocalDateTime.now() : ts).toLocalDate();
+        Map<String, Long> m = acc.computeIfAbsent(new Key(userId, day), k -> new HashMap<>());
+        words.forEach((w, n) -> m.merge(w, (long) n, Long::sum));
+    }
+
+    private void upsert(Map<Key, Map<String, Long>> counts, int sign) {
+        List<Object[]> rows = new ArrayList<>();
+        counts.forEach((k, words) -> words.forEach((w, n) ->
+                rows.add(new Object[]{k.userId(), Date.valueOf(k.day()), w, sign * n})));
+        jdbc.batchUpdate("""
+                INSERT INTO keyword_user_daily (user_id, day, word, cnt) VALUES (?, ?, ?, ?)
+                ON CONFLICT (user_id, day, word) DO UPDATE SET cnt = keyword_user_daily.cnt + EXCLUDED.cnt
+                """, rows);
+    }
+}
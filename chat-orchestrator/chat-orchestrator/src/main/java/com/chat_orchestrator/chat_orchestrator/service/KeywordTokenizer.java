@@ -0,0 +1,60 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Découpage d'un message en mots-clés, une seule fois à l'écriture : minuscules, séparateurs
+ * identiques à l'ancien regexp_split ([^[:alnum:]_]+), au moins 3 caractères, mots vides FR/EN,
+ * pluriels ramenés au singulier ("conversations" et "conversation" comptent ensemble).
+ */
+final class KeywordTokenizer {
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}_]+");
+    private static final int MAX_LENGTH = 64;
+
+    private static final Set<String> STOPWORDS = Set.of(
+            // FR
+            "les", "des", "une", "que", "qui", "est", "pour", "avec", "dans", "vous", "nous", "sur", "pas",
+            "bonjour", "salut", "oui", "non", "ça", "mon", "ton", "son", "mes", "tes", "ses", "aux",
+            "dun", "dune", "mais", "donc", "alors", "car", "par", "quoi", "quand", "cet", "cette",
+            "elle", "ils", "elles", "leur", "leurs", "sont", "été", "être", "avoir", "fait", "faire",
+            "comme", "plus", "tout", "tous", "toute", "toutes", "aussi", "bien", "très", "sans", "sous",
+            "entre", "encore", "peut", "comment", "pourquoi", "merci", "votre", "vos", "notre", "nos",
+            "ces", "ceux", "celle", "celui", "lui", "moi", "toi", "suis", "ont", "était", "ai",
+            // EN
+            "the", "and", "are", "for", "with", "you", "your", "this", "that", "these", "those", "was",
+            "were", "have", "has", "had", "not", "but", "can", "all", "any", "from", "they", "them",
+            "their", "what", "which", "who", "how", "why", "when", "will", "would", "there", "here",
+            "about", "into", "out", "our", "just", "also", "been", "does", "did", "its", "hello", "thanks"
+    );
+
+    private KeywordTokenizer() {}
+
+    /** Occurrences par mot-clé normalisé (vide si rien d'exploitable). */
+    static Map<String, Integer> count(String content) {
+        Map<String, Integer> out = new HashMap<>();
+        if (content == null || content.isBlank()) return out;
+        for (String raw : SEPARATORS.split(content.toLowerCase(Locale.ROOT))) {
+            if (raw.length() < 3 || raw.length() > MAX_LENGTH || STOPWORDS.contains(raw)) continue;
+            String w = stem(raw);
+            if (STOPWORDS.contains(w)) continue;
+            out.merge(w, 1, Integer::sum);
+        }
+        return out;
+    }
+
+    /** Racinisation légère et prévisible : pluriels FR/EN seulement (le mot affiché reste lisible). */
+    static String stem(String w) {
+        if (w.length() <= 4) return w;
+        if (w.endsWith("eaux")) return w.substring(0, w.length() - 1);        // réseaux -> réseau
+        if (w.endsWith("ies") && w.length() > 5) return w.substring(0, w.length() - 3) + "y";   // queries -> query
+        if (w.endsWith("s") && !w.endsWith("ss") && !w.endsWith("us") && !w.endsWith("is")) {
+            return w.substring(0, w.length() - 1);
+        }
+        return w;
+    }
+}
@@ -1,16 +1,13 @@
 package com.chat_orchestrator.chat_orchestrator.service;
 
 import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
-import com.chat_orchestrator.chat_orchestrator.entity.Conversation;
 import com.chat_orchestrator.chat_orchestrator.entity.Message;
 import com.chat_orchestrator.chat_orchestrator.repository.ConversationRepository;
 import com.chat_orchestrator.chat_orchestrator.repository.MessageRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.stream.LongStream;
 
 @Service
 @RequiredArgsConstructor
@@ -18,14 +15,22 @@ public class KnowledgeService {
 
     private final ConversationRepository convRepo;
     private final MessageRepository messageRepository;
+    private final TranscriptCache transcriptCache;
+    private final ArchiveService archiveService;
+    private final MessageSearchService messageSearchService;
+    private final KnowledgeStats knowledgeStats;
 
-    /** historique ordonné */
+    /** historique ordonné (servi par le cache hors-heap si la conversation est chaude) */
     public List<MessageDto> getHistory(Long convId) {
-        return messageRepository
-                .findByConversation_IdOrderByTimestampAsc(convId)
-                .stream()
-                .map(m -> new MessageDto(m.getRole(), m.getContent(), m.getTimestamp()))
-                .toList();
+        var cached = transcriptCache.get(convId);
+        if (cached.isPresent()) return cached.get();
+
+        long generation = transcriptCache.generation(convId);
+        ArchiveService.History history = archiveService.history(convId);
+        if (!history.messages().isEmpty()) {
+            transcriptCache.put(convId, history.messages(), history.lastMessageId(), generation);
+        }
+        return history.messages();
     }
 
     /** total conversations */
@@ -59,76 +64,24 @@ public class KnowledgeService {
         return "1.2.3";
     }
 
-    /** total mots dans tous les messages */
+    /** total mots dans tous les messages (compteur incrémental, cf. KnowledgeStats) */
     public long countWordsAllMessages() {
-        return messageRepository.findAll()
-                .stream()
-                .mapToLong(m -> {
-                    String c = m.getContent();
-                    return (c == null || c.isBlank())
-                            ? 0
-                            : c.strip().split("\\W+").length;
-                })
-                .sum();
+        return knowledgeStats.totalWords();
     }
 
     /** titre conv. la plus longue (par nombre de messages) */
     public String getLongestConversationTitle() {
-        return convRepo.findAll()
-                .stream()
-                .max((c1, c2) -> Long.compare(
-                        messageRepository.countByConversation_Id(c1.getId()),
-                        messageRepository.countByConversation_Id(c2.getId())
-                ))
-                .map(Conversation::getTitle)
+        return knowledgeStats.longestConversationTitle()
                 .orElse("Aucune conversation trouvée.");
     }
 
     /** durée moyenne (en minutes) */
     public double getAverageConversationDuration() {
-        var allConvs = convRepo.findAll();
-        double total = 0;
-        int validCount = 0;
-        for (Conversation conv : allConvs) {
-            var msgs = messageRepository
-                    .findByConversation_IdOrderByTimestampAsc(conv.getId());
-            if (msgs.size() < 2) continue;
-            var start = msgs.get(0).getTimestamp();
-            var end   = msgs.get(msgs.size() - 1).getTimestamp();
-            long minutes = ChronoUnit.MINUTES.between(start, end);
-            total += minutes;
-            validCount++;
-        }
-        return validCount > 0 ? total / validCount : 0.0;
+        return knowledgeStats.averageDurationMinutes();
     }
-    public Map<String, Long> countWordOccurrencesByConversation(String word) {
-        String lower = word.toLowerCase();
-        Map<String, Long> result = new LinkedHashMap<>();
-
-        for (Conversation conv : convRepo.findAll()) {
-            long count = messageRepository
-                    .findByConversation_IdOrderByTimestampAsc(conv.getId())
-                    .stream()
-                    .map(Message::getContent)
-                    .filter(Objects::nonNull)
-                    .flatMapToLong(content -> LongStream.of(countOccurrences(content, lower)))
-                    .sum();
 
-            if (count > 0) {
-                result.put(conv.getTitle(), count);
-            }
-        }
-        return result;
-    }
-
-    /** Compte dans `text` le nombre d'index non-recouvrants de `word` (lowercase). */
-    private int countOccurrences(String text, String word) {
-        String t = text.toLowerCase();
-        int idx = 0, cnt = 0;
-        while ((idx = t.indexOf(word, idx)) != -1) {
-            cnt++;
-            idx += word.length();
-        }
-        return cnt;
+    /** occurrences d'un mot par titre de conversation (servi par l'index plein texte) */
+    public Map<String, Long> countWordOccurrencesByConversation(String word) {
+        return messageSearchService.countWordOccurrencesByConversation(word);
     }
 }
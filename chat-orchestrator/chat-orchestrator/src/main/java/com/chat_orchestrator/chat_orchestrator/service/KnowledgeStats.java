@@ -0,0 +1,268 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.KnowledgeStatsDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.chat_orchestrator.chat_orchestrator.entity.Message;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Statistiques globales de KnowledgeService tenues à jour depuis le chemin d'écriture
+ * (après commit) au lieu d'être recalculées en chargeant toute la base :
+ * total de mots, durée moyenne des conversations, conversation la plus longue.
+ * Archive comprise (le tiering est transparent). Reconstruction complète au démarrage
+ * et à la demande, sur un instantané REPEATABLE READ ; les écritures arrivées pendant
+ * la reconstruction sont rejouées ensuite.
+ */
+@Slf4j
+@Component
+public class KnowledgeStats {
+
+    private static final class Conv {
+        String title;
+        long messages;
+        long words;
+        LocalDateTime first;
+        LocalDateTime last;
+
+        /** Contribution à la durée moyenne (conversations d'au moins 2 messages, comme avant). */
+        long minutes() {
+            return messages >= 2 && first != null && last != null ? ChronoUnit.MINUTES.between(first, last) : 0;
+        }
+    }
+
+    /** Agrégats + détail par conversation (nécessaire pour décompter une suppression). */
+    private static final class State {
+        final Map<Long, Conv> convs = new HashMap<>();
+        long totalWords;
+        long durationMinutesSum;
+        long durationConvs;
+        Long longestId;
+
+        void message(Long convId, String title, String content, LocalDateTime ts) {
+            Conv c = convs.computeIfAbsent(convId, id -> new Conv());
+            if (title != null) c.title = title;
+            long before = c.minutes();
+            boolean counted = c.messages >= 2;
+
+            long w = countWords(content);
+            c.messages++;
+            c.words += w;
+            totalWords += w;
+            if (ts != null) {
+                if (c.first == null || ts.isBefore(c.first)) c.first = ts;
+                if (c.last == null || ts.isAfter(c.last)) c.last = ts;
+            }
+
+            durationMinutesSum += c.minutes() - before;
+            if (!counted && c.messages >= 2) durationConvs++;
+
+            Conv leader = longestId == null ? null : convs.get(longestId);
+            if (leader == null || c.messages > leader.messages) longestId = convId;
+        }
+
+        void title(Long convId, String title) {
+            Conv c = convs.get(convId);
+            if (c != null) c.title = title;
+        }
+
+        void delete(Long convId) {
+            Conv c = convs.remove(convId);
+            if (c == null) return;
+            totalWords -= c.words;
+            durationMinutesSum -= c.minutes();
+            if (c.messages >= 2) durationConvs--;
+            if (convId.equals(longestId)) {
+                // rare : nouveau calcul du maximum, en mémoire seulement
+                longestId = convs.entrySet().stream()
+                        .max(Comparator.comparingLong(en -> en.getValue().messages))
+                        .map(Map.Entry::getKey)
+                        .orElse(null);
+            }
+        }
+    }
+
+    /** Une écriture ; {@code messageId} sert à ne pas recompter ce que l'instantané a déjà vu. */
+    private record Event(Long messageId, Consumer<State> apply) {}
+
+    private final JdbcTemplate cursorJdbc;
+    private final TransactionTemplate snapshotTx;
+    private final ArchiveService archiveService;
+
+    // état courant et journal de reconstruction : accès sous le verrou de l'instance
+    private State state = new State();
+    private List<Event> pending;
+    private volatile boolean ready;
+    private volatile Instant builtAt;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "knowledge-stats");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public KnowledgeStats(DataSource dataSource,
+                          PlatformTransactionManager transactionManager,
+                          ArchiveService archiveService,
+                          @Value("${app.knowledge-stats.fetch-size:1000}") int fetchSize) {
+        this.cursorJdbc = new JdbcTemplate(dataSource);
+        this.cursorJdbc.setFetchSize(fetchSize);
+        this.snapshotTx = new TransactionTemplate(transactionManager);
+        this.snapshotTx.setReadOnly(true);
+        this.snapshotTx.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.archiveService = archiveService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        requestRebuild();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+    }
+
+    // ---------- Lecture ----------
+    public synchronized long totalWords() {
+        return state.totalWords;
+    }
+
+    public synchronized double averageDurationMinutes() {
+        return state.durationConvs > 0 ? (double) state.durationMinutesSum / state.durationConvs : 0.0;
+    }
+
+    public synchronized Optional<String> longestConversationTitle() {
+        return Optional.ofNullable(state.longestId).map(state.convs::get).map(c -> c.title);
+    }
+
+    public synchronized KnowledgeStatsDTO snapshot() {
+        long msgs = state.convs.values().stream().mapToLong(c -> c.messages).sum();
+        return new KnowledgeStatsDTO(ready, rebuilding.get(), builtAt, state.convs.size(), msgs,
+                state.totalWords, averageDurationMinutes(), longestConversationTitle().orElse(null));
+    }
+
+    // ---------- Chemin d'écriture (appelé dans la transaction métier, appliqué après commit) ----------
+    /** Entité JPA : l'id (IDENTITY) n'est lu qu'après commit. */
+    public void onMessage(Long convId, String title, Message m) {
+        TxHooks.afterCommit(() -> record(new Event(m.getId(),
+                s -> s.message(convId, title, m.getContent(), m.getTimestamp()))));
+    }
+
+    public void onMessage(Long convId, String title, Long messageId, String content, LocalDateTime ts) {
+        TxHooks.afterCommit(() -> record(new Event(messageId, s -> s.message(convId, title, content, ts))));
+    }
+
+    public void onTitle(Long convId, String title) {
+        TxHooks.afterCommit(() -> record(new Event(null, s -> s.title(convId, title))));
+    }
+
+    public void onConversationsDeleted(Collection<Long> convIds) {
+        List<Long> ids = List.copyOf(convIds);
+        TxHooks.afterCommit(() -> record(new Event(null, s -> ids.forEach(s::delete))));
+    }
+
+    private synchronized void record(Event e) {
+        e.apply().accept(state);
+        if (pending != null) pending.add(e);
+    }
+
+    // ---------- Reconstruction ----------
+    /** Reconstruction en tâche de fond ; false si une reconstruction est déjà en cours. */
+    public boolean requestRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) return false;
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+        worker.submit(this::rebuild);
+        return true;
+    }
+
+    private void rebuild() {
+        long t0 = System.currentTimeMillis();
+        try {
+            State fresh = new State();
+            Long maxId = snapshotTx.execute(s -> load(fresh));
+            synchronized (this) {
+                // rejoue ce que l'instantané n'a pas vu (messages d'id > maxId, titres, suppressions)
+                for (Event e : pending) {
+                    if (e.messageId() == null || e.messageId() > maxId) e.apply().accept(fresh);
+                }
+                state = fresh;
+                pending = null;
+                ready = true;
+                builtAt = Instant.now();
+            }
+            log.info("[KNOWLEDGE-STATS] reconstruit : {} conversations en {} ms", fresh.convs.size(),
+                    System.currentTimeMillis() - t0);
+        } catch (Exception e) {
+            synchronized (this) {
+                pending = null;
+            }
+            log.warn("[KNOWLEDGE-STATS] reconstruction échouée", e);
+        } finally {
+            rebuilding.set(false);
+        }
+    }
+
+    /** Remplit {@code s} depuis la base ; renvoie le plus grand id de message vu par l'instantané. */
+    private Long load(State s) {
+        Long maxId = cursorJdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM message", Long.class);
+        long max = maxId == null ? 0 : maxId;
+
+        // messages chauds : une seule passe en flux (mots par conversation + bornes temporelles)
+        cursorJdbc.query("""
+                SELECT c.id, c.title, m.content, m."timestamp"
+                FROM message m
+                JOIN conversation c ON c.id = m.conversation_id
+                WHERE m.id <= ?
+                """, rs -> {
+            Timestamp ts = rs.getTimestamp(4);
+            s.message(rs.getLong(1), rs.getString(2), rs.getString(3), ts == null ? null : ts.toLocalDateTime());
+        }, max);
+
+        // conversations sans message chaud (vides ou archivées) + blocs archivés
+        List<Long> archived = new ArrayList<>();
+        cursorJdbc.query("""
+                SELECT c.id, c.title, (a.conversation_id IS NOT NULL) AS archived
+                FROM conversation c
+                LEFT JOIN conversation_archive a ON a.conversation_id = c.id
+                """, rs -> {
+            long id = rs.getLong(1);
+            s.convs.computeIfAbsent(id, k -> new Conv()).title = rs.getString(2);
+            if (rs.getBoolean(3)) archived.add(id);
+        });
+        for (Long id : archived) {
+            for (MessageDto m : archiveService.archivedMessages(id)) {
+                s.message(id, null, m.getContent(), m.getTimestamp());
+            }
+        }
+        return max;
+    }
+
+    // ---------- Utilitaires ----------
+    /** Même découpage que l'ancien calcul (split sur \W+). */
+    static long countWords(String content) {
+        return (content == null || content.isBlank()) ? 0 : content.strip().split("\\W+").length;
+    }
+}
@@ -0,0 +1,124 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import java.util.*;
+
+/**
+ * Compteurs par clé sur trois fenêtres (24 h glissantes, 7 jours glissants, depuis toujours),
+ * chacun doublé d'un index trié (compte décroissant) : le top-K se lit en O(K).
+ * Les fenêtres glissantes reposent sur des seaux horaires qui sortent de la fenêtre en bloc.
+ * Non thread-safe : l'appelant synchronise.
+ */
+final class Leaderboard {
+
+    static final int DAY_HOURS = 24;
+    static final int WEEK_HOURS = 24 * 7;
+
+    /** Compteur + index ordonné ; remplace un tas borné, inexact dès qu'un compte peut baisser. */
+    static final class Ranked {
+        private final Map<Long, Long> counts = new HashMap<>();
+        private final TreeSet<long[]> order = new TreeSet<>((a, b) ->
+                a[1] != b[1] ? Long.compare(b[1], a[1]) : Long.compare(a[0], b[0]));
+
+        void add(long key, long delta) {
+            Long old = counts.get(key);
+            long now = (old == null ? 0 : old) + delta;
+            if (old != null) order.remove(new long[]{key, old});
+            if (now > 0) {
+                counts.put(key, now);
+                order.add(new long[]{key, now});
+            } else {
+                counts.remove(key);
+            }
+        }
+
+        void remove(long key) {
+            Long old = counts.remove(key);
+            if (old != null) order.remove(new long[]{key, old});
+        }
+
+        long get(long key) {
+            return counts.getOrDefault(key, 0L);
+        }
+
+        /** [clé, compte] des k premiers. */
+        List<long[]> top(int k) {
+            List<long[]> out = new ArrayList<>(Math.min(k, order.size()));
+            for (long[] e : order) {
+                if (out.size() >= k) break;
+                out.add(new long[]{e[0], e[1]});
+            }
+            return out;
+        }
+    }
+
+    private static final class Bucket {
+        final Map<Long, Long> counts = new HashMap<>();
+    }
+
+    private final Ranked day = new Ranked();
+    private final Ranked week = new Ranked();
+    private final Ranked all = new Ranked();
+    private final TreeMap<Long, Bucket> buckets = new TreeMap<>();
+    private long dayCut = Long.MIN_VALUE;   // seaux d'heure <= dayCut déjà retirés de la fenêtre 24 h
+
+    /** @param hour heure "epoch" (secondes / 3600) de l'événement */
+    void add(long key, long hour, long delta, long nowHour) {
+        all.add(key, delta);
+        addWindows(key, hour, delta, nowHour);
+    }
+
+    /** Fenêtres glissantes seulement (reconstruction : le "depuis toujours" est compté à part). */
+    void addWindows(long key, long hour, long delta, long nowHour) {
+        expire(nowHour);
+        if (hour <= nowHour - WEEK_HOURS) return;
+        Bucket b = buckets.computeIfAbsent(hour, h -> new Bucket());
+        b.counts.merge(key, delta, Long::sum);
+        week.add(key, delta);
+        if (hour > dayCut) day.add(key, delta);
+    }
+
+    /** Compte depuis toujours seulement (reconstruction). */
+    void addAllTime(long key, long delta) {
+        all.add(key, delta);
+    }
+
+    void remove(long key) {
+        day.remove(key);
+        week.remove(key);
+        all.remove(key);
+        buckets.values().forEach(b -> b.counts.remove(key));
+    }
+
+    /** Fait sortir des fenêtres les seaux trop anciens (chaque seau n'est traité qu'une fois par fenêtre). */
+    void expire(long nowHour) {
+        long cut = nowHour - DAY_HOURS;
+        if (cut > dayCut) {
+            for (Bucket b : buckets.subMap(dayCut, false, cut, true).values()) {
+                b.counts.forEach((k, n) -> day.add(k, -n));
+            }
+            dayCut = cut;
+        }
+        var old = buckets.headMap(nowHour - WEEK_HOURS, true);
+        for (Bucket b : old.values()) {
+            b.counts.forEach((k, n) -> week.add(k, -n));
+        }
+        old.clear();
+    }
+
+    List<long[]> top(ActivityLeaderboards.Window w, int k, long nowHour) {
+        expire(nowHour);
+        return ranked(w).top(k);
+    }
+
+    long count(ActivityLeaderboards.Window w, long key) {
+        return ranked(w).get(key);
+    }
+
+    private Ranked ranked(ActivityLeaderboards.Window w) {
+        return switch (w) {
+            case DAY -> day;
+            case WEEK -> week;
+            case ALL -> all;
+        };
+    }
+}
@@ -0,0 +1,170 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.LiveFrameDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tableau de bord en direct sans base : compteurs LongAdder (cellules réparties par thread, pas de
+ * contention sur le chemin du chat) relevés et remis à zéro chaque seconde, la trame étant poussée
+ * en SSE à tous les onglets admin abonnés. Les dernières trames sont rejouées à l'abonnement.
+ * Compteurs propres à l'instance : derrière un répartiteur, chaque nœud publie sa part.
+ */
+@Slf4j
+@Component
+public class LiveMetrics {
+
+    /** Bornes supérieures (ms) des seaux de latence ; un dernier seau reçoit le reste. */
+    public static final long[] LATENCY_BOUNDS_MS = {250, 500, 1000, 2000, 5000, 10000, 30000};
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder newConversations = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder inFlight = new LongAdder();
+    private final LongAdder[] latency = new LongAdder[LATENCY_BOUNDS_MS.length + 1];
+
+    /** Conversation → dernier tour (ms) : « chats actifs » = vus dans la fenêtre glissante. */
+    private final ConcurrentHashMap<Long, Long> lastSeen = new ConcurrentHashMap<>();
+
+    private final long activeWindowMs;
+    private final long emitterTimeoutMs;
+    private final int maxSubscribers;
+    private final int historySize;
+
+    // trames récentes : accès sous leur propre verrou
+    private final ArrayDeque<LiveFrameDTO> history = new ArrayDeque<>();
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+
+    /** Relevé et envoi sur un thread dédié : un client lent ne retarde pas les autres tâches planifiées. */
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "live-metrics");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public LiveMetrics(@Value("${app.live.active-window-seconds:300}") long activeWindowSeconds,
+                       @Value("${app.live.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                       @Value("${app.live.max-subscribers:50}") int maxSubscribers,
+                       @Value("${app.live.history-seconds:60}") int historySeconds) {
+        this.activeWindowMs = activeWindowSeconds * 1000;
+        this.emitterTimeoutMs = emitterTimeoutMs;
+        this.maxSubscribers = Math.max(1, maxSubscribers);
+        this.historySize = Math.max(0, historySeconds);
+        for (int i = 0; i < latency.length; i++) latency[i] = new LongAdder();
+        ticker.scheduleAtFixedRate(this::tick, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+        subscribers.forEach(SseEmitter::complete);
+    }
+
+    // ---------- Chemin du chat (aucun accès base) ----------
+    public void chatStarted() {
+        inFlight.increment();
+    }
+
+    /** Fin d'un tour de chat : durée en ms, conversation (null si inconnue), succès ou erreur. */
+    public void chatEnded(long elapsedMs, Long conversationId, boolean failed) {
+        inFlight.decrement();
+        if (failed) {
+            errors.increment();
+            return;
+        }
+        latency[bucket(elapsedMs)].increment();
+        if (conversationId != null) lastSeen.put(conversationId, System.currentTimeMillis());
+    }
+
+    /** Message persisté (compté au commit). */
+    public void messageSaved() {
+        TxHooks.afterCommit(messages::increment);
+    }
+
+    public void conversationCreated() {
+        TxHooks.afterCommit(newConversations::increment);
+    }
+
+    private static int bucket(long ms) {
+        for (int i = 0; i < LATENCY_BOUNDS_MS.length; i++) {
+            if (ms <= LATENCY_BOUNDS_MS[i]) return i;
+        }
+        return LATENCY_BOUNDS_MS.length;
+    }
+
+    // ---------- Abonnements SSE ----------
+    /** Nouvel abonné : bornes des seaux puis trames récentes ; vide si la limite d'abonnés est atteinte. */
+    public Optional<SseEmitter> subscribe() {
+        if (subscribers.size() >= maxSubscribers) return Optional.empty();
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        List<LiveFrameDTO> replay;
+        synchronized (history) {
+            replay = new ArrayList<>(history);
+        }
+        try {
+            emitter.send(SseEmitter.event().name("buckets").data(LATENCY_BOUNDS_MS, MediaType.APPLICATION_JSON));
+            for (LiveFrameDTO f : replay) {
+                emitter.send(SseEmitter.event().name("frame").data(f, MediaType.APPLICATION_JSON));
+            }
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+            return Optional.of(emitter);
+        }
+        subscribers.add(emitter);
+        return Optional.of(emitter);
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    // ---------- Relevé (chaque seconde) ----------
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            lastSeen.values().removeIf(t -> now - t > activeWindowMs);
+            List<Long> lat = new ArrayList<>(latency.length);
+            for (LongAdder a : latency) lat.add(a.sumThenReset());
+            LiveFrameDTO frame = new LiveFrameDTO(now,
+                    messages.sumThenReset(),
+                    newConversations.sumThenReset(),
+                    lastSeen.size(),
+                    inFlight.sum(),
+                    errors.sumThenReset(),
+                    lat);
+            if (historySize > 0) {
+                synchronized (history) {
+                    history.addLast(frame);
+                    while (history.size() > historySize) history.removeFirst();
+                }
+            }
+            broadcast("frame", frame);
+        } catch (Exception e) {
+            log.warn("[LIVE] relevé échoué", e);
+        }
+    }
+
+    /** Événement nommé envoyé à tous les abonnés (trames, état des SLO...). */
+    public void broadcast(String event, Object data) {
+        for (SseEmitter emitter : subscribers) {
+            try {
+                emitter.send(SseEmitter.event().name(event).data(data, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                // onglet fermé : le conteneur le signalera aussi, on retire sans attendre
+                subscribers.remove(emitter);
+            }
+        }
+    }
+}
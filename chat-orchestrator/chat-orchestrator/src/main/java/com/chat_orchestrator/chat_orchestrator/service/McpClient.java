@@ -1,5 +1,6 @@
 package com.chat_orchestrator.chat_orchestrator.service;
 
+import com.chat_orchestrator.chat_orchestrator.dto.docqa.DocqaDtos;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
@@ -9,19 +10,52 @@ import org.springframework.web.client.HttpServerErrorException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @Service
 public class McpClient {
     private final RestTemplate http = new RestTemplate();
+    private final SloMonitor slo;
+
+    /** ns → présence de documents, relue auprès de DocQA après expiration ; mise à jour par les ingestions. */
+    private record DocsEntry(boolean present, long expiresAt) {}
+    private final Map<String, DocsEntry> docsByNs = new ConcurrentHashMap<>();
+
+    @Value("${app.docqa.docs-cache-ttl-seconds:60}")
+    private long docsCacheTtlSeconds;
 
     @Value("${docqa.base-url:http://localhost:5000}")
     private String docqaBase;
 
     private static final String MCP_URL = "http://localhost:5000/mcp/execute";
 
-    @SuppressWarnings("unchecked")
+    public McpClient(SloMonitor slo) {
+        this.slo = slo;
+    }
+
+    /** Appelé à chaque message du chat : servi par le cache tant que l'entrée est fraîche. */
     public boolean hasDocs(String ns) {
+        long now = System.currentTimeMillis();
+        DocsEntry e = docsByNs.get(ns);
+        if (e != null && e.expiresAt() > now) return e.present();
+        boolean present = fetchHasDocs(ns);
+        docsByNs.put(ns, new DocsEntry(present, now + docsCacheTtlSeconds * 1000));
+        return present;
+    }
+
+    /** Ingestion terminée dans {@code ns} : le RAG est tenté dès le message suivant. */
+    public void docsIngested(String ns) {
+        docsByNs.put(ns, new DocsEntry(true, System.currentTimeMillis() + docsCacheTtlSeconds * 1000));
+    }
+
+    /** Suppression de documents : présence relue au prochain appel. */
+    public void docsChanged(String ns) {
+        docsByNs.remove(ns);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean fetchHasDocs(String ns) {
         try {
             String url = docqaBase + "/docs?ns=" + URLEncoder.encode(ns, StandardCharsets.UTF_8);
             Map<String, Object> res = http.getForObject(url, Map.class);
@@ -38,12 +72,18 @@ public class McpClient {
 
     @SuppressWarnings("unchecked")
     public String docqaAnswer(String message, String ns, List<String> docs) {
+        return docqaAnswer(message, ns, docs, null);
+    }
+
+    /** contexts non vide => extraits déjà retrouvés localement, DocQA ne fait que la génération. */
+    public String docqaAnswer(String message, String ns, List<String> docs, List<DocqaDtos.Hit> contexts) {
         try {
             Map<String, Object> params = new HashMap<>();
             params.put("q", message);
             params.put("k", 5);
             params.put("ns", ns);
             if (docs != null && !docs.isEmpty()) params.put("docs", docs);
+            if (contexts != null && !contexts.isEmpty()) params.put("contexts", contexts);
 
             Map<String, Object> payload = Map.of(
                     "version", "1.0",
@@ -54,13 +94,17 @@ public class McpClient {
             );
             Map<String, Object> resp = http.postForObject(MCP_URL, payload, Map.class);
             if (resp != null && "success".equalsIgnoreCase((String) resp.get("status"))) {
+                slo.mcpCall(false);
                 Map<String, Object> data = (Map<String, Object>) resp.get("data");
                 return data == null ? "Réponse vide." : String.valueOf(data.get("reply"));
             }
+            slo.mcpCall(true);
             return "Erreur : Réponse invalide de MCP.";
         } catch (HttpClientErrorException | HttpServerErrorException e) {
+            slo.mcpCall(true);
             return "Erreur HTTP MCP : " + e.getStatusCode() + " - " + e.getResponseBodyAsString();
         } catch (Exception e) {
+            slo.mcpCall(true);
             return "Erreur MCP : " + e.getMessage();
         }
     }
@@ -76,11 +120,14 @@ public class McpClient {
             );
             Map<String, Object> resp = http.postForObject(MCP_URL, payload, Map.class);
             if (resp != null && "success".equalsIgnoreCase((String) resp.get("status"))) {
+                slo.mcpCall(false);
                 Map<String, Object> data = (Map<String, Object>) resp.get("data");
                 return data == null ? "Réponse vide." : String.valueOf(data.get("reply"));
             }
+            slo.mcpCall(true);
             return "Erreur : Réponse invalide de MCP.";
         } catch (Exception e) {
+            slo.mcpCall(true);
             return "Erreur MCP : " + e.getMessage();
         }
     }
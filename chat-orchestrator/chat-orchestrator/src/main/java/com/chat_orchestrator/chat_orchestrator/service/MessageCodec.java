@@ -0,0 +1,120 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Format binaire compact d'un message : role et contenu UTF-8 préfixés par leur longueur
+ * (-1 = null), puis horodatage (secondes epoch + nanos). Un bloc = [int n][n messages],
+ * éventuellement compressé (Deflate). Partagé par le cache hors-heap et l'archive.
+ */
+final class MessageCodec {
+
+    private MessageCodec() {}
+
+    static byte[] encode(MessageDto m) {
+        byte[] role = bytes(m.getRole());
+        byte[] content = bytes(m.getContent());
+        ByteBuffer b = ByteBuffer.allocate(Integer.BYTES * 2 + len(role) + len(content) + Long.BYTES + Integer.BYTES);
+        putString(b, role);
+        putString(b, content);
+        LocalDateTime ts = m.getTimestamp();
+        b.putLong(ts == null ? Long.MIN_VALUE : ts.toEpochSecond(ZoneOffset.UTC));
+        b.putInt(ts == null ? 0 : ts.getNano());
+        return b.array();
+    }
+
+    static MessageDto read(ByteBuffer b) {
+        String role = string(b);
+        String content = string(b);
+        long sec = b.getLong();
+        int nano = b.getInt();
+        LocalDateTime ts = sec == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(sec, nano, ZoneOffset.UTC);
+        return new MessageDto(role, content, ts);
+    }
+
+    /** Lit un bloc [int n][messages] à partir de la position courante. */
+    static List<MessageDto> readBlock(ByteBuffer b) {
+        int n = b.getInt();
+        List<MessageDto> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(read(b));
+        return out;
+    }
+
+    static byte[] encodeBlock(List<MessageDto> messages) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(messages.size()).array());
+        for (MessageDto m : messages) out.writeBytes(encode(m));
+        return out.toByteArray();
+    }
+
+    // ---------- Compression ----------
+    static byte[] compress(byte[] raw, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 3));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buf);
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] decompress(byte[] packed, int rawLength) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(packed);
+            byte[] raw = new byte[rawLength];
+            int off = 0;
+            while (off < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, off, rawLength - off);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                off += n;
+            }
+            if (off != rawLength) throw new IllegalStateException("Bloc d'archive tronqué (" + off + "/" + rawLength + ")");
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Bloc d'archive corrompu", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ---------- Chaînes ----------
+    private static byte[] bytes(String s) {
+        return s == null ? null : s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int len(byte[] b) {
+        return b == null ? 0 : b.length;
+    }
+
+    private static void putString(ByteBuffer b, byte[] raw) {
+        if (raw == null) { b.putInt(-1); return; }
+        b.putInt(raw.length).put(raw);
+    }
+
+    private static String string(ByteBuffer b) {
+        int len = b.getInt();
+        if (len < 0) return null;
+        byte[] raw = new byte[len];
+        b.get(raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,225 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.PartitionDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintenance des partitions mensuelles de "message" (cf. SchemaMigrations) :
+ * création des mois à venir avant qu'ils ne soient écrits, et rétention par DETACH + DROP
+ * d'une partition entière au lieu de DELETE ligne à ligne. Les index dérivés suivent : agrégats
+ * horaires et mots-clés décomptés dans la même transaction, conversations vidées supprimées,
+ * magasins en mémoire rechargés. Seuls les résumés d'utilisateurs actifs (HLL, bitmaps) gardent
+ * l'historique des mois supprimés.
+ */
+@Slf4j
+@Service
+public class MessagePartitionService {
+
+    public record MaintenanceDTO(List<String> created, List<String> dropped) {}
+
+    /** Résultat d'un EXPLAIN : partitions réellement parcourues pour une plage donnée. */
+    public record PruningCheckDTO(LocalDate from, LocalDate to, int partitionsTotal, List<String> partitionsScanned) {}
+
+    private static final Pattern MONTHLY = Pattern.compile("message_p(\\d{6})");
+    private static final Pattern SCANNED = Pattern.compile("\"Relation Name\":\\s*\"(message(?:_[a-z0-9_]+)?)\"");
+    private static final DateTimeFormatter YYYYMM = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbc;
+    private final TranscriptCache transcriptCache;
+    private final KnowledgeStats knowledgeStats;
+    private final ActivityRollupService rollups;
+    private final KeywordIndex keywordIndex;
+    private final ColumnarStore columnar;
+    private final ActivityLeaderboards leaderboards;
+    private final TitleSuggestIndex suggestIndex;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public MessagePartitionService(JdbcTemplate jdbc,
+                                   TranscriptCache transcriptCache,
+                                   KnowledgeStats knowledgeStats,
+                                   ActivityRollupService rollups,
+                                   KeywordIndex keywordIndex,
+                                   ColumnarStore columnar,
+                                   ActivityLeaderboards leaderboards,
+                                   TitleSuggestIndex suggestIndex,
+                                   @Value("${app.partitions.enabled:true}") boolean enabled,
+                                   @Value("${app.partitions.months-ahead:3}") int monthsAhead,
+                                   @Value("${app.partitions.retention-months:0}") int retentionMonths) {
+        this.jdbc = jdbc;
+        this.transcriptCache = transcriptCache;
+        this.knowledgeStats = knowledgeStats;
+        this.rollups = rollups;
+        this.keywordIndex = keywordIndex;
+        this.columnar = columnar;
+        this.leaderboards = leaderboards;
+        this.suggestIndex = suggestIndex;
+        this.enabled = enabled;
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.retentionMonths = retentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (enabled) safeMaintain();
+    }
+
+    @Scheduled(cron = "${app.partitions.cron:0 15 2 * * *}")
+    public void scheduledRun() {
+        if (enabled) safeMaintain();
+    }
+
+    private void safeMaintain() {
+        try {
+            MaintenanceDTO r = maintain();
+            if (!r.created().isEmpty() || !r.dropped().isEmpty()) {
+                log.info("[PARTITIONS] créées={} supprimées={}", r.created(), r.dropped());
+            }
+        } catch (Exception e) {
+            log.warn("[PARTITIONS] maintenance échouée", e);
+        }
+    }
+
+    // ---------- Maintenance ----------
+    public MaintenanceDTO maintain() {
+        if (!isPartitioned()) return new MaintenanceDTO(List.of(), List.of());
+        if (!running.compareAndSet(false, true)) return new MaintenanceDTO(List.of(), List.of());
+        try {
+            List<String> created = new ArrayList<>();
+            YearMonth now = YearMonth.now();
+            for (int i = 0; i <= monthsAhead; i++) {
+                YearMonth ym = now.plusMonths(i);
+                String name = "message_p" + ym.format(YYYYMM);
+                if (monthlyPartitions().contains(name)) continue;
+                // échoue si la partition DEFAULT contient déjà des lignes de ce mois : on le signale sans bloquer les autres
+                try {
+                    jdbc.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF message FOR VALUES FROM ('"
+                            + ym.atDay(1) + "') TO ('" + ym.plusMonths(1).atDay(1) + "')");
+                    created.add(name);
+                } catch (Exception e) {
+                    log.warn("[PARTITIONS] {} non créée", name, e);
+                }
+            }
+
+            List<String> dropped = new ArrayList<>();
+            List<Long> emptied = new ArrayList<>();
+            if (retentionMonths > 0) {
+                YearMonth oldestKept = now.minusMonths(retentionMonths);
+                for (String name : monthlyPartitions()) {
+                    Matcher m = MONTHLY.matcher(name);
+                    if (!m.matches()) continue;
+                    YearMonth ym = YearMonth.parse(m.group(1), YYYYMM);
+                    if (!ym.isBefore(oldestKept)) continue;
+                    emptied.addAll(drop(name, ym));
+                    dropped.add(name);
+                }
+                if (!dropped.isEmpty()) {
+                    transcriptCache.clear();
+                    knowledgeStats.requestRebuild();
+                    columnar.requestReload();
+                    leaderboards.requestRebuild();
+                    if (!emptied.isEmpty()) suggestIndex.evictAll();
+                }
+            }
+            return new MaintenanceDTO(created, dropped);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Une transaction : messages du mois décomptés des agrégats et des mots-clés, DETACH puis DROP
+     * (pas de DELETE ni de vacuum, verrou bref sur la table parente), puis suppression des conversations
+     * qui n'ont plus ni message ni bloc archivé. Renvoie les ids de ces conversations.
+     */
+    private List<Long> drop(String name, YearMonth ym) {
+        return rollups.droppingPartition(name, ym.atDay(1).atStartOfDay(), ym.plusMonths(1).atDay(1).atStartOfDay(), convIds -> {
+            keywordIndex.droppingPartition(name);
+            jdbc.execute("ALTER TABLE message DETACH PARTITION " + name);
+            jdbc.execute("DROP TABLE " + name);
+            if (convIds.isEmpty()) return List.<Long>of();
+            return jdbc.query(con -> {
+                var ps = con.prepareStatement("""
+                        DELETE FROM conversation c
+                        WHERE c.id = ANY(?)
+                          AND NOT EXISTS (SELECT 1 FROM message m WHERE m.conversation_id = c.id)
+                          AND NOT EXISTS (SELECT 1 FROM conversation_archive a WHERE a.conversation_id = c.id)
+                        RETURNING c.id
+                        """);
+                ps.setArray(1, con.createArrayOf("bigint", convIds.toArray(Long[]::new)));
+                return ps;
+            }, (rs, i) -> rs.getLong(1));
+        });
+    }
+
+    // ---------- Observabilité ----------
+    public List<PartitionDTO> partitions() {
+        return jdbc.query("""
+                SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) AS bound,
+                       c.reltuples::bigint AS est_rows, pg_total_relation_size(c.oid) AS bytes
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'message'::regclass
+                ORDER BY c.relname
+                """, (rs, i) -> new PartitionDTO(rs.getString(1), rs.getString(2),
+                Math.max(0, rs.getLong(3)), rs.getLong(4)));
+    }
+
+    /**
+     * Vérifie l'élagage : EXPLAIN d'un filtre de plage identique à ceux d'AnalyticsService
+     * (paramètres liés, élagage à l'exécution) et liste les partitions effectivement visitées.
+     */
+    public PruningCheckDTO checkPruning(LocalDate from, LocalDate to) {
+        int total = isPartitioned() ? partitions().size() : 1;
+        String plan = jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    EXPLAIN (FORMAT JSON)
+                    SELECT COUNT(*) FROM message m WHERE m."timestamp" >= ? AND m."timestamp" < ?
+                    """);
+            ps.setTimestamp(1, Timestamp.valueOf(from.atStartOfDay()));
+            ps.setTimestamp(2, Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+            return ps;
+        }, rs -> rs.next() ? rs.getString(1) : "");
+
+        List<String> scanned = new ArrayList<>();
+        Matcher m = SCANNED.matcher(plan == null ? "" : plan);
+        while (m.find()) {
+            if (!scanned.contains(m.group(1))) scanned.add(m.group(1));
+        }
+        return new PruningCheckDTO(from, to, total, scanned);
+    }
+
+    // ---------- Utilitaires ----------
+    private boolean isPartitioned() {
+        List<String> kind = jdbc.queryForList(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass('message')", String.class);
+        return kind.contains("p");
+    }
+
+    private List<String> monthlyPartitions() {
+        return jdbc.queryForList("""
+                SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'message'::regclass AND c.relname ~ '^message_p[0-9]{6}$'
+                ORDER BY c.relname
+                """, String.class);
+    }
+}
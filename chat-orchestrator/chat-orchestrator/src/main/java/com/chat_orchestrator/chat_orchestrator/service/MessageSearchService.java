@@ -0,0 +1,212 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.SearchHitDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.SearchResultDTO;
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.HtmlUtils;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recherche plein texte sur les messages via la colonne générée {@code message.content_tsv}
+ * (index GIN, cf. SchemaMigrations) : classement ts_rank, extraits ts_headline, pagination.
+ * Les conversations archivées sont couvertes par {@code conversation_archive.content_tsv} et
+ * {@code lexeme_counts} (cf. ArchiveService), avec la même configuration de texte.
+ */
+@Service
+public class MessageSearchService {
+
+    // délimiteurs de ts_headline absents d'un texte utilisateur : remplacés par <mark> après échappement HTML
+    private static final String START_SEL = "\u0002";
+    private static final String STOP_SEL = "\u0003";
+    private static final String HEADLINE_OPTS =
+            "StartSel=" + START_SEL + ", StopSel=" + STOP_SEL + ", MaxWords=30, MinWords=8, MaxFragments=2";
+
+    private final EntityManager em;
+    private final JdbcTemplate jdbc;
+    private final ArchiveService archiveService;
+    private final String cfg;
+
+    public MessageSearchService(EntityManager em,
+                                JdbcTemplate jdbc,
+                                ArchiveService archiveService,
+                                @Value("${app.search.ts-config:simple}") String tsConfig) {
+        this.em = em;
+        this.jdbc = jdbc;
+        this.archiveService = archiveService;
+        this.cfg = tsConfig.replaceAll("[^a-z_]", "");
+    }
+
+    /**
+     * Recherche limitée aux conversations de {@code ownerId} (syntaxe "web" : guillemets, OR, -mot).
+     * Une conversation archivée compte pour un résultat (messageId null) : son meilleur message est
+     * retrouvé dans le bloc décompressé, seulement pour les conversations de la page.
+     */
+    public SearchResultDTO search(Long ownerId, String q, int page, int size) {
+        int p = Math.max(0, page);
+        int s = Math.max(1, Math.min(100, size));
+        if (q == null || q.isBlank()) return new SearchResultDTO(List.of(), 0, p, s);
+
+        Number total = (Number) em.createNativeQuery("""
+                SELECT (SELECT COUNT(*)
+                        FROM message m
+                        JOIN conversation c ON c.id = m.conversation_id
+                        WHERE c.user_id = :uid
+                          AND m.content_tsv @@ websearch_to_tsquery(CAST(:cfg AS regconfig), :q))
+                     + (SELECT COUNT(*)
+                        FROM conversation_archive a
+                        JOIN conversation c ON c.id = a.conversation_id
+                        WHERE c.user_id = :uid
+                          AND a.content_tsv @@ websearch_to_tsquery(CAST(:cfg AS regconfig), :q))
+                """)
+                .setParameter("uid", ownerId)
+                .setParameter("cfg", cfg)
+                .setParameter("q", q)
+                .getSingleResult();
+
+        // ts_headline est coûteux : calculé seulement pour la page retenue (sous-requête limitée)
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery("""
+                SELECT t.id, t.conversation_id, t.title, t.role, t.ts, t.rank,
+                       ts_headline(CAST(:cfg AS regconfig), t.content, websearch_to_tsquery(CAST(:cfg AS regconfig), :q),
+                                   :opts)
+                FROM (
+                    SELECT m.id, m.conversation_id, c.title, m.role, m."timestamp" AS ts, m.content,
+                           ts_rank(m.content_tsv, websearch_to_tsquery(CAST(:cfg AS regconfig), :q)) AS rank
+                    FROM message m
+                    JOIN conversation c ON c.id = m.conversation_id
+                    WHERE c.user_id = :uid
+                      AND m.content_tsv @@ websearch_to_tsquery(CAST(:cfg AS regconfig), :q)
+                    UNION ALL
+                    SELECT NULL, a.conversation_id, c.title, NULL, a.last_message_at, NULL,
+                           ts_rank(a.content_tsv, websearch_to_tsquery(CAST(:cfg AS regconfig), :q))
+                    FROM conversation_archive a
+                    JOIN conversation c ON c.id = a.conversation_id
+                    WHERE c.user_id = :uid
+                      AND a.content_tsv @@ websearch_to_tsquery(CAST(:cfg AS regconfig), :q)
+                    ORDER BY rank DESC, ts DESC
+                    LIMIT :lim OFFSET :off
+                ) t
+                ORDER BY t.rank DESC, t.ts DESC
+                """)
+                .setParameter("uid", ownerId)
+                .setParameter("cfg", cfg)
+                .setParameter("q", q)
+                .setParameter("opts", HEADLINE_OPTS)
+                .setParameter("lim", s)
+                .setParameter("off", (long) p * s)
+                .getResultList();
+
+        List<SearchHitDTO> hits = rows.stream()
+                .map(r -> r[0] == null
+                        ? archivedHit(((Number) r[1]).longValue(), (String) r[2], ((Number) r[5]).doubleValue(), q)
+                        : new SearchHitDTO(
+                                ((Number) r[0]).longValue(),
+                                ((Number) r[1]).longValue(),
+                                (String) r[2],
+                                (String) r[3],
+                                toLocalDateTime(r[4]),
+                                ((Number) r[5]).doubleValue(),
+                                snippet((String) r[6])
+                        ))
+                .toList();
+        return new SearchResultDTO(hits, total == null ? 0 : total.longValue(), p, s);
+    }
+
+    /**
+     * Meilleur message d'une conversation archivée. Le tsvector du bloc n'a pas de positions : une
+     * requête de phrase peut y correspondre sans qu'aucun message ne la contienne (extrait null).
+     */
+    private SearchHitDTO archivedHit(long convId, String title, double rank, String q) {
+        List<MessageDto> messages = archiveService.archivedMessages(convId);
+        String[] contents = messages.stream().map(MessageDto::getContent).toArray(String[]::new);
+        List<Object[]> best = jdbc.query(con -> {
+            var ps = con.prepareStatement("""
+                    SELECT x.i, ts_headline(CAST(? AS regconfig), x.content, websearch_to_tsquery(CAST(? AS regconfig), ?), ?)
+                    FROM unnest(?) WITH ORDINALITY AS x(content, i)
+                    WHERE to_tsvector(CAST(? AS regconfig), coalesce(x.content, '')) @@ websearch_to_tsquery(CAST(? AS regconfig), ?)
+                    ORDER BY ts_rank(to_tsvector(CAST(? AS regconfig), coalesce(x.content, '')),
+                                     websearch_to_tsquery(CAST(? AS regconfig), ?)) DESC, x.i DESC
+                    LIMIT 1
+                    """);
+            ps.setString(1, cfg);
+            ps.setString(2, cfg);
+            ps.setString(3, q);
+            ps.setString(4, HEADLINE_OPTS);
+            ps.setArray(5, con.createArrayOf("text", contents));
+            ps.setString(6, cfg);
+            ps.setString(7, cfg);
+            ps.setString(8, q);
+            ps.setString(9, cfg);
+            ps.setString(10, cfg);
+            ps.setString(11, q);
+            return ps;
+        }, (rs, i) -> new Object[]{rs.getInt(1), rs.getString(2)});
+        if (best.isEmpty()) return new SearchHitDTO(null, convId, title, null, null, rank, null);
+        MessageDto m = messages.get((Integer) best.get(0)[0] - 1);
+        return new SearchHitDTO(null, convId, title, m.getRole(), m.getTimestamp(), rank, snippet((String) best.get(0)[1]));
+    }
+
+    /** Extrait échappé (contenu utilisateur) puis termes trouvés entourés de <mark>…</mark>. */
+    static String snippet(String headline) {
+        if (headline == null) return null;
+        return HtmlUtils.htmlEscape(headline)
+                .replace(START_SEL, "<mark>")
+                .replace(STOP_SEL, "</mark>");
+    }
+
+    /**
+     * Occurrences d'un mot par conversation (titre → nombre), dans l'ordre des conversations.
+     * Table chaude : positions du tsvector (l'index GIN filtre les messages, aucun texte rapatrié).
+     * Conversations archivées : comptes par lexème calculés à l'archivage avec la même configuration,
+     * donc mêmes lexèmes et mêmes comptes qu'avant l'archivage.
+     */
+    public Map<String, Long> countWordOccurrencesByConversation(String word) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        if (word == null || word.isBlank()) return result;
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = em.createNativeQuery("""
+                SELECT t.id, t.title, SUM(t.cnt)
+                FROM (
+                    SELECT c.id, c.title, SUM(cardinality(u.positions)) AS cnt
+                    FROM message m
+                    JOIN conversation c ON c.id = m.conversation_id
+                    CROSS JOIN LATERAL unnest(m.content_tsv) u
+                    WHERE m.content_tsv @@ plainto_tsquery(CAST(:cfg AS regconfig), :w)
+                      AND u.lexeme = ANY (tsvector_to_array(to_tsvector(CAST(:cfg AS regconfig), :w)))
+                    GROUP BY c.id, c.title
+                    UNION ALL
+                    SELECT c.id, c.title, SUM(CAST(a.lexeme_counts ->> l.lexeme AS bigint))
+                    FROM conversation_archive a
+                    JOIN conversation c ON c.id = a.conversation_id
+                    CROSS JOIN LATERAL unnest(tsvector_to_array(to_tsvector(CAST(:cfg AS regconfig), :w))) AS l(lexeme)
+                    WHERE a.content_tsv @@ plainto_tsquery(CAST(:cfg AS regconfig), :w)
+                    GROUP BY c.id, c.title
+                ) t
+                GROUP BY t.id, t.title
+                HAVING SUM(t.cnt) > 0
+                ORDER BY t.id
+                """)
+                .setParameter("cfg", cfg)
+                .setParameter("w", word)
+                .getResultList();
+
+        for (Object[] r : rows) result.merge((String) r[1], ((Number) r[2]).longValue(), Long::sum);
+        return result;
+    }
+
+    private static LocalDateTime toLocalDateTime(Object o) {
+        if (o instanceof Timestamp t) return t.toLocalDateTime();
+        if (o instanceof LocalDateTime l) return l;
+        return null;
+    }
+}
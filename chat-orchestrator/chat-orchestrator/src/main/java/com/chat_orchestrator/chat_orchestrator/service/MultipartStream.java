@@ -0,0 +1,178 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Lecture en flux d'un corps multipart/form-data (RFC 7578), part par part, sans rien conserver :
+ * {@link #next} se place sur la part suivante (en-têtes lus, corps de la précédente sauté) et
+ * {@link #body} lit le corps de la part courante jusqu'au délimiteur. Tampon fixe de 64 Kio.
+ */
+final class MultipartStream {
+
+    private static final int BUFFER = 64 * 1024;
+    private static final int MAX_HEADERS = 8 * 1024;
+
+    private final InputStream in;
+    /** « CRLF--boundary » : le début du corps est traité comme précédé d'un CRLF. */
+    private final byte[] delimiter;
+    private final byte[] buf = new byte[BUFFER];
+    private int pos;
+    private int lim;
+    private boolean eof;
+
+    private boolean inBody;     // corps de la part courante pas encore lu jusqu'au délimiteur
+    private boolean finished;   // délimiteur final rencontré
+    private String name;
+    private String filename;
+
+    MultipartStream(InputStream in, String boundary) {
+        this.in = in;
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+        buf[0] = '\r';
+        buf[1] = '\n';
+        lim = 2;
+        inBody = true;          // le préambule est sauté comme un corps
+    }
+
+    /** Passe à la part suivante ; false après le délimiteur final. */
+    boolean next() throws IOException {
+        if (finished) return false;
+        if (inBody) skipBody();
+        if (!fill(2)) throw invalid();
+        if (buf[pos] == '-' && buf[pos + 1] == '-') {
+            finished = true;
+            return false;
+        }
+        // reste de la ligne du délimiteur (espaces de bourrage tolérés)
+        String rest = readLine();
+        if (!rest.isBlank()) throw invalid();
+        name = null;
+        filename = null;
+        int total = 0;
+        for (String line; !(line = readLine()).isEmpty(); ) {
+            total += line.length();
+            if (total > MAX_HEADERS) throw invalid();
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase("Content-Disposition")) {
+                try {
+                    ContentDisposition cd = ContentDisposition.parse(line.substring(colon + 1).trim());
+                    name = cd.getName();
+                    filename = cd.getFilename();
+                } catch (IllegalArgumentException e) {
+                    throw invalid();
+                }
+            }
+        }
+        inBody = true;
+        return true;
+    }
+
+    /** Nom du champ de la part courante (null si absent). */
+    String name() {
+        return name;
+    }
+
+    String filename() {
+        return filename;
+    }
+
+    /** Corps de la part courante ; -1 au délimiteur. */
+    InputStream body() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                int n = read(one, 0, 1);
+                return n < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return readBody(b, off, len);
+            }
+        };
+    }
+
+    private void skipBody() throws IOException {
+        byte[] sink = new byte[8192];
+        while (readBody(sink, 0, sink.length) >= 0) {
+            // on jette
+        }
+    }
+
+    private int readBody(byte[] b, int off, int len) throws IOException {
+        if (!inBody) return -1;
+        if (len == 0) return 0;
+        fill(delimiter.length);
+        int found = indexOfDelimiter();
+        int safe;
+        if (found >= 0) {
+            safe = found - pos;
+            if (safe == 0) {
+                pos += delimiter.length;
+                inBody = false;
+                return -1;
+            }
+        } else {
+            if (eof) throw invalid();   // corps tronqué : pas de délimiteur
+            // la fin du tampon peut être le début d'un délimiteur
+            safe = lim - pos - (delimiter.length - 1);
+        }
+        int n = Math.min(len, safe);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    private int indexOfDelimiter() {
+        outer:
+        for (int i = pos, last = lim - delimiter.length; i <= last; i++) {
+            for (int j = 0; j < delimiter.length; j++) {
+                if (buf[i + j] != delimiter[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /** Ligne terminée par CRLF (ou LF), sans le terminateur. */
+    private String readLine() throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        while (true) {
+            if (!fill(1)) throw invalid();
+            byte c = buf[pos++];
+            if (c == '\n') break;
+            line.write(c);
+            if (line.size() > MAX_HEADERS) throw invalid();
+        }
+        byte[] bytes = line.toByteArray();
+        int n = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+        return new String(bytes, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /** Au moins {@code n} octets disponibles à partir de pos, sauf fin de flux (false). */
+    private boolean fill(int n) throws IOException {
+        while (lim - pos < n && !eof) {
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, lim - pos);
+                lim -= pos;
+                pos = 0;
+            }
+            int r = in.read(buf, lim, buf.length - lim);
+            if (r < 0) eof = true;
+            else lim += r;
+        }
+        return lim - pos >= n;
+    }
+
+    private static ResponseStatusException invalid() {
+        return new ResponseStatusException(HttpStatus.BAD_REQUEST, "Corps multipart invalide");
+    }
+}
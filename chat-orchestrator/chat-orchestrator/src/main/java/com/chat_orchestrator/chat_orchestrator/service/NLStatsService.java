@@ -1,41 +1,69 @@
 package com.chat_orchestrator.chat_orchestrator.service;
 
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.temporal.ChronoField;
-import java.util.Locale;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 
+/**
+ * Réponses analytiques en langage naturel, testées avant tout autre routage sur chaque message du chat.
+ * Intention et période sont classées en un passage par un automate compilé à partir d'une table
+ * d'expressions FR/EN/AR ({@code app.nlstats.phrases}) : ajouter des expressions ne ralentit pas la détection.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class NLStatsService {
 
+    /** Caractéristiques détectées dans un message ; les clés de la table d'expressions portent ces noms. */
+    enum Feature {
+        TODAY, YESTERDAY, LAST, DAYS, WEEK, MONTH, YEAR,
+        COUNT, CONVERSATION, DURATION, KEYWORDS;
+
+        final long bit = 1L << ordinal();
+    }
+
+    private static final long ANY_PERIOD = Feature.TODAY.bit | Feature.YESTERDAY.bit | Feature.DAYS.bit
+            | Feature.WEEK.bit | Feature.MONTH.bit | Feature.YEAR.bit;
+
+    private static final int MAX_DAYS = 366;
+
     private final AnalyticsService analytics;
+    private final IntentMatcher matcher;
 
-    public Optional<String> tryAnswer(String message) {
-        String m = message == null ? "" : message.toLowerCase(Locale.FRENCH).trim();
+    public NLStatsService(AnalyticsService analytics,
+                          @Value("${app.nlstats.phrases:classpath:nlstats/phrases.txt}") Resource phrases) {
+        this.analytics = analytics;
+        this.matcher = new IntentMatcher(load(phrases));
+        log.info("[NLSTATS] automate : {} états", matcher.states());
+    }
 
-        DateRange range = null;
-        if (m.contains("aujourd")) range = today();
-        else if (m.contains("hier")) range = yesterday();
-        else if (m.contains("semaine")) range = thisWeek();
-        else if (m.contains("mois")) range = thisMonth();
-        else if (m.contains("année") || m.contains("annee")) range = thisYear();
+    public Optional<String> tryAnswer(String message) {
+        long f = matcher.match(message);
+        // chemin courant : aucune période citée, rien à répondre ; sans « conversation » non plus
+        // (« average rainfall per month », « today's news topics » restent du chat ordinaire)
+        if ((f & ANY_PERIOD) == 0 || !has(f, Feature.CONVERSATION)) return Optional.empty();
 
+        DateRange range = range(f, message);
         if (range == null) return Optional.empty();
 
         // Combien de conversations ? (approx via volume de messages)
-        if (m.contains("combien") && (m.contains("conversation") || m.contains("conv"))) {
+        if (has(f, Feature.COUNT)) {
             long totalMsgs = analytics.messagesPerDay(range.from(), range.to())
                     .stream().mapToLong(p -> p.msgs()).sum();
             return Optional.of("Entre " + range.from() + " et " + range.to() + ", j’ai compté " + totalMsgs + " messages (approximation du volume de conversations).");
         }
 
         // Durée moyenne
-        if (m.contains("durée") || m.contains("moyenne")) {
+        if (has(f, Feature.DURATION)) {
             var avg = analytics.avgConvMinutes(range.from(), range.to());
             double minutes = avg.value();
             return Optional.of(String.format(Locale.FRENCH,
@@ -44,7 +72,7 @@ public class NLStatsService {
         }
 
         // Mots-clés
-        if (m.contains("mots") || m.contains("mots-clés") || m.contains("keywords")) {
+        if (has(f, Feature.KEYWORDS)) {
             var top = analytics.topKeywords(range.from(), range.to(), 10);
             var s = top.stream().map(k -> k.word()+" ("+k.count()+")").collect(Collectors.joining(", "));
             return Optional.of("Top mots-clés : " + s);
@@ -53,13 +81,79 @@ public class NLStatsService {
         return Optional.empty();
     }
 
+    private static boolean has(long found, Feature feature) {
+        return (found & feature.bit) != 0;
+    }
+
+    // ---------- Périodes ----------
     private record DateRange(LocalDate from, LocalDate to) {}
+
+    /** Période la plus précise citée ; « dernier/passé » + semaine/mois/année = la précédente. */
+    private DateRange range(long f, String message) {
+        boolean last = has(f, Feature.LAST);
+        if (has(f, Feature.TODAY)) return today();
+        if (has(f, Feature.YESTERDAY)) return yesterday();
+        if (last && has(f, Feature.DAYS)) return lastDays(firstNumber(message, 7));
+        if (has(f, Feature.WEEK)) return last ? previousWeek() : thisWeek();
+        if (has(f, Feature.MONTH)) return last ? previousMonth() : thisMonth();
+        if (has(f, Feature.YEAR)) return last ? previousYear() : thisYear();
+        return null;
+    }
+
+    /** Premier entier du message (« les 30 derniers jours »), borné ; {@code def} s'il n'y en a pas. */
+    private static int firstNumber(String message, int def) {
+        int n = -1;
+        for (int i = 0; i < message.length(); i++) {
+            int d = Character.digit(message.charAt(i), 10);
+            if (d >= 0) {
+                n = Math.min(MAX_DAYS, (n < 0 ? 0 : n) * 10 + d);
+            } else if (n >= 0) {
+                break;
+            }
+        }
+        return n > 0 ? n : def;
+    }
+
     private DateRange today()     { var d = LocalDate.now(); return new DateRange(d, d); }
     private DateRange yesterday() { var d = LocalDate.now().minusDays(1); return new DateRange(d, d); }
+    private DateRange lastDays(int n) { var d = LocalDate.now(); return new DateRange(d.minusDays(n - 1), d); }
     private DateRange thisWeek()  { var d = LocalDate.now();
         var from = d.with(ChronoField.DAY_OF_WEEK,1);
         var to = d.with(ChronoField.DAY_OF_WEEK,7);
         return new DateRange(from, to); }
+    private DateRange previousWeek() { var w = thisWeek(); return new DateRange(w.from().minusWeeks(1), w.to().minusWeeks(1)); }
     private DateRange thisMonth() { var d = LocalDate.now(); return new DateRange(d.withDayOfMonth(1), d.withDayOfMonth(d.lengthOfMonth())); }
+    private DateRange previousMonth() { var d = LocalDate.now().minusMonths(1); return new DateRange(d.withDayOfMonth(1), d.withDayOfMonth(d.lengthOfMonth())); }
     private DateRange thisYear()  { var d = LocalDate.now(); return new DateRange(d.withDayOfYear(1), d.withDayOfYear(d.lengthOfYear())); }
+    private DateRange previousYear() { var d = LocalDate.now().minusYears(1); return new DateRange(d.withDayOfYear(1), d.withDayOfYear(d.lengthOfYear())); }
+
+    // ---------- Table d'expressions ----------
+    /** « CLE = expr | expr » ; lignes vides et commentaires (#) ignorés. Table vide si illisible : aucune réponse analytique. */
+    static Map<Integer, List<String>> load(Resource resource) {
+        Map<Integer, List<String>> out = new HashMap<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                int eq = line.indexOf('=');
+                if (eq < 0) continue;
+                String key = line.substring(0, eq).strip();
+                Feature feature;
+                try {
+                    feature = Feature.valueOf(key);
+                } catch (IllegalArgumentException e) {
+                    log.warn("[NLSTATS] clé inconnue ignorée : {}", key);
+                    continue;
+                }
+                List<String> list = out.computeIfAbsent(feature.ordinal(), k -> new ArrayList<>());
+                for (String p : line.substring(eq + 1).split("\\|")) {
+                    if (!p.isBlank()) list.add(p.strip());
+                }
+            }
+        } catch (IOException e) {
+            log.warn("[NLSTATS] table d'expressions illisible ({})", resource, e);
+        }
+        return out;
+    }
 }
@@ -0,0 +1,337 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Utilisateurs actifs par période sous forme d'un sketch fusionnable par ligne (table {@code table},
+ * clé {@code keyColumn}, blob {@code sketchColumn}), commun à ActiveUserSketches (HyperLogLog par heure)
+ * et ActivityBitmaps (IdBitmap par jour) : tampon alimenté après commit et vidé par fusion en base,
+ * lecture jour par jour avec un cache LRU des jours clos, historique reconstruit en tâche de fond
+ * (agrégats horaires avant le filigrane, messages chauds après) et repli exact sur la table message
+ * en attendant. Les ajouts étant idempotents, la reconstruction ne se coordonne pas avec le flux courant.
+ *
+ * @param <K> période (heure ou jour)
+ * @param <S> sketch d'ensemble d'utilisateurs
+ */
+@Slf4j
+abstract class PeriodSketchStore<K, S> {
+
+    protected final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ActivityRollupService rollups;
+    protected final boolean enabled;
+    private final int cachedDays;
+
+    private final String state;
+    private final String table;
+    private final String keyColumn;
+    private final String sketchColumn;
+    private final String periodSql;
+    private final String tag;
+
+    // périodes modifiées depuis le dernier vidage : accès sous le verrou de l'instance
+    private Map<K, S> buffer = new HashMap<>();
+    private volatile boolean ready;
+
+    /** Sketches des jours clos (LRU) ; accès sous leur propre verrou. */
+    private final LinkedHashMap<LocalDate, S> days;
+    private final AtomicLong version = new AtomicLong();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean building = new AtomicBoolean(false);
+    private final ExecutorService worker;
+
+    /**
+     * @param state     nom de la ligne rollup_state marquant l'historique reconstruit
+     * @param periodSql expression SQL de la période d'un horodatage, {@code %s} = la colonne
+     * @param tag       préfixe des logs et nom du thread de reconstruction
+     */
+    protected PeriodSketchStore(JdbcTemplate jdbc,
+                                PlatformTransactionManager transactionManager,
+                                ActivityRollupService rollups,
+                                boolean enabled,
+                                int cachedDays,
+                                String state,
+                                String table,
+                                String keyColumn,
+                                String sketchColumn,
+                                String periodSql,
+                                String tag) {
+        this.jdbc = jdbc;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.rollups = rollups;
+        this.enabled = enabled;
+        this.cachedDays = Math.max(31, cachedDays);
+        this.state = state;
+        this.table = table;
+        this.keyColumn = keyColumn;
+        this.sketchColumn = sketchColumn;
+        this.periodSql = periodSql;
+        this.tag = tag;
+        this.days = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<LocalDate, S> eldest) {
+                return size() > PeriodSketchStore.this.cachedDays;
+            }
+        };
+        String thread = tag.toLowerCase(Locale.ROOT);
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, thread);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // ---------- Type de période et de sketch ----------
+    protected abstract K periodOf(LocalDateTime ts);
+
+    protected abstract LocalDate dayOf(K period);
+
+    /** Paramètre JDBC de la colonne clé. */
+    protected abstract Object toSql(K period);
+
+    protected abstract K readPeriod(ResultSet rs, int column) throws SQLException;
+
+    protected abstract S newSketch();
+
+    protected abstract void add(S sketch, long userId);
+
+    /** Fusion de {@code other} dans {@code into} (idempotente). */
+    protected abstract void merge(S into, S other);
+
+    protected abstract byte[] toBytes(S sketch);
+
+    protected abstract S fromBytes(byte[] bytes);
+
+    // ---------- Cycle de vie ----------
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        if (!enabled) return;
+        List<Timestamp> done = jdbc.queryForList("SELECT watermark FROM rollup_state WHERE name = ?", Timestamp.class, state);
+        if (!done.isEmpty()) ready = true;
+        else requestRebuild();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        worker.shutdownNow();
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("[{}] vidage final échoué", tag, e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // ---------- Chemin d'écriture ----------
+    /** Activité d'un utilisateur à {@code ts} (après commit) ; sans effet pour les conversations sans propriétaire. */
+    public void onActivity(Long userId, LocalDateTime ts) {
+        if (!enabled || userId == null) return;
+        K period = periodOf(ts == null ? LocalDateTime.now() : ts);
+        TxHooks.afterCommit(() -> {
+            synchronized (this) {
+                add(buffer.computeIfAbsent(period, p -> newSketch()), userId);
+            }
+        });
+    }
+
+    /** Fusionne le tampon dans les sketches persistés ; remis en tampon si l'écriture échoue. */
+    public void flush() {
+        if (!enabled) return;
+        flushLock.lock();
+        try {
+            Map<K, S> batch;
+            synchronized (this) {
+                if (buffer.isEmpty()) return;
+                batch = buffer;
+                buffer = new HashMap<>();
+            }
+            try {
+                save(batch);
+            } catch (Exception e) {
+                log.warn("[{}] vidage échoué", tag, e);
+                synchronized (this) {
+                    batch.forEach((p, s) -> buffer.merge(p, s, (x, y) -> { merge(x, y); return x; }));
+                }
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Fusion ligne à ligne : insertion si la période est nouvelle, sinon relecture verrouillée (FOR UPDATE)
+     * puis fusion — sûr avec plusieurs instances.
+     */
+    private void save(Map<K, S> batch) {
+        tx.executeWithoutResult(s -> batch.forEach((period, sketch) -> {
+            Object key = toSql(period);
+            int inserted = jdbc.update("INSERT INTO " + table + " (" + keyColumn + ", " + sketchColumn + ") VALUES (?, ?) "
+                    + "ON CONFLICT (" + keyColumn + ") DO NOTHING", key, toBytes(sketch));
+            if (inserted == 1) return;
+            byte[] old = jdbc.queryForObject("SELECT " + sketchColumn + " FROM " + table + " WHERE " + keyColumn
+                    + " = ? FOR UPDATE", byte[].class, key);
+            S merged = fromBytes(old);
+            merge(merged, sketch);
+            jdbc.update("UPDATE " + table + " SET " + sketchColumn + " = ? WHERE " + keyColumn + " = ?", toBytes(merged), key);
+        }));
+        LocalDate today = LocalDate.now();
+        Set<LocalDate> past = new HashSet<>();
+        batch.keySet().forEach(p -> { if (dayOf(p).isBefore(today)) past.add(dayOf(p)); });
+        if (!past.isEmpty()) {
+            synchronized (days) {
+                version.incrementAndGet();
+                days.keySet().removeAll(past);
+            }
+        }
+    }
+
+    // ---------- Lecture ----------
+    /**
+     * Sketch de chaque jour de [from, to] (vide si aucune activité) : cache pour les jours clos,
+     * base (une requête) pour le reste.
+     */
+    protected Map<LocalDate, S> daySketches(LocalDate from, LocalDate to) {
+        if (!enabled || !ready) return exactDays(from, to);
+        flush();
+        LocalDate today = LocalDate.now();
+        Map<LocalDate, S> out = new HashMap<>();
+        LocalDate firstMissing = null;
+        LocalDate lastMissing = null;
+        synchronized (days) {
+            for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+                S s = d.isBefore(today) ? days.get(d) : null;
+                if (s != null) {
+                    out.put(d, s);
+                } else {
+                    if (firstMissing == null) firstMissing = d;
+                    lastMissing = d;
+                }
+            }
+        }
+        if (firstMissing == null) return out;
+
+        long v = version.get();
+        Map<LocalDate, S> loaded = new HashMap<>();
+        jdbc.query("SELECT " + keyColumn + ", " + sketchColumn + " FROM " + table + " WHERE " + keyColumn + " >= ? AND "
+                + keyColumn + " < ?", rs -> {
+            loaded.merge(dayOf(readPeriod(rs, 1)), fromBytes(rs.getBytes(2)), (x, y) -> { merge(x, y); return x; });
+        }, toSql(periodOf(firstMissing.atStartOfDay())), toSql(periodOf(lastMissing.plusDays(1).atStartOfDay())));
+        for (LocalDate d = firstMissing; !d.isAfter(lastMissing); d = d.plusDays(1)) loaded.putIfAbsent(d, newSketch());
+        synchronized (days) {
+            loaded.forEach((d, s) -> {
+                if (d.isBefore(today) && version.get() == v) days.put(d, s);
+            });
+        }
+        loaded.forEach(out::putIfAbsent);
+        return out;
+    }
+
+    /** Repli exact tant que l'historique n'est pas reconstruit (table chaude uniquement). */
+    private Map<LocalDate, S> exactDays(LocalDate from, LocalDate to) {
+        Map<LocalDate, S> out = new HashMap<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) out.put(d, newSketch());
+        jdbc.query("""
+                SELECT DISTINCT CAST(m."timestamp" AS date), c.user_id
+                FROM message m JOIN conversation c ON c.id = m.conversation_id
+                WHERE c.user_id IS NOT NULL AND m."timestamp" >= ? AND m."timestamp" < ?
+                """, rs -> {
+            add(out.get(rs.getDate(1).toLocalDate()), rs.getLong(2));
+        }, Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(to.plusDays(1).atStartOfDay()));
+        return out;
+    }
+
+    // ---------- Reconstruction de l'historique ----------
+    /** Reconstruction complète en tâche de fond ; false si elle est déjà en cours. */
+    public boolean requestRebuild() {
+        if (!enabled || !building.compareAndSet(false, true)) return false;
+        worker.submit(this::rebuild);
+        return true;
+    }
+
+    /**
+     * Mois par mois : paires (période, utilisateur) des agrégats horaires avant le filigrane (archive comprise),
+     * puis des messages chauds à partir du filigrane. Le flux courant continue d'alimenter le tampon :
+     * un utilisateur vu des deux côtés n'est compté qu'une fois.
+     */
+    private void rebuild() {
+        long t0 = System.currentTimeMillis();
+        try {
+            jdbc.update("DELETE FROM rollup_state WHERE name = ?", state);
+            LocalDateTime wm = rollups.watermark().orElse(null);
+            Timestamp first = jdbc.queryForObject("""
+                    SELECT LEAST((SELECT MIN(hour) FROM activity_rollup_hourly WHERE messages > 0 AND user_id <> 0),
+                                 (SELECT MIN("timestamp") FROM message))
+                    """, Timestamp.class);
+            LocalDateTime end = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).plusHours(1);
+            int months = 0;
+            if (first != null) {
+                LocalDateTime m = first.toLocalDateTime().toLocalDate().withDayOfMonth(1).atStartOfDay();
+                while (m.isBefore(end)) {
+                    LocalDateTime next = m.plusMonths(1);
+                    Map<K, S> acc = new HashMap<>();
+                    if (wm != null && wm.isAfter(m)) {
+                        jdbc.query("SELECT DISTINCT " + periodSql.formatted("hour") + ", user_id FROM activity_rollup_hourly "
+                                + "WHERE messages > 0 AND user_id <> 0 AND hour >= ? AND hour < ?", rs -> {
+                            add(acc.computeIfAbsent(readPeriod(rs, 1), p -> newSketch()), rs.getLong(2));
+                        }, Timestamp.valueOf(m), Timestamp.valueOf(next.isBefore(wm) ? next : wm));
+                    }
+                    LocalDateTime rawFrom = wm != null && wm.isAfter(m) ? wm : m;
+                    if (rawFrom.isBefore(next)) {
+                        jdbc.query("SELECT DISTINCT " + periodSql.formatted("m.\"timestamp\"") + ", c.user_id "
+                                + "FROM message m JOIN conversation c ON c.id = m.conversation_id "
+                                + "WHERE c.user_id IS NOT NULL AND m.\"timestamp\" >= ? AND m.\"timestamp\" < ?", rs -> {
+                            add(acc.computeIfAbsent(readPeriod(rs, 1), p -> newSketch()), rs.getLong(2));
+                        }, Timestamp.valueOf(rawFrom), Timestamp.valueOf(next));
+                    }
+                    if (!acc.isEmpty()) {
+                        flushLock.lock();
+                        try {
+                            save(acc);
+                        } finally {
+                            flushLock.unlock();
+                        }
+                    }
+                    m = next;
+                    months++;
+                }
+            }
+            jdbc.update("""
+                    INSERT INTO rollup_state (name, watermark) VALUES (?, now())
+                    ON CONFLICT (name) DO UPDATE SET watermark = EXCLUDED.watermark
+                    """, state);
+            synchronized (days) {
+                version.incrementAndGet();
+                days.clear();
+            }
+            ready = true;
+            log.info("[{}] historique reconstruit ({} mois) en {} ms", tag, months, System.currentTimeMillis() - t0);
+        } catch (Exception e) {
+            log.warn("[{}] reconstruction échouée", tag, e);
+        } finally {
+            building.set(false);
+        }
+    }
+}
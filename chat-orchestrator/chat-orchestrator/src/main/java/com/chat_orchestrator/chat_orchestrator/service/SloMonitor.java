@@ -0,0 +1,215 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.SloBurnDTO;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SLO évalués en mémoire, sans base : taux de consommation du budget d'erreur (burn rate) sur
+ * des paires de fenêtres glissantes courte/longue (ex. 5m/1h, 30m/6h), alerte quand les deux dépassent
+ * le seuil de la paire. Deux indicateurs :
+ * <ul>
+ *   <li>LATENCY : part des tours de chat plus lents que le seuil (objectif 90 % = p90 sous le seuil) ;</li>
+ *   <li>MCP_ERRORS : part des appels /mcp/execute en échec.</li>
+ * </ul>
+ * Compteurs LongAdder relevés à chaque tranche (5 s par défaut) dans un anneau couvrant la plus longue
+ * fenêtre ; l'évaluation suit chaque relevé, l'état est publié sur le flux /api/admin/live (événement "slo").
+ */
+@Slf4j
+@Component
+public class SloMonitor {
+
+    public enum Sli { LATENCY, MCP_ERRORS }
+
+    /** Paire de fenêtres (en tranches) et seuil de burn rate. */
+    private record WindowPair(String label, int shortSlots, int longSlots, double threshold) {}
+
+    /** Compteurs d'un indicateur : tranche en cours + anneau des tranches closes. */
+    private static final class Series {
+        final LongAdder total = new LongAdder();
+        final LongAdder bad = new LongAdder();
+        final long[] totals;
+        final long[] bads;
+        final double objective;
+        final boolean[] alerting;
+
+        Series(int slots, double objective, int pairs) {
+            this.totals = new long[slots];
+            this.bads = new long[slots];
+            this.objective = objective;
+            this.alerting = new boolean[pairs];
+        }
+    }
+
+    private final LiveMetrics live;
+    private final long slotMs;
+    private final long latencyThresholdMs;
+    private final long minEvents;
+    private final List<WindowPair> pairs;
+    private final Series[] series = new Series[Sli.values().length];
+    private final int ringSize;
+
+    /** Tranches closes depuis le démarrage (fenêtres incomplètes au début). Écrit par le seul thread d'évaluation. */
+    private long closed;
+    private volatile List<SloBurnDTO> last = List.of();
+
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "slo-monitor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public SloMonitor(LiveMetrics live,
+                      @Value("${app.slo.slot-seconds:5}") int slotSeconds,
+                      @Value("${app.slo.windows:5m/1h:14.4,30m/6h:6}") String windows,
+                      @Value("${app.slo.latency.threshold-ms:800}") long latencyThresholdMs,
+                      @Value("${app.slo.latency.objective:0.90}") double latencyObjective,
+                      @Value("${app.slo.mcp.objective:0.99}") double mcpObjective,
+                      @Value("${app.slo.min-events:20}") long minEvents) {
+        this.live = live;
+        this.slotMs = Math.max(1, slotSeconds) * 1000L;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.minEvents = Math.max(1, minEvents);
+        this.pairs = parse(windows, slotMs);
+        int longest = 1;
+        for (WindowPair p : pairs) longest = Math.max(longest, p.longSlots());
+        this.ringSize = longest;
+        series[Sli.LATENCY.ordinal()] = new Series(ringSize, latencyObjective, pairs.size());
+        series[Sli.MCP_ERRORS.ordinal()] = new Series(ringSize, mcpObjective, pairs.size());
+        ticker.scheduleAtFixedRate(this::tick, slotMs, slotMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        ticker.shutdownNow();
+    }
+
+    // ---------- Chemin chaud ----------
+    /** Tour de chat réussi : mauvais s'il dépasse le seuil de latence. */
+    public void chatLatency(long elapsedMs) {
+        record(Sli.LATENCY, elapsedMs > latencyThresholdMs);
+    }
+
+    /** Appel MCP terminé (réponse "success" ou non). */
+    public void mcpCall(boolean failed) {
+        record(Sli.MCP_ERRORS, failed);
+    }
+
+    private void record(Sli sli, boolean bad) {
+        Series s = series[sli.ordinal()];
+        s.total.increment();
+        if (bad) s.bad.increment();
+    }
+
+    // ---------- Lecture ----------
+    /** Dernière évaluation (une ligne par indicateur × paire de fenêtres). */
+    public List<SloBurnDTO> status() {
+        return last;
+    }
+
+    // ---------- Relevé + évaluation ----------
+    private void tick() {
+        try {
+            int idx = (int) (closed % ringSize);
+            for (Series s : series) {
+                s.totals[idx] = s.total.sumThenReset();
+                s.bads[idx] = s.bad.sumThenReset();
+            }
+            closed++;
+
+            List<SloBurnDTO> out = new ArrayList<>(series.length * pairs.size());
+            for (Sli sli : Sli.values()) {
+                Series s = series[sli.ordinal()];
+                double budget = 1.0 - s.objective;
+                for (int p = 0; p < pairs.size(); p++) {
+                    WindowPair w = pairs.get(p);
+                    long[] shortSum = sum(s, w.shortSlots());
+                    long[] longSum = sum(s, w.longSlots());
+                    double shortBurn = burn(shortSum, budget);
+                    double longBurn = burn(longSum, budget);
+                    boolean alert = longSum[0] >= minEvents
+                            && shortBurn >= w.threshold() && longBurn >= w.threshold();
+                    if (alert != s.alerting[p]) {
+                        s.alerting[p] = alert;
+                        if (alert) {
+                            log.warn("[SLO] ALERTE {} {} : burn rate {} / {} (seuil {})", sli, w.label(),
+                                    round1(shortBurn), round1(longBurn), w.threshold());
+                        } else {
+                            log.info("[SLO] fin d'alerte {} {}", sli, w.label());
+                        }
+                    }
+                    out.add(new SloBurnDTO(sli.name(), s.objective, w.label(), w.threshold(),
+                            shortBurn, longBurn, shortSum[0], longSum[0], alert));
+                }
+            }
+            last = List.copyOf(out);
+            live.broadcast("slo", last);
+        } catch (Exception e) {
+            log.warn("[SLO] évaluation échouée", e);
+        }
+    }
+
+    /** {total, mauvais} sur les {@code slots} dernières tranches closes. */
+    private long[] sum(Series s, int slots) {
+        int n = (int) Math.min(slots, closed);
+        long total = 0, bad = 0;
+        for (int i = 1; i <= n; i++) {
+            int idx = (int) ((closed - i) % ringSize);
+            total += s.totals[idx];
+            bad += s.bads[idx];
+        }
+        return new long[]{total, bad};
+    }
+
+    private static double round1(double v) {
+        return Math.round(v * 10) / 10.0;
+    }
+
+    private static double burn(long[] sum, double budget) {
+        if (sum[0] == 0 || budget <= 0) return 0;
+        return ((double) sum[1] / sum[0]) / budget;
+    }
+
+    // ---------- Configuration ----------
+    /** « 5m/1h:14.4,30m/6h:6 » : fenêtre courte / longue : seuil ; unités s, m, h. */
+    private static List<WindowPair> parse(String spec, long slotMs) {
+        List<WindowPair> out = new ArrayList<>();
+        for (String part : spec.split(",")) {
+            String p = part.strip();
+            if (p.isEmpty()) continue;
+            try {
+                int colon = p.indexOf(':');
+                int slash = p.indexOf('/');
+                String shortW = p.substring(0, slash).strip();
+                String longW = p.substring(slash + 1, colon).strip();
+                double threshold = Double.parseDouble(p.substring(colon + 1).strip());
+                int shortSlots = (int) Math.max(1, seconds(shortW) * 1000 / slotMs);
+                int longSlots = (int) Math.max(shortSlots, seconds(longW) * 1000 / slotMs);
+                out.add(new WindowPair(shortW + "/" + longW, shortSlots, longSlots, threshold));
+            } catch (RuntimeException e) {
+                log.warn("[SLO] fenêtre ignorée : {}", p);
+            }
+        }
+        if (out.isEmpty()) throw new IllegalArgumentException("app.slo.windows : aucune fenêtre valide (" + spec + ")");
+        return out;
+    }
+
+    private static long seconds(String d) {
+        long n = Long.parseLong(d.substring(0, d.length() - 1));
+        return switch (d.charAt(d.length() - 1)) {
+            case 's' -> n;
+            case 'm' -> n * 60;
+            case 'h' -> n * 3600;
+            default -> throw new IllegalArgumentException(d);
+        };
+    }
+}
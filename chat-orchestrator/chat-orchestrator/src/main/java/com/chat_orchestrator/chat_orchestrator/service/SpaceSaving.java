@@ -0,0 +1,104 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * Résumé Space-Saving (Metwally et al.) : au plus {@code capacity} compteurs ; un mot nouveau remplace
+ * le plus petit compteur et hérite de sa valeur (erreur majorée par ce minimum). Tout mot de fréquence
+ * supérieure à N / capacity est garanti présent. Non thread-safe : l'appelant synchronise.
+ */
+final class SpaceSaving {
+
+    private static final class Counter {
+        final String word;
+        long count;
+        long error;
+
+        Counter(String word, long count, long error) {
+            this.word = word;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<String, Counter> counters = new HashMap<>();
+    private final TreeSet<Counter> byCount = new TreeSet<>((a, b) ->
+            a.count != b.count ? Long.compare(a.count, b.count) : a.word.compareTo(b.word));
+
+    SpaceSaving(int capacity) {
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /** Résumé exact : les {@code capacity} mots les plus fréquents d'un comptage complet. */
+    static SpaceSaving ofExact(int capacity, Map<String, Long> exact) {
+        SpaceSaving s = new SpaceSaving(capacity);
+        exact.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(s.capacity)
+                .forEach(e -> s.put(new Counter(e.getKey(), e.getValue(), 0)));
+        return s;
+    }
+
+    void offer(String word, long n) {
+        if (n <= 0) return;
+        Counter c = counters.get(word);
+        if (c != null) {
+            byCount.remove(c);
+            c.count += n;
+            byCount.add(c);
+        } else if (counters.size() < capacity) {
+            put(new Counter(word, n, 0));
+        } else {
+            Counter min = byCount.pollFirst();
+            counters.remove(min.word);
+            put(new Counter(word, min.count + n, min.count));
+        }
+    }
+
+    /** Ajoute les compteurs de ce résumé à {@code into} (fusion de plusieurs jours). */
+    void addTo(Map<String, Long> into) {
+        counters.values().forEach(c -> into.merge(c.word, c.count, Long::sum));
+    }
+
+    private void put(Counter c) {
+        counters.put(c.word, c);
+        byCount.add(c);
+    }
+
+    // ---------- Sérialisation (bytea) ----------
+    byte[] toBytes() {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(counters.size() * 24 + 8);
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeInt(capacity);
+            out.writeInt(counters.size());
+            for (Counter c : byCount.descendingSet()) {
+                out.writeUTF(c.word);
+                out.writeLong(c.count);
+                out.writeLong(c.error);
+            }
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static SpaceSaving fromBytes(byte[] bytes, int capacity) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            in.readInt();   // capacité d'origine : la configuration courante s'applique
+            int n = in.readInt();
+            SpaceSaving s = new SpaceSaving(capacity);
+            for (int i = 0; i < n; i++) {
+                Counter c = new Counter(in.readUTF(), in.readLong(), in.readLong());
+                if (s.counters.size() < s.capacity) s.put(c);   // ordre décroissant : on garde les plus gros
+            }
+            return s;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import java.text.Normalizer;
+
+/**
+ * Plongement lexical sans modèle : mots et trigrammes de caractères (accents retirés, minuscules)
+ * projetés par hachage signé dans {@code dim} composantes, poids log(1 + tf), norme L2 = 1.
+ * Le produit scalaire de deux vecteurs est donc leur cosinus. Déterministe : un index persisté reste
+ * valide tant que la dimension ne change pas.
+ */
+final class TextEmbedder {
+
+    private TextEmbedder() {}
+
+    static float[] embed(String text, int dim) {
+        float[] v = new float[dim];
+        if (text == null || text.isEmpty()) return v;
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD).toLowerCase();
+
+        StringBuilder word = new StringBuilder();
+        for (int i = 0, n = folded.length(); i <= n; i++) {
+            char c = i < n ? folded.charAt(i) : ' ';
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (!word.isEmpty()) {
+                addWord(v, word);
+                word.setLength(0);
+            }
+        }
+
+        double norm = 0;
+        for (int i = 0; i < dim; i++) {
+            if (v[i] != 0) v[i] = (float) (Math.signum(v[i]) * Math.log1p(Math.abs(v[i])));
+            norm += v[i] * v[i];
+        }
+        if (norm == 0) return v;
+        float inv = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < dim; i++) v[i] *= inv;
+        return v;
+    }
+
+    /** Le mot (poids 1) et ses trigrammes bornés par des espaces (poids 0,5 : fautes, flexions). */
+    private static void addWord(float[] v, CharSequence w) {
+        add(v, w.toString().hashCode(), 1f);
+        String padded = " " + w + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            add(v, padded.substring(i, i + 3).hashCode() * 31 + 7, 0.5f);
+        }
+    }
+
+    private static void add(float[] v, int h, float w) {
+        int m = h * 0x9E3779B9;
+        int idx = Math.floorMod(m ^ (m >>> 16), v.length);
+        v[idx] += (m >>> 31) == 0 ? w : -w;
+    }
+}
@@ -0,0 +1,141 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.ConversationSuggestionDTO;
+import com.chat_orchestrator.chat_orchestrator.repository.ConversationRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Index de préfixes des titres de conversation, par utilisateur, pour l'auto-complétion.
+ * Clés triées "fin du titre à partir de chaque début de mot" (minuscules, sans accents) :
+ * une recherche de préfixe = une plage du TreeMap. Construit à la première frappe,
+ * tenu à jour à la création / au renommage / à la suppression, libéré après inactivité.
+ */
+@Component
+public class TitleSuggestIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final char SEP = '\u0001';
+
+    private final ConversationRepository conversationRepository;
+    private final long idleMillis;
+    private final Map<String, UserIndex> byEmail = new ConcurrentHashMap<>();
+
+    public TitleSuggestIndex(ConversationRepository conversationRepository,
+                             @Value("${app.suggest.idle-minutes:15}") long idleMinutes) {
+        this.conversationRepository = conversationRepository;
+        this.idleMillis = idleMinutes * 60_000;
+    }
+
+    private static final class UserIndex {
+        final Long userId;
+        final TreeMap<String, Long> keys = new TreeMap<>();
+        final Map<Long, Conv> convs = new HashMap<>();
+        volatile long lastAccess = System.currentTimeMillis();
+
+        UserIndex(Long userId) { this.userId = userId; }
+
+        synchronized void put(Long id, String title, long date) {
+            remove(id);
+            Conv c = new Conv(title, date);
+            convs.put(id, c);
+            for (String k : keysOf(title, id)) keys.put(k, id);
+        }
+
+        synchronized void remove(Long id) {
+            Conv old = convs.remove(id);
+            if (old != null) for (String k : keysOf(old.title, id)) keys.remove(k);
+        }
+
+        synchronized List<ConversationSuggestionDTO> lookup(String prefix, int limit) {
+            // toute la plage (l'ordre alphabétique ne dit rien de la date) : tas des `limit` plus récentes,
+            // dédoublonnage des titres dont plusieurs mots correspondent
+            Comparator<Long> byDate = Comparator.comparingLong((Long id) -> convs.get(id).date)
+                    .thenComparingLong(id -> id);
+            Set<Long> seen = new HashSet<>();
+            PriorityQueue<Long> top = new PriorityQueue<>(limit + 1, byDate);
+            for (Long id : keys.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                if (!seen.add(id)) continue;
+                top.offer(id);
+                if (top.size() > limit) top.poll();
+            }
+            return top.stream()
+                    .sorted(byDate.reversed())
+                    .map(id -> new ConversationSuggestionDTO(id, convs.get(id).title))
+                    .toList();
+        }
+    }
+
+    private record Conv(String title, long date) {}
+
+    // ---------- Lecture ----------
+    public List<ConversationSuggestionDTO> suggest(String email, String prefix, int limit) {
+        String p = normalize(prefix);
+        if (p.isEmpty()) return List.of();
+        UserIndex idx = byEmail.computeIfAbsent(email, this::load);
+        idx.lastAccess = System.currentTimeMillis();
+        return idx.lookup(p, Math.max(1, Math.min(50, limit)));
+    }
+
+    private UserIndex load(String email) {
+        List<Object[]> rows = conversationRepository.findSuggestRowsByOwnerEmail(email);
+        UserIndex idx = new UserIndex(rows.isEmpty() ? null : (Long) rows.get(0)[3]);
+        for (Object[] r : rows) {
+            idx.put((Long) r[0], (String) r[1], ((Date) r[2]).getTime());
+        }
+        return idx;
+    }
+
+    // ---------- Mises à jour (ignorées si l'index de l'utilisateur n'est pas chargé) ----------
+    public void onSaved(String ownerEmail, Long convId, String title, Date date) {
+        if (ownerEmail == null) return;
+        TxHooks.afterCommit(() -> {
+            UserIndex idx = byEmail.get(ownerEmail);
+            if (idx != null) idx.put(convId, title, date == null ? System.currentTimeMillis() : date.getTime());
+        });
+    }
+
+    public void onDeleted(Long convId) {
+        TxHooks.afterCommit(() -> byEmail.values().forEach(idx -> idx.remove(convId)));
+    }
+
+    /** Suppressions/imports en masse : on jette l'index, il sera reconstruit à la prochaine frappe. */
+    public void evictUser(Long userId) {
+        byEmail.values().removeIf(idx -> userId == null || userId.equals(idx.userId) || idx.userId == null);
+    }
+
+    public void evictAll() {
+        byEmail.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${app.suggest.evict-every-ms:60000}")
+    public void evictIdle() {
+        long limit = System.currentTimeMillis() - idleMillis;
+        byEmail.values().removeIf(idx -> idx.lastAccess < limit);
+    }
+
+    // ---------- Normalisation ----------
+    static String normalize(String s) {
+        if (s == null) return "";
+        String n = Normalizer.normalize(s, Normalizer.Form.NFD);
+        return MARKS.matcher(n).replaceAll("").toLowerCase(Locale.ROOT).strip();
+    }
+
+    private static List<String> keysOf(String title, Long id) {
+        String n = normalize(title);
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < n.length(); i++) {
+            boolean wordStart = Character.isLetterOrDigit(n.charAt(i))
+                    && (i == 0 || !Character.isLetterOrDigit(n.charAt(i - 1)));
+            if (wordStart) out.add(n.substring(i) + SEP + id);
+        }
+        if (out.isEmpty()) out.add(n + SEP + id);
+        return out;
+    }
+}
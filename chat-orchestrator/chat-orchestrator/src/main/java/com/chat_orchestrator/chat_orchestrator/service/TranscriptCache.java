@@ -0,0 +1,206 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.chat_orchestrator.chat_orchestrator.entity.Message;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * Cache hors-heap (ByteBuffer direct) des historiques de conversations récemment ouvertes.
+ * Chaque entrée est un bloc {@link MessageCodec} [int nbMessages][messages...] avec de la réserve
+ * pour les ajouts. Budget global en octets, éviction LRU pondérée par la fréquence.
+ */
+@Component
+public class TranscriptCache {
+
+    /** nombre d'entrées les plus anciennes examinées pour choisir la victime (la moins fréquente) */
+    private static final int EVICTION_SAMPLE = 8;
+    /** compteurs de génération, répartis par hachage de l'id (une collision ne fait qu'écarter un put) */
+    private static final int GENERATION_STRIPES = 4096;
+
+    private final long maxBytes;
+    private final int maxEntryBytes;
+
+    // ordre d'accès => les premières entrées sont les moins récemment utilisées
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long usedBytes = 0;
+    private long hits = 0, misses = 0, evictions = 0;
+    // incrémenté par chaque ajout / invalidation : un put chargé avant une écriture est écarté
+    private final long[] generations = new long[GENERATION_STRIPES];
+
+    public TranscriptCache(@Value("${app.transcript-cache.max-bytes:67108864}") long maxBytes,
+                           @Value("${app.transcript-cache.max-entry-bytes:4194304}") int maxEntryBytes) {
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    private static final class Entry {
+        ByteBuffer buf;   // position = fin des données, capacity = réserve pour les ajouts
+        int count;
+        long lastId;      // dernier message (id) contenu : un ajout déjà présent est ignoré
+        int freq = 1;
+    }
+
+    public record Stats(int entries, long usedBytes, long maxBytes, long hits, long misses, long evictions) {}
+
+    // ---------- Lecture ----------
+    public synchronized Optional<List<MessageDto>> get(Long convId) {
+        Entry e = entries.get(convId);
+        if (e == null) { misses++; return Optional.empty(); }
+        hits++;
+        if (e.freq < Integer.MAX_VALUE) e.freq++;
+        return Optional.of(decode(e));
+    }
+
+    /** À lire AVANT de charger l'historique depuis la base, puis à passer à {@link #put}. */
+    public synchronized long generation(Long convId) {
+        return convId == null ? 0 : generations[stripe(convId)];
+    }
+
+    // ---------- Écriture ----------
+    /**
+     * Remplace l'historique complet (après un chargement depuis la base). Ignoré si un ajout ou une
+     * invalidation a eu lieu depuis {@code generation} : la liste chargée peut manquer ce message.
+     * {@code lastMessageId} : plus grand id chargé, pour ne pas rajouter un message déjà lu.
+     */
+    public synchronized void put(Long convId, List<MessageDto> messages, long lastMessageId, long generation) {
+        if (convId == null || maxBytes <= 0) return;
+        if (generations[stripe(convId)] != generation) return;
+        remove(convId);
+        byte[][] encoded = new byte[messages.size()][];
+        int size = Integer.BYTES;
+        for (int i = 0; i < messages.size(); i++) {
+            encoded[i] = MessageCodec.encode(messages.get(i));
+            size += encoded[i].length;
+        }
+        if (size > maxEntryBytes) return;
+
+        Entry e = new Entry();
+        e.buf = ByteBuffer.allocateDirect(withSlack(size));
+        e.buf.putInt(0);
+        for (byte[] b : encoded) e.buf.put(b);
+        e.count = messages.size();
+        e.lastId = lastMessageId;
+        insert(convId, e);
+    }
+
+    /**
+     * Ajoute un message en fin d'historique, seulement si la conversation est déjà en cache et que
+     * l'entrée ne le contient pas encore (chargée après son commit, avant ce hook).
+     */
+    public synchronized void append(Long convId, long messageId, MessageDto message) {
+        bump(convId);
+        Entry e = entries.get(convId);
+        if (e == null || messageId <= e.lastId) return;
+        byte[] b = MessageCodec.encode(message);
+        if (e.buf.position() + b.length > maxEntryBytes) { remove(convId); return; }
+
+        if (e.buf.remaining() < b.length) {
+            ByteBuffer bigger = ByteBuffer.allocateDirect(withSlack(e.buf.position() + b.length));
+            e.buf.flip();
+            bigger.put(e.buf);
+            usedBytes += bigger.capacity() - e.buf.capacity();
+            e.buf = bigger;
+        }
+        e.buf.put(b);
+        e.count++;
+        e.lastId = messageId;
+        e.buf.putInt(0, e.count);
+        evictUntilFits(convId);
+    }
+
+    public synchronized void invalidate(Long convId) {
+        bump(convId);
+        remove(convId);
+    }
+
+    public synchronized void invalidateAll(Collection<Long> convIds) {
+        convIds.forEach(this::invalidate);
+    }
+
+    public synchronized void clear() {
+        for (int i = 0; i < generations.length; i++) generations[i]++;
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(entries.size(), usedBytes, maxBytes, hits, misses, evictions);
+    }
+
+    // ---------- Variantes "après commit" (évite de cacher une écriture annulée) ----------
+    /** Entité JPA : l'id (IDENTITY) n'est lu qu'après commit. */
+    public void appendAfterCommit(Long convId, Message message) {
+        // génération incrémentée dès maintenant : un chargement commencé avant ce point, qui verrait le
+        // message une fois commité, n'est pas mis en cache avant l'ajout (qui le dupliquerait) ;
+        // un chargement commencé après le commit est dédoublonné par l'id
+        bumpNow(convId);
+        TxHooks.afterCommit(() -> append(convId, message.getId(),
+                new MessageDto(message.getRole(), message.getContent(), message.getTimestamp())));
+    }
+
+    public void invalidateAfterCommit(Long convId) {
+        // invalidation immédiate + après commit : une lecture concurrente ne peut pas réinsérer l'ancien état
+        invalidate(convId);
+        TxHooks.afterCommit(() -> invalidate(convId));
+    }
+
+    // ---------- Interne ----------
+    private synchronized void bumpNow(Long convId) {
+        bump(convId);
+    }
+
+    private void bump(Long convId) {
+        if (convId != null) generations[stripe(convId)]++;
+    }
+
+    private static int stripe(Long convId) {
+        long h = convId * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 52) & (GENERATION_STRIPES - 1);
+    }
+
+    private void insert(Long convId, Entry e) {
+        entries.put(convId, e);
+        usedBytes += e.buf.capacity();
+        e.buf.putInt(0, e.count);
+        evictUntilFits(convId);
+    }
+
+    private void remove(Long convId) {
+        Entry e = entries.remove(convId);
+        if (e != null) usedBytes -= e.buf.capacity();
+    }
+
+    private void evictUntilFits(Long keep) {
+        while (usedBytes > maxBytes && !entries.isEmpty()) {
+            Long victim = null;
+            int victimFreq = Integer.MAX_VALUE;
+            int seen = 0;
+            for (Map.Entry<Long, Entry> it : entries.entrySet()) {
+                if (seen++ >= EVICTION_SAMPLE) break;
+                if (it.getKey().equals(keep)) continue;
+                if (it.getValue().freq < victimFreq) {
+                    victim = it.getKey();
+                    victimFreq = it.getValue().freq;
+                }
+            }
+            if (victim == null) victim = keep; // l'entrée seule dépasse le budget
+            remove(victim);
+            // vieillissement : évite qu'une ancienne entrée très lue reste éternellement
+            if (++evictions % 1024 == 0) entries.values().forEach(e -> e.freq = Math.max(1, e.freq >>> 1));
+        }
+    }
+
+    private static int withSlack(int size) {
+        return size + Math.max(256, size / 4);
+    }
+
+    private static List<MessageDto> decode(Entry e) {
+        ByteBuffer b = e.buf.duplicate();
+        b.flip();
+        return MessageCodec.readBlock(b);
+    }
+}
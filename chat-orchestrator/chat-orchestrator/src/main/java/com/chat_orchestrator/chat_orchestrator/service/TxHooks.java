@@ -0,0 +1,20 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/** Exécute une action après commit de la transaction courante (ou tout de suite s'il n'y en a pas). */
+final class TxHooks {
+
+    private TxHooks() {}
+
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override public void afterCommit() { action.run(); }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.docqa.DocqaDtos;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Recherche documentaire locale : un index HNSW par namespace (fichiers projetés sous app.vector.dir),
+ * alimenté à chaque ingestion réussie (extraits renvoyés par DocQA) et purgé à la suppression d'un
+ * document. Coût d'une requête logarithmique en nombre d'extraits, index conservé au redémarrage.
+ * Lectures concurrentes, écritures exclusives par namespace. Un namespace inutilisé depuis
+ * {@code app.vector.idle-minutes} est fermé (fichiers et projections libérés, rouvert à la demande) ;
+ * un index dont la part de nœuds supprimés dépasse {@code app.vector.compact-deleted-ratio} est compacté.
+ */
+@Slf4j
+@Service
+public class VectorIndexService {
+
+    /** Extrait à indexer : page (ou numéro de morceau) et texte complet. */
+    public record Chunk(int page, String text) {}
+
+    private static final int EXCERPT_CHARS = 800;
+    private static final int OVERSAMPLE = 8;
+
+    private final Path baseDir;
+    private final boolean enabled;
+    private final int dim;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final long idleMillis;
+    private final double compactRatio;
+
+    private final Map<String, Namespace> open = new ConcurrentHashMap<>();
+
+    /** index et closed : modifiés sous le verrou d'écriture. */
+    private static final class Namespace {
+        final String key;
+        HnswIndex index;
+        boolean closed;
+        volatile long lastUsed = System.currentTimeMillis();
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Namespace(String key, HnswIndex index) {
+            this.key = key;
+            this.index = index;
+        }
+    }
+
+    @FunctionalInterface
+    private interface IndexWork<T> {
+        T apply(HnswIndex index) throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface NamespaceWork<T> {
+        T apply(Namespace n, HnswIndex index) throws IOException;
+    }
+
+    public VectorIndexService(@Value("${app.vector.dir:./data/vectors}") String baseDir,
+                              @Value("${app.vector.enabled:true}") boolean enabled,
+                              @Value("${app.vector.dim:256}") int dim,
+                              @Value("${app.vector.m:16}") int m,
+                              @Value("${app.vector.ef-construction:100}") int efConstruction,
+                              @Value("${app.vector.ef-search:64}") int efSearch,
+                              @Value("${app.vector.idle-minutes:30}") long idleMinutes,
+                              @Value("${app.vector.compact-deleted-ratio:0.3}") double compactRatio) {
+        this.baseDir = Path.of(baseDir);
+        this.enabled = enabled;
+        this.dim = dim;
+        this.m = Math.max(4, m);
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.idleMillis = TimeUnit.MINUTES.toMillis(Math.max(1, idleMinutes));
+        this.compactRatio = compactRatio;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        open.values().forEach(n -> close(n, true));
+    }
+
+    /** Ferme les namespaces inutilisés ; un namespace occupé (verrou pris) attend le passage suivant. */
+    @Scheduled(fixedDelayString = "${app.vector.idle-check-ms:60000}")
+    public void closeIdle() {
+        long now = System.currentTimeMillis();
+        open.values().forEach(n -> {
+            if (now - n.lastUsed > idleMillis) close(n, false);
+        });
+    }
+
+    private void close(Namespace n, boolean wait) {
+        if (wait) n.lock.writeLock().lock();
+        else if (!n.lock.writeLock().tryLock()) return;
+        try {
+            if (!n.closed) discard(n);
+        } finally {
+            n.lock.writeLock().unlock();
+        }
+    }
+
+    /** Sous le verrou d'écriture : le prochain accès rouvre le namespace depuis le disque. */
+    private void discard(Namespace n) {
+        n.closed = true;
+        open.remove(n.key, n);
+        try {
+            n.index.close();
+        } catch (IOException e) {
+            log.warn("[VECTOR] fermeture échouée ns={}", n.key, e);
+        }
+    }
+
+    // ---------- Écriture ----------
+    /** Remplace le document {@code doc} du namespace (même sémantique que l'ingestion DocQA). */
+    public void replaceDocument(String ns, String doc, List<Chunk> chunks) {
+        if (!enabled || doc == null) return;
+        long t0 = System.currentTimeMillis();
+        write(ns, index -> {
+            index.deleteDoc(doc);
+            for (Chunk c : chunks) {
+                String text = c.text() == null ? "" : c.text();
+                if (text.isBlank()) continue;
+                String excerpt = text.length() > EXCERPT_CHARS ? text.substring(0, EXCERPT_CHARS) : text;
+                index.insert(TextEmbedder.embed(text, dim), doc, c.page(), excerpt);
+            }
+            return true;
+        });
+        log.info("[VECTOR] ns={} doc={} : {} extraits indexés en {} ms", ns, doc, chunks.size(),
+                System.currentTimeMillis() - t0);
+    }
+
+    public void deleteDocument(String ns, String doc) {
+        if (!enabled) return;
+        write(ns, index -> index.deleteDoc(doc) > 0);
+    }
+
+    /**
+     * {@code work} sous le verrou d'écriture ; s'il a modifié l'index (true), écriture sur disque, ou
+     * compaction si les nœuds supprimés dépassent le seuil.
+     */
+    private void write(String ns, IndexWork<Boolean> work) {
+        withNamespace(ns, true, (n, index) -> {
+            if (!work.apply(index)) return null;
+            if (index.deletedFraction() > compactRatio) {
+                long t0 = System.currentTimeMillis();
+                int before = index.size();
+                try {
+                    n.index = index.compact();
+                } catch (IOException | RuntimeException e) {
+                    discard(n);   // index peut-être déjà fermé : reprise à la réouverture
+                    throw e;
+                }
+                log.info("[VECTOR] ns={} compacté : {} -> {} nœuds en {} ms", ns, before, n.index.size(),
+                        System.currentTimeMillis() - t0);
+            } else {
+                index.force();
+            }
+            return null;
+        });
+    }
+
+    // ---------- Lecture ----------
+    public List<DocqaDtos.Hit> search(String ns, String q, int k) {
+        if (!enabled || q == null || q.isBlank() || k <= 0) return List.of();
+        float[] qv = TextEmbedder.embed(q, dim);
+        return withNamespace(ns, false, (n, index) -> {
+            List<DocqaDtos.Hit> out = new ArrayList<>();
+            for (HnswIndex.Result r : index.search(qv, k, Math.max(efSearch, k))) {
+                String doc = index.doc(r.id());
+                if (doc == null) continue;
+                out.add(new DocqaDtos.Hit(doc, index.page(r.id()), index.excerpt(r.id()), r.score()));
+            }
+            return out;
+        });
+    }
+
+    /**
+     * Recherche restreinte aux documents {@code docs} (tous si vide) : sur-échantillonnage puis filtre,
+     * échantillon doublé tant qu'il manque des résultats et que l'index en a d'autres.
+     */
+    public List<DocqaDtos.Hit> search(String ns, String q, int k, Collection<String> docs) {
+        if (docs == null || docs.isEmpty()) return search(ns, q, k);
+        Set<String> allow = Set.copyOf(docs);
+        for (int want = k * OVERSAMPLE; ; want *= 2) {
+            List<DocqaDtos.Hit> all = search(ns, q, want);
+            List<DocqaDtos.Hit> hits = all.stream()
+                    .filter(h -> allow.contains(h.doc()))
+                    .limit(k)
+                    .toList();
+            if (hits.size() >= k || all.size() < want) return hits;
+        }
+    }
+
+    /** Sous le verrou du namespace, rouvert s'il a été fermé entre-temps (inactivité). */
+    private <T> T withNamespace(String ns, boolean write, NamespaceWork<T> work) {
+        String key = ns == null || ns.isBlank() ? "guest" : ns.strip().toLowerCase();
+        while (true) {
+            Namespace n = namespace(key);
+            var lock = write ? n.lock.writeLock() : n.lock.readLock();
+            lock.lock();
+            try {
+                if (n.closed) continue;
+                n.lastUsed = System.currentTimeMillis();
+                return work.apply(n, n.index);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private Namespace namespace(String key) {
+        return open.computeIfAbsent(key, k -> {
+            try {
+                return new Namespace(k, new HnswIndex(baseDir.resolve(dirName(k)), dim, m, efConstruction));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /** Nom de répertoire stable et sûr pour un namespace (souvent un email). */
+    private static String dirName(String ns) {
+        try {
+            byte[] h = MessageDigest.getInstance("SHA-256").digest(ns.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(h, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.RetentionCohortDTO;
+import com.chat_orchestrator.chat_orchestrator.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ActivityBitmapsTest {
+
+    @Test
+    void retentionLoadsWholeSignupWeeks() throws Exception {
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        UserRepository users = mock(UserRepository.class);
+        LocalDate monday = LocalDate.of(2025, 3, 3);
+        // inscrits le lundi et le dimanche de la semaine, hors de [mercredi, mardi suivant]
+        when(users.findIdsAndSignupDayNative(monday.atStartOfDay(), monday.plusWeeks(2).atStartOfDay()))
+                .thenReturn(List.of(
+                        new Object[]{1L, Date.valueOf(monday)},
+                        new Object[]{2L, Date.valueOf(monday.plusDays(2))},
+                        new Object[]{3L, Date.valueOf(monday.plusDays(6))},
+                        new Object[]{4L, Date.valueOf(monday.plusDays(8))}));
+        // activité de la semaine suivante : l'utilisateur 1 seulement
+        doAnswer(inv -> {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getDate(1)).thenReturn(Date.valueOf(monday.plusDays(9)));
+            when(rs.getLong(2)).thenReturn(1L);
+            inv.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbc).query(anyString(), any(RowCallbackHandler.class), any(), any());
+
+        ActivityBitmaps bitmaps = new ActivityBitmaps(jdbc, mock(PlatformTransactionManager.class),
+                mock(ActivityRollupService.class), users, false, 31);
+        List<RetentionCohortDTO> cohorts = bitmaps.retention(monday.plusDays(2), monday.plusDays(8), 2);
+
+        verify(users).findIdsAndSignupDayNative(monday.atStartOfDay(), monday.plusWeeks(2).atStartOfDay());
+        assertThat(cohorts).hasSize(2);
+        RetentionCohortDTO first = cohorts.get(0);
+        assertThat(first.cohort()).isEqualTo(monday);
+        assertThat(first.users()).isEqualTo(3);
+        assertThat(first.active()).containsExactly(0L, 1L);
+        assertThat(cohorts.get(1).users()).isEqualTo(1);
+        assertThat(cohorts.get(1).active()).containsExactly(0L, 0L);
+    }
+}
@@ -0,0 +1,289 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.io.InputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Agrégats horaires contre PostgreSQL (base de spring.datasource.*, surchargeable par -Dspring.datasource.url=...),
+ * dans un schéma jetable. Ignoré si la base est injoignable.
+ * Invariant vérifié : pour les heures sous le filigrane, activity_rollup_hourly = recalcul direct sur message.
+ */
+class ActivityRollupServiceTest {
+
+    private static final String SCHEMA = "rollup_test_" + Long.toHexString(System.nanoTime());
+
+    private static SingleConnectionDataSource ds;
+    private static JdbcTemplate jdbc;
+
+    private ActivityRollupService rollups;
+    private LocalDateTime h0;
+
+    @BeforeAll
+    static void connect() throws Exception {
+        Properties p = new Properties();
+        try (InputStream in = ActivityRollupServiceTest.class.getResourceAsStream("/application.properties")) {
+            if (in != null) p.load(in);
+        }
+        String url = System.getProperty("spring.datasource.url", p.getProperty("spring.datasource.url"));
+        String user = System.getProperty("spring.datasource.username", p.getProperty("spring.datasource.username"));
+        String password = System.getProperty("spring.datasource.password", p.getProperty("spring.datasource.password"));
+        try {
+            ds = new SingleConnectionDataSource(url, user, password, true);
+            ds.getConnection().isValid(2);
+        } catch (Exception e) {
+            ds = null;
+        }
+        assumeTrue(ds != null, "PostgreSQL injoignable : tests d'agrégats ignorés");
+
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("CREATE SCHEMA " + SCHEMA);
+        jdbc.execute("SET search_path TO " + SCHEMA);
+        jdbc.execute("CREATE TABLE users (id bigint PRIMARY KEY, created_at timestamptz)");
+        jdbc.execute("CREATE TABLE conversation (id bigint PRIMARY KEY, user_id bigint)");
+        jdbc.execute("""
+                CREATE TABLE message (
+                    id bigserial PRIMARY KEY,
+                    conversation_id bigint NOT NULL,
+                    "timestamp" timestamp NOT NULL,
+                    content text)""");
+        jdbc.execute("""
+                CREATE TABLE conversation_archive (
+                    conversation_id bigint PRIMARY KEY,
+                    first_message_at timestamp,
+                    last_message_at timestamp)""");
+        jdbc.execute("""
+                CREATE TABLE activity_rollup_hourly (
+                    user_id bigint NOT NULL,
+                    hour timestamp NOT NULL,
+                    messages bigint NOT NULL DEFAULT 0,
+                    conversations_started bigint NOT NULL DEFAULT 0,
+                    duration_sec_sum double precision NOT NULL DEFAULT 0,
+                    signups bigint NOT NULL DEFAULT 0,
+                    PRIMARY KEY (user_id, hour))""");
+        jdbc.execute("""
+                CREATE TABLE conversation_activity (
+                    conversation_id bigint PRIMARY KEY,
+                    user_id bigint NOT NULL,
+                    first_at timestamp NOT NULL,
+                    last_at timestamp NOT NULL)""");
+        jdbc.execute("CREATE TABLE rollup_state (name text PRIMARY KEY, watermark timestamp)");
+    }
+
+    @AfterAll
+    static void dropSchema() {
+        if (ds == null) return;
+        jdbc.execute("DROP SCHEMA " + SCHEMA + " CASCADE");
+        ds.destroy();
+    }
+
+    @BeforeEach
+    void reset() {
+        jdbc.execute("TRUNCATE users, conversation, message, conversation_archive, "
+                + "activity_rollup_hourly, conversation_activity, rollup_state");
+        // pas d'une heure, deux pas par passage : chaque catchUp() avance le filigrane de 2 h
+        rollups = new ActivityRollupService(jdbc, new DataSourceTransactionManager(ds), mock(ArchiveService.class),
+                new AnalyticsDayCache(100), true, 1, 2, 0);
+        h0 = LocalDateTime.now().truncatedTo(ChronoUnit.HOURS).minusDays(2);
+    }
+
+    // ---------- Rattrapage ----------
+    @Test
+    void catchUpAggregatesOnlyHoursBelowTheWatermark() {
+        conversation(1, 10);
+        message(1, h0.plusMinutes(10));
+        message(1, h0.plusMinutes(50));
+        message(1, h0.plusHours(1).plusMinutes(5));
+        message(1, h0.plusHours(2).plusMinutes(30));   // au-delà du filigrane après un passage
+
+        assertThat(rollups.catchUp()).contains(h0.plusHours(2));
+
+        assertMatchesRaw();
+        assertThat(rolled()).containsEntry("10@" + h0, "2/1/3300")
+                .containsEntry("10@" + h0.plusHours(1), "1/0/0");
+    }
+
+    @Test
+    void catchUpMovesTheDurationOfAContinuedConversation() {
+        conversation(1, 10);
+        conversation(2, 20);
+        message(1, h0.plusMinutes(10));
+        message(2, h0.plusHours(1));
+        message(1, h0.plusHours(3).plusMinutes(5));   // reprise après le premier passage
+
+        rollups.catchUp();
+        assertMatchesRaw();
+        assertThat(rolled()).containsEntry("10@" + h0, "1/1/0");
+
+        rollups.catchUp();
+        assertMatchesRaw();
+        // toujours une seule conversation démarrée à h0, durée étendue jusqu'à la reprise
+        assertThat(rolled()).containsEntry("10@" + h0, "1/1/10500")
+                .containsEntry("10@" + h0.plusHours(3), "1/0/0");
+    }
+
+    @Test
+    void catchUpIsNotRepeatedForTheSameHours() {
+        conversation(1, 10);
+        message(1, h0.plusMinutes(10));
+
+        rollups.catchUp();
+        rollups.catchUp();
+        rollups.catchUp();
+
+        assertMatchesRaw();
+        assertThat(rolled()).containsEntry("10@" + h0, "1/1/0");
+    }
+
+    // ---------- Import avant le filigrane ----------
+    @Test
+    void importBeforeTheWatermarkIsAddedOnceAndContinuedByCatchUp() {
+        conversation(1, 10);
+        message(1, h0.plusMinutes(5));
+        rollups.catchUp();                               // filigrane h0 + 2h
+
+        rollups.importing(List.of(2L), () -> {
+            conversation(2, 20);
+            message(2, h0.plusMinutes(20));
+            message(2, h0.plusHours(1).plusMinutes(20));
+            message(2, h0.plusHours(2).plusMinutes(20)); // pas encore agrégé
+        });
+        assertMatchesRaw();
+        assertThat(rolled()).containsEntry("20@" + h0, "1/1/3600");
+
+        rollups.catchUp();                               // filigrane h0 + 4h
+        assertMatchesRaw();
+        assertThat(rolled()).containsEntry("20@" + h0, "1/1/7200")
+                .containsEntry("20@" + h0.plusHours(2), "1/0/0");
+    }
+
+    @Test
+    void importIntoAnExistingConversationExtendsItsFirstMessage() {
+        conversation(1, 10);
+        message(1, h0.plusHours(1).plusMinutes(10));
+        rollups.catchUp();
+
+        rollups.importing(List.of(1L), () -> message(1, h0.plusMinutes(10)));
+
+        assertMatchesRaw();
+        assertThat(rolled()).containsEntry("10@" + h0, "1/1/3600")
+                .containsEntry("10@" + h0.plusHours(1), "1/0/0");
+    }
+
+    // ---------- Suppressions ----------
+    @Test
+    void deletingSubtractsTheConversationEverywhere() {
+        conversation(1, 10);
+        conversation(2, 10);
+        message(1, h0.plusMinutes(10));
+        message(1, h0.plusHours(1).plusMinutes(10));
+        message(2, h0.plusMinutes(30));
+        message(2, h0.plusHours(3));                     // au-delà du filigrane
+        rollups.catchUp();
+
+        DeletedRows deleted = rollups.deleting(this::deleteConversation2);
+
+        assertThat(deleted.messages()).hasSize(2);
+        assertThat(deleted.conversations()).containsExactly(2L);
+        assertMatchesRaw();
+        assertThat(rolled()).containsEntry("10@" + h0, "1/1/3600");
+        rollups.catchUp();
+        assertMatchesRaw();
+    }
+
+    @Test
+    void failedDeleteLeavesTheRollupsUntouched() {
+        conversation(1, 10);
+        message(1, h0.plusMinutes(10));
+        message(1, h0.plusHours(1).plusMinutes(10));
+        rollups.catchUp();
+        Map<String, String> before = rolled();
+
+        assertThatThrownBy(() -> rollups.deleting(() -> {
+            jdbc.update("DELETE FROM message WHERE conversation_id = 1");
+            throw new IllegalStateException("suppression interrompue");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(jdbc.queryForObject("SELECT COUNT(*) FROM message", Long.class)).isEqualTo(2);
+        assertThat(rolled()).isEqualTo(before);
+        assertMatchesRaw();
+    }
+
+    // ---------- Outils ----------
+    private static void conversation(long id, long userId) {
+        jdbc.update("INSERT INTO conversation (id, user_id) VALUES (?, ?)", id, userId);
+    }
+
+    private static void message(long convId, LocalDateTime ts) {
+        jdbc.update("INSERT INTO message (conversation_id, \"timestamp\", content) VALUES (?, ?, 'x')",
+                convId, Timestamp.valueOf(ts));
+    }
+
+    /** Même forme que BulkDeletionService : lignes supprimées (utilisateur, horodatage, contenu) + ids. */
+    private DeletedRows deleteConversation2() {
+        List<DeletedRows.Row> rows = jdbc.query("""
+                WITH del AS (DELETE FROM message WHERE conversation_id = 2 RETURNING conversation_id, "timestamp", content)
+                SELECT COALESCE(c.user_id, 0), del."timestamp", del.content
+                FROM del JOIN conversation c ON c.id = del.conversation_id
+                """, (rs, i) -> new DeletedRows.Row(rs.getLong(1), rs.getTimestamp(2).toLocalDateTime(), rs.getString(3)));
+        return new DeletedRows(rows, jdbc.queryForList("DELETE FROM conversation WHERE id = 2 RETURNING id", Long.class));
+    }
+
+    /** "user@heure" → "messages/démarrées/durée(s)" pour les lignes non nulles des agrégats. */
+    private static Map<String, String> rolled() {
+        Map<String, String> out = new TreeMap<>();
+        jdbc.query("""
+                SELECT user_id, hour, messages, conversations_started, duration_sec_sum
+                FROM activity_rollup_hourly
+                WHERE messages <> 0 OR conversations_started <> 0 OR abs(duration_sec_sum) > 0.001
+                """, rs -> {
+            out.put(rs.getLong(1) + "@" + rs.getTimestamp(2).toLocalDateTime(),
+                    rs.getLong(3) + "/" + rs.getLong(4) + "/" + Math.round(rs.getDouble(5)));
+        });
+        return out;
+    }
+
+    /** Même forme que {@link #rolled()}, recalculée sur message pour les heures sous le filigrane. */
+    private void assertMatchesRaw() {
+        Timestamp wm = Timestamp.valueOf(rollups.watermark().orElseThrow());
+        Map<String, String> raw = new TreeMap<>();
+        jdbc.query("""
+                WITH m AS (
+                    SELECT COALESCE(c.user_id, 0) AS uid, m.conversation_id, m."timestamp" AS ts
+                    FROM message m JOIN conversation c ON c.id = m.conversation_id
+                    WHERE m."timestamp" < ?
+                ),
+                msgs AS (SELECT uid, date_trunc('hour', ts) AS h, COUNT(*) AS n FROM m GROUP BY 1, 2),
+                conv AS (SELECT uid, conversation_id, MIN(ts) AS f, MAX(ts) AS l FROM m GROUP BY 1, 2),
+                st AS (
+                    SELECT uid, date_trunc('hour', f) AS h, COUNT(*) AS n, SUM(EXTRACT(EPOCH FROM (l - f))) AS d
+                    FROM conv GROUP BY 1, 2
+                )
+                SELECT COALESCE(msgs.uid, st.uid), COALESCE(msgs.h, st.h),
+                       COALESCE(msgs.n, 0), COALESCE(st.n, 0), COALESCE(st.d, 0)
+                FROM msgs FULL JOIN st ON st.uid = msgs.uid AND st.h = msgs.h
+                """, rs -> {
+            raw.put(rs.getLong(1) + "@" + rs.getTimestamp(2).toLocalDateTime(),
+                    rs.getLong(3) + "/" + rs.getLong(4) + "/" + Math.round(rs.getDouble(5)));
+        }, wm);
+        assertThat(rolled()).isEqualTo(raw);
+    }
+}
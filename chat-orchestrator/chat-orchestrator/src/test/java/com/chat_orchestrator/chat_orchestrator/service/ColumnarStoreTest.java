@@ -0,0 +1,71 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.SliceRowDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class ColumnarStoreTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+
+    private ColumnarStore store;
+
+    @BeforeEach
+    void loadEmpty() throws InterruptedException {
+        // base vide (requêtes du mock sans résultat) : le magasin n'est ensuite alimenté que par onMessage
+        store = new ColumnarStore(mock(JdbcTemplate.class), mock(ArchiveService.class), true, 1_000_000, 1000);
+        store.requestReload();
+        for (int i = 0; i < 200 && !store.isReady(); i++) Thread.sleep(10);
+        assertThat(store.isReady()).isTrue();
+    }
+
+    @AfterEach
+    void stop() {
+        store.shutdown();
+    }
+
+    private void message(long convId, long userId, String role, int hour) {
+        store.onMessage(convId, userId, null, role, "x".repeat(10), DAY.atTime(hour, 0));
+    }
+
+    private long total(List<SliceRowDTO> rows) {
+        return rows.stream().mapToLong(SliceRowDTO::messages).sum();
+    }
+
+    @Test
+    void deletedConversationDisappearsFromScansAcrossChunks() {
+        // conversations entrelacées sur plus d'un bloc de 2^16 lignes
+        for (int i = 0; i < 70_000; i++) message(1 + i % 3, 10 + i % 3, i % 2 == 0 ? "user" : "bot", i % 24);
+
+        store.deleted(List.of(2L));
+
+        List<SliceRowDTO> byUser = store.slice(DAY, DAY, ColumnarStore.GroupBy.USER, null, null, 10);
+        assertThat(byUser).extracting(SliceRowDTO::key).containsExactlyInAnyOrder("10", "12");
+        assertThat(total(byUser)).isEqualTo(70_000 - 23_333);
+        assertThat(store.hourly(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), 11L)).isEmpty();
+    }
+
+    @Test
+    void deletionOnlyTouchesTheGivenConversations() {
+        message(1, 10, "user", 8);
+        message(2, 10, "user", 9);
+        message(1, 10, "bot", 10);
+
+        store.deleted(List.of(1L, 99L));
+
+        List<AnalyticsService.Hour> hours = store.hourly(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay(), null);
+        assertThat(hours).singleElement().satisfies(h -> {
+            assertThat(h.hour()).isEqualTo(DAY.atTime(9, 0));
+            assertThat(h.messages()).isEqualTo(1);
+            assertThat(h.started()).isEqualTo(1);
+        });
+    }
+}
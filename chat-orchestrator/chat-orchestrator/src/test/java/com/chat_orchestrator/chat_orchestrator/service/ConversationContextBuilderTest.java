@@ -0,0 +1,94 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.chat_orchestrator.chat_orchestrator.repository.ConversationRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ConversationContextBuilderTest {
+
+    private final KnowledgeService knowledgeService = mock(KnowledgeService.class);
+    private final ConversationRepository conversationRepository = mock(ConversationRepository.class);
+    private ConversationContextBuilder builder;
+
+    @BeforeEach
+    void owner() {
+        when(conversationRepository.findOwnerEmailById(1L)).thenReturn(Optional.of("a@b.c"));
+    }
+
+    @AfterEach
+    void shutdown() {
+        if (builder != null) builder.shutdown();
+    }
+
+    /** 4 derniers tours, résumé tous les 6 tours sortis de la fenêtre. */
+    private ConversationContextBuilder builder(int tokenBudget) {
+        builder = new ConversationContextBuilder(knowledgeService, conversationRepository, mock(McpClient.class),
+                4, tokenBudget, 6, 1200, 100);
+        return builder;
+    }
+
+    private void history(int turns) {
+        List<MessageDto> h = new ArrayList<>();
+        for (int i = 0; i < turns; i++) {
+            h.add(new MessageDto(i % 2 == 0 ? "user" : "bot", "tour " + i, LocalDateTime.of(2025, 1, 1, 12, i)));
+        }
+        when(knowledgeService.getHistory(1L)).thenReturn(h);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void summarized(String text, int covered) {
+        Map<Long, ConversationContextBuilder.RollingSummary> summaries =
+                (Map<Long, ConversationContextBuilder.RollingSummary>) ReflectionTestUtils.getField(builder, "summaries");
+        summaries.put(1L, new ConversationContextBuilder.RollingSummary(text, covered));
+    }
+
+    @Test
+    void turnsOutOfTheWindowButNotYetSummarizedStayInThePrompt() {
+        builder(1500);
+        history(8);   // fenêtre = tours 4..7, retard de 4 < 6 : pas encore de résumé
+
+        String prompt = builder.buildPrompt(1L, "a@b.c", "question");
+
+        for (int i = 0; i < 8; i++) assertThat(prompt).contains("tour " + i);
+        assertThat(prompt.indexOf("tour 3")).isLessThan(prompt.indexOf("tour 4"));
+        assertThat(prompt).doesNotContain("(…)");
+    }
+
+    @Test
+    void onlyTurnsAfterTheSummaryAreRepeated() {
+        builder(1500);
+        summarized("résumé des six premiers tours", 6);
+        history(13);  // fenêtre = tours 9..12, tours 6..8 pas encore résumés
+
+        String prompt = builder.buildPrompt(1L, "a@b.c", "question");
+
+        assertThat(prompt).contains("résumé des six premiers tours");
+        for (int i = 6; i < 13; i++) assertThat(prompt).contains("tour " + i);
+        assertThat(prompt).doesNotContain("tour 5\n");
+    }
+
+    @Test
+    void pendingTurnsBeyondTheBudgetAreMarkedAsOmitted() {
+        // 5 tokens par tour : la fenêtre et deux tours en attente tiennent dans le budget
+        builder(32);
+        history(8);
+
+        String prompt = builder.buildPrompt(1L, "a@b.c", "question");
+
+        assertThat(prompt).contains("(…)").contains("tour 2").contains("tour 7").doesNotContain("tour 1\n");
+        assertThat(prompt.indexOf("(…)")).isLessThan(prompt.indexOf("tour 2"));
+    }
+}
@@ -0,0 +1,167 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.ImportJobDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Import NDJSON sans base : JdbcTemplate simulé, séquences servies en mémoire, lignes des batchs
+ * relues via les setters JDBC. Vérifie le découpage en lots, la pré-allocation des ids et leur
+ * propagation aux index en mémoire.
+ */
+class ConversationImportServiceTest {
+
+    private static final LocalDateTime TS = LocalDateTime.of(2025, 3, 10, 9, 0);
+
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private final ActivityRollupService rollups = mock(ActivityRollupService.class);
+    private final KnowledgeStats knowledgeStats = mock(KnowledgeStats.class);
+    private final ColumnarStore columnar = mock(ColumnarStore.class);
+
+    /** Séquence → prochaine valeur ; appels nextval regroupés par table. */
+    private final Map<String, Long> sequences = new TreeMap<>();
+    private final List<String> allocations = new ArrayList<>();
+    /** Table → lignes insérées (valeurs des paramètres, dans l'ordre). */
+    private final Map<String, List<List<Object>>> inserted = new TreeMap<>();
+
+    @BeforeEach
+    void stubJdbc() {
+        when(jdbc.queryForList(anyString(), eq(Long.class), anyString(), anyInt())).thenAnswer(inv -> {
+            String table = inv.getArgument(2);
+            int n = inv.getArgument(3);
+            allocations.add(table + ":" + n);
+            long first = sequences.merge(table, (long) n, Long::sum) - n + 1;
+            return LongStream.range(first, first + n).boxed().toList();
+        });
+        when(jdbc.batchUpdate(anyString(), any(Collection.class), anyInt(), any())).thenAnswer(inv -> {
+            String sql = inv.getArgument(0);
+            String table = sql.substring("INSERT INTO ".length(), sql.indexOf(' ', "INSERT INTO ".length()));
+            Collection<Object> rows = inv.getArgument(1);
+            ParameterizedPreparedStatementSetter<Object> setter = inv.getArgument(3);
+            for (Object row : rows) {
+                List<Object> values = new ArrayList<>();
+                PreparedStatement ps = (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class}, (p, m, args) -> {
+                            if (m.getName().startsWith("set")) values.add(args[1]);
+                            return null;
+                        });
+                setter.setValues(ps, row);
+                inserted.computeIfAbsent(table, t -> new ArrayList<>()).add(values);
+            }
+            return new int[0][];
+        });
+        // la transaction d'import s'exécute sous le contrôle des agrégats
+        doAnswer(inv -> {
+            inv.<Runnable>getArgument(1).run();
+            return null;
+        }).when(rollups).importing(any(), any());
+    }
+
+    private ConversationImportService service(int batchMessages, int batchConversations) {
+        return new ConversationImportService(jdbc, mock(PlatformTransactionManager.class),
+                new ObjectMapper().findAndRegisterModules(), mock(TitleSuggestIndex.class), knowledgeStats,
+                mock(ActivityLeaderboards.class), rollups, mock(KeywordIndex.class), mock(ActiveUserSketches.class),
+                mock(ActivityBitmaps.class), columnar, batchMessages, batchConversations);
+    }
+
+    private static ByteArrayInputStream ndjson(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String conversation(String title, int messages) {
+        StringBuilder sb = new StringBuilder("{\"title\":" + (title == null ? "null" : "\"" + title + "\"")
+                + ",\"createdAt\":\"2025-03-10T08:00:00Z\",\"messages\":[");
+        for (int i = 0; i < messages; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"role\":\"").append(i % 2 == 0 ? "user" : "bot")
+                    .append("\",\"content\":\"m").append(i).append("\",\"timestamp\":\"").append(TS.plusMinutes(i)).append("\"}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    @Test
+    void cutsBatchesOnMessageCountAndPreallocatesIdsOncePerBatch() {
+        ImportJobDTO job = service(5, 100).importNdjson(7L, ndjson(
+                conversation("a", 3), conversation("b", 3), conversation("c", 1)));
+
+        assertThat(job.status()).isEqualTo("DONE");
+        assertThat(job.conversationsImported()).isEqualTo(3);
+        assertThat(job.messagesImported()).isEqualTo(7);
+        assertThat(job.batches()).isEqualTo(2);
+        // lot 1 = a + b (6 messages ≥ 5), lot 2 = c : un seul aller-retour par table et par lot
+        assertThat(allocations).containsExactly("conversation:2", "message:6", "conversation:1", "message:1");
+    }
+
+    @Test
+    void cutsBatchesOnConversationCount() {
+        ImportJobDTO job = service(1000, 2).importNdjson(7L, ndjson(
+                conversation("a", 0), conversation("b", 0), conversation("c", 0)));
+
+        assertThat(job.batches()).isEqualTo(2);
+        // lot sans message : aucune allocation sur message
+        assertThat(allocations).containsExactly("conversation:2", "conversation:1");
+    }
+
+    @Test
+    void insertsRowsWithTheirPreallocatedIds() {
+        sequences.put("conversation", 100L);
+        sequences.put("message", 1000L);
+
+        service(1000, 100).importNdjson(7L, ndjson(conversation("a", 2), conversation(null, 1)));
+
+        assertThat(inserted.get("conversation")).extracting(r -> r.get(0), r -> r.get(1), r -> r.get(3))
+                .containsExactly(
+                        tuple(101L, "a", 7L),
+                        tuple(102L, "m0", 7L));   // titre = premier message user
+        assertThat(inserted.get("message")).extracting(r -> r.get(0), r -> r.get(2), r -> r.get(4))
+                .containsExactly(
+                        tuple(1001L, "m0", 101L),
+                        tuple(1002L, "m1", 101L),
+                        tuple(1003L, "m0", 102L));
+
+        // index en mémoire alimentés avec les mêmes ids qu'en base
+        verify(knowledgeStats).onMessage(102L, "m0", 1003L, "m0", TS);
+        verify(columnar).onMessage(101L, 7L, 1002L, "bot", "m1", TS.plusMinutes(1));
+    }
+
+    @Test
+    void invalidLineFailsTheJobButKeepsCommittedBatches() {
+        ImportJobDTO job = service(1000, 1).importNdjson(7L, ndjson(
+                conversation("a", 1), "{pas du json", conversation("c", 1)));
+
+        assertThat(job.status()).isEqualTo("FAILED");
+        assertThat(job.error()).startsWith("Ligne ~2");
+        assertThat(job.conversationsImported()).isEqualTo(1);
+        assertThat(inserted.get("conversation")).hasSize(1);
+        verify(rollups).importing(eq(List.of(1L)), any());
+        verify(knowledgeStats).onMessage(anyLong(), anyString(), anyLong(), anyString(), any());
+    }
+}
@@ -0,0 +1,111 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.DocIngestJobDTO;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class DocIngestJobsTest {
+
+    private static final String B = "jobs-boundary";
+
+    @TempDir
+    Path spool;
+
+    private static MockHttpServletRequest upload(String... files) {
+        StringBuilder body = new StringBuilder("--" + B + "\r\n"
+                + "Content-Disposition: form-data; name=\"conv\"\r\n\r\n"
+                + "42\r\n");
+        for (int i = 0; i < files.length; i++) {
+            body.append("--").append(B).append("\r\n")
+                    .append("Content-Disposition: form-data; name=\"file\"; filename=\"doc").append(i).append(".txt\"\r\n\r\n")
+                    .append(files[i]).append("\r\n");
+        }
+        body.append("--").append(B).append("--\r\n");
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/docqa/jobs");
+        request.setContentType("multipart/form-data; boundary=" + B);
+        request.setContent(body.toString().getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+
+    @Test
+    void spoolsOnlyNonEmptyFileParts() throws Exception {
+        DocqaService docqa = mock(DocqaService.class);
+        when(docqa.ingestStream(any(), anyString(), anyString())).thenReturn(Map.of("pages", 1));
+        DocIngestJobs jobs = new DocIngestJobs(docqa, spool.toString(), 2, 10, 5, 1000, 10_000);
+
+        DocIngestJobDTO job = jobs.submit("alice", upload("premier", "", "second"));
+
+        assertThat(job.files()).extracting(DocIngestJobDTO.FileDTO::name).containsExactly("doc0.txt", "doc2.txt");
+        assertThat(job.files()).extracting(DocIngestJobDTO.FileDTO::bytes).containsExactly(7L, 6L);
+        verify(docqa, timeout(2000).times(2)).ingestStream(any(), anyString(), eq("alice"));
+        jobs.shutdown();
+    }
+
+    @Test
+    void oversizedFileIsRejectedAndNothingStaysSpooled() throws Exception {
+        DocIngestJobs jobs = new DocIngestJobs(mock(DocqaService.class), spool.toString(), 1, 10, 5, 4, 10_000);
+
+        assertThatThrownBy(() -> jobs.submit("alice", upload("ok", "beaucoup trop long")))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+        try (var files = Files.list(spool)) {
+            assertThat(files).isEmpty();
+        }
+        jobs.shutdown();
+    }
+
+    @Test
+    void declaredLengthOverTheLimitIsRejectedBeforeReadingTheBody() throws Exception {
+        DocIngestJobs jobs = new DocIngestJobs(mock(DocqaService.class), spool.toString(), 1, 10, 5, 1000, 10_000);
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getContentLengthLong()).thenReturn(10_001L);
+
+        assertThatThrownBy(() -> jobs.submit("alice", request))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.PAYLOAD_TOO_LARGE));
+        verify(request, never()).getInputStream();
+        jobs.shutdown();
+    }
+
+    @Test
+    void fullQueueIsRejectedBeforeReadingTheBody() throws Exception {
+        DocqaService docqa = mock(DocqaService.class);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(docqa.ingestStream(any(), anyString(), anyString())).thenAnswer(inv -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Map.of();
+        });
+        // un worker, une place en file : le premier fichier occupe le worker, le second la file
+        DocIngestJobs jobs = new DocIngestJobs(docqa, spool.toString(), 1, 1, 5, 1000, 10_000);
+        jobs.submit("alice", upload("a"));
+        assertThat(started.await(2, TimeUnit.SECONDS)).isTrue();
+        jobs.submit("alice", upload("b"));
+
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        assertThatThrownBy(() -> jobs.submit("alice", request))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE));
+        verify(request, never()).getInputStream();
+        release.countDown();
+        jobs.shutdown();
+    }
+}
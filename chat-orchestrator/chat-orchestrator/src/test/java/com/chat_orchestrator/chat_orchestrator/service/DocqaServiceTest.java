@@ -0,0 +1,75 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class DocqaServiceTest {
+
+    private McpClient mcpClient;
+    private DocqaService service;
+    private MockRestServiceServer flask;
+
+    @BeforeEach
+    void setUp() {
+        mcpClient = mock(McpClient.class);
+        service = new DocqaService(mcpClient, mock(VectorIndexService.class));
+        ReflectionTestUtils.setField(service, "base", "http://docqa");
+        ReflectionTestUtils.setField(service, "maxUploadBytes", 1_000_000L);
+        flask = MockRestServiceServer.bindTo((RestTemplate) ReflectionTestUtils.getField(service, "rt")).build();
+    }
+
+    @Test
+    void proxyIngestForwardsOnlyTheFilePartUnderTheServerNamespace() throws Exception {
+        String b = "client-boundary";
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/docqa/ingest");
+        request.setContentType("multipart/form-data; boundary=" + b);
+        request.setContent(("--" + b + "\r\n"
+                + "Content-Disposition: form-data; name=\"conv\"\r\n\r\n"
+                + "999\r\n"
+                + "--" + b + "\r\n"
+                + "Content-Disposition: form-data; name=\"ns\"\r\n\r\n"
+                + "victim\r\n"
+                + "--" + b + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"notes.txt\"\r\n\r\n"
+                + "contenu du document\r\n"
+                + "--" + b + "--\r\n").getBytes(StandardCharsets.UTF_8));
+
+        AtomicReference<String> sent = new AtomicReference<>();
+        flask.expect(requestTo("http://docqa/ingest?return_text=1&ns=alice"))
+                .andExpect(method(HttpMethod.POST))
+                .andExpect(header("X-Doc-NS", "alice"))
+                .andExpect(r -> sent.set(((MockClientHttpRequest) r).getBodyAsString()))
+                .andRespond(withSuccess("{\"doc\":\"notes.txt\",\"ok\":true}", MediaType.APPLICATION_JSON));
+
+        var resp = service.proxyIngest(request, "alice");
+
+        flask.verify();
+        assertThat(resp.getBody()).containsEntry("doc", "notes.txt");
+        assertThat(sent.get())
+                .contains("name=\"ns\"\r\n\r\nalice\r\n")
+                .contains("filename=\"notes.txt\"")
+                .contains("contenu du document")
+                .doesNotContain("conv")
+                .doesNotContain("999")
+                .doesNotContain("victim");
+        verify(mcpClient).docsIngested("alice");
+    }
+}
@@ -0,0 +1,62 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DownsamplingTest {
+
+    private record P(double x, double y) {}
+
+    private static List<P> series(int n) {
+        List<P> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) out.add(new P(i, Math.sin(i / 10.0)));
+        return out;
+    }
+
+    @Test
+    void shortSeriesIsReturnedAsIs() {
+        List<P> data = series(10);
+
+        assertThat(Downsampling.lttb(data, 10, P::x, P::y)).isSameAs(data);
+        assertThat(Downsampling.lttb(data, 1, P::x, P::y)).hasSize(3);   // minimum 3 points
+        assertThat(Downsampling.lttb(List.<P>of(), 5, P::x, P::y)).isEmpty();
+    }
+
+    @Test
+    void keepsEndpointsOrderAndTargetSize() {
+        List<P> data = series(10_000);
+
+        List<P> out = Downsampling.lttb(data, 100, P::x, P::y);
+
+        assertThat(out).hasSize(100);
+        assertThat(out.get(0)).isSameAs(data.get(0));
+        assertThat(out.get(99)).isSameAs(data.get(9_999));
+        assertThat(data).containsAll(out);
+        for (int i = 1; i < out.size(); i++) assertThat(out.get(i).x()).isGreaterThan(out.get(i - 1).x());
+    }
+
+    @Test
+    void preservesIsolatedPeaks() {
+        List<P> data = new ArrayList<>();
+        for (int i = 0; i < 5_000; i++) data.add(new P(i, i == 1234 ? 100 : i == 3210 ? -50 : 0));
+
+        List<P> out = Downsampling.lttb(data, 50, P::x, P::y);
+
+        assertThat(out).contains(data.get(1234), data.get(3210));
+    }
+
+    @Test
+    void pointsDefaultsToAndIsCappedByTheConfiguredMaximum() {
+        Downsampling d = new Downsampling(500);
+
+        assertThat(d.points(null)).isEqualTo(500);
+        assertThat(d.points(100)).isEqualTo(100);
+        assertThat(d.points(10_000)).isEqualTo(500);
+        assertThat(d.points(0)).isEqualTo(3);
+        assertThat(new Downsampling(1).points(null)).isEqualTo(3);
+    }
+}
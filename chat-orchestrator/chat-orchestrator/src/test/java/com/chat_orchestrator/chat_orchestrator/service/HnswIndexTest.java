@@ -0,0 +1,209 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class HnswIndexTest {
+
+    private static final int DIM = 32;
+    private static final int M = 8;
+
+    @TempDir
+    Path dir;
+
+    private static float[] randomUnit(Random rnd) {
+        float[] v = new float[DIM];
+        double norm = 0;
+        for (int i = 0; i < DIM; i++) {
+            v[i] = (float) rnd.nextGaussian();
+            norm += v[i] * v[i];
+        }
+        for (int i = 0; i < DIM; i++) v[i] /= (float) Math.sqrt(norm);
+        return v;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        float s = 0;
+        for (int i = 0; i < DIM; i++) s += a[i] * b[i];
+        return s;
+    }
+
+    private static List<float[]> fill(HnswIndex index, int n, Random rnd) throws IOException {
+        List<float[]> vs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            float[] v = randomUnit(rnd);
+            vs.add(v);
+            index.insert(v, "doc" + (i % 10), i, "extrait " + i);
+        }
+        return vs;
+    }
+
+    /** Part des k vrais plus proches voisins (force brute) retrouvés par l'index. */
+    private static double recall(HnswIndex index, List<float[]> vs, List<float[]> queries, int k) {
+        int found = 0;
+        for (float[] q : queries) {
+            Set<Integer> truth = new HashSet<>(IntStream.range(0, vs.size()).boxed()
+                    .sorted(Comparator.comparingDouble(i -> -dot(q, vs.get(i))))
+                    .limit(k).toList());
+            for (HnswIndex.Result r : index.search(q, k, 100)) if (truth.contains(r.id())) found++;
+        }
+        return found / (double) (queries.size() * k);
+    }
+
+    @Test
+    void recallAgainstBruteForce() throws IOException {
+        Random rnd = new Random(42);
+        try (HnswIndex index = new HnswIndex(dir, DIM, M, 100)) {
+            List<float[]> vs = fill(index, 2000, rnd);
+            List<float[]> queries = IntStream.range(0, 100).mapToObj(i -> randomUnit(rnd)).toList();
+            assertThat(recall(index, vs, queries, 10)).isGreaterThanOrEqualTo(0.9);
+        }
+    }
+
+    @Test
+    void reopenKeepsGraphAndMetadata() throws IOException {
+        Random rnd = new Random(1);
+        List<float[]> vs;
+        try (HnswIndex index = new HnswIndex(dir, DIM, M, 100)) {
+            vs = fill(index, 500, rnd);
+            index.deleteDoc("doc3");
+            index.force();
+        }
+        try (HnswIndex index = new HnswIndex(dir, DIM, M, 100)) {
+            assertThat(index.size()).isEqualTo(500);
+            assertThat(index.hasDoc("doc3")).isFalse();
+            assertThat(index.search(vs.get(7), 1, 64)).singleElement().satisfies(r -> {
+                assertThat(r.id()).isEqualTo(7);
+                assertThat(index.doc(7)).isEqualTo("doc7");
+                assertThat(index.page(7)).isEqualTo(7);
+            });
+            assertThat(index.excerpt(7)).isEqualTo("extrait 7");
+            // nœuds supprimés jamais renvoyés
+            assertThat(index.search(vs.get(13), 10, 64)).noneMatch(r -> r.id() % 10 == 3);
+        }
+    }
+
+    @Test
+    void lostMetadataKeepsSurvivorsReachable() throws IOException {
+        Random rnd = new Random(3);
+        List<float[]> vs;
+        try (HnswIndex index = new HnswIndex(dir, DIM, M, 100)) {
+            vs = fill(index, 400, rnd);
+            index.force();
+        }
+        int entry = ByteBuffer.wrap(Files.readAllBytes(dir.resolve("index.hdr"))).getInt(4 * 4);
+        assumeTrue(entry > 0, "point d'entrée = premier nœud, rien à tronquer avant lui");
+
+        // arrêt brutal simulé : meta.bin perd l'enregistrement du point d'entrée et tous les suivants
+        long cut = 0;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(dir.resolve("meta.bin")))) {
+            for (int id = 0; id < entry; id++) {
+                in.readInt();
+                in.readInt();
+                int dl = in.readInt();
+                in.skipNBytes(dl);
+                int tl = in.readInt();
+                in.skipNBytes(tl);
+                cut += 16 + dl + tl;
+            }
+        }
+        try (RandomAccessFile f = new RandomAccessFile(dir.resolve("meta.bin").toFile(), "rw")) {
+            f.setLength(cut);
+        }
+
+        try (HnswIndex index = new HnswIndex(dir, DIM, M, 100)) {
+            assertThat(index.size()).isEqualTo(entry);
+            for (int id = 0; id < entry; id++) {
+                assertThat(index.search(vs.get(id), 1, 64)).extracting(HnswIndex.Result::id).containsExactly(id);
+            }
+            // les ids écartés sont réattribués : aucun lien ne doit mener à l'ancien nœud
+            float[] fresh = randomUnit(rnd);
+            int id = index.insert(fresh, "neuf", 1, "nouvel extrait");
+            assertThat(id).isEqualTo(entry);
+            assertThat(index.search(fresh, 1, 64)).extracting(HnswIndex.Result::id).containsExactly(id);
+            for (int i = 0; i < entry; i++) {
+                assertThat(index.search(vs.get(i), 1, 64)).extracting(HnswIndex.Result::id).containsExactly(i);
+            }
+        }
+    }
+
+    @Test
+    void searchReturnsKLiveHitsWhenTombstonesDominate() throws IOException {
+        Random rnd = new Random(5);
+        try (HnswIndex index = new HnswIndex(dir, DIM, M, 100)) {
+            fill(index, 1000, rnd);
+            for (int d = 0; d < 9; d++) index.deleteDoc("doc" + d);   // 90 % supprimés, 100 vivants (doc9)
+
+            for (int i = 0; i < 20; i++) {
+                assertThat(index.search(randomUnit(rnd), 50, 10))
+                        .hasSize(50)
+                        .allSatisfy(r -> assertThat(index.isDeleted(r.id())).isFalse());
+            }
+            assertThat(index.search(randomUnit(rnd), 500, 10)).hasSize(100);
+        }
+    }
+
+    @Test
+    void compactKeepsOnlyLiveNodesAndSurvivesReopen() throws IOException {
+        Random rnd = new Random(6);
+        List<float[]> vs;
+        HnswIndex index = new HnswIndex(dir, DIM, M, 100);
+        try {
+            vs = fill(index, 1000, rnd);
+            for (int d = 0; d < 9; d++) index.deleteDoc("doc" + d);
+            assertThat(index.deletedFraction()).isEqualTo(0.9);
+
+            index = index.compact();
+
+            assertThat(index.size()).isEqualTo(100);
+            assertThat(index.deletedFraction()).isZero();
+            assertThat(dir.resolveSibling(dir.getFileName() + ".compact")).doesNotExist();
+            assertThat(dir.resolveSibling(dir.getFileName() + ".old")).doesNotExist();
+        } finally {
+            index.close();
+        }
+        try (HnswIndex reopened = new HnswIndex(dir, DIM, M, 100)) {
+            assertThat(reopened.size()).isEqualTo(100);
+            assertThat(reopened.hasDoc("doc0")).isFalse();
+            for (int i = 9; i < 1000; i += 10) {
+                int id = reopened.search(vs.get(i), 1, 64).get(0).id();
+                assertThat(reopened.doc(id)).isEqualTo("doc9");
+                assertThat(reopened.page(id)).isEqualTo(i);
+                assertThat(reopened.excerpt(id)).isEqualTo("extrait " + i);
+            }
+        }
+    }
+
+    @Test
+    void interruptedCompactionIsCompletedOnOpen() throws IOException {
+        Random rnd = new Random(7);
+        try (HnswIndex index = new HnswIndex(dir, DIM, M, 100)) {
+            fill(index, 50, rnd);
+        }
+        // arrêt brutal entre les deux renommages : seul <dir>.compact (complet) existe
+        Path next = dir.resolveSibling(dir.getFileName() + ".compact");
+        Files.move(dir, next);
+
+        try (HnswIndex index = new HnswIndex(dir, DIM, M, 100)) {
+            assertThat(index.size()).isEqualTo(50);
+            assertThat(next).doesNotExist();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    private static HyperLogLog of(long from, long to) {
+        HyperLogLog h = new HyperLogLog();
+        for (long id = from; id < to; id++) h.add(id);
+        return h;
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        HyperLogLog h = new HyperLogLog();
+        assertThat(h.isEmpty()).isTrue();
+        assertThat(h.estimate()).isZero();
+    }
+
+    @Test
+    void smallCardinalitiesUseLinearCounting() {
+        // ids séquentiels (cas réel des user_id) : le mélange doit les disperser
+        assertThat(of(1, 101).estimate()).isCloseTo(100L, within(5L));
+        assertThat(of(1, 1001).estimate()).isCloseTo(1000L, within(30L));
+    }
+
+    @Test
+    void largeCardinalityWithinThreeStandardErrors() {
+        // erreur type 1,6 % pour P = 12
+        assertThat(of(0, 200_000).estimate()).isCloseTo(200_000L, within(10_000L));
+    }
+
+    @Test
+    void addsAreIdempotent() {
+        HyperLogLog h = of(0, 5000);
+        long before = h.estimate();
+        for (long id = 0; id < 5000; id++) h.add(id);
+        assertThat(h.estimate()).isEqualTo(before);
+    }
+
+    @Test
+    void mergeIsTheSketchOfTheUnion() {
+        HyperLogLog a = of(0, 30_000);
+        HyperLogLog b = of(20_000, 50_000);
+        HyperLogLog merged = a.copy();
+        merged.merge(b);
+
+        assertThat(merged.toBytes()).isEqualTo(of(0, 50_000).toBytes());
+        // copy() indépendante : a inchangé
+        assertThat(a.toBytes()).isEqualTo(of(0, 30_000).toBytes());
+    }
+
+    @Test
+    void roundTripsSparseAndDense() {
+        HyperLogLog sparse = of(0, 50);
+        byte[] s = sparse.toBytes();
+        assertThat(s.length).isLessThan(1 << HyperLogLog.P);
+        assertThat(HyperLogLog.fromBytes(s).toBytes()).isEqualTo(s);
+        assertThat(HyperLogLog.fromBytes(s).estimate()).isEqualTo(sparse.estimate());
+
+        HyperLogLog dense = of(0, 100_000);
+        byte[] d = dense.toBytes();
+        assertThat(d.length).isEqualTo(2 + (1 << HyperLogLog.P));
+        assertThat(HyperLogLog.fromBytes(d).estimate()).isEqualTo(dense.estimate());
+    }
+
+    @Test
+    void rejectsAnotherPrecision() {
+        byte[] bytes = of(0, 10).toBytes();
+        bytes[0] = 14;
+        assertThatThrownBy(() -> HyperLogLog.fromBytes(bytes)).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,86 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IdBitmapTest {
+
+    /** Ids répartis sur plusieurs conteneurs : certains clairsemés (tableau), d'autres denses (bitmap). */
+    private static Set<Long> randomIds(Random rnd, int sparse, int dense) {
+        Set<Long> ids = new HashSet<>();
+        for (int i = 0; i < sparse; i++) ids.add((long) rnd.nextInt(8) << 16 | rnd.nextInt(1 << 16));
+        for (int i = 0; i < dense; i++) ids.add(8L << 16 | rnd.nextInt(6000));
+        return ids;
+    }
+
+    private static IdBitmap of(Set<Long> ids) {
+        IdBitmap b = new IdBitmap();
+        ids.forEach(b::add);
+        return b;
+    }
+
+    @Test
+    void behavesLikeASetAcrossTheArrayToBitmapSwitch() {
+        IdBitmap b = new IdBitmap();
+        Set<Long> ref = new HashSet<>();
+        for (long id = 0; id < 5000; id++) {
+            b.add(id * 3 % 5000);   // ordre non trié
+            b.add(id * 3 % 5000);   // doublon
+            ref.add(id * 3 % 5000);
+            assertThat(b.cardinality()).isEqualTo(ref.size());
+        }
+        for (long id = 0; id < 70_000; id++) assertThat(b.contains(id)).isEqualTo(ref.contains(id));
+    }
+
+    @Test
+    void ignoresIdsOutOfRange() {
+        IdBitmap b = new IdBitmap();
+        b.add(-1);
+        b.add(1L << 47);
+        b.add((1L << 47) - 1);
+
+        assertThat(b.cardinality()).isEqualTo(1);
+        assertThat(b.contains((1L << 47) - 1)).isTrue();
+        assertThat(b.contains(-1)).isFalse();
+        assertThat(new IdBitmap().isEmpty()).isTrue();
+    }
+
+    @Test
+    void orAndIntersectionMatchSetsForEveryContainerPairing() {
+        Random rnd = new Random(1);
+        for (int round = 0; round < 20; round++) {
+            Set<Long> a = randomIds(rnd, rnd.nextInt(3000), rnd.nextBoolean() ? 5000 : 100);
+            Set<Long> b = randomIds(rnd, rnd.nextInt(3000), rnd.nextBoolean() ? 5000 : 100);
+            Set<Long> common = new HashSet<>(a);
+            common.retainAll(b);
+            Set<Long> union = new HashSet<>(a);
+            union.addAll(b);
+
+            IdBitmap ba = of(a);
+            IdBitmap bb = of(b);
+            assertThat(ba.andCardinality(bb)).isEqualTo(common.size());
+            assertThat(bb.andCardinality(ba)).isEqualTo(common.size());
+
+            ba.or(bb);
+            assertThat(ba.cardinality()).isEqualTo(union.size());
+            union.forEach(id -> assertThat(ba.contains(id)).isTrue());
+        }
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        Set<Long> ids = randomIds(new Random(2), 2000, 5000);
+        ids.add((1L << 47) - 1);
+        IdBitmap back = IdBitmap.fromBytes(of(ids).toBytes());
+
+        assertThat(back.cardinality()).isEqualTo(ids.size());
+        ids.forEach(id -> assertThat(back.contains(id)).isTrue());
+        assertThat(back.andCardinality(of(ids))).isEqualTo(ids.size());
+        assertThat(IdBitmap.fromBytes(new IdBitmap().toBytes()).isEmpty()).isTrue();
+    }
+}
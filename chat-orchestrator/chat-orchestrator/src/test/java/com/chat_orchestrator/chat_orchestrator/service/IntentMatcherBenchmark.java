@@ -0,0 +1,86 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.*;
+
+/**
+ * Mesure de {@link IntentMatcher#match} sur la table livrée, comparée à la détection d'origine
+ * (minuscules puis une suite de contains()). Hors suite de tests (pas de JMH dans le build) :
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) \
+ *      com.chat_orchestrator.chat_orchestrator.service.IntentMatcherBenchmark [secondes]
+ * </pre>
+ * Préchauffage puis 5 mesures ; affiche ns par message (corpus fixe, graine constante).
+ */
+public final class IntentMatcherBenchmark {
+
+    private static final String[] WORDS = {
+            "bonjour", "merci", "je", "voudrais", "savoir", "comment", "configurer", "mon", "compte", "le",
+            "document", "la", "réponse", "est", "pas", "claire", "peux-tu", "reformuler", "cahier", "stp",
+            "hello", "please", "explain", "the", "error", "message", "again", "مرحبا", "شكرا", "كيف"
+    };
+    private static final String[] QUESTIONS = {
+            "Combien de conversations hier ?", "durée moyenne des conversations cette semaine",
+            "top mots-clés du mois dernier", "how many chats in the last 7 days", "كم عدد المحادثات اليوم"
+    };
+
+    private IntentMatcherBenchmark() {}
+
+    public static void main(String[] args) {
+        double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 1.0;
+        Map<Integer, List<String>> table = NLStatsService.load(new ClassPathResource("nlstats/phrases.txt"));
+        IntentMatcher matcher = new IntentMatcher(table);
+        List<String> phrases = table.values().stream().flatMap(List::stream).map(p -> p.toLowerCase(Locale.ROOT)).toList();
+        String[] corpus = corpus(10_000);
+        System.out.printf("table : %d expressions, %d états ; corpus : %d messages, %.0f car. en moyenne%n",
+                phrases.size(), matcher.states(), corpus.length,
+                Arrays.stream(corpus).mapToInt(String::length).average().orElse(0));
+
+        run("automate", seconds, corpus, matcher::match);
+        run("contains()", seconds, corpus, m -> {
+            String lower = m.toLowerCase(Locale.ROOT);
+            long found = 0;
+            for (int i = 0; i < phrases.size(); i++) if (lower.contains(phrases.get(i))) found |= 1L << (i & 63);
+            return found;
+        });
+    }
+
+    /** Messages de chat ordinaires (~100 caractères), une question analytique sur cinquante. */
+    private static String[] corpus(int n) {
+        Random rnd = new Random(7);
+        String[] out = new String[n];
+        for (int i = 0; i < n; i++) {
+            if (rnd.nextInt(50) == 0) {
+                out[i] = QUESTIONS[rnd.nextInt(QUESTIONS.length)];
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            while (sb.length() < 100) sb.append(WORDS[rnd.nextInt(WORDS.length)]).append(rnd.nextInt(8) == 0 ? ", " : " ");
+            out[i] = sb.toString();
+        }
+        return out;
+    }
+
+    private interface Detector {
+        long detect(String message);
+    }
+
+    private static void run(String name, double seconds, String[] corpus, Detector d) {
+        long sink = 0;
+        for (int round = -3; round < 5; round++) {   // 3 tours de préchauffage
+            long ops = 0;
+            long t0 = System.nanoTime();
+            long end = t0 + (long) (seconds * 1e9);
+            long t;
+            do {
+                for (String m : corpus) sink ^= d.detect(m);
+                ops += corpus.length;
+                t = System.nanoTime();
+            } while (t < end);
+            if (round >= 0) System.out.printf("%-11s tour %d : %8.1f ns/message%n", name, round + 1, (t - t0) / (double) ops);
+        }
+        if (sink == 42) System.out.println();   // garde le résultat vivant
+    }
+}
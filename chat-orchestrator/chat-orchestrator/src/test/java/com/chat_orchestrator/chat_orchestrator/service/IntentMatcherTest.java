@@ -0,0 +1,135 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.StatDTO;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class IntentMatcherTest {
+
+    private static final int YESTERDAY = 0;
+    private static final int COUNT = 1;
+    private static final int CONVERSATION = 2;
+    private static final int DURATION = 3;
+    private static final int KEYWORDS = 4;
+    private static final int DAYS = 5;
+
+    private final IntentMatcher matcher = new IntentMatcher(Map.of(
+            YESTERDAY, List.of("hier", "yesterday", "أمس"),
+            COUNT, List.of("combien", "nombre de"),
+            CONVERSATION, List.of("conversation"),
+            DURATION, List.of("durée", "moyenne"),
+            KEYWORDS, List.of("mots"),
+            DAYS, List.of("de jours")));
+
+    private static long bits(int... bits) {
+        long out = 0;
+        for (int b : bits) out |= 1L << b;
+        return out;
+    }
+
+    @Test
+    void foldsCaseAndLatinAccents() {
+        assertThat(matcher.match("DURÉE ?")).isEqualTo(bits(DURATION));
+        assertThat(matcher.match("la duree")).isEqualTo(bits(DURATION));
+        assertThat(matcher.match("Durée")).isEqualTo(bits(DURATION));
+    }
+
+    @Test
+    void phraseMustStartAtAWordStart() {
+        assertThat(matcher.match("mon cahier")).isZero();
+        assertThat(matcher.match("cahier hier")).isEqualTo(bits(YESTERDAY));
+        assertThat(matcher.match("l'hier")).isEqualTo(bits(YESTERDAY));
+        assertThat(matcher.match("hier")).isEqualTo(bits(YESTERDAY));
+    }
+
+    @Test
+    void phraseMayEndInsideAWord() {
+        assertThat(matcher.match("conversations")).isEqualTo(bits(CONVERSATION));
+        assertThat(matcher.match("les mots-clés")).isEqualTo(bits(KEYWORDS));
+    }
+
+    @Test
+    void anyRunOfSeparatorsIsOneBoundary() {
+        assertThat(matcher.match("nombre   de messages")).isEqualTo(bits(COUNT));
+        assertThat(matcher.match("nombre-de")).isEqualTo(bits(COUNT));
+        assertThat(matcher.match("nombrede")).isZero();
+    }
+
+    @Test
+    void overlappingPhrasesAreAllReported() {
+        // « de jours » commence au milieu de « nombre de jours » : lien d'échec à travers la frontière
+        assertThat(matcher.match("nombre de jours de conversation hier"))
+                .isEqualTo(bits(COUNT, DAYS, CONVERSATION, YESTERDAY));
+    }
+
+    @Test
+    void foldsArabicAlefVariantsDiacriticsAndTatweel() {
+        assertThat(matcher.match("أمس")).isEqualTo(bits(YESTERDAY));
+        assertThat(matcher.match("امس")).isEqualTo(bits(YESTERDAY));
+        assertThat(matcher.match("أَمْس")).isEqualTo(bits(YESTERDAY));
+        assertThat(matcher.match("أمـــس")).isEqualTo(bits(YESTERDAY));
+    }
+
+    @Test
+    void nullOrUnrelatedTextMatchesNothing() {
+        assertThat(matcher.match(null)).isZero();
+        assertThat(matcher.match("")).isZero();
+        assertThat(matcher.match("bonjour, comment ça va ?")).isZero();
+    }
+
+    @Test
+    void rejectsBitsOutOfRange() {
+        assertThatThrownBy(() -> new IntentMatcher(Map.of(64, List.of("x"))))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shippedPhraseTableCompiles() {
+        IntentMatcher shipped = new IntentMatcher(NLStatsService.load(new ClassPathResource("nlstats/phrases.txt")));
+        long today = NLStatsService.Feature.TODAY.bit;
+        long yesterday = NLStatsService.Feature.YESTERDAY.bit;
+        long count = NLStatsService.Feature.COUNT.bit;
+        long conversation = NLStatsService.Feature.CONVERSATION.bit;
+
+        assertThat(shipped.match("Combien de conversations hier ?")).isEqualTo(count | conversation | yesterday);
+        assertThat(shipped.match("كم عدد المحادثات اليوم")).isEqualTo(count | conversation | today);
+        assertThat(shipped.match("j'ai oublié mon cahier")).isZero();
+    }
+
+    @Test
+    void ordinaryChatWithAPeriodWordIsNotAStatsQuestion() {
+        AnalyticsService analytics = mock(AnalyticsService.class);
+        NLStatsService stats = new NLStatsService(analytics, new ClassPathResource("nlstats/phrases.txt"));
+
+        assertThat(stats.tryAnswer("average rainfall per month")).isEmpty();
+        assertThat(stats.tryAnswer("today's news topics")).isEmpty();
+        assertThat(stats.tryAnswer("what was the duration of the last year's olympics")).isEmpty();
+        assertThat(stats.tryAnswer("count the words in this sentence today")).isEmpty();
+        assertThat(stats.tryAnswer("كم عمر الأرض اليوم")).isEmpty();
+        verifyNoInteractions(analytics);
+    }
+
+    @Test
+    void statsQuestionsMentioningConversationsAreStillAnswered() {
+        AnalyticsService analytics = mock(AnalyticsService.class);
+        when(analytics.avgConvMinutes(any(), any())).thenReturn(new StatDTO("avg", 4.5));
+        when(analytics.topKeywords(any(), any(), anyInt())).thenReturn(List.of());
+        NLStatsService stats = new NLStatsService(analytics, new ClassPathResource("nlstats/phrases.txt"));
+
+        assertThat(stats.tryAnswer("average conversation duration this month")).hasValueSatisfying(
+                a -> assertThat(a).contains("4,50 minutes"));
+        assertThat(stats.tryAnswer("topics of my conversations last week")).hasValueSatisfying(
+                a -> assertThat(a).startsWith("Top mots-clés"));
+    }
+}
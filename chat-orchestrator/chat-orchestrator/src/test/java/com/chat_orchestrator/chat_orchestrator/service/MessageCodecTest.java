@@ -0,0 +1,75 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageCodecTest {
+
+    private static final LocalDateTime TS = LocalDateTime.of(2025, 3, 10, 14, 7, 31, 123_456_789);
+
+    private static MessageDto roundTrip(MessageDto m) {
+        ByteBuffer b = ByteBuffer.wrap(MessageCodec.encode(m));
+        MessageDto out = MessageCodec.read(b);
+        assertThat(b.hasRemaining()).isFalse();
+        return out;
+    }
+
+    @Test
+    void roundTripsAMessageWithNanosAndUnicode() {
+        MessageDto m = new MessageDto("bot", "Réponse : مرحبا 👋\nligne 2", TS);
+        assertThat(roundTrip(m)).usingRecursiveComparison().isEqualTo(m);
+    }
+
+    @Test
+    void keepsNullsDistinctFromEmptyStrings() {
+        assertThat(roundTrip(new MessageDto(null, null, null))).usingRecursiveComparison()
+                .isEqualTo(new MessageDto(null, null, null));
+        assertThat(roundTrip(new MessageDto("", "", TS))).usingRecursiveComparison()
+                .isEqualTo(new MessageDto("", "", TS));
+    }
+
+    @Test
+    void roundTripsACompressedBlock() {
+        List<MessageDto> messages = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            messages.add(new MessageDto(i % 2 == 0 ? "user" : "bot", "message numéro " + i, TS.plusSeconds(i)));
+        }
+        byte[] raw = MessageCodec.encodeBlock(messages);
+        byte[] packed = MessageCodec.compress(raw, Deflater.BEST_SPEED);
+        assertThat(packed.length).isLessThan(raw.length);
+
+        List<MessageDto> back = MessageCodec.readBlock(ByteBuffer.wrap(MessageCodec.decompress(packed, raw.length)));
+        assertThat(back).usingRecursiveFieldByFieldElementComparator().containsExactlyElementsOf(messages);
+    }
+
+    @Test
+    void emptyBlock() {
+        byte[] raw = MessageCodec.encodeBlock(List.of());
+        assertThat(MessageCodec.readBlock(ByteBuffer.wrap(raw))).isEmpty();
+    }
+
+    @Test
+    void rejectsTruncatedOrCorruptedBlocks() {
+        byte[] raw = MessageCodec.encodeBlock(List.of(new MessageDto("user", "bonjour ".repeat(50), TS)));
+        byte[] packed = MessageCodec.compress(raw, Deflater.DEFAULT_COMPRESSION);
+
+        byte[] cut = Arrays.copyOf(packed, packed.length / 2);
+        assertThatThrownBy(() -> MessageCodec.decompress(cut, raw.length))
+                .isInstanceOf(IllegalStateException.class);
+
+        byte[] garbage = packed.clone();
+        garbage[0] ^= (byte) 0xFF;
+        assertThatThrownBy(() -> MessageCodec.decompress(garbage, raw.length))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
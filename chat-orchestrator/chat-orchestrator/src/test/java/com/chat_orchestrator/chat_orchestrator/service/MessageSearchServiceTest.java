@@ -0,0 +1,21 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MessageSearchServiceTest {
+
+    @Test
+    void snippetEscapesUserContentAndKeepsHighlights() {
+        String headline = "<img src=x onerror=alert(1)> \u0002budget\u0003 & \"plan\"";
+
+        assertThat(MessageSearchService.snippet(headline))
+                .isEqualTo("&lt;img src=x onerror=alert(1)&gt; <mark>budget</mark> &amp; &quot;plan&quot;");
+    }
+
+    @Test
+    void snippetOfNullIsNull() {
+        assertThat(MessageSearchService.snippet(null)).isNull();
+    }
+}
@@ -0,0 +1,104 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MultipartStreamTest {
+
+    private static final String B = "XyZ123";
+
+    /** Flux qui rend au plus quelques octets par lecture (paquets réseau arbitraires). */
+    private static InputStream trickle(byte[] data) {
+        Random rnd = new Random(3);
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 1 + rnd.nextInt(7)));
+            }
+        };
+    }
+
+    private static byte[] body(byte[] file) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(("préambule ignoré\r\n"
+                + "--" + B + "\r\n"
+                + "Content-Disposition: form-data; name=\"conv\"\r\n\r\n"
+                + "42\r\n"
+                + "--" + B + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"rapport été.pdf\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(file);
+        out.writeBytes(("\r\n--" + B + "\r\n"
+                + "Content-Disposition: form-data; name=\"ns\"\r\n\r\n"
+                + "autre\r\n"
+                + "--" + B + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    @Test
+    void readsEachPartUpToItsDelimiter() throws IOException {
+        // contenu binaire qui imite des débuts de délimiteur
+        byte[] file = new byte[200_000];
+        new Random(1).nextBytes(file);
+        byte[] fake = ("\r\n--" + B.substring(0, 4)).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(fake, 0, file, 65_530, fake.length);
+        System.arraycopy(fake, 0, file, file.length - fake.length, fake.length);
+
+        MultipartStream parts = new MultipartStream(trickle(body(file)), B);
+
+        assertThat(parts.next()).isTrue();
+        assertThat(parts.name()).isEqualTo("conv");
+        assertThat(parts.next()).isTrue();   // corps de « conv » sauté
+        assertThat(parts.name()).isEqualTo("file");
+        assertThat(parts.filename()).isEqualTo("rapport été.pdf");
+        assertThat(parts.body().readAllBytes()).isEqualTo(file);
+        assertThat(parts.next()).isTrue();
+        assertThat(parts.name()).isEqualTo("ns");
+        assertThat(new String(parts.body().readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("autre");
+        assertThat(parts.next()).isFalse();
+        assertThat(parts.next()).isFalse();
+    }
+
+    @Test
+    void emptyBodyAndLfOnlyHeaders() throws IOException {
+        byte[] data = ("--" + B + "\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"vide.txt\"\n\n"
+                + "\r\n--" + B + "--").getBytes(StandardCharsets.UTF_8);
+
+        MultipartStream parts = new MultipartStream(new ByteArrayInputStream(data), B);
+
+        assertThat(parts.next()).isTrue();
+        assertThat(parts.filename()).isEqualTo("vide.txt");
+        assertThat(parts.body().readAllBytes()).isEmpty();
+        assertThat(parts.next()).isFalse();
+    }
+
+    @Test
+    void truncatedBodyIsRejected() throws IOException {
+        byte[] data = ("--" + B + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"a\"\r\n\r\n"
+                + "début du fichier sans fin").getBytes(StandardCharsets.UTF_8);
+
+        MultipartStream parts = new MultipartStream(new ByteArrayInputStream(data), B);
+
+        assertThat(parts.next()).isTrue();
+        assertThatThrownBy(() -> parts.body().readAllBytes()).isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void missingDelimiterIsRejected() {
+        MultipartStream parts = new MultipartStream(new ByteArrayInputStream("pas de parts".getBytes()), B);
+
+        assertThatThrownBy(parts::next).isInstanceOf(ResponseStatusException.class);
+    }
+}
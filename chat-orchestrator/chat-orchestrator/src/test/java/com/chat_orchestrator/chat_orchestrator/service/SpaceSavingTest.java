@@ -0,0 +1,99 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SpaceSavingTest {
+
+    private static Map<String, Long> counts(SpaceSaving s) {
+        Map<String, Long> out = new HashMap<>();
+        s.addTo(out);
+        return out;
+    }
+
+    @Test
+    void exactWhileDistinctWordsFit() {
+        SpaceSaving s = new SpaceSaving(4);
+        s.offer("a", 3);
+        s.offer("b", 1);
+        s.offer("a", 2);
+        s.offer("c", 0);    // ignoré
+        s.offer("d", -1);   // ignoré
+
+        assertThat(counts(s)).containsOnly(Map.entry("a", 5L), Map.entry("b", 1L));
+    }
+
+    @Test
+    void newWordReplacesTheSmallestCounterAndInheritsIt() {
+        SpaceSaving s = new SpaceSaving(2);
+        s.offer("a", 10);
+        s.offer("b", 3);
+        s.offer("c", 1);
+
+        assertThat(counts(s)).containsOnly(Map.entry("a", 10L), Map.entry("c", 4L));
+    }
+
+    @Test
+    void heavyHittersArePresentAndOverestimatedByAtMostNOverCapacity() {
+        int capacity = 50;
+        SpaceSaving s = new SpaceSaving(capacity);
+        Map<String, Long> exact = new HashMap<>();
+        Random rnd = new Random(42);
+        long total = 0;
+        for (int i = 0; i < 100_000; i++) {
+            // quelques mots fréquents noyés dans une longue traîne
+            String w = rnd.nextInt(10) < 3 ? "hot" + rnd.nextInt(5) : "w" + rnd.nextInt(5_000);
+            s.offer(w, 1);
+            exact.merge(w, 1L, Long::sum);
+            total++;
+        }
+        Map<String, Long> approx = counts(s);
+        long bound = total / capacity;
+
+        exact.forEach((w, n) -> {
+            if (n > bound) {
+                assertThat(approx).containsKey(w);
+            }
+        });
+        approx.forEach((w, n) -> assertThat(n).isBetween(exact.get(w), exact.get(w) + bound));
+        assertThat(approx.values().stream().mapToLong(Long::longValue).sum()).isEqualTo(total);
+    }
+
+    @Test
+    void ofExactKeepsTheLargestPositiveCounts() {
+        SpaceSaving s = SpaceSaving.ofExact(2, Map.of("a", 5L, "b", 9L, "c", 7L, "d", 0L));
+
+        assertThat(counts(s)).containsOnly(Map.entry("b", 9L), Map.entry("c", 7L));
+    }
+
+    @Test
+    void bytesRoundTrip() {
+        SpaceSaving s = new SpaceSaving(3);
+        s.offer("été", 4);
+        s.offer("mot", 2);
+        s.offer("x", 1);
+        s.offer("y", 1);    // remplace "x" avec une erreur de 1
+
+        SpaceSaving back = SpaceSaving.fromBytes(s.toBytes(), 3);
+
+        assertThat(counts(back)).isEqualTo(counts(s));
+        back.offer("z", 1); // ex aequo à 2 : le plus petit mot ("mot") est remplacé
+        assertThat(counts(back)).containsOnly(Map.entry("été", 4L), Map.entry("y", 2L), Map.entry("z", 3L));
+    }
+
+    @Test
+    void fromBytesWithASmallerCapacityKeepsTheLargestCounters() {
+        SpaceSaving s = new SpaceSaving(4);
+        s.offer("a", 1);
+        s.offer("b", 4);
+        s.offer("c", 2);
+        s.offer("d", 3);
+
+        assertThat(counts(SpaceSaving.fromBytes(s.toBytes(), 2))).containsOnly(Map.entry("b", 4L), Map.entry("d", 3L));
+    }
+}
@@ -0,0 +1,64 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.ConversationSuggestionDTO;
+import com.chat_orchestrator.chat_orchestrator.repository.ConversationRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TitleSuggestIndexTest {
+
+    private final ConversationRepository repository = mock(ConversationRepository.class);
+    private final TitleSuggestIndex index = new TitleSuggestIndex(repository, 15);
+    private final List<Object[]> rows = new ArrayList<>();
+
+    private void conversation(long id, String title, long date) {
+        rows.add(new Object[]{id, title, new Date(date), 7L});
+    }
+
+    private List<Long> suggest(String prefix, int limit) {
+        when(repository.findSuggestRowsByOwnerEmail("a@b.c")).thenReturn(rows);
+        return index.suggest("a@b.c", prefix, limit).stream().map(ConversationSuggestionDTO::id).toList();
+    }
+
+    @Test
+    void mostRecentMatchesWinEvenWhenTheySortLastAlphabetically() {
+        // 100 titres anciens "projet a…" avant, dans l'ordre des clés, les deux récents "projet z…"
+        for (int i = 0; i < 100; i++) conversation(i, "projet a" + i, 1_000 + i);
+        conversation(500, "projet zeta", 9_000);
+        conversation(501, "projet zulu", 8_000);
+
+        assertThat(suggest("proj", 3)).containsExactly(500L, 501L, 99L);
+    }
+
+    @Test
+    void matchesAnyWordOnceIgnoringCaseAndAccents() {
+        conversation(1, "Réunion équipe", 100);
+        conversation(2, "Équipe de nuit équipe", 200);
+        conversation(3, "Budget", 300);
+
+        assertThat(suggest("equi", 10)).containsExactly(2L, 1L);
+        assertThat(suggest("reu", 10)).containsExactly(1L);
+        assertThat(suggest("  ", 10)).isEmpty();
+    }
+
+    @Test
+    void updatesAfterLoadAreVisible() {
+        conversation(1, "Ancien titre", 100);
+        assertThat(suggest("anc", 5)).containsExactly(1L);
+
+        index.onSaved("a@b.c", 1L, "Nouveau titre", new Date(200));
+        index.onSaved("a@b.c", 2L, "Nouvelle idée", new Date(300));
+
+        assertThat(suggest("anc", 5)).isEmpty();
+        assertThat(suggest("nouv", 5)).containsExactly(2L, 1L);
+        index.onDeleted(2L);
+        assertThat(suggest("nouv", 5)).containsExactly(1L);
+    }
+}
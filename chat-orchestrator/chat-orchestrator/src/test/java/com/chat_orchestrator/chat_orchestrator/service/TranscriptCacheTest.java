@@ -0,0 +1,136 @@
+package com.chat_orchestrator.chat_orchestrator.service;
+
+import com.chat_orchestrator.chat_orchestrator.dto.MessageDto;
+import com.chat_orchestrator.chat_orchestrator.entity.Message;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TranscriptCacheTest {
+
+    private final TranscriptCache cache = new TranscriptCache(1 << 20, 1 << 16);
+
+    private static MessageDto msg(String content) {
+        return new MessageDto("user", content, LocalDateTime.of(2025, 1, 1, 12, 0));
+    }
+
+    /** Message enregistré (id attribué à l'insertion). */
+    private static Message saved(long id, String content) {
+        Message m = new Message("user", content);
+        ReflectionTestUtils.setField(m, "id", id);
+        return m;
+    }
+
+    /** Commit simulé : les hooks after-commit enregistrés par {@code work} tournent après lui. */
+    private static void inTransaction(Runnable work, Runnable beforeHooks) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            work.run();
+            beforeHooks.run();
+            List<TransactionSynchronization> hooks = TransactionSynchronizationManager.getSynchronizations();
+            hooks.forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static List<String> contents(List<MessageDto> messages) {
+        return messages.stream().map(MessageDto::getContent).toList();
+    }
+
+    @Test
+    void putThenAppendIsReadBack() {
+        cache.put(1L, List.of(msg("a"), msg("b")), 2, cache.generation(1L));
+        cache.append(1L, 3, msg("c"));
+
+        assertThat(cache.get(1L)).hasValueSatisfying(l -> assertThat(contents(l)).containsExactly("a", "b", "c"));
+    }
+
+    @Test
+    void appendWithoutEntryIsIgnored() {
+        cache.append(1L, 1, msg("a"));
+
+        assertThat(cache.get(1L)).isEmpty();
+    }
+
+    @Test
+    void putIsSkippedWhenAMessageWasAppendedDuringTheLoad() {
+        long generation = cache.generation(1L);
+        List<MessageDto> loaded = List.of(msg("a"));   // lu en base avant le commit de "b"
+        cache.append(1L, 2, msg("b"));                  // après commit : pas encore d'entrée
+
+        cache.put(1L, loaded, 1, generation);
+
+        assertThat(cache.get(1L)).isEmpty();
+        cache.put(1L, List.of(msg("a"), msg("b")), 2, cache.generation(1L));
+        assertThat(cache.get(1L)).hasValueSatisfying(l -> assertThat(contents(l)).containsExactly("a", "b"));
+    }
+
+    @Test
+    void putIsSkippedWhenInvalidatedDuringTheLoad() {
+        long generation = cache.generation(1L);
+        cache.invalidate(1L);
+
+        cache.put(1L, List.of(msg("ancien titre")), 1, generation);
+
+        assertThat(cache.get(1L)).isEmpty();
+    }
+
+    @Test
+    void loadSeeingTheCommittedMessageIsNotCachedBeforeTheAfterCommitAppend() {
+        long generation = cache.generation(1L);
+        // le chargement (commencé avant l'écriture) voit "b" commité avant que le hook n'ait tourné
+        inTransaction(() -> cache.appendAfterCommit(1L, saved(2, "b")),
+                () -> cache.put(1L, List.of(msg("a"), msg("b")), 2, generation));
+
+        assertThat(cache.get(1L)).isEmpty();
+    }
+
+    @Test
+    void loadStartedAfterTheCommitIsNotDuplicatedByTheAfterCommitAppend() {
+        inTransaction(() -> cache.appendAfterCommit(1L, saved(2, "b")), () -> {
+            // lecture entre le commit et le hook : génération déjà incrémentée, "b" déjà en base
+            cache.put(1L, List.of(msg("a"), msg("b")), 2, cache.generation(1L));
+        });
+
+        assertThat(cache.get(1L)).hasValueSatisfying(l -> assertThat(contents(l)).containsExactly("a", "b"));
+        cache.append(1L, 3, msg("c"));
+        assertThat(cache.get(1L)).hasValueSatisfying(l -> assertThat(contents(l)).containsExactly("a", "b", "c"));
+    }
+
+    @Test
+    void otherConversationsAreNotAffected() {
+        long generation = cache.generation(2L);
+        cache.append(1L, 1, msg("x"));
+
+        cache.put(2L, List.of(msg("a")), 1, generation);
+
+        assertThat(cache.get(2L)).isPresent();
+    }
+
+    @Test
+    void leastFrequentlyUsedEntryIsEvictedFirst() {
+        TranscriptCache small = new TranscriptCache(4096, 4096);
+        List<MessageDto> big = new ArrayList<>();
+        for (int i = 0; i < 20; i++) big.add(msg("x".repeat(20)));
+
+        small.put(1L, big, 20, small.generation(1L));   // ~1,1 Ko par entrée : trois tiennent, pas quatre
+        small.put(2L, big, 20, small.generation(2L));
+        small.put(3L, big, 20, small.generation(3L));
+        small.get(1L);
+        small.get(1L);
+        small.put(4L, big, 20, small.generation(4L));
+
+        assertThat(small.get(1L)).isPresent();
+        assertThat(small.get(2L)).isEmpty();
+        assertThat(small.get(3L)).isPresent();
+        assertThat(small.stats().usedBytes()).isLessThanOrEqualTo(4096);
+    }
+}
@@ -312,6 +312,13 @@ def list_docs():
             seen.add((sc,d)); out.append({"name": d, "pages": len(ch), "scope": sc})
     return jsonify({"ok": True, "scopes": scopes, "count": len(out), "docs": out})
 
+def _ingest_result(targets, name, pages, **extra):
+    out={"ok":True,"scopes":targets,"doc":name,"pages":len(pages),**extra}
+    # return_text=1 : l'orchestrateur indexe lui-meme les extraits (index vectoriel local)
+    if request.args.get("return_text"):
+        out["chunks"]=[{"page":p["page"],"text":p["text"]} for p in pages]
+    return jsonify(out)
+
 @app.post("/ingest")
 def ingest():
     targets = _scopes_for_write()
@@ -324,7 +331,7 @@ def ingest():
             pages.append({"page": int(p.get("page",1)), "text": t, "vec": embed(t)})
         for sc in targets:
             DOCS[sc][name].clear(); DOCS[sc][name].extend(pages)
-        return jsonify({"ok": True, "scopes": targets, "doc": name, "pages": len(pages)})
+        return _ingest_result(targets, name, pages)
     f = request.files.get("file")
     if not f: return jsonify({"error":"Aucun fichier"}),400
     filename=(f.filename or "").strip()
@@ -337,7 +344,7 @@ def ingest():
             t=(page.extract_text() or "").strip()
             pages.append({"page":i,"text":t,"vec":embed(t)})
         for sc in targets: DOCS[sc][name].clear(); DOCS[sc][name].extend(pages)
-        return jsonify({"ok":True,"scopes":targets,"doc":name,"pages":len(pages)})
+        return _ingest_result(targets, name, pages)
     if lower.endswith(".csv"):
         content=f.read().decode(errors="ignore")
         rows=list(csv.reader(io.StringIO(content)))
@@ -346,11 +353,11 @@ def ingest():
         pages=[]
         for pageno,ch in _chunk(text): pages.append({"page":pageno,"text":ch,"vec":embed(ch)})
         for sc in targets: DOCS[sc][name].clear(); DOCS[sc][name].extend(pages)
-        return jsonify({"ok":True,"scopes":targets,"doc":name,"pages":len(pages),"columns":header})
+        return _ingest_result(targets, name, pages, columns=header)
     text=f.read().decode(errors="ignore"); pages=[]
     for pageno,ch in _chunk(text): pages.append({"page":pageno,"text":ch,"vec":embed(ch)})
     for sc in targets: DOCS[sc][name].clear(); DOCS[sc][name].extend(pages)
-    return jsonify({"ok":True,"scopes":targets,"doc":name,"pages":len(pages)})
+    return _ingest_result(targets, name, pages)
 
 @app.post("/search")
 def search():
@@ -914,16 +921,22 @@ def mcp_execute():
             only_doc = params.get("doc")
             only_docs = params.get("docs") or []
             allow = set([only_doc] if only_doc else []) | set(only_docs)
-            qv = embed(q)
-            hits=[]
-            for sc in scopes:
-                for doc, chunks in DOCS.get(sc, {}).items():
-                    if allow and doc not in allow: continue
-                    for ch in chunks:
-                        score = cosine(qv, ch["vec"])
-                        hits.append({"doc": doc, "page": ch["page"], "excerpt": ch["text"][:1200], "score": float(score)})
-            hits.sort(key=lambda x: x["score"], reverse=True)
-            top = hits[:k]
+            # extraits déjà retrouvés par l'orchestrateur (index HNSW local) : pas de parcours de DOCS
+            given = params.get("contexts")
+            if isinstance(given, list) and given:
+                top = [{"doc": h.get("doc"), "page": h.get("page"), "excerpt": (h.get("excerpt") or "")[:1200],
+                        "score": float(h.get("score") or 0)} for h in given[:k] if isinstance(h, dict)]
+            else:
+                qv = embed(q)
+                hits=[]
+                for sc in scopes:
+                    for doc, chunks in DOCS.get(sc, {}).items():
+                        if allow and doc not in allow: continue
+                        for ch in chunks:
+                            score = cosine(qv, ch["vec"])
+                            hits.append({"doc": doc, "page": ch["page"], "excerpt": ch["text"][:1200], "score": float(score)})
+                hits.sort(key=lambda x: x["score"], reverse=True)
+                top = hits[:k]
             if not top:
                 return ok({"reply":"NO_CONTEXT", "citations": []})
             ctx = "\n\n".join([f"[{h['doc']} p.{h['page']}] {h['excerpt']}" for h in top])